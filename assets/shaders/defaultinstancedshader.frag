@@ -0,0 +1,27 @@
+#version 330 core
+
+in vec2 pass_TextureCoord;
+in vec3 pass_SurfNormal;
+in vec3 pass_ToLightVector;
+in vec3 pass_ToCameraVector;
+flat in vec2 pass_Material;
+flat in vec3 pass_LightColor;
+
+out vec4 out_Color;
+
+uniform sampler2D textureSampler;
+
+void main(void)
+{
+    float reflectivity = pass_Material.x;
+    float shineDamper = pass_Material.y;
+
+    vec3 normNorm = normalize(pass_SurfNormal);
+    vec3 normLight = normalize(pass_ToLightVector);
+    vec3 normCamera = normalize(pass_ToCameraVector);
+
+    vec3 diffuse = max(dot(normNorm, normLight), 0.2) * pass_LightColor;
+    vec3 specLight = pow(max(dot(reflect(-normLight, normNorm), normCamera), 0.0), shineDamper) * reflectivity * pass_LightColor;
+
+    out_Color = vec4(diffuse, 1.0) * texture(textureSampler, pass_TextureCoord) + vec4(specLight, 1.0);
+}
\ No newline at end of file
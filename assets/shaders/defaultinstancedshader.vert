@@ -0,0 +1,39 @@
+#version 330 core
+
+in vec3 in_Normals;
+in vec3 in_Position;
+in vec2 in_TextureCoord;
+in mat4 in_Transform;
+in vec2 in_Material;
+in vec3 in_LightPosition;
+in vec3 in_LightColor;
+
+out vec2 pass_TextureCoord;
+out vec3 pass_SurfNormal;
+out vec3 pass_ToLightVector;
+out vec3 pass_ToCameraVector;
+flat out vec2 pass_Material;
+flat out vec3 pass_LightColor;
+
+layout(std140) uniform FrameData
+{
+    mat4 viewMatrix;
+    mat4 projectionMatrix;
+    mat4 viewProjectionMatrix;
+    vec4 cameraPosition;
+    vec4 sceneLightPosition;
+    vec4 sceneLightColor;
+};
+
+void main(void)
+{
+    vec4 position = in_Transform * vec4(in_Position, 1.0);
+    gl_Position = viewProjectionMatrix * position;
+
+    pass_TextureCoord = in_TextureCoord;
+    pass_SurfNormal = (in_Transform * vec4(in_Normals, 0.0)).xyz;
+    pass_ToLightVector = in_LightPosition - position.xyz;
+    pass_ToCameraVector = cameraPosition.xyz - position.xyz;
+    pass_Material = in_Material;
+    pass_LightColor = in_LightColor;
+}
\ No newline at end of file
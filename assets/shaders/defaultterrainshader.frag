@@ -8,7 +8,15 @@ in vec3 pass_ToCameraVector;
 out vec4 out_Color;
 
 uniform sampler2D textureSampler;
-uniform vec3 lightColor = vec3(1.0, 1.0, 1.0);
+layout(std140) uniform FrameData
+{
+    mat4 viewMatrix;
+    mat4 projectionMatrix;
+    mat4 viewProjectionMatrix;
+    vec4 cameraPosition;
+    vec4 sceneLightPosition;
+    vec4 sceneLightColor;
+};
 uniform float shineDamper = 1.0;
 uniform float reflectivity = 0.0;
 
@@ -18,8 +26,8 @@ void main(void)
     vec3 normLight = normalize(pass_ToLightVector);
     vec3 normCamera = normalize(pass_ToCameraVector);
 
-    vec3 diffuse = max(dot(normNorm, normLight), 0.2) * lightColor;
-    vec3 specLight = pow(max(dot(reflect(-normLight, normNorm), normCamera), 0.0), shineDamper) * reflectivity * lightColor;
+    vec3 diffuse = max(dot(normNorm, normLight), 0.2) * sceneLightColor.rgb;
+    vec3 specLight = pow(max(dot(reflect(-normLight, normNorm), normCamera), 0.0), shineDamper) * reflectivity * sceneLightColor.rgb;
 
     out_Color = vec4(diffuse, 1.0) * texture(textureSampler, pass_TextureCoord) + vec4(specLight, 1.0);
 }
\ No newline at end of file
@@ -10,17 +10,23 @@ out vec3 pass_ToLightVector;
 out vec3 pass_ToCameraVector;
 
 uniform mat4 transformationMatrix;
-uniform mat4 projectionMatrix;
-uniform mat4 viewMatrix;
-uniform vec3 lightPosition = vec3(0.0, 10.0, 0.0);
+layout(std140) uniform FrameData
+{
+    mat4 viewMatrix;
+    mat4 projectionMatrix;
+    mat4 viewProjectionMatrix;
+    vec4 cameraPosition;
+    vec4 sceneLightPosition;
+    vec4 sceneLightColor;
+};
 
 void main(void)
 {
     vec4 position = transformationMatrix * vec4(in_Position, 1.0);
-    gl_Position = projectionMatrix * viewMatrix * position;
+    gl_Position = viewProjectionMatrix * position;
 
     pass_TextureCoord = in_TextureCoord;
     pass_SurfNormal = (transformationMatrix * vec4(in_Normals, 0.0)).xyz;
-    pass_ToLightVector = lightPosition - position.xyz;
-    pass_ToCameraVector = (inverse(viewMatrix) * vec4(0.0, 0.0, 0.0, 1.0)).xyz - position.xyz;
+    pass_ToLightVector = sceneLightPosition.xyz - position.xyz;
+    pass_ToCameraVector = cameraPosition.xyz - position.xyz;
 }
\ No newline at end of file
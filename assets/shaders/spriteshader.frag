@@ -0,0 +1,13 @@
+#version 330 core
+
+in vec2 pass_TextureCoord;
+in vec4 pass_Color;
+
+out vec4 out_Color;
+
+uniform sampler2D textureSampler;
+
+void main(void)
+{
+    out_Color = pass_Color * texture(textureSampler, pass_TextureCoord);
+}
\ No newline at end of file
@@ -0,0 +1,15 @@
+#version 330 core
+
+in vec2 in_Position;
+in vec2 in_TextureCoord;
+in vec4 in_Color;
+
+out vec2 pass_TextureCoord;
+out vec4 pass_Color;
+
+void main(void)
+{
+    gl_Position = vec4(in_Position, 0.0, 1.0);
+    pass_TextureCoord = in_TextureCoord;
+    pass_Color = in_Color;
+}
\ No newline at end of file
@@ -0,0 +1,577 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client;
+
+import java.util.Arrays;
+import java.util.List;
+import wrath.client.graphics.Frustum;
+
+/**
+ * Class implementing a dynamic bounding volume hierarchy of axis-aligned boxes, used to find objects in space without testing every one of them.
+ * Leaves store a box grown by a margin, so objects moving a short distance do not need to be re-inserted, and the tree is kept balanced with rotations as it changes.
+ * Nodes are stored in flat arrays that are reused as objects come and go, so inserting, moving and querying creates no garbage once the tree has grown.
+ * The tree is not thread-safe.
+ * @author Trent Spears
+ * @param <T> The type of object stored in the leaves.
+ */
+public class AABBTree<T>
+{
+    private static final int NULL = -1;
+    
+    private final float margin;
+    
+    private float[] minX, minY, minZ, maxX, maxY, maxZ;
+    private int[] parent, child1, child2, height;
+    private Object[] items;
+    private int capacity = 0;
+    private int freeList = NULL;
+    private int root = NULL;
+    private int leafCount = 0;
+    
+    private int[] stack = new int[64];
+    
+    /**
+     * Constructor.
+     * @param margin The distance leaf boxes are grown by on every side. Larger margins mean fewer re-insertions for moving objects, but looser queries.
+     */
+    public AABBTree(float margin)
+    {
+        this.margin = Math.max(0, margin);
+        grow(16);
+    }
+    
+    private int allocateNode()
+    {
+        if(freeList == NULL) grow(capacity * 2);
+        int node = freeList;
+        freeList = parent[node];
+        parent[node] = NULL;
+        child1[node] = NULL;
+        child2[node] = NULL;
+        height[node] = 0;
+        items[node] = null;
+        return node;
+    }
+    
+    private float area(int node)
+    {
+        float dx = maxX[node] - minX[node];
+        float dy = maxY[node] - minY[node];
+        float dz = maxZ[node] - minZ[node];
+        return dx * dy + dy * dz + dz * dx;
+    }
+    
+    private float areaOfUnion(int a, int b)
+    {
+        float dx = Math.max(maxX[a], maxX[b]) - Math.min(minX[a], minX[b]);
+        float dy = Math.max(maxY[a], maxY[b]) - Math.min(minY[a], minY[b]);
+        float dz = Math.max(maxZ[a], maxZ[b]) - Math.min(minZ[a], minZ[b]);
+        return dx * dy + dy * dz + dz * dx;
+    }
+    
+    private int balance(int a)
+    {
+        if(child1[a] == NULL || height[a] < 2) return a;
+        
+        int b = child1[a];
+        int c = child2[a];
+        int diff = height[c] - height[b];
+        
+        if(diff > 1)
+        {
+            //C is too deep, so it is rotated up into A's place.
+            int f = child1[c];
+            int g = child2[c];
+            child1[c] = a;
+            parent[c] = parent[a];
+            parent[a] = c;
+            replaceChild(parent[c], a, c);
+            
+            if(height[f] > height[g])
+            {
+                child2[c] = f;
+                child2[a] = g;
+                parent[g] = a;
+            }
+            else
+            {
+                child2[c] = g;
+                child2[a] = f;
+                parent[f] = a;
+            }
+            refit(a);
+            refit(c);
+            return c;
+        }
+        
+        if(diff < -1)
+        {
+            //B is too deep, so it is rotated up into A's place.
+            int d = child1[b];
+            int e = child2[b];
+            child1[b] = a;
+            parent[b] = parent[a];
+            parent[a] = b;
+            replaceChild(parent[b], a, b);
+            
+            if(height[d] > height[e])
+            {
+                child2[b] = d;
+                child1[a] = e;
+                parent[e] = a;
+            }
+            else
+            {
+                child2[b] = e;
+                child1[a] = d;
+                parent[d] = a;
+            }
+            refit(a);
+            refit(b);
+            return b;
+        }
+        
+        return a;
+    }
+    
+    /**
+     * Removes every object from the tree.
+     */
+    public void clear()
+    {
+        Arrays.fill(items, null);
+        root = NULL;
+        leafCount = 0;
+        freeList = NULL;
+        for(int i = capacity - 1; i >= 0; i--)
+        {
+            parent[i] = freeList;
+            height[i] = -1;
+            freeList = i;
+        }
+    }
+    
+    private void freeNode(int node)
+    {
+        items[node] = null;
+        height[node] = -1;
+        parent[node] = freeList;
+        freeList = node;
+    }
+    
+    /**
+     * Gets the height of the tree, which is the most nodes a query has to visit to reach a leaf.
+     * A balanced tree of n objects has a height close to log2(n).
+     * @return Returns the height of the tree, or 0 if it is empty.
+     */
+    public int getHeight()
+    {
+        return root == NULL ? 0 : height[root] + 1;
+    }
+    
+    /**
+     * Gets the object stored in a leaf.
+     * @param proxy The ID of the leaf, from {@link #insert(java.lang.Object, float, float, float, float, float, float)}.
+     * @return Returns the object stored in the leaf.
+     */
+    @SuppressWarnings("unchecked")
+    public T getItem(int proxy)
+    {
+        return (T) items[proxy];
+    }
+    
+    private void grow(int newCapacity)
+    {
+        if(capacity == 0)
+        {
+            minX = new float[newCapacity];
+            minY = new float[newCapacity];
+            minZ = new float[newCapacity];
+            maxX = new float[newCapacity];
+            maxY = new float[newCapacity];
+            maxZ = new float[newCapacity];
+            parent = new int[newCapacity];
+            child1 = new int[newCapacity];
+            child2 = new int[newCapacity];
+            height = new int[newCapacity];
+            items = new Object[newCapacity];
+        }
+        else
+        {
+            minX = Arrays.copyOf(minX, newCapacity);
+            minY = Arrays.copyOf(minY, newCapacity);
+            minZ = Arrays.copyOf(minZ, newCapacity);
+            maxX = Arrays.copyOf(maxX, newCapacity);
+            maxY = Arrays.copyOf(maxY, newCapacity);
+            maxZ = Arrays.copyOf(maxZ, newCapacity);
+            parent = Arrays.copyOf(parent, newCapacity);
+            child1 = Arrays.copyOf(child1, newCapacity);
+            child2 = Arrays.copyOf(child2, newCapacity);
+            height = Arrays.copyOf(height, newCapacity);
+            items = Arrays.copyOf(items, newCapacity);
+        }
+        
+        for(int i = newCapacity - 1; i >= capacity; i--)
+        {
+            parent[i] = freeList;
+            height[i] = -1;
+            freeList = i;
+        }
+        capacity = newCapacity;
+    }
+    
+    /**
+     * Adds an object to the tree.
+     * @param item The object to add.
+     * @param minX The smallest X coordinate of the object's bounds.
+     * @param minY The smallest Y coordinate of the object's bounds.
+     * @param minZ The smallest Z coordinate of the object's bounds.
+     * @param maxX The largest X coordinate of the object's bounds.
+     * @param maxY The largest Y coordinate of the object's bounds.
+     * @param maxZ The largest Z coordinate of the object's bounds.
+     * @return Returns the ID of the leaf holding the object, used to move or remove it.
+     */
+    public int insert(T item, float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+    {
+        int leaf = allocateNode();
+        setFatBounds(leaf, minX, minY, minZ, maxX, maxY, maxZ);
+        items[leaf] = item;
+        insertLeaf(leaf);
+        leafCount++;
+        return leaf;
+    }
+    
+    private void insertLeaf(int leaf)
+    {
+        if(root == NULL)
+        {
+            root = leaf;
+            parent[leaf] = NULL;
+            return;
+        }
+        
+        //Walks down to the sibling that grows the total surface area of the tree the least.
+        int index = root;
+        while(child1[index] != NULL)
+        {
+            int c1 = child1[index];
+            int c2 = child2[index];
+            float area = area(index);
+            float combined = areaOfUnion(index, leaf);
+            float cost = 2 * combined;
+            float inheritance = 2 * (combined - area);
+            float cost1 = areaOfUnion(c1, leaf) + inheritance - (child1[c1] == NULL ? 0 : area(c1));
+            float cost2 = areaOfUnion(c2, leaf) + inheritance - (child1[c2] == NULL ? 0 : area(c2));
+            if(cost < cost1 && cost < cost2) break;
+            index = cost1 < cost2 ? c1 : c2;
+        }
+        
+        int sibling = index;
+        int oldParent = parent[sibling];
+        int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+        if(oldParent == NULL) root = newParent;
+        else replaceChild(oldParent, sibling, newParent);
+        
+        for(index = newParent; index != NULL; index = parent[index])
+        {
+            index = balance(index);
+            refit(index);
+        }
+    }
+    
+    /**
+     * Updates the bounds of an object.
+     * Nothing is done while the new bounds fit in the leaf's grown box, otherwise the leaf is re-inserted.
+     * @param proxy The ID of the leaf holding the object.
+     * @param minX The smallest X coordinate of the object's bounds.
+     * @param minY The smallest Y coordinate of the object's bounds.
+     * @param minZ The smallest Z coordinate of the object's bounds.
+     * @param maxX The largest X coordinate of the object's bounds.
+     * @param maxY The largest Y coordinate of the object's bounds.
+     * @param maxZ The largest Z coordinate of the object's bounds.
+     * @return Returns true if the leaf had to be re-inserted.
+     */
+    public boolean move(int proxy, float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+    {
+        if(this.minX[proxy] <= minX && this.minY[proxy] <= minY && this.minZ[proxy] <= minZ && this.maxX[proxy] >= maxX && this.maxY[proxy] >= maxY && this.maxZ[proxy] >= maxZ) return false;
+        
+        removeLeaf(proxy);
+        setFatBounds(proxy, minX, minY, minZ, maxX, maxY, maxZ);
+        insertLeaf(proxy);
+        return true;
+    }
+    
+    private void push(int entry, int sp)
+    {
+        if(sp == stack.length) stack = Arrays.copyOf(stack, sp * 2);
+        stack[sp] = entry;
+    }
+    
+    /**
+     * Finds every object whose bounds overlap a box.
+     * @param minX The smallest X coordinate of the box.
+     * @param minY The smallest Y coordinate of the box.
+     * @param minZ The smallest Z coordinate of the box.
+     * @param maxX The largest X coordinate of the box.
+     * @param maxY The largest Y coordinate of the box.
+     * @param maxZ The largest Z coordinate of the box.
+     * @param out The {@link java.util.List} to add the objects found to.
+     * @return Returns the amount of objects found.
+     */
+    @SuppressWarnings("unchecked")
+    public int queryBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, List<? super T> out)
+    {
+        if(root == NULL) return 0;
+        int found = 0;
+        int sp = 0;
+        push(root, sp++);
+        while(sp > 0)
+        {
+            int node = stack[--sp];
+            if(this.minX[node] > maxX || this.maxX[node] < minX || this.minY[node] > maxY || this.maxY[node] < minY || this.minZ[node] > maxZ || this.maxZ[node] < minZ) continue;
+            if(child1[node] == NULL)
+            {
+                out.add((T) items[node]);
+                found++;
+            }
+            else
+            {
+                push(child1[node], sp++);
+                push(child2[node], sp++);
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * Finds every object whose bounds may be inside of a {@link wrath.client.graphics.Frustum}.
+     * Subtrees fully inside of the frustum are added without testing each of their leaves.
+     * @param frustum The {@link wrath.client.graphics.Frustum} to test against.
+     * @param out The {@link java.util.List} to add the objects found to.
+     * @return Returns the amount of objects found.
+     */
+    @SuppressWarnings("unchecked")
+    public int queryFrustum(Frustum frustum, List<? super T> out)
+    {
+        if(root == NULL) return 0;
+        int found = 0;
+        int sp = 0;
+        //Positive entries still need testing, negative entries are known to be inside.
+        push(root + 1, sp++);
+        while(sp > 0)
+        {
+            int entry = stack[--sp];
+            int node = Math.abs(entry) - 1;
+            boolean inside = entry < 0;
+            if(!inside)
+            {
+                if(!frustum.intersectsBox(minX[node], minY[node], minZ[node], maxX[node], maxY[node], maxZ[node])) continue;
+                inside = frustum.containsBox(minX[node], minY[node], minZ[node], maxX[node], maxY[node], maxZ[node]);
+            }
+            
+            if(child1[node] == NULL)
+            {
+                out.add((T) items[node]);
+                found++;
+            }
+            else
+            {
+                push(inside ? -(child1[node] + 1) : child1[node] + 1, sp++);
+                push(inside ? -(child2[node] + 1) : child2[node] + 1, sp++);
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * Finds every object whose bounds are hit by a ray.
+     * @param originX The X coordinate the ray starts from.
+     * @param originY The Y coordinate the ray starts from.
+     * @param originZ The Z coordinate the ray starts from.
+     * @param dirX The X component of the ray's direction.
+     * @param dirY The Y component of the ray's direction.
+     * @param dirZ The Z component of the ray's direction.
+     * @param maxDistance The length of the ray, in multiples of the direction's length.
+     * @param out The {@link java.util.List} to add the objects found to.
+     * @return Returns the amount of objects found.
+     */
+    @SuppressWarnings("unchecked")
+    public int queryRay(float originX, float originY, float originZ, float dirX, float dirY, float dirZ, float maxDistance, List<? super T> out)
+    {
+        if(root == NULL) return 0;
+        float invX = 1f / dirX;
+        float invY = 1f / dirY;
+        float invZ = 1f / dirZ;
+        int found = 0;
+        int sp = 0;
+        push(root, sp++);
+        while(sp > 0)
+        {
+            int node = stack[--sp];
+            //Slab test: the ray hits the box if it is inside all three slabs at once.
+            float t1 = (minX[node] - originX) * invX;
+            float t2 = (maxX[node] - originX) * invX;
+            float tmin = Math.min(t1, t2);
+            float tmax = Math.max(t1, t2);
+            t1 = (minY[node] - originY) * invY;
+            t2 = (maxY[node] - originY) * invY;
+            tmin = Math.max(tmin, Math.min(t1, t2));
+            tmax = Math.min(tmax, Math.max(t1, t2));
+            t1 = (minZ[node] - originZ) * invZ;
+            t2 = (maxZ[node] - originZ) * invZ;
+            tmin = Math.max(tmin, Math.min(t1, t2));
+            tmax = Math.min(tmax, Math.max(t1, t2));
+            if(tmax < Math.max(tmin, 0) || tmin > maxDistance) continue;
+            
+            if(child1[node] == NULL)
+            {
+                out.add((T) items[node]);
+                found++;
+            }
+            else
+            {
+                push(child1[node], sp++);
+                push(child2[node], sp++);
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * Finds every object whose bounds overlap a sphere.
+     * @param x The X coordinate of the center of the sphere.
+     * @param y The Y coordinate of the center of the sphere.
+     * @param z The Z coordinate of the center of the sphere.
+     * @param radius The radius of the sphere.
+     * @param out The {@link java.util.List} to add the objects found to.
+     * @return Returns the amount of objects found.
+     */
+    @SuppressWarnings("unchecked")
+    public int querySphere(float x, float y, float z, float radius, List<? super T> out)
+    {
+        if(root == NULL) return 0;
+        float r2 = radius * radius;
+        int found = 0;
+        int sp = 0;
+        push(root, sp++);
+        while(sp > 0)
+        {
+            int node = stack[--sp];
+            float dx = Math.max(0, Math.max(minX[node] - x, x - maxX[node]));
+            float dy = Math.max(0, Math.max(minY[node] - y, y - maxY[node]));
+            float dz = Math.max(0, Math.max(minZ[node] - z, z - maxZ[node]));
+            if(dx * dx + dy * dy + dz * dz > r2) continue;
+            
+            if(child1[node] == NULL)
+            {
+                out.add((T) items[node]);
+                found++;
+            }
+            else
+            {
+                push(child1[node], sp++);
+                push(child2[node], sp++);
+            }
+        }
+        return found;
+    }
+    
+    private void refit(int node)
+    {
+        int c1 = child1[node];
+        int c2 = child2[node];
+        height[node] = 1 + Math.max(height[c1], height[c2]);
+        minX[node] = Math.min(minX[c1], minX[c2]);
+        minY[node] = Math.min(minY[c1], minY[c2]);
+        minZ[node] = Math.min(minZ[c1], minZ[c2]);
+        maxX[node] = Math.max(maxX[c1], maxX[c2]);
+        maxY[node] = Math.max(maxY[c1], maxY[c2]);
+        maxZ[node] = Math.max(maxZ[c1], maxZ[c2]);
+    }
+    
+    /**
+     * Removes an object from the tree.
+     * @param proxy The ID of the leaf holding the object. The ID may be given to another object afterwards.
+     */
+    public void remove(int proxy)
+    {
+        removeLeaf(proxy);
+        freeNode(proxy);
+        leafCount--;
+    }
+    
+    private void removeLeaf(int leaf)
+    {
+        if(leaf == root)
+        {
+            root = NULL;
+            return;
+        }
+        
+        int p = parent[leaf];
+        int grandParent = parent[p];
+        int sibling = child1[p] == leaf ? child2[p] : child1[p];
+        if(grandParent == NULL)
+        {
+            root = sibling;
+            parent[sibling] = NULL;
+            freeNode(p);
+            return;
+        }
+        
+        replaceChild(grandParent, p, sibling);
+        parent[sibling] = grandParent;
+        freeNode(p);
+        for(int index = grandParent; index != NULL; index = parent[index])
+        {
+            index = balance(index);
+            refit(index);
+        }
+    }
+    
+    private void replaceChild(int node, int oldChild, int newChild)
+    {
+        if(node == NULL) root = newChild;
+        else if(child1[node] == oldChild) child1[node] = newChild;
+        else child2[node] = newChild;
+    }
+    
+    private void setFatBounds(int node, float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+    {
+        this.minX[node] = minX - margin;
+        this.minY[node] = minY - margin;
+        this.minZ[node] = minZ - margin;
+        this.maxX[node] = maxX + margin;
+        this.maxY[node] = maxY + margin;
+        this.maxZ[node] = maxZ + margin;
+    }
+    
+    /**
+     * Gets the amount of objects in the tree.
+     * @return Returns the amount of objects in the tree.
+     */
+    public int size()
+    {
+        return leafCount;
+    }
+}
\ No newline at end of file
@@ -57,7 +57,7 @@ public class Assets
     public static Model loadTerrainModel(String modelName)
     {
         Model ret = Model.loadModel(modelName, false);
-        ret.attachShader(ShaderProgram.DEFAULT_TERRAIN_SHADER);
+        ret.attachShader(Game.getCurrentInstance().getAssetRegistry().getDefaultTerrainShader());
         return ret;
     }
     
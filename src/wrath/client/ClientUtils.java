@@ -35,6 +35,7 @@ import org.lwjgl.util.vector.Vector3f;
 import wrath.client.enums.PopupMessageType;
 import wrath.client.enums.RenderMode;
 import wrath.client.graphics.Camera;
+import wrath.client.graphics.GLState;
 import wrath.util.Logger;
 
 /**
@@ -103,13 +104,24 @@ public class ClientUtils
      * @return Returns a fully-loaded {@link org.lwjgl.util.vector.Matrix4f} object ready to be loaded onto the shader.
      */
     public static Matrix4f createViewMatrix(Camera camera)
+    {
+        return createViewMatrix(camera.getPosition(), camera.getOrientation());
+    }
+    
+    /**
+     * Creates a {@link org.lwjgl.util.vector.Matrix4f} representing the screen position of a camera with the specified position and orientation.
+     * @param position The world position of the camera.
+     * @param orientation The pitch (x), yaw (y) and roll (z) of the camera.
+     * @return Returns a fully-loaded {@link org.lwjgl.util.vector.Matrix4f} object ready to be loaded onto the shader.
+     */
+    public static Matrix4f createViewMatrix(Vector3f position, Vector3f orientation)
     {
         Matrix4f ret = new Matrix4f();
         ret.setIdentity();
-        Matrix4f.rotate((float) Math.toRadians(camera.getOrientation().x), new Vector3f(1,0,0), ret, ret);
-        Matrix4f.rotate((float) Math.toRadians(camera.getOrientation().y), new Vector3f(0,1,0), ret, ret);
-        Matrix4f.rotate((float) Math.toRadians(camera.getOrientation().z), new Vector3f(0,0,1), ret, ret);
-        Vector3f negCam = new Vector3f(-camera.getPosition().x, -camera.getPosition().y, -camera.getPosition().z);
+        Matrix4f.rotate((float) Math.toRadians(orientation.x), new Vector3f(1,0,0), ret, ret);
+        Matrix4f.rotate((float) Math.toRadians(orientation.y), new Vector3f(0,1,0), ret, ret);
+        Matrix4f.rotate((float) Math.toRadians(orientation.z), new Vector3f(0,0,1), ret, ret);
+        Vector3f negCam = new Vector3f(-position.x, -position.y, -position.z);
         Matrix4f.translate(negCam, ret, ret);
         
         return ret;
@@ -233,12 +245,13 @@ public class ClientUtils
         buffer.flip();
         
         int id = GL11.glGenTextures();
-        GL11.glEnable(GL11.GL_TEXTURE_2D);
-        GL11.glBindTexture(GL11.GL_TEXTURE_2D, id);
+        GLState state = GLState.current();
+        state.enable(GL11.GL_TEXTURE_2D);
+        state.bindTexture(GL11.GL_TEXTURE_2D, id);
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
         GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, image.getWidth(), image.getHeight(), 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, buffer);
-        GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+        state.bindTexture(GL11.GL_TEXTURE_2D, 0);
         return id;
     }
     
@@ -0,0 +1,245 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import org.lwjgl.util.vector.Vector3f;
+import wrath.client.graphics.EntityRenderer;
+import wrath.client.graphics.Frustum;
+import wrath.client.graphics.Model;
+import wrath.common.entities.Entity;
+
+/**
+ * Class to index the location of entities in an {@link wrath.client.AABBTree}, so that culling, picking and proximity queries do not have to test every entity.
+ * Each entity is bounded by a sphere of a fixed radius around its location, grown by its size scale, so turning an entity never changes its bounds.
+ * The engine does not add or remove entities by itself: the game must add each entity it wants to find, and remove it when the entity goes away, or the index keeps it.
+ * Rendering does not use the index either, as entities are culled from the renderers queued for each frame.
+ * Indexed entities are refreshed automatically after every tick, on the thread running the ticks, and the index should be queried from that thread.
+ * @author Trent Spears
+ */
+public class EntityIndex
+{
+    private final AABBTree<Entity> tree;
+    private final HashMap<Entity, Tracked> trackedMap = new HashMap<>();
+    private final ArrayList<Tracked> tracked = new ArrayList<>();
+    private long reinserted = 0;
+    
+    /**
+     * Constructor.
+     * @param margin The distance an entity can move before its leaf in the tree has to be re-inserted.
+     */
+    public EntityIndex(float margin)
+    {
+        this.tree = new AABBTree<>(margin);
+    }
+    
+    /**
+     * Adds an entity to the index. If the entity is already indexed, its radius is changed.
+     * The entity stays indexed until it is given to {@link #remove(wrath.common.entities.Entity)}, which the game must do when the entity goes away.
+     * @param entity The {@link wrath.common.entities.Entity} to add.
+     * @param radius The radius around the entity's location that contains the entity, before its size scale is applied.
+     */
+    public void add(Entity entity, float radius)
+    {
+        Tracked t = trackedMap.get(entity);
+        if(t != null)
+        {
+            t.radius = radius;
+            t.scale = Float.NaN;
+            return;
+        }
+        
+        t = new Tracked(entity, radius);
+        t.index = tracked.size();
+        t.read();
+        float r = t.radius * t.scale;
+        t.proxy = tree.insert(entity, t.x - r, t.y - r, t.z - r, t.x + r, t.y + r, t.z + r);
+        tracked.add(t);
+        trackedMap.put(entity, t);
+    }
+    
+    /**
+     * Adds the entity of an {@link wrath.client.graphics.EntityRenderer} to the index, bounded by its {@link wrath.client.graphics.Model}.
+     * As with {@link #add(wrath.common.entities.Entity, float)}, the game must remove the entity itself when it goes away.
+     * @param renderer The {@link wrath.client.graphics.EntityRenderer} whose entity should be added.
+     */
+    public void add(EntityRenderer renderer)
+    {
+        Model m = renderer.getModel();
+        float radius = 0;
+        if(m != null && m.getBoundingRadius() >= 0)
+        {
+            //The model's sphere is centered on its box, so it is widened to be centered on the entity's origin instead.
+            float cx = (m.getBoundsMin()[0] + m.getBoundsMax()[0]) / 2;
+            float cy = (m.getBoundsMin()[1] + m.getBoundsMax()[1]) / 2;
+            float cz = (m.getBoundsMin()[2] + m.getBoundsMax()[2]) / 2;
+            radius = m.getBoundingRadius() + (float) Math.sqrt(cx * cx + cy * cy + cz * cz);
+        }
+        add(renderer.getEntity(), radius);
+    }
+    
+    /**
+     * Checks if an entity is indexed.
+     * @param entity The {@link wrath.common.entities.Entity} to look for.
+     * @return Returns true if the entity is in the index.
+     */
+    public boolean contains(Entity entity)
+    {
+        return trackedMap.containsKey(entity);
+    }
+    
+    /**
+     * Gets the amount of times an entity moved out of its leaf and had to be re-inserted into the tree.
+     * @return Returns the amount of re-insertions since the index was created.
+     */
+    public long getReinsertions()
+    {
+        return reinserted;
+    }
+    
+    /**
+     * Gets the {@link wrath.client.AABBTree} holding the entities.
+     * @return Returns the tree behind this index.
+     */
+    public AABBTree<Entity> getTree()
+    {
+        return tree;
+    }
+    
+    /**
+     * Finds every indexed entity whose bounds overlap a box.
+     * @param min The corner of the box with the smallest coordinates.
+     * @param max The corner of the box with the largest coordinates.
+     * @param out The {@link java.util.List} to add the entities found to.
+     * @return Returns the amount of entities found.
+     */
+    public int queryBox(Vector3f min, Vector3f max, List<Entity> out)
+    {
+        return tree.queryBox(min.x, min.y, min.z, max.x, max.y, max.z, out);
+    }
+    
+    /**
+     * Finds every indexed entity that may be inside of a {@link wrath.client.graphics.Frustum}.
+     * @param frustum The {@link wrath.client.graphics.Frustum} to test against.
+     * @param out The {@link java.util.List} to add the entities found to.
+     * @return Returns the amount of entities found.
+     */
+    public int queryFrustum(Frustum frustum, List<Entity> out)
+    {
+        return tree.queryFrustum(frustum, out);
+    }
+    
+    /**
+     * Finds every indexed entity whose bounds are hit by a ray, such as the one under the mouse cursor.
+     * @param origin The point the ray starts from.
+     * @param direction The direction of the ray.
+     * @param maxDistance The length of the ray, in multiples of the direction's length.
+     * @param out The {@link java.util.List} to add the entities found to.
+     * @return Returns the amount of entities found.
+     */
+    public int queryRay(Vector3f origin, Vector3f direction, float maxDistance, List<Entity> out)
+    {
+        return tree.queryRay(origin.x, origin.y, origin.z, direction.x, direction.y, direction.z, maxDistance, out);
+    }
+    
+    /**
+     * Finds every indexed entity whose bounds overlap a sphere.
+     * @param center The center of the sphere.
+     * @param radius The radius of the sphere.
+     * @param out The {@link java.util.List} to add the entities found to.
+     * @return Returns the amount of entities found.
+     */
+    public int querySphere(Vector3f center, float radius, List<Entity> out)
+    {
+        return tree.querySphere(center.x, center.y, center.z, radius, out);
+    }
+    
+    /**
+     * Removes an entity from the index.
+     * @param entity The {@link wrath.common.entities.Entity} to remove.
+     * @return Returns true if the entity was indexed.
+     */
+    public boolean remove(Entity entity)
+    {
+        Tracked t = trackedMap.remove(entity);
+        if(t == null) return false;
+        
+        tree.remove(t.proxy);
+        Tracked last = tracked.remove(tracked.size() - 1);
+        if(last != t)
+        {
+            tracked.set(t.index, last);
+            last.index = t.index;
+        }
+        return true;
+    }
+    
+    /**
+     * Gets the amount of indexed entities.
+     * @return Returns the amount of entities in the index.
+     */
+    public int size()
+    {
+        return tracked.size();
+    }
+    
+    /**
+     * Updates the bounds of every entity that moved or changed size since the last update.
+     * Called automatically after every tick.
+     */
+    public void update()
+    {
+        for(int i = 0; i < tracked.size(); i++)
+        {
+            Tracked t = tracked.get(i);
+            //The entity's change flag is reset by its renderer, so the location itself is compared.
+            if(!t.read()) continue;
+            float r = t.radius * t.scale;
+            if(tree.move(t.proxy, t.x - r, t.y - r, t.z - r, t.x + r, t.y + r, t.z + r)) reinserted++;
+        }
+    }
+    
+    private static class Tracked
+    {
+        private final Entity entity;
+        private int index;
+        private int proxy;
+        private float radius;
+        private float x, y, z, scale = Float.NaN;
+        
+        private Tracked(Entity entity, float radius)
+        {
+            this.entity = entity;
+            this.radius = radius;
+        }
+        
+        private boolean read()
+        {
+            Vector3f loc = entity.getLocation();
+            float s = entity.getSizeScale();
+            if(loc.x == x && loc.y == y && loc.z == z && s == scale) return false;
+            x = loc.x;
+            y = loc.y;
+            z = loc.z;
+            scale = s;
+            return true;
+        }
+    }
+}
\ No newline at end of file
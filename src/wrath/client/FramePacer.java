@@ -0,0 +1,207 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Class to pace the game loop when the frame rate is capped, so that the loop does not spin while it waits for the next tick or frame.
+ * The thread is parked until shortly before the deadline, then spins for the remainder to keep wake-ups accurate.
+ * @author Trent Spears
+ */
+public class FramePacer
+{
+    private static final double SMOOTHING = 0.05;
+    
+    private final boolean enabled;
+    private final long spinThreshold;
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final boolean cpuTimeSupported;
+    
+    private long lastFrame = 0;
+    private long lastCpuTime = 0;
+    private long framesPaced = 0;
+    
+    private long lastJitter = 0;
+    private long lastOvershoot = 0;
+    private long lastCpuTimePerFrame = 0;
+    private long maxJitter = 0;
+    private long maxOvershoot = 0;
+    private double avgJitter = 0;
+    private double avgOvershoot = 0;
+    private double avgCpuTimePerFrame = 0;
+    
+    /**
+     * Constructor.
+     * @param enabled If true, the pacer will park the thread between deadlines. Otherwise {@link #waitUntil(long)} returns immediately.
+     * @param spinThresholdNanos The amount of time, in nanoseconds, before a deadline where the pacer stops parking and starts spinning.
+     */
+    public FramePacer(boolean enabled, long spinThresholdNanos)
+    {
+        this.enabled = enabled;
+        this.spinThreshold = Math.max(0, spinThresholdNanos);
+        this.cpuTimeSupported = threadBean.isCurrentThreadCpuTimeSupported();
+    }
+    
+    /**
+     * Gets the average CPU time, in nanoseconds, the loop's thread spent per rendered frame.
+     * Returns -1 if the JVM does not support measuring thread CPU time.
+     * @return Returns the smoothed CPU time per frame, in nanoseconds.
+     */
+    public double getAverageCpuTimePerFrame()
+    {
+        if(!cpuTimeSupported) return -1;
+        return avgCpuTimePerFrame;
+    }
+    
+    /**
+     * Gets the average difference, in nanoseconds, between the actual and target frame interval.
+     * @return Returns the smoothed frame pacing jitter, in nanoseconds.
+     */
+    public double getAverageJitter()
+    {
+        return avgJitter;
+    }
+    
+    /**
+     * Gets the average amount of time, in nanoseconds, the pacer woke up after its deadline.
+     * @return Returns the smoothed wake-up overshoot, in nanoseconds.
+     */
+    public double getAverageOvershoot()
+    {
+        return avgOvershoot;
+    }
+    
+    /**
+     * Gets the amount of frames measured by this pacer.
+     * @return Returns the amount of frames measured by this pacer.
+     */
+    public long getFramesPaced()
+    {
+        return framesPaced;
+    }
+    
+    /**
+     * Gets the CPU time, in nanoseconds, the loop's thread spent on the last rendered frame.
+     * Returns -1 if the JVM does not support measuring thread CPU time.
+     * @return Returns the CPU time of the last frame, in nanoseconds.
+     */
+    public long getLastCpuTimePerFrame()
+    {
+        if(!cpuTimeSupported) return -1;
+        return lastCpuTimePerFrame;
+    }
+    
+    /**
+     * Gets the difference, in nanoseconds, between the last frame interval and the target frame interval.
+     * @return Returns the jitter of the last frame, in nanoseconds.
+     */
+    public long getLastJitter()
+    {
+        return lastJitter;
+    }
+    
+    /**
+     * Gets the amount of time, in nanoseconds, the pacer woke up after its last deadline.
+     * @return Returns the last wake-up overshoot, in nanoseconds.
+     */
+    public long getLastOvershoot()
+    {
+        return lastOvershoot;
+    }
+    
+    /**
+     * Gets the largest frame pacing jitter, in nanoseconds, recorded since the pacer was created.
+     * @return Returns the largest recorded jitter, in nanoseconds.
+     */
+    public long getMaxJitter()
+    {
+        return maxJitter;
+    }
+    
+    /**
+     * Gets the largest wake-up overshoot, in nanoseconds, recorded since the pacer was created.
+     * @return Returns the largest recorded overshoot, in nanoseconds.
+     */
+    public long getMaxOvershoot()
+    {
+        return maxOvershoot;
+    }
+    
+    /**
+     * If true, the pacer parks the thread between deadlines instead of letting the loop spin.
+     * @return Returns true if low-power frame pacing is enabled.
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+    
+    /**
+     * Records the timing of a frame that was just presented.
+     * Called automatically by the {@link wrath.client.Game.RenderManager}.
+     * @param targetInterval The intended time, in nanoseconds, between two frames.
+     */
+    protected void onFrameRendered(long targetInterval)
+    {
+        long now = System.nanoTime();
+        long cpu = cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : 0;
+        
+        if(lastFrame != 0)
+        {
+            lastJitter = Math.abs((now - lastFrame) - targetInterval);
+            if(lastJitter > maxJitter) maxJitter = lastJitter;
+            lastCpuTimePerFrame = cpu - lastCpuTime;
+            
+            if(framesPaced == 0)
+            {
+                avgJitter = lastJitter;
+                avgCpuTimePerFrame = lastCpuTimePerFrame;
+            }
+            else
+            {
+                avgJitter += (lastJitter - avgJitter) * SMOOTHING;
+                avgCpuTimePerFrame += (lastCpuTimePerFrame - avgCpuTimePerFrame) * SMOOTHING;
+            }
+            framesPaced++;
+        }
+        
+        lastFrame = now;
+        lastCpuTime = cpu;
+    }
+    
+    /**
+     * Blocks the current thread until the specified deadline.
+     * The thread is parked until the deadline is within the spin threshold, and spins for the rest.
+     * @param deadline The {@link java.lang.System#nanoTime()} value to wait for.
+     */
+    public void waitUntil(long deadline)
+    {
+        if(!enabled || deadline - System.nanoTime() <= 0) return;
+        
+        long remaining;
+        while((remaining = deadline - System.nanoTime()) > spinThreshold) LockSupport.parkNanos(remaining - spinThreshold);
+        while(System.nanoTime() < deadline);
+        
+        lastOvershoot = System.nanoTime() - deadline;
+        if(lastOvershoot > maxOvershoot) maxOvershoot = lastOvershoot;
+        avgOvershoot += (lastOvershoot - avgOvershoot) * SMOOTHING;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,125 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client;
+
+import java.util.Arrays;
+import java.util.List;
+import org.lwjgl.opengl.GL11;
+import wrath.client.graphics.GLState;
+
+/**
+ * A class used to internally check the {@link wrath.client.graphics.GLState} cache against a {@link wrath.client.graphics.GLState.Recorder}, without an OpenGL context.
+ * A fixed sequence of redundant binds and state changes is checked call by call, then a frame of sorted draws is measured to show how many calls the cache drops.
+ * The process exits with status 1 if the recorded calls or the counters are not the expected ones.
+ * Run with the amount of draws per frame as the first argument, 10000 by default.
+ * @author Trent Spears
+ */
+public class GLStateBenchmark
+{
+    private static final int MODELS = 16;
+    private static final int FRAMES = 100;
+    
+    private static boolean failed = false;
+    
+    public static void main(String[] args)
+    {
+        int draws = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        GLState state = new GLState();
+        GLState.Recorder recorder = new GLState.Recorder(null);
+        state.setBackend(recorder);
+        
+        state.useProgram(3);
+        state.useProgram(3);
+        state.bindVertexArray(5);
+        state.bindVertexArray(5);
+        state.enableVertexAttribArray(0);
+        state.enableVertexAttribArray(0);
+        state.bindTexture(GL11.GL_TEXTURE_2D, 7);
+        state.bindTexture(GL11.GL_TEXTURE_2D, 7);
+        state.activeTexture(1);
+        state.activeTexture(1);
+        state.bindTexture(GL11.GL_TEXTURE_2D, 7);
+        state.enable(GL11.GL_BLEND);
+        state.enable(GL11.GL_BLEND);
+        state.blendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+        state.blendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+        state.depthMask(false);
+        state.depthMask(false);
+        state.disable(GL11.GL_BLEND);
+        //Enabled attributes belong to each vertex array, so they are remembered when going back to one.
+        state.bindVertexArray(6);
+        state.enableVertexAttribArray(0);
+        state.bindVertexArray(5);
+        state.enableVertexAttribArray(0);
+        //Deleted textures are unbound by OpenGL, so binding the ID again must reach it.
+        state.onTextureDeleted(7);
+        state.bindTexture(GL11.GL_TEXTURE_2D, 7);
+        state.invalidate();
+        state.useProgram(3);
+        
+        String tex = GL11.GL_TEXTURE_2D + ", 7";
+        check("Recorded calls", recorder.getCalls(), Arrays.asList("useProgram(3)", "bindVertexArray(5)", "enableVertexAttribArray(0)", "activeTexture(0)", "bindTexture(" + tex + ")", "activeTexture(1)", "bindTexture(" + tex + ")",
+            "enable(" + GL11.GL_BLEND + ")", "blendFunc(" + GL11.GL_SRC_ALPHA + ", " + GL11.GL_ONE_MINUS_SRC_ALPHA + ")", "depthMask(false)", "disable(" + GL11.GL_BLEND + ")",
+            "bindVertexArray(6)", "enableVertexAttribArray(0)", "bindVertexArray(5)", "bindTexture(" + tex + ")", "useProgram(3)"));
+        check("Issued calls", state.getIssuedCalls(), 16);
+        check("Elided calls", state.getElidedCalls(), 9);
+        
+        //Draws sorted by shader, then texture, then model, as the render queue orders them. Setting the backend again forgets all cached state.
+        state.setBackend(recorder);
+        state.resetCounters();
+        long calls = 0, start = System.nanoTime();
+        for(int f = 0; f < FRAMES; f++)
+        {
+            recorder.clear();
+            for(int d = 0; d < draws; d++)
+            {
+                int model = d * MODELS / draws;
+                state.useProgram(1 + model / 8);
+                state.activeTexture(0);
+                state.bindTexture(GL11.GL_TEXTURE_2D, 1 + model / 4);
+                state.bindVertexArray(1 + model);
+                for(int a = 0; a < 3; a++) state.enableVertexAttribArray(a);
+                calls += 7;
+            }
+        }
+        long time = System.nanoTime() - start;
+        System.out.println("Cached " + calls + " calls of " + draws + " draws for " + FRAMES + " frames in " + String.format("%.3f", time / 1000000.0 / FRAMES) + "ms/frame: " + state.getIssuedCalls() + " issued, " + state.getElidedCalls() + " elided.");
+        check("Counted calls", state.getIssuedCalls() + state.getElidedCalls(), calls);
+        //Attributes are only enabled in the first frame, so later frames only change the 2 programs, 4 textures and 16 vertex arrays.
+        check("Calls recorded in the last frame", recorder.getCalls().size(), 2 + 4 + MODELS);
+        
+        if(failed)
+        {
+            System.err.println("FAILED: the OpenGL state cache did not issue the expected calls!");
+            System.exit(1);
+        }
+        System.out.println("PASSED: the OpenGL state cache issued exactly the expected calls.");
+    }
+    
+    private static void check(String name, Object actual, Object expected)
+    {
+        if(actual.equals(expected)) return;
+        System.err.println(name + " were " + actual + ", expected " + expected + ".");
+        failed = true;
+    }
+    
+    private static void check(String name, long actual, long expected)
+    {
+        check(name, (Object) actual, (Object) expected);
+    }
+}
\ No newline at end of file
@@ -19,16 +19,22 @@ package wrath.client;
 
 import wrath.client.enums.WindowState;
 import wrath.client.enums.RenderMode;
+import wrath.client.enums.TickOverrunPolicy;
 import wrath.client.input.InputManager;
 import wrath.client.events.GameEventHandler;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 import javax.imageio.ImageIO;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.Version;
@@ -43,15 +49,28 @@ import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL13;
 import org.lwjgl.system.MemoryUtil;
 import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
 import wrath.client.enums.ImageFormat;
 import wrath.client.events.InputEventHandler;
+import wrath.client.graphics.AssetRegistry;
 import wrath.client.graphics.Camera;
 import wrath.client.graphics.Color;
+import wrath.client.graphics.CommandList;
 import wrath.client.graphics.EntityRenderer;
+import wrath.client.graphics.FrameUniforms;
+import wrath.client.graphics.Frustum;
+import wrath.client.graphics.GLState;
 import wrath.client.graphics.Model;
+import wrath.client.graphics.OcclusionCuller;
+import wrath.client.graphics.RenderQueue;
+import wrath.client.graphics.Renderable;
+import wrath.client.graphics.RenderSnapshot;
 import wrath.client.graphics.ShaderProgram;
+import wrath.client.graphics.SnapshotBuffer;
+import wrath.client.graphics.StaticBatch;
 import wrath.client.graphics.TextRenderer;
 import wrath.client.graphics.TileRenderer;
+import wrath.client.graphics.graphics2D.SpriteBatch;
 import wrath.common.Closeable;
 import wrath.common.Reloadable;
 import wrath.common.entities.Player;
@@ -67,15 +86,31 @@ import wrath.util.Logger;
  */
 public class Game 
 {
-    private static Game GAME_INSTANCE = null;
+    private static final ThreadLocal<Game> CURRENT_INSTANCE = new InheritableThreadLocal<>();
+    private static final Set<Game> RUNNING_INSTANCES = ConcurrentHashMap.newKeySet();
+    //GLFW and its error callback belong to the whole JVM, so only one game at a time may use them.
+    private static final AtomicReference<Game> WINDOWED_INSTANCE = new AtomicReference<>(null);
+    private static volatile Game lastInstance = null;
     
     /**
-     * Gets the current, primary {@link wrath.client.Game} instance.
-     * @return Returns the current, primary {@link wrath.client.Game} instance.
+     * Gets the {@link wrath.client.Game} instance that the calling thread belongs to.
+     * A game is bound to the thread that creates and starts it, and to its simulation and job threads.
+     * Threads that are not bound to any game get the most recently created instance.
+     * @return Returns the {@link wrath.client.Game} instance of the calling thread.
      */
     public static Game getCurrentInstance()
     {
-        return GAME_INSTANCE;
+        Game game = CURRENT_INSTANCE.get();
+        return game == null ? lastInstance : game;
+    }
+    
+    /**
+     * Gets the amount of {@link wrath.client.Game} instances currently running in this JVM.
+     * @return Returns the amount of started games that have not stopped yet.
+     */
+    public static int getRunningInstanceCount()
+    {
+        return RUNNING_INSTANCES.size();
     }
     
     private final RenderMode MODE;
@@ -83,19 +118,25 @@ public class Game
     private final double TPS;
     private final String VERSION;
 
-    private final Config gameConfig = new Config(new File("etc/configs/game.cfg"));
-    private final Logger gameLogger = new Logger(new File("etc/logs/game.log"));
+    private final AssetRegistry assets = new AssetRegistry();
+    private final Config gameConfig;
+    private final Logger gameLogger;
     private final Scheduler gameScheduler = new Scheduler();
+    private final EntityIndex entityIndex;
+    private final JobSystem jobSystem;
+    private volatile GameClock clock;
+    private final Profiler profiler;
     
     private GLFWErrorCallback errStr;
     private GLFWFramebufferSizeCallback winSizeStr;
     
     private ALContext audiocontext;
-    private boolean isRunning = false;
+    private volatile boolean isRunning = false;
     
     private final EventManager evManager;
     private final InputManager inpManager;
     private final RenderManager renManager;
+    private final SimulationManager simManager;
     private final WindowManager winManager;
     
     private final RefreshManager refresher;
@@ -113,12 +154,37 @@ public class Game
      * @param renderMode Describes how to game should be rendered (2D or 3D).
      */
     public Game(String gameTitle, String version, double ticksPerSecond, RenderMode renderMode)
+    {
+        this(gameTitle, version, ticksPerSecond, renderMode, "game");
+    }
+    
+    /**
+     * Constructor.
+     * Describes all the essential and unmodifiable variables of the Game.
+     * Several games can run in the same JVM, as long as each one is started on its own thread.
+     * Only one of them can open a window, the others must use {@link wrath.client.enums.RenderMode#Headless} or they will refuse to start.
+     * @param gameTitle Title of the Game.
+     * @param version Version of the Game.
+     * @param ticksPerSecond The amount of times the printlnic of the game should update in one second. Recommended 30-60.
+     * @param renderMode Describes how to game should be rendered (2D or 3D).
+     * @param instanceName The name of this instance, which names its configuration file in 'etc/configs' and its log file in 'etc/logs'.
+     */
+    public Game(String gameTitle, String version, double ticksPerSecond, RenderMode renderMode, String instanceName)
     {
         MODE = renderMode;
         TITLE = gameTitle;
         VERSION = version;
         TPS = ticksPerSecond;
+        gameConfig = new Config(new File("etc/configs/" + instanceName + ".cfg"));
+        gameLogger = new Logger(new File("etc/logs/" + instanceName + ".log"));
         duringConstructor();
+        this.jobSystem = new JobSystem(gameTitle, gameConfig.getInt("JobThreads", 0));
+        String clockType = gameConfig.getString("GameClock", "realtime").toLowerCase();
+        if(clockType.equals("scaled")) this.clock = GameClock.scaled(gameConfig.getDouble("GameClockScale", 1.0));
+        else if(clockType.equals("stepped")) this.clock = GameClock.stepped((long)(1000000000.0 / TPS));
+        else this.clock = GameClock.realTime();
+        this.entityIndex = new EntityIndex(gameConfig.getFloat("EntityIndexMargin", 1.0f));
+        this.profiler = new Profiler(gameConfig.getBoolean("ProfilerEnabled", false), gameConfig.getInt("ProfilerFrames", 300), gameConfig.getInt("ProfilerScopesPerFrame", 512));
         this.refresher = new RefreshManager();
         this.trashCollector = new TrashCollector();
         this.player = new Player();
@@ -126,6 +192,7 @@ public class Game
         this.evManager = new EventManager();
         this.inpManager = new InputManager();
         this.renManager = new RenderManager();
+        this.simManager = new SimulationManager();
         this.winManager = new WindowManager();
         
         File nativeDir = new File("assets/native");
@@ -156,9 +223,37 @@ public class Game
         trashCollector.list.add(obj);
     }
     
+    /**
+     * Binds this game to the calling thread, so that {@link #getCurrentInstance()} returns it on that thread.
+     * Threads made by the game, and threads they create, are bound automatically.
+     */
+    public void bindToCurrentThread()
+    {
+        CURRENT_INSTANCE.set(this);
+    }
+    
     private void duringConstructor()
     {
-        GAME_INSTANCE = this;
+        bindToCurrentThread();
+        lastInstance = this;
+    }
+    
+    /**
+     * Gets the {@link wrath.client.graphics.AssetRegistry} that keeps track of the assets loaded by this game.
+     * @return Returns the {@link wrath.client.graphics.AssetRegistry} linked to this {@link wrath.client.Game} instance.
+     */
+    public AssetRegistry getAssetRegistry()
+    {
+        return assets;
+    }
+    
+    /**
+     * Gets the {@link wrath.client.GameClock} that schedules the game's ticks.
+     * @return Returns the {@link wrath.client.GameClock} linked to this {@link wrath.client.Game} instance.
+     */
+    public GameClock getClock()
+    {
+        return clock;
     }
     
     /**
@@ -170,6 +265,17 @@ public class Game
         return gameConfig;
     }
     
+    /**
+     * Gets the spatial index of the entities in the game, used to find entities by location without testing every one of them.
+     * The index starts empty and the engine never fills it: the game must add every entity it wants to find with {@link wrath.client.EntityIndex#add(wrath.common.entities.Entity, float)}, and remove it with {@link wrath.client.EntityIndex#remove(wrath.common.entities.Entity)} when it goes away.
+     * Indexed entities are updated after every tick. Culling does not use the index, so entities do not have to be indexed to be rendered.
+     * @return Returns the {@link wrath.client.EntityIndex} of this game.
+     */
+    public EntityIndex getEntityIndex()
+    {
+        return entityIndex;
+    }
+    
     /**
      * Gets the {@link wrath.client.Game.EventManager} class that manages all event handlers.
      * This class is used to control, access and change Event Handlers from the {@link wrath.client.events} package.
@@ -189,6 +295,16 @@ public class Game
         return inpManager;
     }
     
+    /**
+     * Gets the {@link wrath.client.JobSystem} shared by the engine and the game to run work across all cores.
+     * Use this instead of creating new threads.
+     * @return Returns the {@link wrath.client.JobSystem} linked to this {@link wrath.client.Game} instance.
+     */
+    public JobSystem getJobSystem()
+    {
+        return jobSystem;
+    }
+    
     /**
      * Gets the standard info {@link wrath.util.Logger} for the game.
      * @return Returns the standard info {@link wrath.util.Logger} for the game.
@@ -216,6 +332,16 @@ public class Game
         return playerCamera;
     }
     
+    /**
+     * Gets the {@link wrath.client.Profiler} that records how long each part of a frame takes.
+     * Games can time their own code with {@link wrath.client.Profiler#registerScope(java.lang.String)} and {@link wrath.client.Profiler#begin(int)}.
+     * @return Returns the {@link wrath.client.Profiler} linked to this {@link wrath.client.Game} instance.
+     */
+    public Profiler getProfiler()
+    {
+        return profiler;
+    }
+    
     /**
      * Gets the renderer (as specified by the {@link wrath.client.Game.RenderManager} class) for this game.
      * @return Returns the renderer (as specified by the {@link wrath.client.Game.RenderManager} class) for this game.
@@ -243,6 +369,15 @@ public class Game
         return gameScheduler;
     }
     
+    /**
+     * Gets the {@link wrath.client.Game.SimulationManager} that runs the game's ticks.
+     * @return Returns the {@link wrath.client.Game.SimulationManager} linked to this {@link wrath.client.Game} instance.
+     */
+    public SimulationManager getSimulationManager()
+    {
+        return simManager;
+    }
+    
     /**
      * Gets the title/name of the Game.
      * @return Returns the title of the Game.
@@ -308,60 +443,65 @@ public class Game
      */
     private void loop()
     {
-        // FPS counter.
-        int afpsCount = 0;
-        int fpsCount = 0;
-        
-        //Input Checking
-        int inpCount = 0;
-        double checksPerSec = gameConfig.getDouble("PersistentInputChecksPerSecond", 0.0);
-        if(checksPerSec > TPS || checksPerSec < 1) checksPerSec = TPS;
-        final double INPUT_CHECK_TICKS = TPS / checksPerSec;
+        simManager.prepare();
+        jobSystem.bindMainThread();
+        profiler.bindThread();
         
         //Timings
-        long last = System.nanoTime();
+        final long clockStart = clock.nanoTime();
+        long last = clockStart;
         final double conv = 1000000000.0 / TPS;
         double delta = 0.0;
         long now;
         
+        //Headless games can skip the clock entirely to measure tick throughput.
+        final boolean headless = MODE == RenderMode.Headless;
+        final boolean maxSpeed = headless && gameConfig.getBoolean("HeadlessMaxSpeed", false);
+        
+        if(simManager.threaded) simManager.startThread();
+        if(headless) gameLogger.println("Running headless at " + (maxSpeed ? "maximum speed" : TPS + " TPS") + ".");
+        
         while(isRunning && (!winManager.windowOpen || GLFW.glfwWindowShouldClose(winManager.window) != GL11.GL_TRUE))
         {
-            now = System.nanoTime();
-            delta += (now - last) / conv;
-            last = now;
+            profiler.beginFrame();
             
-            //Tick occurs
-            while(delta >= 1)
+            //Tick occurs, unless ticks are run on the simulation thread.
+            if(!simManager.threaded)
             {
-                onTickPreprocessor();
-                
-                //Persistent input management
-                if(INPUT_CHECK_TICKS == 1 || inpCount >= INPUT_CHECK_TICKS)
+                profiler.begin(Profiler.SCOPE_TICKS);
+                if(maxSpeed) simManager.tick();
+                else
                 {
-                    inpManager.onPersistentInput();
-                    inpCount -= INPUT_CHECK_TICKS;
+                    clock.advance();
+                    now = clock.nanoTime();
+                    delta += (now - last) / conv;
+                    last = now;
+                    
+                    delta = simManager.runTicks(delta);
                 }
-                else inpCount++;
-                
-                //FPS Counter
-                if(winManager.windowOpen)
-                    if(fpsCount >= TPS)
-                    {
-                        afpsCount++;
-                        renManager.fps = renManager.fpsBuf;
-                        renManager.avgFps = renManager.totalFramesRendered / afpsCount;
-                        renManager.fpsBuf = 0;
-                        fpsCount-=TPS;
-                    }
-                    else fpsCount++;
-                
-                delta--;
+                profiler.end();
             }
             
+            profiler.begin(Profiler.SCOPE_MAIN_THREAD_JOBS);
+            jobSystem.runMainThreadJobs();
+            profiler.end();
             renManager.render();
+            
+            //Frame pacing, sleeps until the next tick or frame is due.
+            if(renManager.pacer.isEnabled() && (headless ? !maxSpeed : renManager.maxFps > 0))
+            {
+                long nextTick = simManager.threaded ? renManager.next : System.nanoTime() + clock.toRealNanos(last + (long)((1.0 - delta) * conv) - clock.nanoTime());
+                profiler.begin(Profiler.SCOPE_FRAME_PACING);
+                renManager.pacer.waitUntil(headless ? nextTick : Math.min(nextTick, renManager.next));
+                profiler.end();
+            }
+            
+            profiler.endFrame();
         }
         
+        simManager.stopThread();
         stop();
+        gameLogger.println("Game time passed: " + ((clock.nanoTime() - clockStart) / 1000000000.0) + " seconds.");
         stopImpl();
     }
     
@@ -370,8 +510,15 @@ public class Game
      */
     private void onTickPreprocessor()
     {
+        profiler.begin(Profiler.SCOPE_SCHEDULER);
         gameScheduler.onTick();
+        profiler.end();
+        profiler.begin(Profiler.SCOPE_GAME_TICK);
         evManager.getGameEventHandler().onTick();
+        profiler.end();
+        profiler.begin(Profiler.SCOPE_ENTITY_INDEX);
+        entityIndex.update();
+        profiler.end();
     }
     
     /**
@@ -397,6 +544,21 @@ public class Game
      */
     protected void render(){}
     
+    /**
+     * Changes the {@link wrath.client.GameClock} that schedules the game's ticks.
+     * Can only be changed before the game starts.
+     * @param clock The {@link wrath.client.GameClock} to use, such as {@link wrath.client.GameClock#scaled(double)} for slow-motion or fast-forward.
+     */
+    public void setClock(GameClock clock)
+    {
+        if(isRunning)
+        {
+            System.err.println("Could not change the GameClock while the game is running!");
+            return;
+        }
+        this.clock = clock;
+    }
+    
     /**
      * Method that is used to load the game and all of it's resources.
      */
@@ -407,27 +569,38 @@ public class Game
     
     /**
      * Method that is used to load the game and all of it's resources.
+     * Returns at once, without starting, if the game would open a window while another game in this JVM has one.
      * @param args Arguments, usually from the main method (entry point).
      */
     public void start(String[] args)
     {
+        bindToCurrentThread();
+        if(MODE != RenderMode.Headless && !WINDOWED_INSTANCE.compareAndSet(null, this))
+        {
+            System.err.println("Could not start '" + TITLE + "'! Another game in this JVM already has a window, other games must use RenderMode.Headless!");
+            return;
+        }
+        RUNNING_INSTANCES.add(this);
         gameLogger.println("Launching '" + TITLE + "' Client v." + VERSION + "  with LWJGL v." + Version.getVersion() + "!");
 
         //Initialize GLFW and OpenGL
-        GLFW.glfwSetErrorCallback((errStr = new GLFWErrorCallback()
+        if(MODE != RenderMode.Headless)
         {
-            @Override
-            public void invoke(int error, long description) 
+            GLFW.glfwSetErrorCallback((errStr = new GLFWErrorCallback()
+            {
+                @Override
+                public void invoke(int error, long description) 
+                {
+                    System.err.println("GLFW hit ERROR ID '" + error + "' with message '" + description + "'!");
+                }
+            }));
+            
+            if(GLFW.glfwInit() != GL11.GL_TRUE)
             {
-                System.err.println("GLFW hit ERROR ID '" + error + "' with message '" + description + "'!");
+                System.err.println("Could not initialize GLFW! Unknown Error!");
+                ClientUtils.throwInternalError("Failed to initialize GLFW!", false);
+                stopImpl();
             }
-        }));
-        
-        if(GLFW.glfwInit() != GL11.GL_TRUE)
-        {
-            System.err.println("Could not initialize GLFW! Unknown Error!");
-            ClientUtils.throwInternalError("Failed to initialize GLFW!", false);
-            stopImpl();
         }
         
         //Interpret command-line arguments.
@@ -471,18 +644,33 @@ public class Game
     private void stopImpl()
     {
         try{
-        winManager.closeWindow();
-        inpManager.destroyCursor();
-        GLFW.glfwTerminate();
+        if(MODE != RenderMode.Headless)
+        {
+            winManager.closeWindow();
+            inpManager.destroyCursor();
+            GLFW.glfwTerminate();
+        }
         
         gameConfig.save();
         inpManager.saveKeys();
+        jobSystem.shutdown();
         gameLogger.println("Average FPS throughout session: " + renManager.avgFps);
+        gameLogger.println("Average TPS throughout session: " + simManager.getAverageTPS());
+        gameLogger.println("Ticks: " + simManager.ticksPerformed + " run, " + simManager.lateTicks + " late, " + simManager.droppedTicks + " dropped, max backlog " + simManager.maxBacklog + " ticks.");
+        if(renManager.glState.getIssuedCalls() + renManager.glState.getElidedCalls() > 0) gameLogger.println("GL state calls: " + renManager.glState.getIssuedCalls() + " issued, " + renManager.glState.getElidedCalls() + " elided as redundant.");
+        if(renManager.totalVisibleEntities + renManager.totalCulledEntities > 0) gameLogger.println("Frustum culling: " + renManager.totalCulledEntities + " of " + (renManager.totalVisibleEntities + renManager.totalCulledEntities) + " entity draws culled.");
+        if(renManager.occlusion != null) gameLogger.println("Occlusion culling: " + renManager.totalOccludedEntities + " of " + (renManager.totalVisibleEntities + renManager.totalOccludedEntities) + " entity draws in view hidden by occluders.");
+        if(renManager.pacer.getFramesPaced() > 0) gameLogger.println("Frame pacing: " + renManager.pacer.getFramesPaced() + " frames, average jitter " + (renManager.pacer.getAverageJitter() / 1000000.0) + "ms, max overshoot " + (renManager.pacer.getMaxOvershoot() / 1000000.0) + "ms, average CPU time " + (renManager.pacer.getAverageCpuTimePerFrame() / 1000000.0) + "ms per frame.");
         gameLogger.println("Time of Session: " + (double)((double)(System.nanoTime() - EntryPoint.UNIX_START_TIMESTAMP)/1000/1000/1000) + " seconds.");
         gameLogger.println("Stopping '" + TITLE + "' Client v." + VERSION + "!");
         if(gameLogger != null && !gameLogger.isClosed()) gameLogger.close();
-        errStr.release();
+        if(errStr != null) errStr.release();
         }catch(Exception e){}
+        WINDOWED_INSTANCE.compareAndSet(this, null);
+        
+        //Other games in this JVM keep running.
+        RUNNING_INSTANCES.remove(this);
+        if(!RUNNING_INSTANCES.isEmpty()) return;
         
         ScriptManager.closeScripting();
         
@@ -589,16 +777,62 @@ public class Game
         private int fpsBuf = 0;
         private final GUI front = new GUI();
         private int maxFps = getConfig().getInt("MaxFps", 0);
+        private final FramePacer pacer = new FramePacer(gameConfig.getBoolean("LowPowerFramePacing", true), gameConfig.getInt("FramePacingSpinMicros", 500) * 1000L);
+        private FrameUniforms frameUniforms = null;
         private Matrix4f projMatrix = new Matrix4f();
         private boolean renderFps = false;
+        private SpriteBatch spriteBatch = null;
+        private Matrix4f viewMatrix = new Matrix4f();
         private TextRenderer text = null;
         private int totalFramesRendered = 0;
         
         private boolean shouldRender = true;
         private long next = 0;
         
-        private final HashMap<Model, List<EntityRenderer>> entityRenderMap = new HashMap<>();
-        private final HashMap<Model, List<TileRenderer>> terrainRenderMap = new HashMap<>();
+        private final RenderQueue<Renderable> renderQueue = new RenderQueue<>();
+        private final GLState glState = new GLState();
+        private final boolean instancing = gameConfig.getBoolean("InstancedRendering", true);
+        private final int instancingThreshold = Math.max(1, gameConfig.getInt("InstancingThreshold", 4));
+        private int drawCalls = 0;
+        
+        private final CommandList commandList = new CommandList();
+        private final ConcurrentLinkedQueue<Runnable> renderTasks = new ConcurrentLinkedQueue<>();
+        private boolean threadedRendering = MODE != RenderMode.Headless && gameConfig.getBoolean("RenderThread", false);
+        private RenderThread renderThread = null;
+        private final Runnable colorBinder = () -> color.bindColor();
+        private final Runnable guiRenderer = () -> 
+        {
+            spriteBatch.begin();
+            front.renderGUI();
+            if(renderFps) text.renderString(fps + "", -1f, 1f, 0.5f, new Color(0.57f, 2.37f, 0.4f));
+            profiler.renderOverlay(text);
+            spriteBatch.end();
+        };
+        
+        private final boolean culling = gameConfig.getBoolean("FrustumCulling", true);
+        private final Frustum frustum = new Frustum();
+        private EntityRenderer[] pendingEntities = new EntityRenderer[64];
+        private int pendingCount = 0;
+        private StaticBatch[] pendingStatic = new StaticBatch[16];
+        private int pendingStaticCount = 0;
+        private float[] cullX = new float[64];
+        private float[] cullY = new float[64];
+        private float[] cullZ = new float[64];
+        private float[] cullRadius = new float[64];
+        private float[] cullBoxes = new float[64 * 6];
+        private boolean[] cullVisible = new boolean[64];
+        private long[] cullKeys = new long[64];
+        private FloatBuffer drawData = BufferUtils.createFloatBuffer(Model.INSTANCE_STRIDE * 64);
+        private final boolean parallelPreparation = gameConfig.getBoolean("ParallelRenderPreparation", true);
+        private final int preparationBatch = Math.max(1, gameConfig.getInt("RenderPreparationBatch", 128));
+        private int culledEntities = 0;
+        private int visibleEntities = 0;
+        private long totalCulledEntities = 0;
+        private long totalVisibleEntities = 0;
+        private final OcclusionCuller occlusion = gameConfig.getBoolean("OcclusionCulling", false) ? new OcclusionCuller(gameConfig.getInt("OcclusionBufferWidth", 256), gameConfig.getInt("OcclusionBufferHeight", 128)) : null;
+        private int occludedEntities = 0;
+        private long totalOccludedEntities = 0;
+        private final float lodHysteresis = gameConfig.getFloat("ModelLODHysteresis", 0.1f);
         
         private RenderManager(){}
         
@@ -608,13 +842,32 @@ public class Game
          */
         public void addEntityRenderingJob(EntityRenderer ren)
         {
-            if(entityRenderMap.containsKey(ren.getModel())) entityRenderMap.get(ren.getModel()).add(ren);
-            else
+            if(ren.getModel() == null) return;
+            if(pendingCount == pendingEntities.length)
             {
-                ArrayList<EntityRenderer> rl = new ArrayList<>();
-                rl.add(ren);
-                entityRenderMap.put(ren.getModel(), rl);
+                int len = pendingCount * 2;
+                pendingEntities = Arrays.copyOf(pendingEntities, len);
+                cullX = new float[len];
+                cullY = new float[len];
+                cullZ = new float[len];
+                cullRadius = new float[len];
+                cullBoxes = new float[len * 6];
+                cullVisible = new boolean[len];
+                cullKeys = new long[len];
+                drawData = BufferUtils.createFloatBuffer(len * Model.INSTANCE_STRIDE);
             }
+            pendingEntities[pendingCount++] = ren;
+        }
+        
+        /**
+         * Renders a batch of static entities as one draw, if it is in view. Like entities, batches must be queued every frame they should be drawn.
+         * @param batch The {@link wrath.client.graphics.StaticBatch} to render.
+         */
+        public void addStaticRenderingJob(StaticBatch batch)
+        {
+            if(batch.getModel() == null) return;
+            if(pendingStaticCount == pendingStatic.length) pendingStatic = Arrays.copyOf(pendingStatic, pendingStaticCount * 2);
+            pendingStatic[pendingStaticCount++] = batch;
         }
         
         /**
@@ -623,12 +876,161 @@ public class Game
          */
         public void addTerrainRenderingJob(TileRenderer ren)
         {
-            if(terrainRenderMap.containsKey(ren.getTileModel())) terrainRenderMap.get(ren.getTileModel()).add(ren);
-            else
+            Model m = ren.getTileModel();
+            if(m == null) return;
+            renderQueue.add(m, ren, RenderQueue.createSortKey(RenderQueue.PASS_TERRAIN, m, 0));
+        }
+        
+        private void cullEntities()
+        {
+            profiler.begin(Profiler.SCOPE_CULLING);
+            RenderSnapshot snap = simManager.getRenderSnapshot();
+            Vector3f eye = snap != null ? snap.getCameraPosition() : playerCamera.getPosition();
+            boolean test = culling && MODE == RenderMode.Mode3D;
+            boolean occlude = occlusion != null && MODE == RenderMode.Mode3D;
+            Matrix4f view = viewMatrix;
+            if(test) frustum.update(projMatrix, view);
+            
+            profiler.begin(Profiler.SCOPE_PREPARE);
+            if(parallelPreparation) jobSystem.parallelFor(0, pendingCount, preparationBatch, (from, to) -> prepareEntities(from, to, test, eye));
+            else prepareEntities(0, pendingCount, test, eye);
+            profiler.end();
+            
+            int occluded = 0;
+            if(occlude)
+            {
+                profiler.begin(Profiler.SCOPE_OCCLUSION);
+                occlusion.begin(projMatrix, view);
+                for(int i = 0; i < pendingCount; i++)
+                {
+                    Model m = pendingEntities[i].getModel();
+                    if(cullVisible[i] && m.getOccluderVerticies() != null) occlusion.addOccluder(m.getOccluderVerticies(), m.getOccluderIndicies(), pendingEntities[i].getTransformationMatrix());
+                }
+                for(int i = 0; i < pendingCount; i++)
+                {
+                    int o = i * 6;
+                    if(cullVisible[i] && cullRadius[i] >= 0 && occlusion.isOccluded(cullBoxes[o], cullBoxes[o + 1], cullBoxes[o + 2], cullBoxes[o + 3], cullBoxes[o + 4], cullBoxes[o + 5]))
+                    {
+                        cullVisible[i] = false;
+                        occluded++;
+                    }
+                }
+                profiler.end();
+            }
+            
+            int visible = 0;
+            for(int i = 0; i < pendingCount; i++)
+            {
+                EntityRenderer ren = pendingEntities[i];
+                pendingEntities[i] = null;
+                if(!cullVisible[i]) continue;
+                renderQueue.add(ren.getModel(), ren, cullKeys[i], i);
+                visible++;
+            }
+            
+            for(int i = 0; i < pendingStaticCount; i++)
+            {
+                StaticBatch batch = pendingStatic[i];
+                pendingStatic[i] = null;
+                Model m = batch.getModel();
+                float[] min = m.getBoundsMin();
+                float[] max = m.getBoundsMax();
+                //The merged verticies are already in world space, so the model's bounds are the batch's bounds.
+                if(m.getBoundingRadius() >= 0)
+                {
+                    if(test && !frustum.intersectsBox(min[0], min[1], min[2], max[0], max[1], max[2])) continue;
+                    if(occlude && occlusion.isOccluded(min[0], min[1], min[2], max[0], max[1], max[2])) continue;
+                }
+                float dx = (min[0] + max[0]) / 2 - eye.x;
+                float dy = (min[1] + max[1]) / 2 - eye.y;
+                float dz = (min[2] + max[2]) / 2 - eye.z;
+                renderQueue.add(m, batch, RenderQueue.createSortKey(RenderQueue.PASS_ENTITIES, m, dx * dx + dy * dy + dz * dz));
+            }
+            pendingStaticCount = 0;
+            
+            visibleEntities = visible;
+            occludedEntities = occluded;
+            culledEntities = pendingCount - visible - occluded;
+            totalVisibleEntities += visibleEntities;
+            totalCulledEntities += culledEntities;
+            totalOccludedEntities += occludedEntities;
+            pendingCount = 0;
+            profiler.end();
+        }
+        
+        private void recordRenderTasks(CommandList list)
+        {
+            Runnable task;
+            while((task = renderTasks.poll()) != null) list.run(task);
+        }
+        
+        private void startRenderThread()
+        {
+            //The context can only be current on one thread, so the game loop lets go of it until the render thread stops.
+            GLFW.glfwMakeContextCurrent(MemoryUtil.NULL);
+            renderThread = new RenderThread(Game.this, winManager.window);
+            renderThread.start();
+            gameLogger.println("Started render thread.");
+        }
+        
+        private void stopRenderThread()
+        {
+            if(renderThread == null) return;
+            renderThread.stop();
+            gameLogger.println("Stopped render thread after " + renderThread.getFramesSubmitted() + " frames, average submit " + String.format("%.3f", renderThread.getAverageSubmitTime() / 1000000.0) + "ms, average wait " + String.format("%.3f", renderThread.getAverageWaitTime() / 1000000.0) + "ms.");
+            renderThread = null;
+            GLFW.glfwMakeContextCurrent(winManager.window);
+            Runnable task;
+            while((task = renderTasks.poll()) != null) task.run();
+        }
+        
+        private void updateFrameUniforms(CommandList list)
+        {
+            //The camera and projection are the same for every draw, so they are written once for all shaders instead of once per shader.
+            RenderSnapshot snap = simManager.getRenderSnapshot();
+            Vector3f eye = snap != null ? snap.getCameraPosition() : playerCamera.getPosition();
+            viewMatrix = ClientUtils.createViewMatrix(eye, snap != null ? snap.getCameraOrientation() : playerCamera.getOrientation());
+            list.updateFrameUniforms(frameUniforms, projMatrix, viewMatrix, eye);
+        }
+        
+        private void prepareEntities(int from, int to, boolean test, Vector3f eye)
+        {
+            //Runs on several threads at once, each on its own range of the pending entities, so nothing here may touch OpenGL or shared state.
+            for(int i = from; i < to; i++)
+            {
+                EntityRenderer ren = pendingEntities[i];
+                float[] b = ren.updateWorldBounds();
+                cullX[i] = b[0];
+                cullY[i] = b[1];
+                cullZ[i] = b[2];
+                cullRadius[i] = b[3];
+                System.arraycopy(b, 4, cullBoxes, i * 6, 6);
+                ren.writeInstanceData(drawData, i * Model.INSTANCE_STRIDE);
+            }
+            
+            if(test)
+            {
+                frustum.testSpheres(cullX, cullY, cullZ, cullRadius, from, to - from, cullVisible);
+                for(int i = from; i < to; i++)
+                {
+                    //The box is tighter than the sphere, so it rejects more of what the sphere test kept.
+                    int o = i * 6;
+                    if(cullVisible[i] && cullRadius[i] >= 0) cullVisible[i] = frustum.intersectsBox(cullBoxes[o], cullBoxes[o + 1], cullBoxes[o + 2], cullBoxes[o + 3], cullBoxes[o + 4], cullBoxes[o + 5]);
+                }
+            }
+            else Arrays.fill(cullVisible, from, to, true);
+            
+            for(int i = from; i < to; i++)
             {
-                ArrayList<TileRenderer> rl = new ArrayList<>();
-                rl.add(ren);
-                terrainRenderMap.put(ren.getTileModel(), rl);
+                if(!cullVisible[i]) continue;
+                EntityRenderer ren = pendingEntities[i];
+                float dx = cullX[i] - eye.x;
+                float dy = cullY[i] - eye.y;
+                float dz = cullZ[i] - eye.z;
+                float distSq = dx * dx + dy * dy + dz * dz;
+                int level = 0;
+                if(MODE == RenderMode.Mode3D && cullRadius[i] >= 0 && ren.getModel().getLevelCount() > 1) level = ren.updateLevelOfDetail(cullRadius[i] * projMatrix.m11 / (float) Math.sqrt(distSq), lodHysteresis);
+                cullKeys[i] = RenderQueue.createSortKey(RenderQueue.PASS_ENTITIES, ren.getModel(), level, distSq);
             }
         }
         
@@ -641,6 +1043,25 @@ public class Game
             return avgFps;
         }
     
+        /**
+         * Gets the amount of entities that were skipped in the last frame because they were outside of the camera's view.
+         * @return Returns the amount of culled entities of the last frame.
+         */
+        public int getCulledEntities()
+        {
+            return culledEntities;
+        }
+        
+        /**
+         * Gets the amount of draw calls used to render terrain and entities in the last frame.
+         * Groups of entities drawn with one instanced draw call count once.
+         * @return Returns the amount of draw calls of the last frame.
+         */
+        public int getDrawCalls()
+        {
+            return drawCalls;
+        }
+        
         /**
          * Gets the defined 3D Field-of-View.
          * @return Returns the defined 3D Field-of-View.
@@ -659,6 +1080,15 @@ public class Game
             return fps;
         }
         
+        /**
+         * Gets the cache of the OpenGL state bound by this game's renderer.
+         * @return Returns the {@link wrath.client.graphics.GLState} of this game.
+         */
+        public GLState getGLState()
+        {
+            return glState;
+        }
+        
         /**
          * Gets the {@link wrath.client.Game.GUI} linked to this Window.
          * @return Returns the {@link wrath.client.Game.GUI} linked to this Window.
@@ -668,6 +1098,16 @@ public class Game
             return front;
         }
         
+        /**
+         * Gets the {@link wrath.client.FramePacer} used to sleep between frames when the FPS is capped.
+         * The pacer also records the pacing jitter, overshoot and CPU time of each frame.
+         * @return Returns the {@link wrath.client.FramePacer} linked to this renderer.
+         */
+        public FramePacer getFramePacer()
+        {
+            return pacer;
+        }
+        
         /**
          * Gets the maximum amount of times the game will render to the screen in one second.
          * @return Returns the maximum amount of times the game will render to the screen in one second.
@@ -677,6 +1117,33 @@ public class Game
             return maxFps;
         }
         
+        /**
+         * Gets the amount of entities that were in the camera's view in the last frame, but skipped because occluders were hiding them.
+         * @return Returns the amount of occluded entities of the last frame.
+         */
+        public int getOccludedEntities()
+        {
+            return occludedEntities;
+        }
+        
+        /**
+         * Gets the {@link wrath.client.graphics.OcclusionCuller} used to skip hidden entities.
+         * @return Returns the {@link wrath.client.graphics.OcclusionCuller}, or null if occlusion culling is disabled.
+         */
+        public OcclusionCuller getOcclusionCuller()
+        {
+            return occlusion;
+        }
+        
+        /**
+         * Gets the uniform buffer holding the camera, projection and scene light of the frame, shared by every shader.
+         * @return Returns the {@link wrath.client.graphics.FrameUniforms} of the window, or null if the window is not open.
+         */
+        public FrameUniforms getFrameUniforms()
+        {
+            return frameUniforms;
+        }
+        
         /**
          * Gets the {@link org.lwjgl.util.vector.Matrix4f} object of the 3D projection matrix.
          * @return Returns the {@link org.lwjgl.util.vector.Matrix4f} object of the 3D projection matrix.
@@ -686,6 +1153,24 @@ public class Game
             return projMatrix;
         }
         
+        /**
+         * Gets the thread that owns the OpenGL context and submits the frames recorded by the game loop.
+         * @return Returns the {@link wrath.client.RenderThread}, or null if the game loop renders itself.
+         */
+        public RenderThread getRenderThread()
+        {
+            return renderThread;
+        }
+        
+        /**
+         * Gets the batch that draws the 2D quads of the frame, such as the GUI, backgrounds and text.
+         * @return Returns the {@link wrath.client.graphics.graphics2D.SpriteBatch} of the window, or null if the window is not open.
+         */
+        public SpriteBatch getSpriteBatch()
+        {
+            return spriteBatch;
+        }
+        
         /**
          * Gets the standard {@link wrath.client.graphics.Color} that will be used to render unless specified otherwise by OpenGL code.
          * @return Returns the standard {@link wrath.client.graphics.Color}.
@@ -713,6 +1198,15 @@ public class Game
             return totalFramesRendered;
         }
         
+        /**
+         * Gets the amount of entities that were drawn in the last frame, after culling.
+         * @return Returns the amount of visible entities of the last frame.
+         */
+        public int getVisibleEntities()
+        {
+            return visibleEntities;
+        }
+        
         /**
          * If true, the FPS will be rendered at the top-left of the screen.
          * @return Returns true if the FPS will be rendered in text at the top-left of the screen.
@@ -742,54 +1236,141 @@ public class Game
             {
                 if(shouldRender)
                 {
-                    GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
-                    color.bindColor();
-                    
-                    terrainRenderMap.entrySet().stream().map((entry) ->
+                    profiler.begin(Profiler.SCOPE_RENDER);
+                    if(threadedRendering && renderThread == null) startRenderThread();
+                    CommandList list = commandList;
+                    if(renderThread != null)
                     {
-                        Model m = (Model) entry.getKey();
-                        m.renderSetup();
-                        for(TileRenderer r : (List<TileRenderer>) entry.getValue())
+                        profiler.begin(Profiler.SCOPE_RENDER_THREAD_WAIT);
+                        list = renderThread.acquire();
+                        profiler.end();
+                        if(list == null)
                         {
-                            r.update();
-                            m.render(true);
+                            System.err.println("Could not record frame for the render thread! The render thread has stopped, rendering on the game loop instead!");
+                            stopRenderThread();
+                            threadedRendering = false;
+                            list = commandList;
                         }
-                        return m;
-                    }).forEach((m) ->
-                    {
-                        m.renderStop();
-                    });
-                    terrainRenderMap.clear();
+                    }
                     
-                    entityRenderMap.entrySet().stream().forEach((entry) -> {
-                        Model m = (Model) entry.getKey();
-                        if (!(m == null)) {
-                            m.renderSetup();
-                            for(EntityRenderer r : (List<EntityRenderer>) entry.getValue())
+                    if(simManager.threaded) simManager.snapshots.acquire();
+                    list.clear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
+                    list.run(colorBinder);
+                    recordRenderTasks(list);
+                    
+                    updateFrameUniforms(list);
+                    cullEntities();
+                    renderQueue.sort();
+                    int draws = 0;
+                    Model previous = null;
+                    //Draws before this position were already found to be part of a run too short to instance.
+                    int shortRunEnd = 0;
+                    int pass = -1;
+                    for(int p = 0; p < renderQueue.size(); p++)
+                    {
+                        int i = renderQueue.getSorted(p);
+                        Model m = renderQueue.getModel(i);
+                        int level = renderQueue.getLevel(i);
+                        if(m != previous || renderQueue.getPass(i) != pass)
+                        {
+                            if(previous != null) list.endScope();
+                            if(renderQueue.getPass(i) != pass)
                             {
-                                r.update();
-                                m.render(true);
+                                if(pass != -1) list.endScope();
+                                pass = renderQueue.getPass(i);
+                                list.beginScope(pass == RenderQueue.PASS_TERRAIN ? Profiler.SCOPE_TERRAIN : Profiler.SCOPE_ENTITIES);
                             }
-                            m.renderStop();
+                            list.beginScope(m.getProfilerScope());
+                            list.setupModel(m, previous);
+                            previous = m;
                         }
-                    });
-                    entityRenderMap.clear();
+                        
+                        if(instancing && pass == RenderQueue.PASS_ENTITIES && m.getInstancedShader() != null && p >= shortRunEnd && renderQueue.getData(i) >= 0)
+                        {
+                            //Draws of one model and level are next to each other once sorted, so the whole group is drawn at once.
+                            //Static batch and renderer draws have no prepared data, so they end the run and are drawn on their own.
+                            int run = 1;
+                            while(p + run < renderQueue.size())
+                            {
+                                int next = renderQueue.getSorted(p + run);
+                                if(renderQueue.getModel(next) != m || renderQueue.getPass(next) != pass || renderQueue.getLevel(next) != level || renderQueue.getData(next) < 0) break;
+                                run++;
+                            }
+                            if(run >= instancingThreshold)
+                            {
+                                //Entity draws were prepared before sorting, so their data is only copied.
+                                list.beginInstances();
+                                for(int k = 0; k < run; k++) list.addInstance(drawData, renderQueue.getData(renderQueue.getSorted(p + k)) * Model.INSTANCE_STRIDE);
+                                list.endInstances(m, level);
+                                draws++;
+                                p += run - 1;
+                                continue;
+                            }
+                            shortRunEnd = p + run;
+                        }
+                        if(renderQueue.getData(i) >= 0) list.draw(m, level, drawData, renderQueue.getData(i) * Model.INSTANCE_STRIDE);
+                        else list.drawRenderer(renderQueue.getRenderer(i), m, level);
+                        draws++;
+                    }
+                    drawCalls = draws;
+                    if(previous != null)
+                    {
+                        list.stopModel(previous);
+                        list.endScope();
+                        list.endScope();
+                    }
+                    renderQueue.reset();
+                    
+                    //Without a render thread, the game's own rendering draws straight to the context, so everything recorded so far must be drawn first.
+                    if(renderThread == null)
+                    {
+                        list.replay();
+                        list.reset();
+                    }
+                    
+                    profiler.begin(Profiler.SCOPE_GAME_RENDER);
+                    Game.this.render();
+                    profiler.end();
+                    recordRenderTasks(list);
+                    list.beginScope(Profiler.SCOPE_GUI);
+                    list.run(guiRenderer);
+                    list.endScope();
                     
-                    GAME_INSTANCE.render();
-                    color.bindColor();
-                    front.renderGUI();
-                    if(renderFps) text.renderString(fps + "", -1f, 1f, 0.5f, new Color(0.57f, 2.37f, 0.4f));
-                    GL11.glFlush();
-                    GLFW.glfwSwapBuffers(winManager.window);
+                    if(renderThread == null)
+                    {
+                        list.replay();
+                        list.reset();
+                        profiler.begin(Profiler.SCOPE_SWAP_BUFFERS);
+                        GL11.glFlush();
+                        GLFW.glfwSwapBuffers(winManager.window);
+                        profiler.end();
+                    }
+                    else renderThread.submit(list);
+                    profiler.end();
             
                     fpsBuf++;
                     totalFramesRendered++;
+                    if(maxFps > 0) pacer.onFrameRendered((long)Math.round(((float)1.0/maxFps * 1000000000.0)));
                 }
                 
+                profiler.begin(Profiler.SCOPE_POLL_EVENTS);
                 GLFW.glfwPollEvents();
+                profiler.end();
             }
         }
         
+        /**
+         * Runs OpenGL code on the thread that owns the OpenGL context.
+         * Without a render thread, the task runs right away. With one, it runs on the render thread before the next frame it submits,
+         * which is how game code, such as {@link wrath.client.Game#render()}, must make its own OpenGL calls when the RenderThread option is enabled.
+         * @param task The {@link java.lang.Runnable} making the OpenGL calls.
+         */
+        public void runOnRenderThread(Runnable task)
+        {
+            if(renderThread == null) task.run();
+            else renderTasks.add(task);
+        }
+        
         /**
          * Changes the 3D Field-of-View.
          * @param fov The 3D Field-of-View angle.
@@ -930,6 +1511,323 @@ public class Game
         
     }
     
+    /**
+     * Class to manage the game's ticks.
+     * Ticks are normally run on the same thread as rendering, but if 'ThreadedSimulation' is enabled they are run on a dedicated simulation thread instead.
+     * In that mode the renderer reads from {@link wrath.client.graphics.RenderSnapshot}s taken at the end of every tick, so ticks and frames no longer wait on each other.
+     */
+    public class SimulationManager
+    {
+        private int afpsCount = 0;
+        private int fpsCount = 0;
+        private int inpCount = 0;
+        private double inputCheckTicks = 1;
+        private long ticksPerformed = 0;
+        
+        private volatile double measuredTps = 0;
+        private int reportSeconds = 0;
+        private long startTime = 0;
+        private int tpsSeconds = 0;
+        private long tpsStart = 0;
+        private long tpsTicks = 0;
+        
+        private volatile int maxTicksPerFrame = gameConfig.getInt("MaxTicksPerFrame", 5);
+        private volatile TickOverrunPolicy overrunPolicy = TickOverrunPolicy.valueOf(gameConfig.getString("TickOverrunPolicy", "slow_down").toUpperCase());
+        private volatile long droppedTicks = 0;
+        private volatile long lateTicks = 0;
+        private volatile double maxBacklog = 0;
+        
+        private boolean threaded = false;
+        private volatile boolean simRunning = false;
+        private Thread simThread = null;
+        private final SnapshotBuffer snapshots = new SnapshotBuffer();
+        
+        /**
+         * Constructor.
+         * Protected so multiple instances aren't made pointlessly.
+         */
+        private SimulationManager(){}
+        
+        /**
+         * Gets the average amount of ticks run per second since the loop started.
+         * @return Returns the average TPS of the game while it has been running.
+         */
+        public double getAverageTPS()
+        {
+            if(startTime == 0 || System.nanoTime() == startTime) return 0;
+            return ticksPerformed * 1000000000.0 / (System.nanoTime() - startTime);
+        }
+        
+        /**
+         * Gets the amount of ticks that were skipped because the game fell too far behind.
+         * @return Returns the amount of ticks dropped since the game launched.
+         */
+        public long getDroppedTicks()
+        {
+            return droppedTicks;
+        }
+        
+        /**
+         * Gets the amount of ticks that ran at least one full tick behind schedule.
+         * @return Returns the amount of late ticks since the game launched.
+         */
+        public long getLateTicks()
+        {
+            return lateTicks;
+        }
+        
+        /**
+         * Gets the largest amount of ticks the game has been behind schedule at once.
+         * @return Returns the largest tick backlog since the game launched.
+         */
+        public double getMaxBacklog()
+        {
+            return maxBacklog;
+        }
+        
+        /**
+         * Gets the maximum amount of ticks that can be run to catch up before a frame is rendered.
+         * @return Returns the maximum amount of ticks per frame, or 0 if there is no limit.
+         */
+        public int getMaxTicksPerFrame()
+        {
+            return maxTicksPerFrame;
+        }
+        
+        /**
+         * Gets the amount of ticks that were run in the last second.
+         * This can differ from {@link wrath.client.Game#getTPS()} if the game falls behind, or runs headless at maximum speed.
+         * @return Returns the last measured Ticks-Per-Second count.
+         */
+        public double getMeasuredTPS()
+        {
+            return measuredTps;
+        }
+        
+        /**
+         * Gets the snapshot the renderer should read simulation state from.
+         * @return Returns the current {@link wrath.client.graphics.RenderSnapshot}, or null if the simulation is not threaded or has not completed a tick yet.
+         */
+        public RenderSnapshot getRenderSnapshot()
+        {
+            if(!threaded) return null;
+            return snapshots.getFront();
+        }
+        
+        /**
+         * Gets the {@link wrath.client.graphics.SnapshotBuffer} used to pass state from the simulation thread to the renderer.
+         * @return Returns the {@link wrath.client.graphics.SnapshotBuffer} linked to this game.
+         */
+        public SnapshotBuffer getSnapshotBuffer()
+        {
+            return snapshots;
+        }
+        
+        /**
+         * Gets the amount of ticks the game has run since it launched.
+         * @return Returns the amount of ticks the game has run since it launched.
+         */
+        public long getTicksPerformed()
+        {
+            return ticksPerformed;
+        }
+        
+        /**
+         * Gets what the game does with ticks it is too far behind to run.
+         * @return Returns the {@link wrath.client.enums.TickOverrunPolicy} of the game.
+         */
+        public TickOverrunPolicy getTickOverrunPolicy()
+        {
+            return overrunPolicy;
+        }
+        
+        /**
+         * If true, ticks are run on a dedicated simulation thread rather than the rendering thread.
+         * Set with the 'ThreadedSimulation' configuration option.
+         * @return Returns true if the simulation runs on its own thread.
+         */
+        public boolean isThreaded()
+        {
+            return threaded;
+        }
+        
+        /**
+         * Reads the tick settings from the configuration before the loop starts.
+         */
+        private void prepare()
+        {
+            double checksPerSec = gameConfig.getDouble("PersistentInputChecksPerSecond", 0.0);
+            if(checksPerSec > TPS || checksPerSec < 1) checksPerSec = TPS;
+            inputCheckTicks = TPS / checksPerSec;
+            threaded = MODE != RenderMode.Headless && gameConfig.getBoolean("ThreadedSimulation", false);
+            reportSeconds = MODE == RenderMode.Headless ? gameConfig.getInt("HeadlessReportSeconds", 10) : 0;
+            startTime = System.nanoTime();
+        }
+        
+        /**
+         * Loop run by the simulation thread.
+         */
+        private void run()
+        {
+            long last = clock.nanoTime();
+            final double conv = 1000000000.0 / TPS;
+            double delta = 0.0;
+            long now;
+            
+            try
+            {
+                while(isRunning && simRunning)
+                {
+                    clock.advance();
+                    now = clock.nanoTime();
+                    delta += (now - last) / conv;
+                    last = now;
+                    
+                    delta = runTicks(delta);
+                    
+                    LockSupport.parkNanos(clock.toRealNanos(last + (long)((1.0 - delta) * conv) - clock.nanoTime()));
+                }
+            }
+            catch(Throwable e)
+            {
+                System.err.println("Simulation thread stopped due to an error! Stopping game!");
+                e.printStackTrace();
+                stop();
+            }
+        }
+        
+        /**
+         * Runs the ticks that are due, following the tick overrun policy when there are more than the per-frame limit.
+         * @param delta The amount of ticks that are due, including the fraction of the next tick.
+         * @return Returns the amount of ticks still due afterwards.
+         */
+        private double runTicks(double delta)
+        {
+            if(delta > maxBacklog) maxBacklog = delta;
+            
+            int ran = 0;
+            while(delta >= 1 && isRunning && (!threaded || simRunning))
+            {
+                if(maxTicksPerFrame > 0 && ran >= maxTicksPerFrame)
+                {
+                    //Keeps the fraction of the next tick, plus up to one frame's worth of ticks when slowing down.
+                    long excess = (long) delta;
+                    if(overrunPolicy == TickOverrunPolicy.SLOW_DOWN) excess = Math.max(0, excess - maxTicksPerFrame);
+                    droppedTicks += excess;
+                    delta -= excess;
+                    break;
+                }
+                
+                if(delta >= 2) lateTicks++;
+                tick();
+                delta--;
+                ran++;
+            }
+            return delta;
+        }
+        
+        /**
+         * Changes the maximum amount of ticks that can be run to catch up before a frame is rendered.
+         * @param maxTicksPerFrame The maximum amount of ticks per frame, or 0 for no limit.
+         */
+        public void setMaxTicksPerFrame(int maxTicksPerFrame)
+        {
+            this.maxTicksPerFrame = Math.max(0, maxTicksPerFrame);
+            gameConfig.setProperty("MaxTicksPerFrame", this.maxTicksPerFrame);
+        }
+        
+        /**
+         * Changes what the game does with ticks it is too far behind to run.
+         * @param policy The {@link wrath.client.enums.TickOverrunPolicy} to use.
+         */
+        public void setTickOverrunPolicy(TickOverrunPolicy policy)
+        {
+            this.overrunPolicy = policy;
+            gameConfig.setProperty("TickOverrunPolicy", policy.name().toLowerCase());
+        }
+        
+        /**
+         * Starts the simulation thread.
+         */
+        private void startThread()
+        {
+            simRunning = true;
+            simThread = new Thread(() ->
+            {
+                bindToCurrentThread();
+                run();
+            }, TITLE + " Simulation");
+            simThread.start();
+            gameLogger.println("Started simulation thread at " + TPS + " TPS.");
+        }
+        
+        /**
+         * Stops the simulation thread and waits for the current tick to finish.
+         */
+        private void stopThread()
+        {
+            if(simThread == null) return;
+            simRunning = false;
+            LockSupport.unpark(simThread);
+            if(Thread.currentThread() != simThread)
+                try
+                {
+                    simThread.join();
+                }
+                catch(InterruptedException e){}
+            simThread = null;
+        }
+        
+        /**
+         * Runs one tick of the game's logic.
+         */
+        private void tick()
+        {
+            profiler.begin(Profiler.SCOPE_TICK);
+            onTickPreprocessor();
+            
+            //Persistent input management
+            if(inputCheckTicks == 1 || inpCount >= inputCheckTicks)
+            {
+                inpManager.onPersistentInput();
+                inpCount -= inputCheckTicks;
+            }
+            else inpCount++;
+            
+            //FPS Counter
+            if(winManager.windowOpen)
+                if(fpsCount >= TPS)
+                {
+                    afpsCount++;
+                    renManager.fps = renManager.fpsBuf;
+                    renManager.avgFps = renManager.totalFramesRendered / afpsCount;
+                    renManager.fpsBuf = 0;
+                    fpsCount-=TPS;
+                }
+                else fpsCount++;
+            
+            //TPS Counter
+            long time = System.nanoTime();
+            if(tpsStart == 0) tpsStart = time;
+            else tpsTicks++;
+            if(time - tpsStart >= 1000000000L)
+            {
+                measuredTps = tpsTicks * 1000000000.0 / (time - tpsStart);
+                tpsTicks = 0;
+                tpsStart = time;
+                if(reportSeconds > 0 && ++tpsSeconds >= reportSeconds)
+                {
+                    gameLogger.println("Running at " + Math.round(measuredTps) + " TPS (" + ticksPerformed + " ticks total).");
+                    tpsSeconds = 0;
+                }
+            }
+            
+            ticksPerformed++;
+            if(threaded) snapshots.publish(ticksPerformed, playerCamera);
+            profiler.end();
+        }
+    }
+    
     /**
      * Class to manage every 'Closeable' interface in the game.
      */
@@ -988,6 +1886,7 @@ public class Game
         public void closeWindow()
         {
             if(!windowOpen) return;
+            renManager.stopRenderThread();
             windowOpen = false;
         
             gameLogger.println("Closing window [" + width + "x" + height + "]");
@@ -1061,7 +1960,7 @@ public class Game
          */
         public void openWindow()
         {
-            if(windowOpen) return;
+            if(windowOpen || MODE == RenderMode.Headless) return;
             
             GLFW.glfwDefaultWindowHints();
             GLFW.glfwWindowHint(GLFW.GLFW_DOUBLE_BUFFER, ClientUtils.getOpenGLBoolean(gameConfig.getBoolean("DoubleBuffered", true)));
@@ -1127,6 +2026,7 @@ public class Game
             if(gameConfig.getBoolean("DisplayVsync", false)) GLFW.glfwSwapInterval(1);
             else GLFW.glfwSwapInterval(0);
             GL.createCapabilities();
+            renManager.glState.invalidate();
             
             audiocontext = ALContext.create();
             audiocontext.makeCurrent();
@@ -1145,7 +2045,7 @@ public class Game
 
                     gameConfig.setProperty("Width", width);
                     gameConfig.setProperty("Height", height);
-                    GL11.glViewport(0, 0, width, height);
+                    renManager.runOnRenderThread(() -> GL11.glViewport(0, 0, width, height));
                     evManager.getGameEventHandler().onResolutionChange(ow, oh, width, height);
                 }
             }));
@@ -1162,8 +2062,8 @@ public class Game
             GL11.glLoadIdentity();
             GL11.glMatrixMode(GL11.GL_MODELVIEW);
             GL11.glLoadIdentity();
-            if(gameConfig.getInt("AntiAliasingSamples", 8) > 0) GL11.glEnable(GL13.GL_MULTISAMPLE);
-            GL11.glEnable(GL11.GL_CULL_FACE);
+            if(gameConfig.getInt("AntiAliasingSamples", 8) > 0) renManager.glState.enable(GL13.GL_MULTISAMPLE);
+            renManager.glState.enable(GL11.GL_CULL_FACE);
             GL11.glCullFace(GL11.GL_BACK);
             
             if(renManager.text == null) renManager.text = new TextRenderer(new File("assets/fonts/arial.png"), 0.75f);
@@ -1171,11 +2071,17 @@ public class Game
             if(MODE == RenderMode.Mode3D)
             {
                 renManager.projMatrix = ClientUtils.createProjectionMatrix(renManager.fov);
-                GL11.glEnable(GL11.GL_DEPTH_TEST);
+                renManager.glState.enable(GL11.GL_DEPTH_TEST);
                 GL11.glDepthFunc(GL11.GL_LESS);
             }
-            ShaderProgram.DEFAULT_SHADER = ShaderProgram.loadShaderProgram(new File("assets/shaders/defaultshader.vert"), new File("assets/shaders/defaultshader.frag"));
-            ShaderProgram.DEFAULT_TERRAIN_SHADER = ShaderProgram.loadShaderProgram(new File("assets/shaders/defaultterrainshader.vert"), new File("assets/shaders/defaultterrainshader.frag"));
+            //The old buffer went with the old context, but the scene light is kept.
+            FrameUniforms frame = new FrameUniforms();
+            if(renManager.frameUniforms != null) frame.setSceneLight(renManager.frameUniforms.getSceneLightPosition(), renManager.frameUniforms.getSceneLightColor());
+            renManager.frameUniforms = frame;
+            renManager.spriteBatch = new SpriteBatch(ShaderProgram.loadShaderProgram(new File("assets/shaders/spriteshader.vert"), new File("assets/shaders/spriteshader.frag")), gameConfig.getInt("SpriteBatchSize", 2048));
+            assets.setDefaultInstancedShader(ShaderProgram.loadShaderProgram(new File("assets/shaders/defaultinstancedshader.vert"), new File("assets/shaders/defaultinstancedshader.frag")));
+            assets.setDefaultShaders(ShaderProgram.loadShaderProgram(new File("assets/shaders/defaultshader.vert"), new File("assets/shaders/defaultshader.frag")),
+                    ShaderProgram.loadShaderProgram(new File("assets/shaders/defaultterrainshader.vert"), new File("assets/shaders/defaultterrainshader.frag")));
             
             if(firstOpen) firstOpen = false;
             else refresher.run();
@@ -1201,29 +2107,30 @@ public class Game
          */
         public void screenShot(String saveToName, ImageFormat format)
         {
-            GL11.glReadBuffer(GL11.GL_FRONT);
+            int width = this.width;
+            int height = this.height;
             ByteBuffer buffer = BufferUtils.createByteBuffer(width * height * 4);
-            GL11.glReadPixels(0, 0, width, height, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, buffer);
-            
-            
-            Thread t = new Thread(() -> 
+            renManager.runOnRenderThread(() ->
             {
-                File screenshotDir = new File("etc/screenshots");
-                if(!screenshotDir.exists()) screenshotDir.mkdirs();
-                File saveTo = new File("etc/screenshots/" + saveToName + "." + format.name().toLowerCase());
-                BufferedImage image = ClientUtils.getByteBufferToImage(buffer, width, height);
-                try 
-                {
-                    ImageIO.write(image, format.name(), saveTo);
-                    gameLogger.println("Saved screenshot '" + saveTo.getName() + "'!");
-                }
-                catch(IOException e) 
+                GL11.glReadBuffer(GL11.GL_FRONT);
+                GL11.glReadPixels(0, 0, width, height, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, buffer);
+                jobSystem.submit(() -> 
                 {
-                    System.err.println("Could not save Screenshot to '" + saveTo.getName() + "'! I/O Error has occured!");
-                }
+                    File screenshotDir = new File("etc/screenshots");
+                    if(!screenshotDir.exists()) screenshotDir.mkdirs();
+                    File saveTo = new File("etc/screenshots/" + saveToName + "." + format.name().toLowerCase());
+                    BufferedImage image = ClientUtils.getByteBufferToImage(buffer, width, height);
+                    try 
+                    {
+                        ImageIO.write(image, format.name(), saveTo);
+                        gameLogger.println("Saved screenshot '" + saveTo.getName() + "'!");
+                    }
+                    catch(IOException e) 
+                    {
+                        System.err.println("Could not save Screenshot to '" + saveTo.getName() + "'! I/O Error has occured!");
+                    }
+                });
             });
-
-            t.start();
         }
         
         /**
@@ -1236,7 +2143,7 @@ public class Game
             this.width = width;
             this.height = height;
             GLFW.glfwSetWindowSize(window, width, height);
-            GL11.glViewport(0, 0, width, height);
+            renManager.runOnRenderThread(() -> GL11.glViewport(0, 0, width, height));
         
             gameConfig.setProperty("Width", width);
             gameConfig.setProperty("Height", height);
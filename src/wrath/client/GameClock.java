@@ -0,0 +1,202 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client;
+
+/**
+ * Class describing the source of time used to schedule the game's ticks.
+ * Game time can follow the wall clock, run slower or faster than it, or only move forward in fixed steps.
+ * Rendering, frame pacing and the FPS counter always follow the wall clock.
+ * @author Trent Spears
+ */
+public abstract class GameClock
+{
+    /**
+     * Creates a clock that follows the wall clock.
+     * @return Returns a new real-time {@link wrath.client.GameClock}.
+     */
+    public static GameClock realTime()
+    {
+        return new RealTime();
+    }
+    
+    /**
+     * Creates a clock that runs at a multiple of the speed of the wall clock.
+     * @param scale The speed of game time compared to real time. Below 1 is slow-motion, above 1 is fast-forward and 0 pauses the game.
+     * @return Returns a new scaled {@link wrath.client.GameClock}.
+     */
+    public static GameClock scaled(double scale)
+    {
+        return new Scaled(scale);
+    }
+    
+    /**
+     * Creates a clock that ignores the wall clock and moves forward by a fixed amount every time the game loop runs.
+     * The game then runs its ticks as fast as possible, and the same amount of ticks every loop, which makes runs repeatable.
+     * @param stepNanos The amount of game time, in nanoseconds, to advance every loop. When 0, the clock only moves with {@link wrath.client.GameClock.Stepped#step(long)}, and the game checks for a new step every millisecond.
+     * @return Returns a new stepped {@link wrath.client.GameClock}.
+     */
+    public static GameClock stepped(long stepNanos)
+    {
+        return new Stepped(stepNanos);
+    }
+    
+    /**
+     * Moves the clock forward, if it does not follow the wall clock.
+     * Called by the game once per loop on the thread that runs the ticks.
+     */
+    protected void advance(){}
+    
+    /**
+     * Gets the current game time, in nanoseconds. Like {@link java.lang.System#nanoTime()}, only differences between two values are meaningful.
+     * @return Returns the current game time, in nanoseconds.
+     */
+    public abstract long nanoTime();
+    
+    /**
+     * Converts an amount of game time to the amount of real time it takes to pass.
+     * @param gameNanos The amount of game time, in nanoseconds.
+     * @return Returns the amount of real time, in nanoseconds, or 0 if the clock does not wait for real time.
+     */
+    public abstract long toRealNanos(long gameNanos);
+    
+    /**
+     * A {@link wrath.client.GameClock} that follows the wall clock.
+     */
+    public static class RealTime extends GameClock
+    {
+        private RealTime(){}
+        
+        @Override
+        public long nanoTime()
+        {
+            return System.nanoTime();
+        }
+        
+        @Override
+        public long toRealNanos(long gameNanos)
+        {
+            return gameNanos;
+        }
+    }
+    
+    /**
+     * A {@link wrath.client.GameClock} that runs at a multiple of the speed of the wall clock.
+     */
+    public static class Scaled extends GameClock
+    {
+        private long baseGame;
+        private long baseReal;
+        private double scale;
+        
+        private Scaled(double scale)
+        {
+            this.baseReal = System.nanoTime();
+            this.baseGame = baseReal;
+            this.scale = Math.max(0, scale);
+        }
+        
+        /**
+         * Gets the speed of game time compared to real time.
+         * @return Returns the scale of the clock.
+         */
+        public synchronized double getScale()
+        {
+            return scale;
+        }
+        
+        @Override
+        public synchronized long nanoTime()
+        {
+            return baseGame + (long)((System.nanoTime() - baseReal) * scale);
+        }
+        
+        /**
+         * Changes the speed of game time compared to real time. Game time carries on from where it is, it does not jump.
+         * @param scale The speed of game time compared to real time. Below 1 is slow-motion, above 1 is fast-forward and 0 pauses the game.
+         */
+        public synchronized void setScale(double scale)
+        {
+            long now = System.nanoTime();
+            baseGame += (long)((now - baseReal) * this.scale);
+            baseReal = now;
+            this.scale = Math.max(0, scale);
+        }
+        
+        @Override
+        public synchronized long toRealNanos(long gameNanos)
+        {
+            //While paused, waits are kept short so the game notices when it is resumed.
+            if(scale <= 0) return gameNanos;
+            return (long)(gameNanos / scale);
+        }
+    }
+    
+    /**
+     * A {@link wrath.client.GameClock} that only moves forward in fixed steps, regardless of the wall clock.
+     */
+    public static class Stepped extends GameClock
+    {
+        private static final long IDLE_WAIT_NANOS = 1000000L;
+        
+        private volatile long time = 0;
+        private final long stepNanos;
+        
+        private Stepped(long stepNanos)
+        {
+            this.stepNanos = Math.max(0, stepNanos);
+        }
+        
+        @Override
+        protected void advance()
+        {
+            if(stepNanos > 0) step(stepNanos);
+        }
+        
+        /**
+         * Gets the amount of game time the clock moves forward every loop.
+         * @return Returns the step of the clock, in nanoseconds.
+         */
+        public long getStep()
+        {
+            return stepNanos;
+        }
+        
+        @Override
+        public long nanoTime()
+        {
+            return time;
+        }
+        
+        /**
+         * Moves the clock forward.
+         * @param nanos The amount of game time, in nanoseconds, to move forward.
+         */
+        public synchronized void step(long nanos)
+        {
+            if(nanos > 0) time += nanos;
+        }
+        
+        @Override
+        public long toRealNanos(long gameNanos)
+        {
+            //A clock moved only by step() is moved from another thread, so while no tick is due the waits are kept short instead of spinning until it moves.
+            if(stepNanos > 0 || gameNanos <= 0) return 0;
+            return IDLE_WAIT_NANOS;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,152 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client;
+
+import java.util.ArrayList;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class to represent a unit of work submitted to the {@link wrath.client.JobSystem}.
+ * A Job only starts once every Job it depends on has finished.
+ * @author Trent Spears
+ */
+public class Job
+{
+    private final JobSystem system;
+    private final Runnable task;
+    private final boolean mainThread;
+    private final AtomicInteger pending;
+    private final ArrayList<Job> dependents = new ArrayList<>();
+    private final Task fjTask = new Task();
+    private volatile boolean done = false;
+    private volatile Throwable error = null;
+    
+    /**
+     * Constructor.
+     * @param system The {@link wrath.client.JobSystem} that will run this Job.
+     * @param task The {@link java.lang.Runnable} to execute.
+     * @param mainThread If true, the Job will be run on the main thread instead of a worker thread.
+     * @param dependencyCount The amount of Jobs that must finish before this one can start.
+     */
+    protected Job(JobSystem system, Runnable task, boolean mainThread, int dependencyCount)
+    {
+        this.system = system;
+        this.task = task;
+        this.mainThread = mainThread;
+        this.pending = new AtomicInteger(dependencyCount + 1);
+    }
+    
+    /**
+     * Registers a Job to be released once this one is done.
+     * @param dependent The Job that depends on this one.
+     */
+    protected void addDependent(Job dependent)
+    {
+        synchronized(dependents)
+        {
+            if(!done)
+            {
+                dependents.add(dependent);
+                return;
+            }
+        }
+        dependent.release();
+    }
+    
+    /**
+     * Gets the error thrown while the Job ran, if any.
+     * @return Returns the {@link java.lang.Throwable} thrown by the task, or null if it completed normally or has not run yet.
+     */
+    public Throwable getError()
+    {
+        return error;
+    }
+    
+    /**
+     * Gets the {@link java.util.concurrent.ForkJoinTask} that runs this Job on the worker pool.
+     * @return Returns the underlying {@link java.util.concurrent.ForkJoinTask}.
+     */
+    protected RecursiveAction getTask()
+    {
+        return fjTask;
+    }
+    
+    /**
+     * Returns whether or not the Job has finished running.
+     * @return Returns true if the task has run and all dependents have been notified.
+     */
+    public boolean isDone()
+    {
+        return done;
+    }
+    
+    /**
+     * Returns whether or not the Job must run on the main thread.
+     * @return Returns true if the Job runs on the main (OpenGL) thread.
+     */
+    public boolean isMainThreadJob()
+    {
+        return mainThread;
+    }
+    
+    /**
+     * Signals that one dependency (or the submission itself) is satisfied, and schedules the Job once none remain.
+     */
+    protected void release()
+    {
+        if(pending.decrementAndGet() == 0) system.schedule(this);
+    }
+    
+    /**
+     * Runs the task and releases any dependent Jobs.
+     */
+    protected void run()
+    {
+        try
+        {
+            task.run();
+        }
+        catch(Throwable e)
+        {
+            error = e;
+            System.err.println("Job hit an error: " + e.toString());
+        }
+        
+        ArrayList<Job> release;
+        synchronized(dependents)
+        {
+            done = true;
+            release = new ArrayList<>(dependents);
+            dependents.clear();
+        }
+        release.stream().forEach((j) ->
+        {
+            j.release();
+        });
+    }
+    
+    private class Task extends RecursiveAction
+    {
+        @Override
+        protected void compute()
+        {
+            run();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,244 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class to spread work across all of the machine's cores.
+ * Worker threads are managed by a work-stealing {@link java.util.concurrent.ForkJoinPool} that is shared by the engine and the game.
+ * Jobs that must make OpenGL calls can be submitted to the main thread, which runs them once per frame.
+ * @author Trent Spears
+ */
+public class JobSystem
+{
+    private final ForkJoinPool pool;
+    private final ConcurrentLinkedQueue<Job> mainQueue = new ConcurrentLinkedQueue<>();
+    private volatile Thread mainThread = null;
+    
+    /**
+     * Constructor.
+     * Worker threads are bound to the {@link wrath.client.Game} that is current on the thread creating the job system.
+     * @param name The name prefix given to worker threads.
+     * @param threads The amount of worker threads. When less than 1, one less than the amount of available processors is used.
+     */
+    public JobSystem(String name, int threads)
+    {
+        if(threads < 1) threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        final Game game = Game.getCurrentInstance();
+        this.pool = new ForkJoinPool(threads, (p) ->
+        {
+            ForkJoinWorkerThread t = new ForkJoinWorkerThread(p)
+            {
+                @Override
+                protected void onStart()
+                {
+                    super.onStart();
+                    if(game != null) game.bindToCurrentThread();
+                }
+            };
+            t.setName(name + " Worker-" + t.getPoolIndex());
+            t.setDaemon(true);
+            return t;
+        }, null, false);
+    }
+    
+    /**
+     * Sets the calling thread as the main thread, which runs all main-thread Jobs.
+     * This is called automatically when the game loop starts.
+     */
+    public void bindMainThread()
+    {
+        mainThread = Thread.currentThread();
+    }
+    
+    /**
+     * Gets the underlying {@link java.util.concurrent.ForkJoinPool}.
+     * Tasks forked directly on the pool are scheduled alongside Jobs.
+     * @return Returns the pool that runs all worker Jobs.
+     */
+    public ForkJoinPool getPool()
+    {
+        return pool;
+    }
+    
+    /**
+     * Gets the amount of worker threads in the pool.
+     * @return Returns the amount of worker threads in the pool.
+     */
+    public int getWorkerCount()
+    {
+        return pool.getParallelism();
+    }
+    
+    /**
+     * Returns whether or not the calling thread is the main thread.
+     * @return Returns true if the calling thread runs main-thread Jobs.
+     */
+    public boolean isMainThread()
+    {
+        return Thread.currentThread() == mainThread;
+    }
+    
+    /**
+     * Runs a loop over a range of indices, split into batches that run on the worker threads and the calling thread at the same time.
+     * Returns once every batch is done. The body is run for different batches at once, so batches must not write to the same data.
+     * @param from The first index of the range.
+     * @param to The index after the last index of the range.
+     * @param batch The smallest amount of indices worth handing to another thread.
+     * @param body The {@link wrath.client.JobSystem.RangeTask} to run for every batch.
+     */
+    public void parallelFor(int from, int to, int batch, RangeTask body)
+    {
+        int count = to - from;
+        if(count <= 0) return;
+        int batches = Math.min(getWorkerCount() + 1, (count + Math.max(1, batch) - 1) / Math.max(1, batch));
+        if(batches <= 1)
+        {
+            body.run(from, to);
+            return;
+        }
+        
+        //The calling thread runs the first batch itself instead of waiting, and only ever joins the others, so nothing is forked outside of the pool.
+        int size = (count + batches - 1) / batches;
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[batches - 1];
+        for(int b = 1; b < batches; b++)
+        {
+            final int start = from + b * size;
+            final int end = Math.min(to, start + size);
+            if(start < end) tasks[b - 1] = pool.submit(() -> body.run(start, end));
+        }
+        body.run(from, Math.min(to, from + size));
+        for(ForkJoinTask<?> t : tasks) if(t != null) t.join();
+    }
+    
+    /**
+     * Runs every main-thread Job that is ready.
+     * This is called automatically by the game loop once per frame, and must only be called from the main thread.
+     */
+    public void runMainThreadJobs()
+    {
+        Job j;
+        while((j = mainQueue.poll()) != null) j.run();
+    }
+    
+    /**
+     * Queues a Job for execution, either on the pool or the main thread.
+     * @param job The Job whose dependencies have all finished.
+     */
+    protected void schedule(Job job)
+    {
+        if(job.isMainThreadJob()) mainQueue.add(job);
+        else if(ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool) job.getTask().fork();
+        else pool.execute(job.getTask());
+    }
+    
+    /**
+     * Stops accepting new Jobs and waits up to five seconds for queued worker Jobs to finish.
+     * Main-thread Jobs that have not run yet are discarded.
+     */
+    public void shutdown()
+    {
+        mainQueue.clear();
+        pool.shutdown();
+        try
+        {
+            pool.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        catch(InterruptedException e){}
+    }
+    
+    /**
+     * Submits a task to be run on a worker thread once all specified dependencies are done.
+     * @param task The {@link java.lang.Runnable} to execute.
+     * @param dependencies The Jobs that must finish before this one starts.
+     * @return Returns the {@link wrath.client.Job} representing the task.
+     */
+    public Job submit(Runnable task, Job... dependencies)
+    {
+        return submit(task, false, dependencies);
+    }
+    
+    private Job submit(Runnable task, boolean mainThreadJob, Job... dependencies)
+    {
+        Job job = new Job(this, task, mainThreadJob, dependencies.length);
+        for(Job d : dependencies) d.addDependent(job);
+        job.release();
+        return job;
+    }
+    
+    /**
+     * Submits a task to be run on the main thread once all specified dependencies are done.
+     * Use this for any work that makes OpenGL calls.
+     * @param task The {@link java.lang.Runnable} to execute.
+     * @param dependencies The Jobs that must finish before this one starts.
+     * @return Returns the {@link wrath.client.Job} representing the task.
+     */
+    public Job submitToMainThread(Runnable task, Job... dependencies)
+    {
+        return submit(task, true, dependencies);
+    }
+    
+    /**
+     * Blocks until the specified Job is done, helping with other work in the meantime.
+     * The main thread runs queued main-thread Jobs while it waits, and worker threads steal pool work, so waiting never leaves a core idle.
+     * @param job The {@link wrath.client.Job} to wait for.
+     */
+    public void waitFor(Job job)
+    {
+        boolean main = isMainThread();
+        boolean worker = ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool;
+        while(!job.isDone())
+        {
+            if(main)
+            {
+                Job j = mainQueue.poll();
+                if(j != null)
+                {
+                    j.run();
+                    continue;
+                }
+            }
+            
+            if(worker)
+            {
+                // Joining lets the pool run other work on this thread until the Job is done.
+                if(job.isMainThreadJob()) Thread.yield();
+                else job.getTask().join();
+            }
+            else pool.awaitQuiescence(1, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * A loop body run by {@link wrath.client.JobSystem#parallelFor(int, int, int, wrath.client.JobSystem.RangeTask)} for one batch of indices.
+     */
+    public static interface RangeTask
+    {
+        /**
+         * Runs the loop body for a batch of indices.
+         * @param from The first index of the batch.
+         * @param to The index after the last index of the batch.
+         */
+        public void run(int from, int to);
+    }
+}
\ No newline at end of file
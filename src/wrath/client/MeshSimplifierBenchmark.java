@@ -0,0 +1,157 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import wrath.client.graphics.MeshSimplifier;
+
+/**
+ * A class used to internally check and measure the {@link wrath.client.graphics.MeshSimplifier} on a subdivided sphere and on a flat grid.
+ * Every mesh is simplified twice, and the check fails if the result has more triangles than the target, if the error is above the limit, if a triangle is degenerate, or if both runs differ.
+ * The process exits with status 1 if any check failed.
+ * @author Trent Spears
+ */
+public class MeshSimplifierBenchmark
+{
+    private static boolean failed = false;
+    
+    public static void main(String[] args)
+    {
+        //Icosphere of radius 1 with 1280 triangles and no duplicate positions.
+        float[][] sphere = createSphere(3);
+        check("Sphere", sphere[0], toIndicies(sphere[1]), 200, 0.35f);
+        
+        //Flat 40x40 grid of 3200 triangles, only the border limits the collapses.
+        float[][] grid = createGrid(40);
+        check("Grid", grid[0], toIndicies(grid[1]), 100, 0.01f);
+        
+        if(failed)
+        {
+            System.err.println("FAILED: the mesh simplifier did not meet its limits!");
+            System.exit(1);
+        }
+        System.out.println("PASSED: every mesh met its target, its error limit and simplified the same way twice.");
+    }
+    
+    private static void check(String name, float[] verticies, int[] indicies, int targetTriangles, float maxError)
+    {
+        MeshSimplifier simplifier = new MeshSimplifier(verticies);
+        long start = System.nanoTime();
+        int[] first = simplifier.simplify(indicies, targetTriangles, maxError);
+        long time = System.nanoTime() - start;
+        float error = simplifier.getError();
+        int[] second = new MeshSimplifier(verticies).simplify(indicies, targetTriangles, maxError);
+        
+        System.out.println(name + ": " + indicies.length / 3 + " -> " + first.length / 3 + " triangles (target " + targetTriangles + ") in " + String.format("%.3f", time / 1000000.0) + "ms, error " + error + " (limit " + maxError + ").");
+        if(first.length / 3 > targetTriangles) fail(name + " has " + first.length / 3 + " triangles, more than the target of " + targetTriangles + ".");
+        if(error > maxError) fail(name + " has an error of " + error + ", more than the limit of " + maxError + ".");
+        if(!Arrays.equals(first, second)) fail(name + " was simplified differently on the second run.");
+        for(int t = 0; t + 2 < first.length; t += 3)
+        {
+            if(first[t] == first[t + 1] || first[t + 1] == first[t + 2] || first[t] == first[t + 2])
+            {
+                fail(name + " has a degenerate triangle at index " + t + ".");
+                break;
+            }
+        }
+    }
+    
+    private static float[][] createGrid(int cells)
+    {
+        float[] verticies = new float[(cells + 1) * (cells + 1) * 3];
+        for(int z = 0; z <= cells; z++)
+        {
+            for(int x = 0; x <= cells; x++)
+            {
+                int v = (z * (cells + 1) + x) * 3;
+                verticies[v] = (float) x / cells;
+                verticies[v + 2] = (float) z / cells;
+            }
+        }
+        float[] indicies = new float[cells * cells * 6];
+        int i = 0;
+        for(int z = 0; z < cells; z++)
+        {
+            for(int x = 0; x < cells; x++)
+            {
+                int a = z * (cells + 1) + x, b = a + 1, c = a + cells + 1, d = c + 1;
+                indicies[i++] = a; indicies[i++] = c; indicies[i++] = b;
+                indicies[i++] = b; indicies[i++] = c; indicies[i++] = d;
+            }
+        }
+        return new float[][]{verticies, indicies};
+    }
+    
+    private static float[][] createSphere(int subdivisions)
+    {
+        float t = (float)((1.0 + Math.sqrt(5.0)) / 2.0);
+        ArrayList<float[]> points = new ArrayList<>();
+        for(float[] p : new float[][]{{-1, t, 0}, {1, t, 0}, {-1, -t, 0}, {1, -t, 0}, {0, -1, t}, {0, 1, t}, {0, -1, -t}, {0, 1, -t}, {t, 0, -1}, {t, 0, 1}, {-t, 0, -1}, {-t, 0, 1}}) points.add(normalize(p));
+        int[] tris = {0, 11, 5, 0, 5, 1, 0, 1, 7, 0, 7, 10, 0, 10, 11, 1, 5, 9, 5, 11, 4, 11, 10, 2, 10, 7, 6, 7, 1, 8, 3, 9, 4, 3, 4, 2, 3, 2, 6, 3, 6, 8, 3, 8, 9, 4, 9, 5, 2, 4, 11, 6, 2, 10, 8, 6, 7, 9, 8, 1};
+        for(int s = 0; s < subdivisions; s++)
+        {
+            HashMap<Long, Integer> midpoints = new HashMap<>();
+            int[] next = new int[tris.length * 4];
+            int n = 0;
+            for(int i = 0; i < tris.length; i += 3)
+            {
+                int a = tris[i], b = tris[i + 1], c = tris[i + 2];
+                int ab = midpoint(a, b, points, midpoints), bc = midpoint(b, c, points, midpoints), ca = midpoint(c, a, points, midpoints);
+                for(int v : new int[]{a, ab, ca, b, bc, ab, c, ca, bc, ab, bc, ca}) next[n++] = v;
+            }
+            tris = next;
+        }
+        float[] verticies = new float[points.size() * 3];
+        for(int v = 0; v < points.size(); v++) System.arraycopy(points.get(v), 0, verticies, v * 3, 3);
+        float[] indicies = new float[tris.length];
+        for(int i = 0; i < tris.length; i++) indicies[i] = tris[i];
+        return new float[][]{verticies, indicies};
+    }
+    
+    private static void fail(String message)
+    {
+        System.err.println(message);
+        failed = true;
+    }
+    
+    private static int midpoint(int a, int b, ArrayList<float[]> points, HashMap<Long, Integer> midpoints)
+    {
+        long key = ((long) Math.min(a, b) << 32) | Math.max(a, b);
+        Integer cached = midpoints.get(key);
+        if(cached != null) return cached;
+        float[] pa = points.get(a), pb = points.get(b);
+        points.add(normalize(new float[]{pa[0] + pb[0], pa[1] + pb[1], pa[2] + pb[2]}));
+        midpoints.put(key, points.size() - 1);
+        return points.size() - 1;
+    }
+    
+    private static float[] normalize(float[] p)
+    {
+        float len = (float) Math.sqrt(p[0] * p[0] + p[1] * p[1] + p[2] * p[2]);
+        return new float[]{p[0] / len, p[1] / len, p[2] / len};
+    }
+    
+    private static int[] toIndicies(float[] values)
+    {
+        int[] ret = new int[values.length];
+        for(int i = 0; i < values.length; i++) ret[i] = (int) values[i];
+        return ret;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,166 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import org.lwjgl.util.vector.Vector2f;
+import org.lwjgl.util.vector.Vector3f;
+import wrath.client.graphics.ObjParser;
+
+/**
+ * A class used to internally measure the {@link wrath.client.graphics.ObjParser} against the line-by-line OBJ loader it replaced.
+ * A grid mesh is written to a temporary file and read by both parsers, without creating any OpenGL objects.
+ * Run with the width of the grid, in quads, as the first argument, 500 by default.
+ * @author Trent Spears
+ */
+public class ObjParserBenchmark
+{
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+    
+    public static void main(String[] args) throws IOException
+    {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        File file = File.createTempFile("benchmark", ".obj");
+        file.deleteOnExit();
+        writeGrid(file, side);
+        System.out.println("Wrote a grid of " + ((side + 1) * (side + 1)) + " verticies and " + (side * side * 2) + " triangles (" + (file.length() / 1024) + "KB).");
+        
+        long legacy = Long.MAX_VALUE, parser = Long.MAX_VALUE;
+        int legacyIndicies = 0, parserIndicies = 0;
+        for(int i = 0; i < WARMUP_RUNS + MEASURED_RUNS; i++)
+        {
+            System.gc();
+            long start = System.nanoTime();
+            legacyIndicies = parseLegacy(file).length;
+            long t = System.nanoTime() - start;
+            if(i >= WARMUP_RUNS) legacy = Math.min(legacy, t);
+            
+            System.gc();
+            start = System.nanoTime();
+            parserIndicies = ObjParser.parse(file).getIndicies().length;
+            t = System.nanoTime() - start;
+            if(i >= WARMUP_RUNS) parser = Math.min(parser, t);
+        }
+        
+        if(legacyIndicies != parserIndicies) System.out.println("Warning: the parsers read a different amount of indicies (" + legacyIndicies + " and " + parserIndicies + ")!");
+        System.out.println("Line parser: " + String.format("%.1f", legacy / 1000000.0) + "ms (best of " + MEASURED_RUNS + ")");
+        System.out.println("ObjParser: " + String.format("%.1f", parser / 1000000.0) + "ms (best of " + MEASURED_RUNS + ")");
+        System.out.println("Speedup: " + String.format("%.2f", (double) legacy / parser) + "x");
+    }
+    
+    /**
+     * The parsing done by Model.loadModel before the ObjParser, minus the OpenGL calls.
+     */
+    private static int[] parseLegacy(File file) throws IOException
+    {
+        ArrayList<String> f = new ArrayList<>();
+        ArrayList<String> v = new ArrayList<>();
+        ArrayList<String> vt = new ArrayList<>();
+        ArrayList<String> vn = new ArrayList<>();
+        String inp;
+        try(BufferedReader in = new BufferedReader(new FileReader(file)))
+        {
+            while((inp = in.readLine()) != null)
+            {
+                if(inp.startsWith("f ")) f.add(inp);
+                else if(inp.startsWith("v ")) v.add(inp);
+                else if(inp.startsWith("vt ")) vt.add(inp);
+                else if(inp.startsWith("vn ")) vn.add(inp);
+            }
+        }
+        ArrayList<String> src = new ArrayList<>();
+        src.addAll(v);
+        src.addAll(vt);
+        src.addAll(vn);
+        src.addAll(f);
+        
+        ArrayList<Vector3f> verticies = new ArrayList<>();
+        ArrayList<Vector2f> texCoords = new ArrayList<>();
+        ArrayList<Vector3f> normals = new ArrayList<>();
+        ArrayList<Integer> indicies = new ArrayList<>();
+        float[] narray = null;
+        float[] tarray = null;
+        for(String line : src)
+        {
+            String[] buf = line.split(" ");
+            if(line.startsWith("v ")) verticies.add(new Vector3f(Float.parseFloat(buf[1]), Float.parseFloat(buf[2]), Float.parseFloat(buf[3])));
+            else if(line.startsWith("vt ")) texCoords.add(new Vector2f(Float.parseFloat(buf[1]), Float.parseFloat(buf[2])));
+            else if(line.startsWith("vn ")) normals.add(new Vector3f(Float.parseFloat(buf[1]), Float.parseFloat(buf[2]), Float.parseFloat(buf[3])));
+            else if(line.startsWith("f "))
+            {
+                if(narray == null)
+                {
+                    narray = new float[verticies.size() * 3];
+                    tarray = new float[verticies.size() * 2];
+                }
+                for(int x = 1; x <= 3; x++)
+                {
+                    String[] curDat = buf[x].split("/");
+                    int ptr = Integer.parseInt(curDat[0]) - 1;
+                    indicies.add(ptr);
+                    Vector2f tex = texCoords.get(Integer.parseInt(curDat[1]) - 1);
+                    tarray[ptr * 2] = tex.x;
+                    tarray[ptr * 2 + 1] = 1 - tex.y;
+                    Vector3f norm = normals.get(Integer.parseInt(curDat[2]) - 1);
+                    narray[ptr * 3] = norm.x;
+                    narray[ptr * 3 + 1] = norm.y;
+                    narray[ptr * 3 + 2] = norm.z;
+                }
+            }
+        }
+        
+        float[] varray = new float[verticies.size() * 3];
+        int i = 0;
+        for(Vector3f ve : verticies)
+        {
+            varray[i++] = ve.x;
+            varray[i++] = ve.y;
+            varray[i++] = ve.z;
+        }
+        int[] iarray = new int[indicies.size()];
+        for(int z = 0; z < indicies.size(); z++) iarray[z] = indicies.get(z);
+        return iarray;
+    }
+    
+    private static void writeGrid(File file, int side) throws IOException
+    {
+        try(BufferedWriter out = new BufferedWriter(new FileWriter(file)))
+        {
+            for(int z = 0; z <= side; z++)
+                for(int x = 0; x <= side; x++) out.write("v " + (x * 0.1f) + " " + (float) Math.sin(x * 0.05 + z * 0.03) + " " + (z * -0.1f) + "\n");
+            for(int z = 0; z <= side; z++)
+                for(int x = 0; x <= side; x++) out.write("vt " + ((float) x / side) + " " + ((float) z / side) + "\n");
+            out.write("vn 0.0 1.0 0.0\n");
+            for(int z = 0; z < side; z++)
+                for(int x = 0; x < side; x++)
+                {
+                    int a = z * (side + 1) + x + 1;
+                    int b = a + side + 1;
+                    out.write("f " + a + "/" + a + "/1 " + b + "/" + b + "/1 " + (a + 1) + "/" + (a + 1) + "/1\n");
+                    out.write("f " + (a + 1) + "/" + (a + 1) + "/1 " + b + "/" + b + "/1 " + (b + 1) + "/" + (b + 1) + "/1\n");
+                }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,451 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import wrath.client.graphics.Color;
+import wrath.client.graphics.TextRenderer;
+
+/**
+ * Class to measure where the CPU time of each frame goes using named, nested scopes.
+ * Timings are stored in a ring buffer of the last few frames that is allocated once, the first time a frame is recorded, so recording a frame creates no garbage and a profiler that is never enabled costs no memory.
+ * Only scopes opened on the thread bound with {@link #bindThread()} are recorded, which is the thread running the game loop.
+ * @author Trent Spears
+ */
+public class Profiler
+{
+    public static final int SCOPE_FRAME = 0;
+    public static final int SCOPE_TICKS = 1;
+    public static final int SCOPE_TICK = 2;
+    public static final int SCOPE_SCHEDULER = 3;
+    public static final int SCOPE_GAME_TICK = 4;
+    public static final int SCOPE_PERSISTENT_INPUT = 5;
+    public static final int SCOPE_MAIN_THREAD_JOBS = 6;
+    public static final int SCOPE_RENDER = 7;
+    public static final int SCOPE_TERRAIN = 8;
+    public static final int SCOPE_ENTITIES = 9;
+    public static final int SCOPE_GAME_RENDER = 10;
+    public static final int SCOPE_GUI = 11;
+    public static final int SCOPE_SWAP_BUFFERS = 12;
+    public static final int SCOPE_POLL_EVENTS = 13;
+    public static final int SCOPE_FRAME_PACING = 14;
+    public static final int SCOPE_CULLING = 15;
+    public static final int SCOPE_ENTITY_INDEX = 16;
+    public static final int SCOPE_OCCLUSION = 17;
+    public static final int SCOPE_PREPARE = 18;
+    public static final int SCOPE_RENDER_THREAD_WAIT = 19;
+    
+    private static final String[] ENGINE_SCOPES = {"Frame", "Ticks", "Tick", "Scheduler", "onTick", "Persistent Input", "Main Thread Jobs", "Render",
+        "Terrain", "Entities", "Game Render", "GUI", "Swap Buffers", "Poll Events", "Frame Pacing", "Culling", "Entity Index", "Occlusion", "Prepare Entities", "Render Thread Wait"};
+    private static final int MAX_DEPTH = 64;
+    private static final int MAX_OVERLAY_LINES = 48;
+    private static final Color OVERLAY_COLOR = new Color(1f, 1f, 0.6f);
+    private static final float OVERLAY_FONT_SIZE = 0.35f;
+    private static final int OVERLAY_REFRESH_FRAMES = 30;
+    
+    private final int frameCapacity;
+    private final int eventsPerFrame;
+    
+    private int[] eventScope = null;
+    private int[] eventDepth = null;
+    private long[] eventStart = null;
+    private long[] eventEnd = null;
+    private int[] frameEvents = null;
+    private long[] frameStart = null;
+    private long[] frameEnd = null;
+    
+    private int frame = 0;
+    private int framesRecorded = 0;
+    private int base = 0;
+    private int count = 0;
+    private int depth = 0;
+    private final int[] stack = new int[MAX_DEPTH];
+    private long droppedEvents = 0;
+    
+    private volatile boolean enabled;
+    private volatile boolean overlay = false;
+    private boolean recording = false;
+    private Thread owner = null;
+    
+    private final HashMap<String, Integer> scopeIds = new HashMap<>();
+    private String[] scopeNames = new String[32];
+    private int scopeCount = 0;
+    
+    private long[] overlayTotals = new long[32];
+    private boolean[] overlayListed = new boolean[32];
+    private final int[] overlayOrder = new int[MAX_OVERLAY_LINES];
+    private String[] overlayLines = new String[0];
+    private int overlayAge = OVERLAY_REFRESH_FRAMES;
+    
+    /**
+     * Constructor.
+     * @param enabled If true, frames will be recorded from the start.
+     * @param frames The amount of frames to keep in the ring buffer.
+     * @param eventsPerFrame The maximum amount of scopes that can be recorded in one frame. Scopes past this amount are dropped.
+     */
+    public Profiler(boolean enabled, int frames, int eventsPerFrame)
+    {
+        this.enabled = enabled;
+        this.frameCapacity = Math.max(1, frames);
+        this.eventsPerFrame = Math.max(1, eventsPerFrame);
+        for(String name : ENGINE_SCOPES) registerScope(name);
+    }
+    
+    private void allocate()
+    {
+        //Every reader checks that a frame was recorded first, so the buffers are only needed once recording starts.
+        eventScope = new int[frameCapacity * eventsPerFrame];
+        eventDepth = new int[frameCapacity * eventsPerFrame];
+        eventStart = new long[frameCapacity * eventsPerFrame];
+        eventEnd = new long[frameCapacity * eventsPerFrame];
+        frameEvents = new int[frameCapacity];
+        frameStart = new long[frameCapacity];
+        frameEnd = new long[frameCapacity];
+    }
+    
+    /**
+     * Starts timing a scope. Every call must be matched by a call to {@link #end()}.
+     * @param scope The ID of the scope, from {@link #registerScope(java.lang.String)} or one of the engine's SCOPE constants.
+     */
+    public void begin(int scope)
+    {
+        if(!recording || Thread.currentThread() != owner) return;
+        
+        int index = -1;
+        if(count < eventsPerFrame && depth < MAX_DEPTH)
+        {
+            index = base + count++;
+            eventScope[index] = scope;
+            eventDepth[index] = depth;
+            eventStart[index] = System.nanoTime();
+            eventEnd[index] = eventStart[index];
+        }
+        else droppedEvents++;
+        
+        if(depth < MAX_DEPTH) stack[depth] = index;
+        depth++;
+    }
+    
+    /**
+     * Starts recording a new frame.
+     * Called automatically by the {@link wrath.client.Game} loop.
+     */
+    public void beginFrame()
+    {
+        recording = enabled && Thread.currentThread() == owner;
+        if(!recording) return;
+        if(eventScope == null) allocate();
+        
+        base = frame * eventsPerFrame;
+        count = 0;
+        depth = 0;
+        frameStart[frame] = System.nanoTime();
+        begin(SCOPE_FRAME);
+    }
+    
+    /**
+     * Binds the profiler to the current thread. Scopes opened on any other thread are ignored.
+     * Called automatically by the {@link wrath.client.Game} loop.
+     */
+    public void bindThread()
+    {
+        owner = Thread.currentThread();
+    }
+    
+    /**
+     * Stops timing the scope that was most recently started with {@link #begin(int)}.
+     */
+    public void end()
+    {
+        if(!recording || Thread.currentThread() != owner || depth == 0) return;
+        
+        depth--;
+        if(depth < MAX_DEPTH && stack[depth] != -1) eventEnd[stack[depth]] = System.nanoTime();
+    }
+    
+    /**
+     * Finishes recording the current frame, closing any scope that is still open.
+     * Called automatically by the {@link wrath.client.Game} loop.
+     */
+    public void endFrame()
+    {
+        if(!recording) return;
+        
+        while(depth > 0) end();
+        frameEnd[frame] = System.nanoTime();
+        frameEvents[frame] = count;
+        frame = (frame + 1) % frameCapacity;
+        if(framesRecorded < frameCapacity) framesRecorded++;
+        recording = false;
+        
+        if(overlay && ++overlayAge >= OVERLAY_REFRESH_FRAMES) updateOverlay();
+    }
+    
+    /**
+     * Writes the recorded frames to a file in the Chrome trace event format, which can be opened with chrome://tracing or similar viewers.
+     * The trace is built on the calling thread and written to 'etc/profiles/' by the {@link wrath.client.JobSystem}.
+     * @param saveToName The name of the file to save, without the extension.
+     */
+    public void exportChromeTrace(String saveToName)
+    {
+        final String trace = toChromeTrace();
+        Game.getCurrentInstance().getJobSystem().submit(() ->
+        {
+            File profileDir = new File("etc/profiles");
+            if(!profileDir.exists()) profileDir.mkdirs();
+            File saveTo = new File("etc/profiles/" + saveToName + ".json");
+            try(FileWriter out = new FileWriter(saveTo))
+            {
+                out.write(trace);
+                Game.getCurrentInstance().getLogger().println("Saved profile '" + saveTo.getName() + "'!");
+            }
+            catch(IOException e)
+            {
+                System.err.println("Could not save profile to '" + saveTo.getName() + "'! I/O Error has occured!");
+            }
+        });
+    }
+    
+    /**
+     * Gets the average time, in nanoseconds, spent in a scope per frame over the recorded frames.
+     * @param scope The ID of the scope.
+     * @return Returns the average time spent in the scope per frame, in nanoseconds.
+     */
+    public double getAverageScopeTime(int scope)
+    {
+        if(framesRecorded == 0) return 0;
+        
+        long total = 0;
+        for(int f = 0; f < framesRecorded; f++)
+        {
+            int start = f * eventsPerFrame;
+            for(int i = start; i < start + frameEvents[f]; i++)
+                if(eventScope[i] == scope) total += eventEnd[i] - eventStart[i];
+        }
+        return (double) total / framesRecorded;
+    }
+    
+    /**
+     * Gets the amount of scopes that could not be recorded because a frame ran out of space or nested too deeply.
+     * @return Returns the amount of dropped scopes since the profiler was created.
+     */
+    public long getDroppedEvents()
+    {
+        return droppedEvents;
+    }
+    
+    /**
+     * Gets the amount of frames the ring buffer holds.
+     * @return Returns the amount of frames the ring buffer holds.
+     */
+    public int getFrameCapacity()
+    {
+        return frameCapacity;
+    }
+    
+    /**
+     * Gets the time, in nanoseconds, of the last recorded frame.
+     * @return Returns the time of the last recorded frame, in nanoseconds.
+     */
+    public long getLastFrameTime()
+    {
+        if(framesRecorded == 0) return 0;
+        int last = (frame + frameCapacity - 1) % frameCapacity;
+        return frameEnd[last] - frameStart[last];
+    }
+    
+    /**
+     * Gets the amount of frames currently held by the ring buffer.
+     * @return Returns the amount of recorded frames, up to {@link #getFrameCapacity()}.
+     */
+    public int getRecordedFrames()
+    {
+        return framesRecorded;
+    }
+    
+    /**
+     * Gets the name of a scope.
+     * @param scope The ID of the scope.
+     * @return Returns the name the scope was registered with.
+     */
+    public String getScopeName(int scope)
+    {
+        return scopeNames[scope];
+    }
+    
+    /**
+     * If true, frames are being recorded.
+     * @return Returns true if the profiler is recording frames.
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+    
+    /**
+     * If true, the per-scope breakdown will be rendered on the screen.
+     * @return Returns true if the profiler overlay is shown.
+     */
+    public boolean isOverlayEnabled()
+    {
+        return overlay;
+    }
+    
+    /**
+     * Gets the ID of a named scope, registering it if it does not exist yet.
+     * IDs should be looked up once and stored, as this method is not free.
+     * @param name The name of the scope to display in the overlay and trace.
+     * @return Returns the ID to pass to {@link #begin(int)}.
+     */
+    public synchronized int registerScope(String name)
+    {
+        Integer id = scopeIds.get(name);
+        if(id != null) return id;
+        
+        if(scopeCount == scopeNames.length)
+        {
+            scopeNames = Arrays.copyOf(scopeNames, scopeCount * 2);
+            overlayTotals = new long[scopeCount * 2];
+            overlayListed = new boolean[scopeCount * 2];
+        }
+        scopeNames[scopeCount] = name;
+        scopeIds.put(name, scopeCount);
+        return scopeCount++;
+    }
+    
+    /**
+     * Renders the per-scope breakdown to the screen, if the overlay is enabled.
+     * Called automatically by the {@link wrath.client.Game.RenderManager}.
+     * @param text The {@link wrath.client.graphics.TextRenderer} to draw with.
+     */
+    public void renderOverlay(TextRenderer text)
+    {
+        if(!overlay || text == null) return;
+        
+        float y = 0.92f;
+        for(String line : overlayLines)
+        {
+            text.renderString(line, -1f, y, OVERLAY_FONT_SIZE, OVERLAY_COLOR);
+            y -= OVERLAY_FONT_SIZE * 0.1f;
+        }
+    }
+    
+    /**
+     * Starts or stops recording frames. Takes effect on the next frame.
+     * @param enabled If true, frames will be recorded.
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        if(!enabled) overlay = false;
+    }
+    
+    /**
+     * Shows or hides the per-scope breakdown. Showing the overlay also enables recording.
+     * @param overlay If true, the per-scope breakdown will be rendered on the screen.
+     */
+    public void setOverlayEnabled(boolean overlay)
+    {
+        this.overlay = overlay;
+        if(overlay)
+        {
+            enabled = true;
+            overlayAge = OVERLAY_REFRESH_FRAMES;
+        }
+    }
+    
+    /**
+     * Builds a Chrome trace event JSON document of the recorded frames, oldest first.
+     * @return Returns the recorded frames in the Chrome trace event format.
+     */
+    public String toChromeTrace()
+    {
+        StringBuilder b = new StringBuilder("{\"traceEvents\":[");
+        //The oldest slot is being overwritten while a frame is recorded, so it is skipped.
+        int oldest = framesRecorded < frameCapacity ? 0 : frame;
+        int skip = recording && framesRecorded == frameCapacity ? 1 : 0;
+        long origin = framesRecorded <= skip ? 0 : frameStart[(oldest + skip) % frameCapacity];
+        boolean first = true;
+        
+        for(int n = skip; n < framesRecorded; n++)
+        {
+            int f = (oldest + n) % frameCapacity;
+            int start = f * eventsPerFrame;
+            for(int i = start; i < start + frameEvents[f]; i++)
+            {
+                if(!first) b.append(',');
+                first = false;
+                b.append("{\"name\":\"");
+                String name = scopeNames[eventScope[i]];
+                for(int c = 0; c < name.length(); c++)
+                {
+                    char ch = name.charAt(c);
+                    if(ch == '"' || ch == '\\') b.append('\\');
+                    if(ch >= ' ') b.append(ch);
+                }
+                b.append("\",\"cat\":\"wrath\",\"ph\":\"X\",\"pid\":1,\"tid\":1,\"ts\":").append((eventStart[i] - origin) / 1000.0);
+                b.append(",\"dur\":").append((eventEnd[i] - eventStart[i]) / 1000.0).append('}');
+            }
+        }
+        
+        return b.append("],\"displayTimeUnit\":\"ms\"}").toString();
+    }
+    
+    /**
+     * Rebuilds the overlay text from the recorded frames.
+     * Scopes are listed in the order they were opened in the last frame, indented by their depth.
+     */
+    private void updateOverlay()
+    {
+        overlayAge = 0;
+        if(framesRecorded == 0) return;
+        
+        Arrays.fill(overlayTotals, 0, scopeCount, 0);
+        Arrays.fill(overlayListed, 0, scopeCount, false);
+        for(int f = 0; f < framesRecorded; f++)
+        {
+            int start = f * eventsPerFrame;
+            for(int i = start; i < start + frameEvents[f]; i++) overlayTotals[eventScope[i]] += eventEnd[i] - eventStart[i];
+        }
+        
+        int last = (frame + frameCapacity - 1) % frameCapacity;
+        int start = last * eventsPerFrame;
+        int lines = 0;
+        for(int i = start; i < start + frameEvents[last] && lines < MAX_OVERLAY_LINES; i++)
+        {
+            if(overlayListed[eventScope[i]]) continue;
+            overlayListed[eventScope[i]] = true;
+            overlayOrder[lines++] = i;
+        }
+        
+        String[] text = new String[lines];
+        for(int l = 0; l < lines; l++)
+        {
+            int i = overlayOrder[l];
+            StringBuilder b = new StringBuilder();
+            for(int d = 0; d < eventDepth[i]; d++) b.append("  ");
+            b.append(scopeNames[eventScope[i]]).append(": ").append(String.format("%.2f", overlayTotals[eventScope[i]] / (double) framesRecorded / 1000000.0)).append(" ms");
+            text[l] = b.toString();
+        }
+        overlayLines = text;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,146 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import wrath.client.enums.RenderMode;
+import wrath.client.events.GameEventHandler;
+import wrath.client.graphics.Model;
+import wrath.client.graphics.RenderQueue;
+
+/**
+ * A class used to internally check that the {@link wrath.client.graphics.RenderQueue} creates no garbage once it has grown to the size of a frame.
+ * The queue is warmed up, then filled, sorted, walked and reset for every measured frame, and the bytes allocated by the thread meanwhile are printed.
+ * If the JVM cannot measure allocated bytes, the amount of garbage collections is compared instead. The process exits with status 1 if anything was allocated.
+ * Run with the amount of draws per frame as the first argument, 10000 by default.
+ * @author Trent Spears
+ */
+public class RenderQueueBenchmark extends Game implements GameEventHandler
+{
+    private static final int MODELS = 16;
+    private static final int WARMUP_FRAMES = 200;
+    private static final int MEASURED_FRAMES = 1000;
+    
+    public static void main(String[] args)
+    {
+        int draws = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        new RenderQueueBenchmark(draws).start(new String[0]);
+    }
+    
+    private final int draws;
+    private final RenderQueue<Model> queue = new RenderQueue<>();
+    private final Model[] models = new Model[MODELS];
+    private float[] depths;
+    private long checksum = 0;
+    
+    public RenderQueueBenchmark(int draws)
+    {
+        super("Render Queue Benchmark", "INDEV", 60f, RenderMode.Mode3D);
+        this.draws = Math.max(1, draws);
+        getEventManager().addGameEventHandler(this);
+    }
+    
+    private static long getCollections()
+    {
+        long count = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) count += Math.max(0, gc.getCollectionCount());
+        return count;
+    }
+    
+    private void runFrame()
+    {
+        queue.reset();
+        for(int i = 0; i < draws; i++)
+        {
+            Model m = models[i % MODELS];
+            queue.add(m, m, RenderQueue.createSortKey(RenderQueue.PASS_ENTITIES, m, i & 3, depths[i]), i);
+        }
+        queue.sort();
+        for(int p = 0; p < queue.size(); p++) checksum += queue.getData(queue.getSorted(p));
+    }
+    
+    @Override
+    public void onGameClose() 
+    {
+        
+    }
+    
+    @Override
+    public void onGameOpen() 
+    {
+        //The models are only needed for their shader, texture and vertex array IDs, so they are single triangles.
+        for(int i = 0; i < MODELS; i++) models[i] = Model.createModel("benchmark_triangle_" + i, new float[]{0, 0, 0, 1, 0, 0, 0, 1, 0}, new int[]{0, 1, 2}, new float[]{0, 0, 1, 0, 0, 1, 0, 0, 1}, false);
+        Random rand = new Random(42);
+        depths = new float[draws];
+        for(int i = 0; i < draws; i++) depths[i] = rand.nextFloat() * 10000f;
+        
+        for(int f = 0; f < WARMUP_FRAMES; f++) runFrame();
+        
+        com.sun.management.ThreadMXBean threads = null;
+        if(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)
+        {
+            threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if(!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) threads = null;
+        }
+        long thread = Thread.currentThread().getId();
+        long bytesBefore = threads == null ? 0 : threads.getThreadAllocatedBytes(thread);
+        long gcBefore = getCollections();
+        long start = System.nanoTime();
+        for(int f = 0; f < MEASURED_FRAMES; f++) runFrame();
+        long time = System.nanoTime() - start;
+        long bytes = threads == null ? -1 : threads.getThreadAllocatedBytes(thread) - bytesBefore;
+        long collections = getCollections() - gcBefore;
+        
+        System.out.println("Queued, sorted and reset " + draws + " draws for " + MEASURED_FRAMES + " frames in " + String.format("%.3f", time / 1000000.0 / MEASURED_FRAMES) + "ms/frame (checksum " + checksum + ").");
+        if(bytes >= 0) System.out.println("Allocated: " + bytes + " bytes");
+        else System.out.println("Allocated bytes are not measurable on this JVM, garbage collections: " + collections);
+        if(bytes > 0 || (bytes < 0 && collections > 0))
+        {
+            System.err.println("FAILED: the render queue created garbage at steady state!");
+            System.exit(1);
+        }
+        System.out.println("PASSED: no garbage at steady state.");
+        stop();
+    }
+    
+    @Override
+    public void onLoadJavaPlugin(Object loadedObject) 
+    {
+        
+    }
+    
+    @Override
+    public void onTick() 
+    {
+        
+    }
+    
+    @Override
+    public void onWindowOpen() 
+    {
+        
+    }
+    
+    @Override
+    public void onResolutionChange(int oldWidth, int oldHeight, int newWidth, int newHeight) 
+    {
+        
+    }
+}
\ No newline at end of file
@@ -0,0 +1,186 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.lwjgl.glfw.GLFW;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.system.MemoryUtil;
+import wrath.client.graphics.CommandList;
+
+/**
+ * Class to own the OpenGL context of a window on a thread of its own, which replays the {@link wrath.client.graphics.CommandList}s recorded by the game loop and swaps the buffers.
+ * Two lists are passed back and forth, so the game loop records the next frame while the last one is being submitted, and is never more than one frame ahead.
+ * @author Trent Spears
+ */
+public class RenderThread
+{
+    private static final double SMOOTHING = 0.05;
+    
+    private final Game game;
+    private final long window;
+    private final ArrayBlockingQueue<CommandList> free = new ArrayBlockingQueue<>(2);
+    private final ArrayBlockingQueue<CommandList> ready = new ArrayBlockingQueue<>(2);
+    private final Thread thread;
+    
+    private volatile long framesSubmitted = 0;
+    private volatile double avgSubmitTime = 0;
+    private double avgWaitTime = 0;
+    
+    /**
+     * Constructor.
+     * The OpenGL context of the window must not be current on any thread when {@link #start()} is called.
+     * @param game The {@link wrath.client.Game} the thread renders for.
+     * @param window The GLFW ID of the window whose context the thread owns.
+     */
+    public RenderThread(Game game, long window)
+    {
+        this.game = game;
+        this.window = window;
+        free.add(new CommandList());
+        free.add(new CommandList());
+        this.thread = new Thread(this::run, game.getTitle() + " Render Thread");
+        thread.setDaemon(true);
+    }
+    
+    /**
+     * Waits for a {@link wrath.client.graphics.CommandList} that is not being replayed, to record the next frame into.
+     * @return Returns an empty {@link wrath.client.graphics.CommandList}, or null if the thread has stopped.
+     */
+    public CommandList acquire()
+    {
+        long start = System.nanoTime();
+        try
+        {
+            CommandList list;
+            while((list = free.poll(100, TimeUnit.MILLISECONDS)) == null) if(!thread.isAlive()) return null;
+            long wait = System.nanoTime() - start;
+            avgWaitTime = framesSubmitted == 0 ? wait : avgWaitTime + (wait - avgWaitTime) * SMOOTHING;
+            return list;
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+    
+    /**
+     * Gets the average time, in nanoseconds, the render thread spent replaying and swapping a frame.
+     * @return Returns the smoothed submit time per frame, in nanoseconds.
+     */
+    public double getAverageSubmitTime()
+    {
+        return avgSubmitTime;
+    }
+    
+    /**
+     * Gets the average time, in nanoseconds, the game loop waited for the render thread before it could record a frame.
+     * @return Returns the smoothed wait time per frame, in nanoseconds.
+     */
+    public double getAverageWaitTime()
+    {
+        return avgWaitTime;
+    }
+    
+    /**
+     * Gets the amount of frames the render thread has submitted and swapped.
+     * @return Returns the amount of submitted frames.
+     */
+    public long getFramesSubmitted()
+    {
+        return framesSubmitted;
+    }
+    
+    /**
+     * If true, the thread is running and replaying frames.
+     * @return Returns true if the render thread is alive.
+     */
+    public boolean isRunning()
+    {
+        return thread.isAlive();
+    }
+    
+    private void run()
+    {
+        game.bindToCurrentThread();
+        GLFW.glfwMakeContextCurrent(window);
+        GL.createCapabilities();
+        try
+        {
+            while(true)
+            {
+                CommandList list = ready.take();
+                long start = System.nanoTime();
+                list.replay();
+                GL11.glFlush();
+                GLFW.glfwSwapBuffers(window);
+                list.reset();
+                long time = System.nanoTime() - start;
+                avgSubmitTime = framesSubmitted == 0 ? time : avgSubmitTime + (time - avgSubmitTime) * SMOOTHING;
+                framesSubmitted++;
+                free.put(list);
+            }
+        }
+        catch(InterruptedException e){}
+        catch(RuntimeException e)
+        {
+            System.err.println("Could not replay frame on the render thread! " + e);
+        }
+        finally
+        {
+            GLFW.glfwMakeContextCurrent(MemoryUtil.NULL);
+        }
+    }
+    
+    /**
+     * Starts the thread, which takes over the OpenGL context of the window.
+     */
+    public void start()
+    {
+        thread.start();
+    }
+    
+    /**
+     * Stops the thread once it has finished the frame it is replaying, and waits for it to let go of the OpenGL context.
+     * Frames that were submitted but not yet replayed are dropped.
+     */
+    public void stop()
+    {
+        thread.interrupt();
+        try
+        {
+            thread.join();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Hands a recorded frame to the thread to replay and swap.
+     * @param list The {@link wrath.client.graphics.CommandList} returned by {@link #acquire()}, holding the frame.
+     */
+    public void submit(CommandList list)
+    {
+        if(!ready.offer(list)) System.err.println("Could not submit frame to the render thread! Queue is full!");
+    }
+}
\ No newline at end of file
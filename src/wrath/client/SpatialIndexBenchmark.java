@@ -0,0 +1,198 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client;
+
+import java.util.ArrayList;
+import java.util.Random;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+import wrath.client.graphics.Frustum;
+
+/**
+ * A class used to internally measure the {@link wrath.client.AABBTree} against testing every object, the way spatial queries were done before the tree existed.
+ * Run with the amount of objects as the first argument, 100000 by default.
+ * @author Trent Spears
+ */
+public class SpatialIndexBenchmark
+{
+    private static final float WORLD_SIZE = 2000f;
+    private static final int QUERIES = 1000;
+    
+    private static float[] minX, minY, minZ, maxX, maxY, maxZ;
+    
+    public static void main(String[] args)
+    {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        Random rand = new Random(42);
+        minX = new float[count];
+        minY = new float[count];
+        minZ = new float[count];
+        maxX = new float[count];
+        maxY = new float[count];
+        maxZ = new float[count];
+        
+        AABBTree<Integer> tree = new AABBTree<>(0f);
+        int[] proxies = new int[count];
+        long start = System.nanoTime();
+        for(int i = 0; i < count; i++)
+        {
+            float r = 0.5f + rand.nextFloat() * 2f;
+            float x = rand.nextFloat() * WORLD_SIZE, y = rand.nextFloat() * 100f, z = rand.nextFloat() * WORLD_SIZE;
+            setBox(i, x, y, z, r);
+            proxies[i] = tree.insert(i, minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i]);
+        }
+        System.out.println("Inserted " + count + " objects in " + ms(System.nanoTime() - start) + "ms, tree height " + tree.getHeight() + ".");
+        
+        ArrayList<Integer> out = new ArrayList<>();
+        float[][] q = new float[QUERIES][7];
+        for(float[] p : q) for(int i = 0; i < p.length; i++) p[i] = rand.nextFloat();
+        
+        //Box queries, 50 units wide.
+        long treeTime = 0, bruteTime = 0, treeHits = 0, bruteHits = 0;
+        for(float[] p : q)
+        {
+            float x = p[0] * WORLD_SIZE, y = p[1] * 100f, z = p[2] * WORLD_SIZE;
+            out.clear();
+            start = System.nanoTime();
+            treeHits += tree.queryBox(x - 25, y - 25, z - 25, x + 25, y + 25, z + 25, out);
+            treeTime += System.nanoTime() - start;
+            start = System.nanoTime();
+            for(int i = 0; i < count; i++) if(!(minX[i] > x + 25 || maxX[i] < x - 25 || minY[i] > y + 25 || maxY[i] < y - 25 || minZ[i] > z + 25 || maxZ[i] < z - 25)) bruteHits++;
+            bruteTime += System.nanoTime() - start;
+        }
+        report("Box", treeTime, bruteTime, treeHits, bruteHits);
+        
+        //Sphere queries, radius 30.
+        treeTime = 0; bruteTime = 0; treeHits = 0; bruteHits = 0;
+        for(float[] p : q)
+        {
+            float x = p[0] * WORLD_SIZE, y = p[1] * 100f, z = p[2] * WORLD_SIZE;
+            out.clear();
+            start = System.nanoTime();
+            treeHits += tree.querySphere(x, y, z, 30, out);
+            treeTime += System.nanoTime() - start;
+            start = System.nanoTime();
+            for(int i = 0; i < count; i++)
+            {
+                float dx = Math.max(0, Math.max(minX[i] - x, x - maxX[i]));
+                float dy = Math.max(0, Math.max(minY[i] - y, y - maxY[i]));
+                float dz = Math.max(0, Math.max(minZ[i] - z, z - maxZ[i]));
+                if(dx * dx + dy * dy + dz * dz <= 900) bruteHits++;
+            }
+            bruteTime += System.nanoTime() - start;
+        }
+        report("Sphere", treeTime, bruteTime, treeHits, bruteHits);
+        
+        //Ray queries, 500 units long, in random directions.
+        treeTime = 0; bruteTime = 0; treeHits = 0; bruteHits = 0;
+        for(float[] p : q)
+        {
+            float x = p[0] * WORLD_SIZE, y = p[1] * 100f, z = p[2] * WORLD_SIZE;
+            float dx = p[3] - 0.5f, dy = (p[4] - 0.5f) * 0.1f, dz = p[5] - 0.5f;
+            float len = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+            dx /= len; dy /= len; dz /= len;
+            out.clear();
+            start = System.nanoTime();
+            treeHits += tree.queryRay(x, y, z, dx, dy, dz, 500, out);
+            treeTime += System.nanoTime() - start;
+            start = System.nanoTime();
+            for(int i = 0; i < count; i++) if(rayHits(i, x, y, z, 1f / dx, 1f / dy, 1f / dz, 500)) bruteHits++;
+            bruteTime += System.nanoTime() - start;
+        }
+        report("Ray", treeTime, bruteTime, treeHits, bruteHits);
+        
+        //Frustum queries, looking around from random points like a player camera.
+        treeTime = 0; bruteTime = 0; treeHits = 0; bruteHits = 0;
+        Frustum frustum = new Frustum();
+        Matrix4f projection = createProjection(70f, 16f / 9f, 0.1f, 300f);
+        for(float[] p : q)
+        {
+            frustum.update(projection, ClientUtils.createViewMatrix(new Vector3f(p[0] * WORLD_SIZE, 50f, p[2] * WORLD_SIZE), new Vector3f(p[4] * 30f - 15f, p[5] * 360f, 0)));
+            out.clear();
+            start = System.nanoTime();
+            treeHits += tree.queryFrustum(frustum, out);
+            treeTime += System.nanoTime() - start;
+            start = System.nanoTime();
+            for(int i = 0; i < count; i++) if(frustum.intersectsBox(minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i])) bruteHits++;
+            bruteTime += System.nanoTime() - start;
+        }
+        report("Frustum", treeTime, bruteTime, treeHits, bruteHits);
+        
+        //Moving a tenth of the objects a short distance every frame, as ticks would, in a tree with the default EntityIndexMargin.
+        tree = new AABBTree<>(1f);
+        for(int i = 0; i < count; i++) proxies[i] = tree.insert(i, minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i]);
+        start = System.nanoTime();
+        int reinserted = 0;
+        for(int frame = 0; frame < 100; frame++)
+        {
+            for(int i = frame % 10; i < count; i += 10)
+            {
+                float r = (maxX[i] - minX[i]) / 2;
+                setBox(i, minX[i] + r + rand.nextFloat() - 0.5f, minY[i] + r, minZ[i] + r + rand.nextFloat() - 0.5f, r);
+                if(tree.move(proxies[i], minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i])) reinserted++;
+            }
+        }
+        System.out.println("Moved " + (count / 10) + " objects per frame for 100 frames in " + ms(System.nanoTime() - start) + "ms (" + reinserted + " re-insertions), tree height " + tree.getHeight() + ".");
+    }
+    
+    private static Matrix4f createProjection(float fov, float aspectRatio, float near, float far)
+    {
+        //Same as ClientUtils.createProjectionMatrix(float), which needs an open window.
+        float yscale = (float)(1f / Math.tan(Math.toRadians(fov / 2f))) * aspectRatio;
+        Matrix4f ret = new Matrix4f();
+        ret.m00 = yscale / aspectRatio;
+        ret.m11 = yscale;
+        ret.m22 = -((far + near) / (far - near));
+        ret.m23 = -1;
+        ret.m32 = -((2 * far * near) / (far - near));
+        ret.m33 = 0f;
+        return ret;
+    }
+    
+    private static String ms(long nanos)
+    {
+        return String.format("%.3f", nanos / 1000000.0);
+    }
+    
+    private static boolean rayHits(int i, float ox, float oy, float oz, float invX, float invY, float invZ, float maxDistance)
+    {
+        float t1 = (minX[i] - ox) * invX, t2 = (maxX[i] - ox) * invX;
+        float tmin = Math.min(t1, t2), tmax = Math.max(t1, t2);
+        t1 = (minY[i] - oy) * invY; t2 = (maxY[i] - oy) * invY;
+        tmin = Math.max(tmin, Math.min(t1, t2)); tmax = Math.min(tmax, Math.max(t1, t2));
+        t1 = (minZ[i] - oz) * invZ; t2 = (maxZ[i] - oz) * invZ;
+        tmin = Math.max(tmin, Math.min(t1, t2)); tmax = Math.min(tmax, Math.max(t1, t2));
+        return !(tmax < Math.max(tmin, 0) || tmin > maxDistance);
+    }
+    
+    private static void report(String query, long treeTime, long bruteTime, long treeHits, long bruteHits)
+    {
+        System.out.println(query + " queries: tree " + ms(treeTime / QUERIES) + "ms, brute force " + ms(bruteTime / QUERIES) + "ms per query ("
+                + String.format("%.1f", (double) bruteTime / Math.max(1, treeTime)) + "x), " + (treeHits / QUERIES) + " results on average" + (treeHits == bruteHits ? "." : ", MISMATCH with brute force (" + (bruteHits / QUERIES) + ")!"));
+    }
+    
+    private static void setBox(int i, float x, float y, float z, float r)
+    {
+        minX[i] = x - r;
+        minY[i] = y - r;
+        minZ[i] = z - r;
+        maxX[i] = x + r;
+        maxY[i] = y + r;
+        maxZ[i] = z + r;
+    }
+}
\ No newline at end of file
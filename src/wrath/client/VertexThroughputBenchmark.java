@@ -0,0 +1,226 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+import wrath.client.enums.RenderMode;
+import wrath.client.events.GameEventHandler;
+import wrath.client.graphics.Model;
+import wrath.client.graphics.ShaderProgram;
+
+/**
+ * A class used to internally measure the vertex throughput of the default shader against the shader it replaced, which found the camera position with an inverse of the view matrix on every vertex.
+ * A grid of dense spheres is drawn with both shaders, one draw per sphere, and the average frame time of each is printed before the game stops.
+ * Run with the amount of spheres per side of the grid as the first argument, 8 by default. Runs under Mesa's software renderer with LIBGL_ALWAYS_SOFTWARE=1.
+ * @author Trent Spears
+ */
+public class VertexThroughputBenchmark extends Game implements GameEventHandler
+{
+    private static final int RINGS = 128;
+    private static final int SEGMENTS = 256;
+    private static final int WARMUP_FRAMES = 30;
+    private static final int MEASURED_FRAMES = 120;
+    
+    //The vertex shader as it was before the camera position came from the frame uniform block.
+    private static final String LEGACY_VERTEX_SHADER = "#version 330 core\n\n"
+            + "in vec3 in_Normals;\nin vec3 in_Position;\nin vec2 in_TextureCoord;\n\n"
+            + "out vec2 pass_TextureCoord;\nout vec3 pass_SurfNormal;\nout vec3 pass_ToLightVector;\nout vec3 pass_ToCameraVector;\n\n"
+            + "uniform mat4 transformationMatrix;\nuniform mat4 projectionMatrix;\nuniform mat4 viewMatrix;\nuniform vec3 lightPosition = vec3(0.0, 10.0, 0.0);\n\n"
+            + "void main(void)\n{\n"
+            + "    vec4 position = transformationMatrix * vec4(in_Position, 1.0);\n"
+            + "    gl_Position = projectionMatrix * viewMatrix * position;\n"
+            + "    pass_TextureCoord = in_TextureCoord;\n"
+            + "    pass_SurfNormal = (transformationMatrix * vec4(in_Normals, 0.0)).xyz;\n"
+            + "    pass_ToLightVector = lightPosition - position.xyz;\n"
+            + "    pass_ToCameraVector = (inverse(viewMatrix) * vec4(0.0, 0.0, 0.0, 1.0)).xyz - position.xyz;\n"
+            + "}\n";
+    
+    public static void main(String[] args)
+    {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        new VertexThroughputBenchmark(side).start(new String[]{"DisplayVsync=false"});
+    }
+    
+    private final int side;
+    private Model sphere;
+    private Matrix4f[] transforms;
+    private ShaderProgram defaultShader, legacyShader;
+    private int frame = 0;
+    private int phase = 0;
+    private long phaseStart;
+    private final double[] frameTimes = new double[2];
+    
+    public VertexThroughputBenchmark(int side)
+    {
+        super("Vertex Throughput Benchmark", "INDEV", 60f, RenderMode.Mode3D);
+        this.side = Math.max(1, side);
+        getEventManager().addGameEventHandler(this);
+    }
+    
+    private static Model createSphere()
+    {
+        float[] verticies = new float[(RINGS + 1) * (SEGMENTS + 1) * 3];
+        int[] indicies = new int[RINGS * SEGMENTS * 6];
+        int v = 0;
+        for(int r = 0; r <= RINGS; r++)
+        {
+            double theta = Math.PI * r / RINGS;
+            for(int s = 0; s <= SEGMENTS; s++)
+            {
+                double phi = 2 * Math.PI * s / SEGMENTS;
+                verticies[v++] = (float)(Math.sin(theta) * Math.cos(phi));
+                verticies[v++] = (float) Math.cos(theta);
+                verticies[v++] = (float)(Math.sin(theta) * Math.sin(phi));
+            }
+        }
+        
+        int i = 0;
+        for(int r = 0; r < RINGS; r++)
+            for(int s = 0; s < SEGMENTS; s++)
+            {
+                int a = r * (SEGMENTS + 1) + s;
+                int b = a + SEGMENTS + 1;
+                indicies[i++] = a;
+                indicies[i++] = b;
+                indicies[i++] = a + 1;
+                indicies[i++] = a + 1;
+                indicies[i++] = b;
+                indicies[i++] = b + 1;
+            }
+        //The sphere has a radius of 1 around the origin, so its normals are its positions.
+        //The sphere is drawn at full detail, so simplifying it into levels of detail would only slow down the start.
+        return Model.createModel("benchmark_sphere", verticies, indicies, verticies.clone(), true, false);
+    }
+    
+    private static ShaderProgram loadLegacyShader()
+    {
+        try
+        {
+            File vert = File.createTempFile("legacyshader", ".vert");
+            vert.deleteOnExit();
+            try(FileWriter out = new FileWriter(vert))
+            {
+                out.write(LEGACY_VERTEX_SHADER);
+            }
+            return ShaderProgram.loadShaderProgram(vert, new File("assets/shaders/defaultshader.frag"));
+        }
+        catch(IOException e)
+        {
+            System.err.println("Could not write the legacy benchmark shader! I/O Error!");
+            return null;
+        }
+    }
+    
+    private void report()
+    {
+        long verticies = (long)(RINGS + 1) * (SEGMENTS + 1) * transforms.length;
+        String[] names = {"Frame uniforms", "Per-vertex inverse"};
+        System.out.println("Drew " + transforms.length + " spheres of " + ((RINGS + 1) * (SEGMENTS + 1)) + " verticies each, " + MEASURED_FRAMES + " frames per shader.");
+        for(int i = 0; i < names.length; i++) System.out.println(names[i] + ": " + String.format("%.3f", frameTimes[i]) + "ms/frame, " + String.format("%.1f", verticies / frameTimes[i] / 1000.0) + "M verticies/s");
+        System.out.println("Speedup: " + String.format("%.2f", frameTimes[1] / frameTimes[0]) + "x");
+    }
+    
+    @Override
+    public void onGameClose() 
+    {
+        
+    }
+    
+    @Override
+    public void onGameOpen() 
+    {
+        sphere = createSphere();
+        defaultShader = sphere.getShader();
+        transforms = new Matrix4f[side * side];
+        for(int x = 0; x < side; x++)
+            for(int y = 0; y < side; y++) transforms[x * side + y] = ClientUtils.createTransformationMatrix(new Vector3f((x - (side - 1) / 2f) * 2.5f, (y - (side - 1) / 2f) * 2.5f, -25f), 0f, 0f, 0f, 1f);
+    }
+    
+    @Override
+    public void onLoadJavaPlugin(Object loadedObject) 
+    {
+        
+    }
+    
+    @Override
+    public void onTick() 
+    {
+        
+    }
+    
+    @Override
+    public void onWindowOpen() 
+    {
+        
+    }
+    
+    @Override
+    public void render()
+    {
+        if(sphere == null || phase > 1) return;
+        
+        ShaderProgram shader = sphere.getShader();
+        if(!shader.isFinalized()) shader.finish();
+        sphere.renderSetup();
+        for(Matrix4f m : transforms)
+        {
+            shader.setTransformationMatrix(m);
+            sphere.render(false);
+        }
+        sphere.renderStop();
+        
+        frame++;
+        if(frame == WARMUP_FRAMES)
+        {
+            //Waits for the warm-up frames to finish, so they are not counted.
+            GL11.glFinish();
+            phaseStart = System.nanoTime();
+        }
+        else if(frame == WARMUP_FRAMES + MEASURED_FRAMES)
+        {
+            GL11.glFinish();
+            frameTimes[phase] = (System.nanoTime() - phaseStart) / 1000000.0 / MEASURED_FRAMES;
+            frame = 0;
+            phase++;
+            if(phase == 1)
+            {
+                legacyShader = loadLegacyShader();
+                if(legacyShader == null) phase = 2;
+                else sphere.attachShader(legacyShader);
+            }
+            
+            if(phase == 2)
+            {
+                sphere.attachShader(defaultShader);
+                if(legacyShader != null) report();
+                stop();
+            }
+        }
+    }
+    
+    @Override
+    public void onResolutionChange(int oldWidth, int oldHeight, int newWidth, int newHeight) 
+    {
+        
+    }
+}
\ No newline at end of file
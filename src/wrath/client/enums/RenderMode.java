@@ -18,7 +18,7 @@
 package wrath.client.enums;
 
 /**
-* Enumerator describing whether the game should be run in 2D Mode or 3D Mode.
+* Enumerator describing whether the game should be run in 2D Mode, 3D Mode or without rendering.
 * @author Trent Spears
 */
 public enum RenderMode 
@@ -30,5 +30,10 @@ public enum RenderMode
     /**
      * Game is rendered with depth (3 dimensions).
      */
-    Mode3D;
+    Mode3D,
+    /**
+     * Game is not rendered at all. No window, OpenGL or OpenAL context is created, and only the ticks are run.
+     * Used for dedicated servers and measuring tick performance.
+     */
+    Headless;
 }
@@ -0,0 +1,34 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client.enums;
+
+/**
+* Enumerator describing what the game loop does when it falls behind by more ticks than it is allowed to run in one frame.
+* @author Trent Spears
+*/
+public enum TickOverrunPolicy
+{
+    /**
+     * The ticks that could not be run are discarded, and the game continues from the current time.
+     */
+    DROP,
+    /**
+     * The ticks that could not be run are carried over to the next frames, up to the per-frame limit, so the game runs slower until it catches up.
+     */
+    SLOW_DOWN;
+}
\ No newline at end of file
@@ -0,0 +1,138 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client.graphics;
+
+import java.io.File;
+import java.util.HashMap;
+import wrath.client.Game;
+
+/**
+ * Class to keep track of the assets loaded by one {@link wrath.client.Game}, so they are only loaded once.
+ * Each game has its own registry, because loaded assets belong to the OpenGL context of that game's window.
+ * @author Trent Spears
+ */
+public class AssetRegistry
+{
+    private ShaderProgram defaultInstancedShader = null;
+    private ShaderProgram defaultShader = null;
+    private ShaderProgram defaultTerrainShader = null;
+    private final HashMap<String, Model> models = new HashMap<>();
+    private final HashMap<File, Texture> textures = new HashMap<>();
+    private TextureAtlas atlas = null;
+    
+    /**
+     * Gets the {@link wrath.client.graphics.ShaderProgram} used by default to render many copies of an entity model in one draw.
+     * @return Returns the default instanced entity shader, or null if the window has not been opened yet.
+     */
+    public ShaderProgram getDefaultInstancedShader()
+    {
+        return defaultInstancedShader;
+    }
+    
+    /**
+     * Gets the {@link wrath.client.graphics.ShaderProgram} used by default to render entities.
+     * @return Returns the default entity shader, or null if the window has not been opened yet.
+     */
+    public ShaderProgram getDefaultShader()
+    {
+        return defaultShader;
+    }
+    
+    /**
+     * Gets the {@link wrath.client.graphics.ShaderProgram} used by default to render terrain.
+     * @return Returns the default terrain shader, or null if the window has not been opened yet.
+     */
+    public ShaderProgram getDefaultTerrainShader()
+    {
+        return defaultTerrainShader;
+    }
+    
+    /**
+     * Gets a loaded {@link wrath.client.graphics.Model} with a texture attached.
+     * @param modelName The file name of the model.
+     * @param textureName The file name of the texture attached to the model.
+     * @return Returns the loaded {@link wrath.client.graphics.Model}, or null if it has not been loaded.
+     */
+    public Model getModel(String modelName, String textureName)
+    {
+        return models.get(modelName + "," + textureName);
+    }
+    
+    /**
+     * Gets a loaded {@link wrath.client.graphics.Texture}.
+     * @param textureFile The image {@link java.io.File} the texture was loaded from.
+     * @return Returns the loaded {@link wrath.client.graphics.Texture}, or null if it has not been loaded.
+     */
+    public Texture getTexture(File textureFile)
+    {
+        return textures.get(textureFile);
+    }
+    
+    /**
+     * Gets the {@link wrath.client.graphics.TextureAtlas} shared by the game's 2D textures. It is created the first time it is asked for.
+     * @return Returns the game's {@link wrath.client.graphics.TextureAtlas}.
+     */
+    public TextureAtlas getTextureAtlas()
+    {
+        if(atlas == null) atlas = new TextureAtlas(Game.getCurrentInstance().getConfig().getInt("TextureAtlasSize", 2048));
+        return atlas;
+    }
+    
+    /**
+     * Saves a {@link wrath.client.graphics.Model} with a texture attached so it can be re-used.
+     * @param modelName The file name of the model.
+     * @param textureName The file name of the texture attached to the model.
+     * @param model The {@link wrath.client.graphics.Model} to save.
+     */
+    public void registerModel(String modelName, String textureName, Model model)
+    {
+        models.put(modelName + "," + textureName, model);
+    }
+    
+    /**
+     * Saves a {@link wrath.client.graphics.Texture} so it can be re-used.
+     * @param textureFile The image {@link java.io.File} the texture was loaded from.
+     * @param texture The {@link wrath.client.graphics.Texture} to save.
+     */
+    public void registerTexture(File textureFile, Texture texture)
+    {
+        textures.put(textureFile, texture);
+    }
+    
+    /**
+     * Sets the {@link wrath.client.graphics.ShaderProgram} used by default to render many copies of an entity model in one draw.
+     * Called automatically when the window opens.
+     * @param shader The default instanced entity shader.
+     */
+    public void setDefaultInstancedShader(ShaderProgram shader)
+    {
+        this.defaultInstancedShader = shader;
+    }
+    
+    /**
+     * Sets the {@link wrath.client.graphics.ShaderProgram}s used by default to render entities and terrain.
+     * Called automatically when the window opens.
+     * @param shader The default entity shader.
+     * @param terrainShader The default terrain shader.
+     */
+    public void setDefaultShaders(ShaderProgram shader, ShaderProgram terrainShader)
+    {
+        this.defaultShader = shader;
+        this.defaultTerrainShader = terrainShader;
+    }
+}
\ No newline at end of file
@@ -22,6 +22,7 @@ import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.util.vector.Vector3f;
 import wrath.client.ClientUtils;
+import wrath.client.Game;
 import wrath.common.entities.Player;
 
 /**
@@ -36,6 +37,7 @@ public class Camera
     //x = pitch, y = yaw, z = roll
     private Vector3f orientation = new Vector3f(0,0,0);
     private boolean updateMat = true;
+    private long snapshotTick = -1;
     
     /**
      * Constructor.
@@ -161,8 +163,18 @@ public class Camera
      */
     public void updateViewMatrix(ShaderProgram shader)
     {
-        GL20.glUseProgram(shader.getProgramID());
-        if(updateMat)
+        shader.bindShader();
+        RenderSnapshot snap = Game.getCurrentInstance().getSimulationManager().getRenderSnapshot();
+        if(snap != null)
+        {
+            if(snap.getTick() != snapshotTick)
+            {
+                ClientUtils.createViewMatrix(snap.getCameraPosition(), snap.getCameraOrientation()).store(matrixBuf);
+                matrixBuf.flip();
+                snapshotTick = snap.getTick();
+            }
+        }
+        else if(updateMat)
         {
             ClientUtils.createViewMatrix(this).store(matrixBuf);
             matrixBuf.flip();
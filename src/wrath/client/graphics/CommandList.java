@@ -0,0 +1,348 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client.graphics;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+import wrath.client.Game;
+import wrath.client.Profiler;
+
+/**
+ * Class to record the render commands of one frame so that they can be replayed later, possibly on another thread.
+ * Commands only name what to draw, never how, so recording makes no OpenGL calls. The parameters of every draw are copied into the list,
+ * so the recording thread is free to overwrite its own buffers while the list is replayed.
+ * Lists are reused every frame, so recording creates no garbage once a list has grown to the size of a frame.
+ * @author Trent Spears
+ */
+public class CommandList
+{
+    private static final int OP_CLEAR = 0;
+    private static final int OP_FRAME_UNIFORMS = 1;
+    private static final int OP_BEGIN_SCOPE = 2;
+    private static final int OP_END_SCOPE = 3;
+    private static final int OP_SETUP_MODEL = 4;
+    private static final int OP_STOP_MODEL = 5;
+    private static final int OP_DRAW = 6;
+    private static final int OP_DRAW_RENDERER = 7;
+    private static final int OP_DRAW_INSTANCED = 8;
+    private static final int OP_RUN = 9;
+    
+    private int[] ops = new int[256];
+    private int opCount = 0;
+    private Object[] refs = new Object[64];
+    private int refCount = 0;
+    private FloatBuffer floats = BufferUtils.createFloatBuffer(Model.INSTANCE_STRIDE * 64);
+    private FloatBuffer floatsView = floats.duplicate();
+    private int floatCount = 0;
+    private int commands = 0;
+    private int instanceStart = -1;
+    
+    private final Matrix4f projection = new Matrix4f();
+    private final Matrix4f view = new Matrix4f();
+    private final Vector3f eye = new Vector3f();
+    
+    /**
+     * Adds the instance data of one copy to the instanced draw started with {@link #beginInstances()}.
+     * @param data The {@link java.nio.FloatBuffer} holding the instance, as written by {@link wrath.client.graphics.EntityRenderer#writeInstanceData(java.nio.FloatBuffer, int)}.
+     * @param offset The index of the first of the {@link wrath.client.graphics.Model#INSTANCE_STRIDE} floats of the instance.
+     */
+    public void addInstance(FloatBuffer data, int offset)
+    {
+        copyFloats(data, offset, Model.INSTANCE_STRIDE);
+    }
+    
+    /**
+     * Starts an instanced draw. Instances are added with {@link #addInstance(java.nio.FloatBuffer, int)} and the draw is recorded by {@link #endInstances(wrath.client.graphics.Model, int)}.
+     */
+    public void beginInstances()
+    {
+        instanceStart = floatCount;
+    }
+    
+    /**
+     * Records the start of a {@link wrath.client.Profiler} scope. Scopes are only measured when the list is replayed on the thread the profiler is bound to.
+     * @param scope The ID of the scope to begin.
+     */
+    public void beginScope(int scope)
+    {
+        addCommand(OP_BEGIN_SCOPE);
+        addOp(scope);
+    }
+    
+    /**
+     * Records the clearing of buffers of the frame.
+     * @param mask The OpenGL bits of the buffers to clear.
+     */
+    public void clear(int mask)
+    {
+        addCommand(OP_CLEAR);
+        addOp(mask);
+    }
+    
+    /**
+     * Records a draw of one level of detail of a {@link wrath.client.graphics.Model}, with the draw parameters prepared by {@link wrath.client.graphics.EntityRenderer#writeInstanceData(java.nio.FloatBuffer, int)}.
+     * The model must be set up by an earlier {@link #setupModel(wrath.client.graphics.Model, wrath.client.graphics.Model)}.
+     * @param model The {@link wrath.client.graphics.Model} to draw.
+     * @param level The level of detail to draw.
+     * @param data The {@link java.nio.FloatBuffer} holding the prepared parameters. They are copied.
+     * @param offset The index of the first of the {@link wrath.client.graphics.Model#INSTANCE_STRIDE} floats of the draw.
+     */
+    public void draw(Model model, int level, FloatBuffer data, int offset)
+    {
+        addCommand(OP_DRAW);
+        addOp(addRef(model));
+        addOp(level);
+        addOp(floatCount);
+        copyFloats(data, offset, Model.INSTANCE_STRIDE);
+    }
+    
+    /**
+     * Records a draw of one level of detail of a {@link wrath.client.graphics.Model}, set up by a renderer when the list is replayed.
+     * The model must be set up by an earlier {@link #setupModel(wrath.client.graphics.Model, wrath.client.graphics.Model)}.
+     * @param renderer The {@link wrath.client.graphics.Renderable} whose {@link wrath.client.graphics.Renderable#renderSetup()} is called before the draw.
+     * @param model The {@link wrath.client.graphics.Model} to draw.
+     * @param level The level of detail to draw.
+     */
+    public void drawRenderer(Renderable renderer, Model model, int level)
+    {
+        addCommand(OP_DRAW_RENDERER);
+        addOp(addRef(renderer));
+        addOp(addRef(model));
+        addOp(level);
+    }
+    
+    /**
+     * Records the instanced draw started with {@link #beginInstances()}, with every instance added since.
+     * The model must be set up by an earlier {@link #setupModel(wrath.client.graphics.Model, wrath.client.graphics.Model)}.
+     * @param model The {@link wrath.client.graphics.Model} to draw.
+     * @param level The level of detail to draw.
+     */
+    public void endInstances(Model model, int level)
+    {
+        if(instanceStart < 0) return;
+        addCommand(OP_DRAW_INSTANCED);
+        addOp(addRef(model));
+        addOp(level);
+        addOp(instanceStart);
+        addOp((floatCount - instanceStart) / Model.INSTANCE_STRIDE);
+        instanceStart = -1;
+    }
+    
+    /**
+     * Records the end of the last {@link wrath.client.Profiler} scope begun by {@link #beginScope(int)}.
+     */
+    public void endScope()
+    {
+        addCommand(OP_END_SCOPE);
+    }
+    
+    /**
+     * Gets the amount of commands recorded since the list was last reset.
+     * @return Returns the amount of recorded commands.
+     */
+    public int getCommandCount()
+    {
+        return commands;
+    }
+    
+    /**
+     * Replays every recorded command, in the order it was recorded. Must be called on the thread that owns the OpenGL context.
+     * The list is left as it is, so it must be reset before it is recorded again.
+     */
+    public void replay()
+    {
+        Profiler profiler = Game.getCurrentInstance().getProfiler();
+        int p = 0;
+        while(p < opCount)
+        {
+            switch(ops[p++])
+            {
+                case OP_CLEAR:
+                    GL11.glClear(ops[p++]);
+                    break;
+                case OP_FRAME_UNIFORMS:
+                {
+                    FrameUniforms frame = (FrameUniforms) refs[ops[p++]];
+                    int o = ops[p++];
+                    floatsView.clear();
+                    floatsView.position(o);
+                    projection.load(floatsView);
+                    view.load(floatsView);
+                    eye.set(floatsView.get(), floatsView.get(), floatsView.get());
+                    frame.update(projection, view, eye);
+                    break;
+                }
+                case OP_BEGIN_SCOPE:
+                    profiler.begin(ops[p++]);
+                    break;
+                case OP_END_SCOPE:
+                    profiler.end();
+                    break;
+                case OP_SETUP_MODEL:
+                {
+                    Model model = (Model) refs[ops[p++]];
+                    int previous = ops[p++];
+                    model.renderSetup(previous < 0 ? null : (Model) refs[previous]);
+                    break;
+                }
+                case OP_STOP_MODEL:
+                    ((Model) refs[ops[p++]]).renderStop();
+                    break;
+                case OP_DRAW:
+                {
+                    Model model = (Model) refs[ops[p++]];
+                    int level = ops[p++];
+                    int o = ops[p++];
+                    if(model.getShader() != null) model.getShader().setDrawData(floats, o);
+                    model.render(false, level);
+                    break;
+                }
+                case OP_DRAW_RENDERER:
+                {
+                    Renderable renderer = (Renderable) refs[ops[p++]];
+                    Model model = (Model) refs[ops[p++]];
+                    renderer.renderSetup();
+                    model.render(false, ops[p++]);
+                    break;
+                }
+                case OP_DRAW_INSTANCED:
+                {
+                    Model model = (Model) refs[ops[p++]];
+                    int level = ops[p++];
+                    int o = ops[p++];
+                    int instances = ops[p++];
+                    floatsView.clear();
+                    floatsView.position(o).limit(o + instances * Model.INSTANCE_STRIDE);
+                    model.renderInstanced(floatsView, instances, level);
+                    break;
+                }
+                case OP_RUN:
+                    ((Runnable) refs[ops[p++]]).run();
+                    break;
+            }
+        }
+    }
+    
+    /**
+     * Empties the list so that the next frame can be recorded. The arrays and buffer are kept for re-use.
+     */
+    public void reset()
+    {
+        Arrays.fill(refs, 0, refCount, null);
+        opCount = 0;
+        refCount = 0;
+        floatCount = 0;
+        commands = 0;
+        instanceStart = -1;
+    }
+    
+    /**
+     * Records OpenGL code to run when the list is replayed, for work that has no command of its own.
+     * @param task The {@link java.lang.Runnable} to run on the thread that owns the OpenGL context.
+     */
+    public void run(Runnable task)
+    {
+        addCommand(OP_RUN);
+        addOp(addRef(task));
+    }
+    
+    /**
+     * Records the set up of a {@link wrath.client.graphics.Model}, with {@link wrath.client.graphics.Model#renderSetup(wrath.client.graphics.Model)}.
+     * @param model The {@link wrath.client.graphics.Model} to set up.
+     * @param previous The {@link wrath.client.graphics.Model} that was set up last, or null if none is set up.
+     */
+    public void setupModel(Model model, Model previous)
+    {
+        addCommand(OP_SETUP_MODEL);
+        addOp(addRef(model));
+        addOp(previous == null ? -1 : addRef(previous));
+    }
+    
+    /**
+     * Records the clean up of a {@link wrath.client.graphics.Model} after its last draw.
+     * @param model The {@link wrath.client.graphics.Model} to clean up.
+     */
+    public void stopModel(Model model)
+    {
+        addCommand(OP_STOP_MODEL);
+        addOp(addRef(model));
+    }
+    
+    /**
+     * Records the state of the frame to write into the {@link wrath.client.graphics.FrameUniforms}. The matrices and position are copied.
+     * @param frame The {@link wrath.client.graphics.FrameUniforms} to write.
+     * @param projection The projection {@link org.lwjgl.util.vector.Matrix4f} of the frame.
+     * @param view The view {@link org.lwjgl.util.vector.Matrix4f} of the frame.
+     * @param cameraPosition The position of the camera.
+     */
+    public void updateFrameUniforms(FrameUniforms frame, Matrix4f projection, Matrix4f view, Vector3f cameraPosition)
+    {
+        addCommand(OP_FRAME_UNIFORMS);
+        addOp(addRef(frame));
+        addOp(floatCount);
+        ensureFloats(35);
+        floatsView.clear();
+        floatsView.position(floatCount);
+        projection.store(floatsView);
+        view.store(floatsView);
+        floatsView.put(cameraPosition.x).put(cameraPosition.y).put(cameraPosition.z);
+        floatCount += 35;
+    }
+    
+    private void addCommand(int op)
+    {
+        commands++;
+        addOp(op);
+    }
+    
+    private void addOp(int value)
+    {
+        if(opCount == ops.length) ops = Arrays.copyOf(ops, opCount * 2);
+        ops[opCount++] = value;
+    }
+    
+    private int addRef(Object ref)
+    {
+        if(refCount == refs.length) refs = Arrays.copyOf(refs, refCount * 2);
+        refs[refCount] = ref;
+        return refCount++;
+    }
+    
+    private void copyFloats(FloatBuffer data, int offset, int count)
+    {
+        ensureFloats(count);
+        for(int k = 0; k < count; k++) floats.put(floatCount + k, data.get(offset + k));
+        floatCount += count;
+    }
+    
+    private void ensureFloats(int count)
+    {
+        if(floatCount + count <= floats.capacity()) return;
+        FloatBuffer grown = BufferUtils.createFloatBuffer(Math.max(floatCount + count, floats.capacity() * 2));
+        floats.clear();
+        floats.limit(floatCount);
+        grown.put(floats);
+        grown.clear();
+        floats = grown;
+        floatsView = floats.duplicate();
+    }
+}
\ No newline at end of file
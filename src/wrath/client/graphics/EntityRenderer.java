@@ -18,10 +18,11 @@
 package wrath.client.graphics;
 
 import java.io.File;
-import java.util.HashMap;
+import java.nio.FloatBuffer;
 import org.lwjgl.util.vector.Matrix4f;
 import org.lwjgl.util.vector.Vector3f;
 import wrath.client.ClientUtils;
+import wrath.client.Game;
 import wrath.common.entities.Entity;
 import wrath.common.entities.EntityDescriptor;
 import wrath.util.Logger;
@@ -32,9 +33,8 @@ import wrath.util.Logger;
  */
 public class EntityRenderer implements Renderable
 {
-    public static final HashMap<String,Model> preLoadedModels = new HashMap<>();
-    
     private final Entity entity;
+    private int level = 0;
     private Light light = null;
     private Model model = null;
     private float reflectivity = 0f;
@@ -44,6 +44,13 @@ public class EntityRenderer implements Renderable
     private boolean updateMat = true;
     private boolean tmpBool = true;
     
+    volatile int snapshotSlot = -1;
+    private long snapshotTick = -1;
+    private final Vector3f snapshotVec = new Vector3f();
+    private final Vector3f lightColor = new Vector3f();
+    private final Vector3f lightPosition = new Vector3f();
+    private final float[] worldBounds = new float[10];
+    
     /**
      * Constructor.
      * @param entity The {@link wrath.common.entities.Entity} to be rendered.
@@ -54,8 +61,8 @@ public class EntityRenderer implements Renderable
         
         if(entity.getEntityDescriptor() != null)
         {
-            if(preLoadedModels.containsKey(entity.getEntityDescriptor().getModelName() + "," + entity.getEntityDescriptor().getTextureName()))
-                this.bindModel(preLoadedModels.get(entity.getEntityDescriptor().getModelName() + "," + entity.getEntityDescriptor().getTextureName()));
+            Model loaded = Game.getCurrentInstance().getAssetRegistry().getModel(entity.getEntityDescriptor().getModelName(), entity.getEntityDescriptor().getTextureName());
+            if(loaded != null) this.bindModel(loaded);
             else
             {
                 File modelFile = new File("assets/models/" + entity.getEntityDescriptor().getModelName());
@@ -65,7 +72,7 @@ public class EntityRenderer implements Renderable
                     Model m = Model.loadModel(entity.getEntityDescriptor().getModelName());
                     m.attachTexture(Texture.loadTexture(texture));
                     this.bindModel(m);
-                    preLoadedModels.put(entity.getEntityDescriptor().getModelName() + "," + entity.getEntityDescriptor().getTextureName(), m);
+                    Game.getCurrentInstance().getAssetRegistry().registerModel(entity.getEntityDescriptor().getModelName(), entity.getEntityDescriptor().getTextureName(), m);
                 }
             }
             
@@ -91,6 +98,7 @@ public class EntityRenderer implements Renderable
     public void bindModel(Model model)
     {
         this.model = model;
+        this.level = 0;
     }
     
     /**
@@ -102,6 +110,24 @@ public class EntityRenderer implements Renderable
         return entity;
     }
     
+    /**
+     * Gets the level of detail of the model drawn for this entity.
+     * @return Returns the level of detail picked by the last call to {@link #updateLevelOfDetail(float, float)}.
+     */
+    public int getLevelOfDetail()
+    {
+        return level;
+    }
+    
+    /**
+     * Gets the linked {@link wrath.client.graphics.Light}.
+     * @return Returns the linked {@link wrath.client.graphics.Light}, or null if there is none.
+     */
+    public Light getLight()
+    {
+        return light;
+    }
+    
     /**
      * Gets the linked {@link wrath.client.graphics.Model}.
      * @return Returns the linked {@link wrath.client.graphics.Model}.
@@ -129,11 +155,21 @@ public class EntityRenderer implements Renderable
         return shineDampening;
     }
     
+    /**
+     * Gets the transformation {@link org.lwjgl.util.vector.Matrix4f} placing the model where the entity is.
+     * It is brought up to date by {@link #updateWorldBounds()} and when the entity is drawn.
+     * @return Returns the last computed transformation {@link org.lwjgl.util.vector.Matrix4f} of the entity.
+     */
+    public Matrix4f getTransformationMatrix()
+    {
+        return mat;
+    }
+    
     @Override
     public void render(boolean consolidated)
     {
         if(consolidated) renderSetup();
-        model.render(true);
+        model.render(true, level);
     }
   
     @Override
@@ -163,26 +199,185 @@ public class EntityRenderer implements Renderable
     {
         if(model.getShader() != null)
         {
-            if(tmpBool)
+            boolean lit = updateState();
+            ShaderProgram shader = model.getShader();
+            shader.setTransformationMatrix(mat);
+            shader.setUniformVariable(shader.getUniformVariableLocation("reflectivity"), reflectivity);
+            shader.setUniformVariable(shader.getUniformVariableLocation("shineDamper"), shineDampening);
+            if(lit) shader.setLight(lightPosition, lightColor);
+            else
             {
-                updateMat = true;
-                tmpBool = false;
+                FrameUniforms frame = Game.getCurrentInstance().getRenderer().getFrameUniforms();
+                shader.setLight(frame.getSceneLightPosition(), frame.getSceneLightColor());
             }
-            
-            if(entity.changed() || updateMat)
+        }
+    }
+    
+    /**
+     * Changes the model's shader settings to draw parameters prepared earlier by {@link #writeInstanceData(java.nio.FloatBuffer, int)}, without computing them again.
+     * Used by the {@link wrath.client.Game.RenderManager}, which prepares every entity of a frame on the worker threads before drawing.
+     * @param data The {@link java.nio.FloatBuffer} holding the prepared parameters.
+     * @param offset The index of the first of the {@link wrath.client.graphics.Model#INSTANCE_STRIDE} floats of this entity.
+     */
+    public void update(FloatBuffer data, int offset)
+    {
+        if(model.getShader() != null) model.getShader().setDrawData(data, offset);
+    }
+    
+    /**
+     * Picks the level of detail of the model to draw from the height of the entity on screen.
+     * The level is remembered, so it only changes once the size is past a threshold by the hysteresis.
+     * Called automatically by the {@link wrath.client.Game.RenderManager}.
+     * @param screenSize The height of the entity on screen, as a fraction of the screen's height.
+     * @param hysteresis The fraction of a threshold the size must pass it by to change levels.
+     * @return Returns the level of detail to draw.
+     */
+    public int updateLevelOfDetail(float screenSize, float hysteresis)
+    {
+        level = model.selectLevel(screenSize, level, hysteresis);
+        return level;
+    }
+    
+    private boolean updateState()
+    {
+        if(tmpBool)
+        {
+            updateMat = true;
+            tmpBool = false;
+        }
+        
+        RenderSnapshot snap = Game.getCurrentInstance().getSimulationManager().getRenderSnapshot();
+        if(snap != null && snapshotSlot == -1) Game.getCurrentInstance().getSimulationManager().getSnapshotBuffer().track(this);
+        boolean fromSnapshot = snap != null && snap.hasEntity(this, snapshotSlot);
+        
+        if(fromSnapshot)
+        {
+            // The simulation runs on another thread, so only the captured state is safe to read.
+            float[] data = snap.getEntityData();
+            int o = snapshotSlot * RenderSnapshot.ENTITY_STRIDE;
+            if(snap.getTick() != snapshotTick || updateMat)
             {
-                mat = ClientUtils.createTransformationMatrix(entity.getLocation(), entity.getOrientation().x, entity.getOrientation().y, entity.getOrientation().z, entity.getSizeScale());
-                entity.resetChangeTracker();
+                snapshotVec.x = data[o];
+                snapshotVec.y = data[o + 1];
+                snapshotVec.z = data[o + 2];
+                mat = ClientUtils.createTransformationMatrix(snapshotVec, data[o + 3], data[o + 4], data[o + 5], data[o + 6]);
+                snapshotTick = snap.getTick();
                 updateMat = false;
             }
-            model.getShader().setTransformationMatrix(mat);
-            model.getShader().setUniformVariable(model.getShader().getUniformVariableLocation("reflectivity"), reflectivity);
-            model.getShader().setUniformVariable(model.getShader().getUniformVariableLocation("shineDamper"), shineDampening);
-            if(light != null)
-            {
-                model.getShader().setUniformVariable(model.getShader().getUniformVariableLocation("lightPosition"), light.getPosition());
-                model.getShader().setUniformVariable(model.getShader().getUniformVariableLocation("lightColor"), new Vector3f(light.getColor().getRed(), light.getColor().getGreen(), light.getColor().getBlue()));
-            }
+            
+            if(!snap.isEntityLit(snapshotSlot)) return false;
+            lightPosition.x = data[o + 7];
+            lightPosition.y = data[o + 8];
+            lightPosition.z = data[o + 9];
+            lightColor.x = data[o + 10];
+            lightColor.y = data[o + 11];
+            lightColor.z = data[o + 12];
+            return true;
+        }
+        
+        if(entity.changed() || updateMat)
+        {
+            mat = ClientUtils.createTransformationMatrix(entity.getLocation(), entity.getOrientation().x, entity.getOrientation().y, entity.getOrientation().z, entity.getSizeScale());
+            entity.resetChangeTracker();
+            updateMat = false;
+        }
+        
+        if(light == null) return false;
+        lightPosition.x = light.getPosition().x;
+        lightPosition.y = light.getPosition().y;
+        lightPosition.z = light.getPosition().z;
+        lightColor.x = light.getColor().getRed();
+        lightColor.y = light.getColor().getGreen();
+        lightColor.z = light.getColor().getBlue();
+        return true;
+    }
+    
+    /**
+     * Computes the bounds of the entity's model where the entity currently is, from the entity's location, orientation and size scale.
+     * The returned array holds the bounding sphere center (x, y, z) and radius, then the smallest and largest corners of the axis-aligned bounding box.
+     * The radius is -1 if the model has no bounds. The array is re-used by the next call.
+     * @return Returns the world space bounds of the entity, as 10 floats.
+     */
+    public float[] updateWorldBounds()
+    {
+        updateState();
+        float[] min = model.getBoundsMin();
+        float[] max = model.getBoundsMax();
+        if(model.getBoundingRadius() < 0)
+        {
+            worldBounds[0] = mat.m30;
+            worldBounds[1] = mat.m31;
+            worldBounds[2] = mat.m32;
+            worldBounds[3] = -1;
+            return worldBounds;
+        }
+        
+        float lx = (min[0] + max[0]) / 2;
+        float ly = (min[1] + max[1]) / 2;
+        float lz = (min[2] + max[2]) / 2;
+        worldBounds[0] = mat.m00 * lx + mat.m10 * ly + mat.m20 * lz + mat.m30;
+        worldBounds[1] = mat.m01 * lx + mat.m11 * ly + mat.m21 * lz + mat.m31;
+        worldBounds[2] = mat.m02 * lx + mat.m12 * ly + mat.m22 * lz + mat.m32;
+        //Entities are scaled the same on every axis, so the length of one axis is the scale.
+        worldBounds[3] = model.getBoundingRadius() * (float) Math.sqrt(mat.m00 * mat.m00 + mat.m01 * mat.m01 + mat.m02 * mat.m02);
+        
+        //Each axis of the rotated box spans the sum of its smallest and largest contributions.
+        worldBounds[4] = mat.m30 + Math.min(mat.m00 * min[0], mat.m00 * max[0]) + Math.min(mat.m10 * min[1], mat.m10 * max[1]) + Math.min(mat.m20 * min[2], mat.m20 * max[2]);
+        worldBounds[5] = mat.m31 + Math.min(mat.m01 * min[0], mat.m01 * max[0]) + Math.min(mat.m11 * min[1], mat.m11 * max[1]) + Math.min(mat.m21 * min[2], mat.m21 * max[2]);
+        worldBounds[6] = mat.m32 + Math.min(mat.m02 * min[0], mat.m02 * max[0]) + Math.min(mat.m12 * min[1], mat.m12 * max[1]) + Math.min(mat.m22 * min[2], mat.m22 * max[2]);
+        worldBounds[7] = mat.m30 + Math.max(mat.m00 * min[0], mat.m00 * max[0]) + Math.max(mat.m10 * min[1], mat.m10 * max[1]) + Math.max(mat.m20 * min[2], mat.m20 * max[2]);
+        worldBounds[8] = mat.m31 + Math.max(mat.m01 * min[0], mat.m01 * max[0]) + Math.max(mat.m11 * min[1], mat.m11 * max[1]) + Math.max(mat.m21 * min[2], mat.m21 * max[2]);
+        worldBounds[9] = mat.m32 + Math.max(mat.m02 * min[0], mat.m02 * max[0]) + Math.max(mat.m12 * min[1], mat.m12 * max[1]) + Math.max(mat.m22 * min[2], mat.m22 * max[2]);
+        return worldBounds;
+    }
+    
+    /**
+     * Writes the state of this entity as one instance for {@link wrath.client.graphics.Model#renderInstanced(java.nio.FloatBuffer, int)}.
+     * Entities without a {@link wrath.client.graphics.Light} are lit by the scene light of the {@link wrath.client.graphics.FrameUniforms}.
+     * @param buffer The {@link java.nio.FloatBuffer} to write {@link wrath.client.graphics.Model#INSTANCE_STRIDE} floats into.
+     */
+    public void writeInstanceData(FloatBuffer buffer)
+    {
+        boolean lit = updateState();
+        mat.store(buffer);
+        buffer.put(reflectivity).put(shineDampening);
+        if(lit)
+        {
+            buffer.put(lightPosition.x).put(lightPosition.y).put(lightPosition.z);
+            buffer.put(lightColor.x).put(lightColor.y).put(lightColor.z);
+        }
+        else
+        {
+            FrameUniforms frame = Game.getCurrentInstance().getRenderer().getFrameUniforms();
+            buffer.put(frame.getSceneLightPosition().x).put(frame.getSceneLightPosition().y).put(frame.getSceneLightPosition().z);
+            buffer.put(frame.getSceneLightColor().x).put(frame.getSceneLightColor().y).put(frame.getSceneLightColor().z);
+        }
+    }
+    
+    /**
+     * Writes the state of this entity as one instance at a fixed place in a buffer, without moving the buffer's position.
+     * Renderers write to their own part of the buffer, so different renderers can write to the same buffer from several threads at once.
+     * @param buffer The {@link java.nio.FloatBuffer} to write {@link wrath.client.graphics.Model#INSTANCE_STRIDE} floats into.
+     * @param offset The index of the first float to write.
+     */
+    public void writeInstanceData(FloatBuffer buffer, int offset)
+    {
+        boolean lit = updateState();
+        buffer.put(offset, mat.m00).put(offset + 1, mat.m01).put(offset + 2, mat.m02).put(offset + 3, mat.m03);
+        buffer.put(offset + 4, mat.m10).put(offset + 5, mat.m11).put(offset + 6, mat.m12).put(offset + 7, mat.m13);
+        buffer.put(offset + 8, mat.m20).put(offset + 9, mat.m21).put(offset + 10, mat.m22).put(offset + 11, mat.m23);
+        buffer.put(offset + 12, mat.m30).put(offset + 13, mat.m31).put(offset + 14, mat.m32).put(offset + 15, mat.m33);
+        buffer.put(offset + 16, reflectivity).put(offset + 17, shineDampening);
+        if(lit)
+        {
+            buffer.put(offset + 18, lightPosition.x).put(offset + 19, lightPosition.y).put(offset + 20, lightPosition.z);
+            buffer.put(offset + 21, lightColor.x).put(offset + 22, lightColor.y).put(offset + 23, lightColor.z);
+        }
+        else
+        {
+            FrameUniforms frame = Game.getCurrentInstance().getRenderer().getFrameUniforms();
+            buffer.put(offset + 18, frame.getSceneLightPosition().x).put(offset + 19, frame.getSceneLightPosition().y).put(offset + 20, frame.getSceneLightPosition().z);
+            buffer.put(offset + 21, frame.getSceneLightColor().x).put(offset + 22, frame.getSceneLightColor().y).put(offset + 23, frame.getSceneLightColor().z);
         }
     }
     
@@ -206,10 +401,8 @@ public class EntityRenderer implements Renderable
      */
     public static void renderEntity(Entity entity, EntityDescriptor descriptor, Matrix4f transformationMatrix)
     {
-        Model model;
-        if(preLoadedModels.containsKey(entity.getEntityDescriptor().getModelName() + "," + entity.getEntityDescriptor().getTextureName()))
-            model = preLoadedModels.get(entity.getEntityDescriptor().getModelName() + "," + entity.getEntityDescriptor().getTextureName());
-        else
+        Model model = Game.getCurrentInstance().getAssetRegistry().getModel(entity.getEntityDescriptor().getModelName(), entity.getEntityDescriptor().getTextureName());
+        if(model == null)
         {
             File modelF = new File("assets/models/" + entity.getEntityDescriptor().getModelName());
             File texture = new File("assets/textures/" + entity.getEntityDescriptor().getTextureName());
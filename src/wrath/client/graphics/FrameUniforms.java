@@ -0,0 +1,178 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client.graphics;
+
+import java.nio.FloatBuffer;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+import wrath.client.Game;
+import wrath.common.Closeable;
+
+/**
+ * Class to hold the shader state that is the same for every draw of a frame in one std140 uniform buffer, written once per frame and shared by every {@link wrath.client.graphics.ShaderProgram}.
+ * Shaders read it by declaring the uniform block below. Programs without the block are given the view and projection matrices as plain uniforms instead.
+ * <pre>
+ * layout(std140) uniform FrameData
+ * {
+ *     mat4 viewMatrix;
+ *     mat4 projectionMatrix;
+ *     mat4 viewProjectionMatrix;
+ *     vec4 cameraPosition;
+ *     vec4 sceneLightPosition;
+ *     vec4 sceneLightColor;
+ * };
+ * </pre>
+ * @author Trent Spears
+ */
+public class FrameUniforms implements Closeable
+{
+    /**
+     * The name of the uniform block in the shaders.
+     */
+    public static final String BLOCK_NAME = "FrameData";
+    /**
+     * The uniform buffer binding point the block is bound to.
+     */
+    public static final int BINDING = 0;
+    /**
+     * The size of the block, in floats. Every vec3 is padded to a vec4, as std140 requires.
+     */
+    public static final int SIZE = 60;
+    
+    private final int bufferID;
+    private final FloatBuffer data = BufferUtils.createFloatBuffer(SIZE);
+    private final Matrix4f viewProjection = new Matrix4f();
+    private final Vector3f lightColor = new Vector3f(1f, 1f, 1f);
+    private final Vector3f lightPosition = new Vector3f(0f, 10f, 0f);
+    private long uploads = 0;
+    
+    /**
+     * Creates the uniform buffer and binds it to {@link #BINDING}. Must be called on the rendering thread.
+     */
+    public FrameUniforms()
+    {
+        bufferID = GL15.glGenBuffers();
+        GL15.glBindBuffer(GL31.GL_UNIFORM_BUFFER, bufferID);
+        GL15.glBufferData(GL31.GL_UNIFORM_BUFFER, SIZE * 4L, GL15.GL_DYNAMIC_DRAW);
+        GL15.glBindBuffer(GL31.GL_UNIFORM_BUFFER, 0);
+        GL30.glBindBufferBase(GL31.GL_UNIFORM_BUFFER, BINDING, bufferID);
+        Game.getCurrentInstance().addToTrashCleanup(this);
+    }
+    
+    @Override
+    public void close()
+    {
+        GL15.glDeleteBuffers(bufferID);
+        Game.getCurrentInstance().removeFromTrashCleanup(this);
+    }
+    
+    /**
+     * Gets the OpenGL integer ID of the uniform buffer.
+     * @return Returns the OpenGL integer ID of the uniform buffer.
+     */
+    public int getBufferID()
+    {
+        return bufferID;
+    }
+    
+    /**
+     * Gets the color of the scene light, which lights the terrain and every entity without a {@link wrath.client.graphics.Light} of its own.
+     * @return Returns the color of the scene light. Do not modify.
+     */
+    public Vector3f getSceneLightColor()
+    {
+        return lightColor;
+    }
+    
+    /**
+     * Gets the position of the scene light, which lights the terrain and every entity without a {@link wrath.client.graphics.Light} of its own.
+     * @return Returns the position of the scene light. Do not modify.
+     */
+    public Vector3f getSceneLightPosition()
+    {
+        return lightPosition;
+    }
+    
+    /**
+     * Gets the amount of times the buffer has been written since it was created.
+     * @return Returns the amount of uploads of the buffer.
+     */
+    public long getUploads()
+    {
+        return uploads;
+    }
+    
+    /**
+     * Changes the scene light, which lights the terrain and every entity without a {@link wrath.client.graphics.Light} of its own.
+     * The change is uploaded with the next frame.
+     * @param light The {@link wrath.client.graphics.Light} to copy, or null to go back to a white light above the origin.
+     */
+    public void setSceneLight(Light light)
+    {
+        if(light == null)
+        {
+            lightPosition.set(0f, 10f, 0f);
+            lightColor.set(1f, 1f, 1f);
+            return;
+        }
+        
+        lightPosition.set(light.getPosition().x, light.getPosition().y, light.getPosition().z);
+        lightColor.set(light.getColor().getRed(), light.getColor().getGreen(), light.getColor().getBlue());
+    }
+    
+    /**
+     * Changes the scene light, which lights the terrain and every entity without a {@link wrath.client.graphics.Light} of its own.
+     * The change is uploaded with the next frame.
+     * @param position The position of the light. The values are copied.
+     * @param color The color of the light, as red, green and blue. The values are copied.
+     */
+    public void setSceneLight(Vector3f position, Vector3f color)
+    {
+        lightPosition.set(position.x, position.y, position.z);
+        lightColor.set(color.x, color.y, color.z);
+    }
+    
+    /**
+     * Writes the state of the frame into the buffer. Called once per frame by the {@link wrath.client.Game.RenderManager}, before anything is drawn.
+     * @param projection The projection {@link org.lwjgl.util.vector.Matrix4f} of the frame.
+     * @param view The view {@link org.lwjgl.util.vector.Matrix4f} of the frame.
+     * @param cameraPosition The position of the camera.
+     */
+    public void update(Matrix4f projection, Matrix4f view, Vector3f cameraPosition)
+    {
+        Matrix4f.mul(projection, view, viewProjection);
+        data.clear();
+        view.store(data);
+        projection.store(data);
+        viewProjection.store(data);
+        data.put(cameraPosition.x).put(cameraPosition.y).put(cameraPosition.z).put(1f);
+        data.put(lightPosition.x).put(lightPosition.y).put(lightPosition.z).put(1f);
+        data.put(lightColor.x).put(lightColor.y).put(lightColor.z).put(1f);
+        data.flip();
+        
+        GL15.glBindBuffer(GL31.GL_UNIFORM_BUFFER, bufferID);
+        //Re-specifying the whole store lets the driver hand out fresh memory instead of waiting on the previous frame's draws.
+        GL15.glBufferData(GL31.GL_UNIFORM_BUFFER, data, GL15.GL_DYNAMIC_DRAW);
+        GL15.glBindBuffer(GL31.GL_UNIFORM_BUFFER, 0);
+        uploads++;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,152 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client.graphics;
+
+import org.lwjgl.util.vector.Matrix4f;
+
+/**
+ * Class describing the six planes of the volume seen by a camera, used to skip objects that are not on the screen before any OpenGL work is done.
+ * Planes are kept as separate arrays of coefficients and objects are tested in batches laid out the same way, so the tests run as simple loops the JIT can vectorize.
+ * @author Trent Spears
+ */
+public class Frustum
+{
+    private final float[] a = new float[6];
+    private final float[] b = new float[6];
+    private final float[] c = new float[6];
+    private final float[] d = new float[6];
+    private final Matrix4f clip = new Matrix4f();
+    
+    /**
+     * Tests if a bounding box is fully inside of the frustum.
+     * @param minX The smallest X coordinate of the box, in world space.
+     * @param minY The smallest Y coordinate of the box, in world space.
+     * @param minZ The smallest Z coordinate of the box, in world space.
+     * @param maxX The largest X coordinate of the box, in world space.
+     * @param maxY The largest Y coordinate of the box, in world space.
+     * @param maxZ The largest Z coordinate of the box, in world space.
+     * @return Returns true if every corner of the box is inside of the frustum.
+     */
+    public boolean containsBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+    {
+        for(int p = 0; p < 6; p++)
+        {
+            //The corner furthest against the plane's normal is the one that leaves first.
+            float x = a[p] >= 0 ? minX : maxX;
+            float y = b[p] >= 0 ? minY : maxY;
+            float z = c[p] >= 0 ? minZ : maxZ;
+            if(a[p] * x + b[p] * y + c[p] * z + d[p] < 0) return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Tests a bounding box against the frustum.
+     * The box is only rejected when it is fully behind one of the planes, so boxes near the corners of the frustum may be kept.
+     * @param minX The smallest X coordinate of the box, in world space.
+     * @param minY The smallest Y coordinate of the box, in world space.
+     * @param minZ The smallest Z coordinate of the box, in world space.
+     * @param maxX The largest X coordinate of the box, in world space.
+     * @param maxY The largest Y coordinate of the box, in world space.
+     * @param maxZ The largest Z coordinate of the box, in world space.
+     * @return Returns true if the box may be visible.
+     */
+    public boolean intersectsBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+    {
+        for(int p = 0; p < 6; p++)
+        {
+            //Only the corner furthest along the plane's normal needs to be tested.
+            float x = a[p] >= 0 ? maxX : minX;
+            float y = b[p] >= 0 ? maxY : minY;
+            float z = c[p] >= 0 ? maxZ : minZ;
+            if(a[p] * x + b[p] * y + c[p] * z + d[p] < 0) return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Tests a batch of bounding spheres against the frustum.
+     * Spheres with a negative radius have no bounds and are always visible.
+     * @param x The X coordinates of the centers, in world space.
+     * @param y The Y coordinates of the centers, in world space.
+     * @param z The Z coordinates of the centers, in world space.
+     * @param radius The radius of each sphere.
+     * @param count The amount of spheres to test, from the start of the arrays.
+     * @param visible Set to true for every sphere that may be visible, and false for every sphere that is not.
+     * @return Returns the amount of spheres that may be visible.
+     */
+    public int testSpheres(float[] x, float[] y, float[] z, float[] radius, int count, boolean[] visible)
+    {
+        return testSpheres(x, y, z, radius, 0, count, visible);
+    }
+    
+    /**
+     * Tests part of a batch of bounding spheres against the frustum.
+     * Only the spheres from the offset are read and written, so several threads can test parts of the same batch at once.
+     * @param x The X coordinates of the centers, in world space.
+     * @param y The Y coordinates of the centers, in world space.
+     * @param z The Z coordinates of the centers, in world space.
+     * @param radius The radius of each sphere.
+     * @param offset The index of the first sphere to test.
+     * @param count The amount of spheres to test, from the offset.
+     * @param visible Set to true for every tested sphere that may be visible, and false for every tested sphere that is not.
+     * @return Returns the amount of tested spheres that may be visible.
+     */
+    public int testSpheres(float[] x, float[] y, float[] z, float[] radius, int offset, int count, boolean[] visible)
+    {
+        int end = offset + count;
+        for(int i = offset; i < end; i++) visible[i] = true;
+        for(int p = 0; p < 6; p++)
+        {
+            float pa = a[p], pb = b[p], pc = c[p], pd = d[p];
+            for(int i = offset; i < end; i++) visible[i] &= pa * x[i] + pb * y[i] + pc * z[i] + pd >= -radius[i] || radius[i] < 0;
+        }
+        
+        int ret = 0;
+        for(int i = offset; i < end; i++) if(visible[i]) ret++;
+        return ret;
+    }
+    
+    /**
+     * Extracts the planes of the frustum from a camera.
+     * @param projection The projection {@link org.lwjgl.util.vector.Matrix4f}, from {@link wrath.client.ClientUtils#createProjectionMatrix(float)}.
+     * @param view The view {@link org.lwjgl.util.vector.Matrix4f} of the camera.
+     */
+    public void update(Matrix4f projection, Matrix4f view)
+    {
+        Matrix4f.mul(projection, view, clip);
+        //Rows of the combined matrix; LWJGL stores the column first, so row r is (m0r, m1r, m2r, m3r).
+        setPlane(0, clip.m03 + clip.m00, clip.m13 + clip.m10, clip.m23 + clip.m20, clip.m33 + clip.m30);
+        setPlane(1, clip.m03 - clip.m00, clip.m13 - clip.m10, clip.m23 - clip.m20, clip.m33 - clip.m30);
+        setPlane(2, clip.m03 + clip.m01, clip.m13 + clip.m11, clip.m23 + clip.m21, clip.m33 + clip.m31);
+        setPlane(3, clip.m03 - clip.m01, clip.m13 - clip.m11, clip.m23 - clip.m21, clip.m33 - clip.m31);
+        setPlane(4, clip.m03 + clip.m02, clip.m13 + clip.m12, clip.m23 + clip.m22, clip.m33 + clip.m32);
+        setPlane(5, clip.m03 - clip.m02, clip.m13 - clip.m12, clip.m23 - clip.m22, clip.m33 - clip.m32);
+    }
+    
+    private void setPlane(int p, float pa, float pb, float pc, float pd)
+    {
+        //Normalized so that plane distances can be compared to sphere radii.
+        float len = (float) Math.sqrt(pa * pa + pb * pb + pc * pc);
+        if(len == 0) len = 1;
+        a[p] = pa / len;
+        b[p] = pb / len;
+        c[p] = pc / len;
+        d[p] = pd / len;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,644 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client.graphics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+import wrath.client.Game;
+
+/**
+ * Class to cache the OpenGL state bound by the engine, so that calls setting state which is already set never reach the driver.
+ * Tracks the current shader program, vertex array, the enabled vertex attributes of each vertex array, the textures bound to each texture unit,
+ * enabled capabilities, the blend function and the depth mask. State that has not been set through the cache yet is unknown, so the first call always goes through.
+ * All engine code binds state through the cache of the {@link wrath.client.Game} it renders, from the thread that owns the OpenGL context.
+ * @author Trent Spears
+ */
+public class GLState
+{
+    /**
+     * The amount of texture units that are tracked. Textures bound to higher units are always passed to the driver.
+     */
+    public static final int TRACKED_TEXTURE_UNITS = 16;
+    
+    /**
+     * The {@link wrath.client.graphics.GLState.Backend} that passes calls to OpenGL through LWJGL.
+     */
+    public static final Backend LWJGL = new Backend()
+    {
+        @Override
+        public void activeTexture(int unit)
+        {
+            GL13.glActiveTexture(GL13.GL_TEXTURE0 + unit);
+        }
+        
+        @Override
+        public void bindTexture(int target, int texture)
+        {
+            GL11.glBindTexture(target, texture);
+        }
+        
+        @Override
+        public void bindVertexArray(int vao)
+        {
+            GL30.glBindVertexArray(vao);
+        }
+        
+        @Override
+        public void blendFunc(int src, int dst)
+        {
+            GL11.glBlendFunc(src, dst);
+        }
+        
+        @Override
+        public void depthMask(boolean flag)
+        {
+            GL11.glDepthMask(flag);
+        }
+        
+        @Override
+        public void disable(int cap)
+        {
+            GL11.glDisable(cap);
+        }
+        
+        @Override
+        public void disableVertexAttribArray(int index)
+        {
+            GL20.glDisableVertexAttribArray(index);
+        }
+        
+        @Override
+        public void enable(int cap)
+        {
+            GL11.glEnable(cap);
+        }
+        
+        @Override
+        public void enableVertexAttribArray(int index)
+        {
+            GL20.glEnableVertexAttribArray(index);
+        }
+        
+        @Override
+        public void useProgram(int program)
+        {
+            GL20.glUseProgram(program);
+        }
+    };
+    
+    /**
+     * Gets the {@link wrath.client.graphics.GLState} of the game bound to the current thread.
+     * @return Returns the OpenGL state cache of the current {@link wrath.client.Game}.
+     */
+    public static GLState current()
+    {
+        return Game.getCurrentInstance().getRenderer().getGLState();
+    }
+    
+    private Backend backend = LWJGL;
+    private long issued = 0;
+    private long elided = 0;
+    
+    private int program;
+    private int vao;
+    private int activeUnit;
+    private final int[] textures1D = new int[TRACKED_TEXTURE_UNITS];
+    private final int[] textures2D = new int[TRACKED_TEXTURE_UNITS];
+    private int blendSrc;
+    private int blendDst;
+    private int depthMask;
+    
+    private int[] capNames = new int[8];
+    private boolean[] capStates = new boolean[8];
+    private int capCount;
+    
+    private int[] vaoAttribs = new int[64];
+    private int[] vaoAttribsKnown = new int[64];
+    
+    /**
+     * Constructor.
+     * The cache starts with every piece of state unknown.
+     */
+    public GLState()
+    {
+        invalidate();
+    }
+    
+    /**
+     * Makes the specified texture unit active, so that following texture binds apply to it.
+     * @param unit The index of the texture unit, starting from 0.
+     */
+    public void activeTexture(int unit)
+    {
+        if(activeUnit == unit)
+        {
+            elided++;
+            return;
+        }
+        activeUnit = unit;
+        issued++;
+        backend.activeTexture(unit);
+    }
+    
+    /**
+     * Binds a texture to the active texture unit.
+     * If no texture unit was made active through the cache, unit 0 is made active first.
+     * @param target The OpenGL texture target, such as GL_TEXTURE_2D.
+     * @param texture The OpenGL integer ID of the texture, or 0 to unbind the target.
+     */
+    public void bindTexture(int target, int texture)
+    {
+        if(activeUnit < 0) activeTexture(0);
+        int[] bound = getTextureSlots(target);
+        if(bound != null)
+        {
+            if(bound[activeUnit] == texture)
+            {
+                elided++;
+                return;
+            }
+            bound[activeUnit] = texture;
+        }
+        issued++;
+        backend.bindTexture(target, texture);
+    }
+    
+    /**
+     * Binds a vertex array object.
+     * @param vao The OpenGL integer ID of the vertex array, or 0 to unbind it.
+     */
+    public void bindVertexArray(int vao)
+    {
+        if(this.vao == vao)
+        {
+            elided++;
+            return;
+        }
+        this.vao = vao;
+        issued++;
+        backend.bindVertexArray(vao);
+    }
+    
+    /**
+     * Sets the blend function.
+     * @param src The OpenGL source factor.
+     * @param dst The OpenGL destination factor.
+     */
+    public void blendFunc(int src, int dst)
+    {
+        if(blendSrc == src && blendDst == dst)
+        {
+            elided++;
+            return;
+        }
+        blendSrc = src;
+        blendDst = dst;
+        issued++;
+        backend.blendFunc(src, dst);
+    }
+    
+    /**
+     * Enables or disables writing into the depth buffer.
+     * @param flag If true, depth values will be written.
+     */
+    public void depthMask(boolean flag)
+    {
+        int value = flag ? 1 : 0;
+        if(depthMask == value)
+        {
+            elided++;
+            return;
+        }
+        depthMask = value;
+        issued++;
+        backend.depthMask(flag);
+    }
+    
+    /**
+     * Disables an OpenGL capability.
+     * @param cap The OpenGL capability, such as GL_BLEND.
+     */
+    public void disable(int cap)
+    {
+        setCapability(cap, false);
+    }
+    
+    /**
+     * Disables a vertex attribute of the bound vertex array.
+     * @param index The index of the vertex attribute.
+     */
+    public void disableVertexAttribArray(int index)
+    {
+        setVertexAttribArray(index, false);
+    }
+    
+    /**
+     * Enables an OpenGL capability.
+     * @param cap The OpenGL capability, such as GL_BLEND.
+     */
+    public void enable(int cap)
+    {
+        setCapability(cap, true);
+    }
+    
+    /**
+     * Enables a vertex attribute of the bound vertex array.
+     * @param index The index of the vertex attribute.
+     */
+    public void enableVertexAttribArray(int index)
+    {
+        setVertexAttribArray(index, true);
+    }
+    
+    /**
+     * Gets the {@link wrath.client.graphics.GLState.Backend} that calls are passed to.
+     * @return Returns the {@link wrath.client.graphics.GLState.Backend} receiving calls that were not elided.
+     */
+    public Backend getBackend()
+    {
+        return backend;
+    }
+    
+    /**
+     * Gets the amount of calls that were dropped because they would not have changed the state.
+     * @return Returns the amount of elided calls since the counters were last reset.
+     */
+    public long getElidedCalls()
+    {
+        return elided;
+    }
+    
+    /**
+     * Gets the amount of calls that were passed on to the driver.
+     * @return Returns the amount of issued calls since the counters were last reset.
+     */
+    public long getIssuedCalls()
+    {
+        return issued;
+    }
+    
+    /**
+     * Gets the shader program currently in use.
+     * @return Returns the OpenGL integer ID of the shader program in use, or -1 if it is unknown.
+     */
+    public int getProgram()
+    {
+        return program;
+    }
+    
+    private int[] getTextureSlots(int target)
+    {
+        if(activeUnit >= TRACKED_TEXTURE_UNITS) return null;
+        if(target == GL11.GL_TEXTURE_2D) return textures2D;
+        if(target == GL11.GL_TEXTURE_1D) return textures1D;
+        return null;
+    }
+    
+    /**
+     * Gets the vertex array currently bound.
+     * @return Returns the OpenGL integer ID of the bound vertex array, or -1 if it is unknown.
+     */
+    public int getVertexArray()
+    {
+        return vao;
+    }
+    
+    /**
+     * Forgets all cached state, so that every following call is passed to the driver.
+     * Must be called when a new OpenGL context is made current or when OpenGL state was changed without going through the cache.
+     */
+    public void invalidate()
+    {
+        program = -1;
+        vao = -1;
+        activeUnit = -1;
+        Arrays.fill(textures1D, -1);
+        Arrays.fill(textures2D, -1);
+        blendSrc = -1;
+        blendDst = -1;
+        depthMask = -1;
+        capCount = 0;
+        Arrays.fill(vaoAttribsKnown, 0);
+    }
+    
+    /**
+     * Forgets a shader program that is being deleted. Should be called before the program is deleted.
+     * @param program The OpenGL integer ID of the deleted program.
+     */
+    public void onProgramDeleted(int program)
+    {
+        if(this.program == program) this.program = -1;
+    }
+    
+    /**
+     * Forgets a texture that is being deleted, as OpenGL unbinds deleted textures by itself.
+     * @param texture The OpenGL integer ID of the deleted texture.
+     */
+    public void onTextureDeleted(int texture)
+    {
+        for(int i = 0; i < TRACKED_TEXTURE_UNITS; i++)
+        {
+            if(textures1D[i] == texture) textures1D[i] = -1;
+            if(textures2D[i] == texture) textures2D[i] = -1;
+        }
+    }
+    
+    /**
+     * Forgets a vertex array that is being deleted, as OpenGL unbinds deleted vertex arrays by itself and may re-use the ID.
+     * @param vao The OpenGL integer ID of the deleted vertex array.
+     */
+    public void onVertexArrayDeleted(int vao)
+    {
+        if(this.vao == vao) this.vao = -1;
+        if(vao >= 0 && vao < vaoAttribsKnown.length) vaoAttribsKnown[vao] = 0;
+    }
+    
+    /**
+     * Sets both counters back to 0.
+     */
+    public void resetCounters()
+    {
+        issued = 0;
+        elided = 0;
+    }
+    
+    /**
+     * Changes the {@link wrath.client.graphics.GLState.Backend} that calls are passed to, such as a {@link wrath.client.graphics.GLState.Recorder}.
+     * All cached state is forgotten.
+     * @param backend The {@link wrath.client.graphics.GLState.Backend} to receive calls that are not elided.
+     */
+    public void setBackend(Backend backend)
+    {
+        this.backend = backend == null ? LWJGL : backend;
+        invalidate();
+    }
+    
+    private void setCapability(int cap, boolean state)
+    {
+        for(int i = 0; i < capCount; i++)
+        {
+            if(capNames[i] != cap) continue;
+            if(capStates[i] == state)
+            {
+                elided++;
+                return;
+            }
+            capStates[i] = state;
+            issueCapability(cap, state);
+            return;
+        }
+        
+        if(capCount == capNames.length)
+        {
+            capNames = Arrays.copyOf(capNames, capCount * 2);
+            capStates = Arrays.copyOf(capStates, capCount * 2);
+        }
+        capNames[capCount] = cap;
+        capStates[capCount] = state;
+        capCount++;
+        issueCapability(cap, state);
+    }
+    
+    private void issueCapability(int cap, boolean state)
+    {
+        issued++;
+        if(state) backend.enable(cap);
+        else backend.disable(cap);
+    }
+    
+    private void setVertexAttribArray(int index, boolean state)
+    {
+        //Enabled attributes belong to the bound vertex array, so they are only tracked while it is known.
+        if(vao >= 0 && index < 32)
+        {
+            if(vao >= vaoAttribs.length)
+            {
+                int len = Math.max(vao + 1, vaoAttribs.length * 2);
+                vaoAttribs = Arrays.copyOf(vaoAttribs, len);
+                vaoAttribsKnown = Arrays.copyOf(vaoAttribsKnown, len);
+            }
+            int bit = 1 << index;
+            if((vaoAttribsKnown[vao] & bit) != 0 && ((vaoAttribs[vao] & bit) != 0) == state)
+            {
+                elided++;
+                return;
+            }
+            vaoAttribsKnown[vao] |= bit;
+            if(state) vaoAttribs[vao] |= bit;
+            else vaoAttribs[vao] &= ~bit;
+        }
+        issued++;
+        if(state) backend.enableVertexAttribArray(index);
+        else backend.disableVertexAttribArray(index);
+    }
+    
+    /**
+     * Uses a shader program for following draws.
+     * @param program The OpenGL integer ID of the program, or 0 to use none.
+     */
+    public void useProgram(int program)
+    {
+        if(this.program == program)
+        {
+            elided++;
+            return;
+        }
+        this.program = program;
+        issued++;
+        backend.useProgram(program);
+    }
+    
+    /**
+     * Interface for the receiver of the OpenGL calls that were not elided.
+     */
+    public static interface Backend
+    {
+        /**
+         * Makes a texture unit active.
+         * @param unit The index of the texture unit, starting from 0.
+         */
+        public void activeTexture(int unit);
+        
+        /**
+         * Binds a texture to the active texture unit.
+         * @param target The OpenGL texture target.
+         * @param texture The OpenGL integer ID of the texture.
+         */
+        public void bindTexture(int target, int texture);
+        
+        /**
+         * Binds a vertex array object.
+         * @param vao The OpenGL integer ID of the vertex array.
+         */
+        public void bindVertexArray(int vao);
+        
+        /**
+         * Sets the blend function.
+         * @param src The OpenGL source factor.
+         * @param dst The OpenGL destination factor.
+         */
+        public void blendFunc(int src, int dst);
+        
+        /**
+         * Enables or disables writing into the depth buffer.
+         * @param flag If true, depth values will be written.
+         */
+        public void depthMask(boolean flag);
+        
+        /**
+         * Disables an OpenGL capability.
+         * @param cap The OpenGL capability.
+         */
+        public void disable(int cap);
+        
+        /**
+         * Disables a vertex attribute of the bound vertex array.
+         * @param index The index of the vertex attribute.
+         */
+        public void disableVertexAttribArray(int index);
+        
+        /**
+         * Enables an OpenGL capability.
+         * @param cap The OpenGL capability.
+         */
+        public void enable(int cap);
+        
+        /**
+         * Enables a vertex attribute of the bound vertex array.
+         * @param index The index of the vertex attribute.
+         */
+        public void enableVertexAttribArray(int index);
+        
+        /**
+         * Uses a shader program.
+         * @param program The OpenGL integer ID of the program.
+         */
+        public void useProgram(int program);
+    }
+    
+    /**
+     * A {@link wrath.client.graphics.GLState.Backend} that records every call it receives as text, to check which calls a piece of rendering code issues.
+     * Calls can optionally be passed on to another {@link wrath.client.graphics.GLState.Backend}, so that recording works on a live context.
+     */
+    public static class Recorder implements Backend
+    {
+        private final List<String> calls = new ArrayList<>();
+        private final Backend forward;
+        
+        /**
+         * Constructor.
+         * @param forward The {@link wrath.client.graphics.GLState.Backend} to pass calls on to, or null to only record them.
+         */
+        public Recorder(Backend forward)
+        {
+            this.forward = forward;
+        }
+        
+        @Override
+        public void activeTexture(int unit)
+        {
+            calls.add("activeTexture(" + unit + ")");
+            if(forward != null) forward.activeTexture(unit);
+        }
+        
+        @Override
+        public void bindTexture(int target, int texture)
+        {
+            calls.add("bindTexture(" + target + ", " + texture + ")");
+            if(forward != null) forward.bindTexture(target, texture);
+        }
+        
+        @Override
+        public void bindVertexArray(int vao)
+        {
+            calls.add("bindVertexArray(" + vao + ")");
+            if(forward != null) forward.bindVertexArray(vao);
+        }
+        
+        @Override
+        public void blendFunc(int src, int dst)
+        {
+            calls.add("blendFunc(" + src + ", " + dst + ")");
+            if(forward != null) forward.blendFunc(src, dst);
+        }
+        
+        /**
+         * Forgets all recorded calls.
+         */
+        public void clear()
+        {
+            calls.clear();
+        }
+        
+        @Override
+        public void depthMask(boolean flag)
+        {
+            calls.add("depthMask(" + flag + ")");
+            if(forward != null) forward.depthMask(flag);
+        }
+        
+        @Override
+        public void disable(int cap)
+        {
+            calls.add("disable(" + cap + ")");
+            if(forward != null) forward.disable(cap);
+        }
+        
+        @Override
+        public void disableVertexAttribArray(int index)
+        {
+            calls.add("disableVertexAttribArray(" + index + ")");
+            if(forward != null) forward.disableVertexAttribArray(index);
+        }
+        
+        @Override
+        public void enable(int cap)
+        {
+            calls.add("enable(" + cap + ")");
+            if(forward != null) forward.enable(cap);
+        }
+        
+        @Override
+        public void enableVertexAttribArray(int index)
+        {
+            calls.add("enableVertexAttribArray(" + index + ")");
+            if(forward != null) forward.enableVertexAttribArray(index);
+        }
+        
+        /**
+         * Gets the calls recorded so far, oldest first.
+         * @return Returns the {@link java.util.List} of recorded calls.
+         */
+        public List<String> getCalls()
+        {
+            return calls;
+        }
+        
+        @Override
+        public void useProgram(int program)
+        {
+            calls.add("useProgram(" + program + ")");
+            if(forward != null) forward.useProgram(program);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,318 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client.graphics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Class to reduce the amount of triangles of a mesh, used to create the levels of detail of a {@link wrath.client.graphics.Model}.
+ * Edges are collapsed cheapest first, where the cost of moving a vertex is its quadric error: the sum of the squared distances to the planes of the triangles that were merged into it.
+ * A vertex is only ever moved onto one of its neighbours, so the simplified mesh re-uses the vertices of the original and keeps its normals and texture coordinates.
+ * Vertices on a seam, where several vertices share a position, never move, and vertices on an open border only move along the border, so the mesh does not tear.
+ * Simplification runs on the CPU and gives the same result every time for the same input.
+ * @author Trent Spears
+ */
+public class MeshSimplifier
+{
+    private static final float BORDER_WEIGHT = 10f;
+    private static final int KIND_FREE = 0;
+    private static final int KIND_BORDER = 1;
+    private static final int KIND_LOCKED = 2;
+    
+    private final float[] verticies;
+    private final int vertexCount;
+    private final boolean[] seam;
+    private double[] quadrics;
+    private float error = 0f;
+    
+    /**
+     * Constructor.
+     * @param verticies The (x, y, z) of every vertex of the mesh.
+     */
+    public MeshSimplifier(float[] verticies)
+    {
+        this.verticies = verticies;
+        this.vertexCount = verticies.length / 3;
+        this.seam = new boolean[vertexCount];
+        
+        HashMap<String, Integer> positions = new HashMap<>();
+        for(int v = 0; v < vertexCount; v++)
+        {
+            Integer first = positions.putIfAbsent(verticies[v * 3] + "," + verticies[v * 3 + 1] + "," + verticies[v * 3 + 2], v);
+            if(first != null)
+            {
+                seam[first] = true;
+                seam[v] = true;
+            }
+        }
+    }
+    
+    /**
+     * Gets the error of the last call to {@link #simplify(int[], int, float)}.
+     * No vertex of the simplified mesh is further than this from the plane of any original triangle that was merged into it.
+     * @return Returns the largest error of the collapses that were made, in model space units.
+     */
+    public float getError()
+    {
+        return error;
+    }
+    
+    /**
+     * Reduces the amount of triangles of the mesh.
+     * Stops when the target is reached, when the next collapse would exceed the error limit, or when no edge can be collapsed anymore.
+     * @param indicies The three vertices of every triangle of the mesh.
+     * @param targetTriangles The amount of triangles to reduce the mesh to.
+     * @param maxError The largest error allowed, in model space units. See {@link #getError()}.
+     * @return Returns the three vertices of every triangle of the simplified mesh.
+     */
+    public int[] simplify(int[] indicies, int targetTriangles, float maxError)
+    {
+        error = 0f;
+        int[] tris = Arrays.copyOf(indicies, indicies.length - indicies.length % 3);
+        int[] remap = new int[vertexCount];
+        for(int v = 0; v < vertexCount; v++) remap[v] = v;
+        int[][] adjacency = buildAdjacency(tris);
+        computeQuadrics(tris, adjacency[0], adjacency[1]);
+        double maxCost = (double) maxError * maxError;
+        
+        boolean collapsed = true;
+        while(collapsed && tris.length / 3 > targetTriangles)
+        {
+            collapsed = false;
+            adjacency = buildAdjacency(tris);
+            int[] start = adjacency[0];
+            int[] adjacent = adjacency[1];
+            int[] kind = classifyVerticies(tris, start, adjacent);
+            
+            //Every edge once, packed as (smaller << 32 | larger) so that sorting removes duplicates.
+            long[] edges = new long[tris.length];
+            for(int t = 0; t < tris.length; t += 3)
+            {
+                for(int e = 0; e < 3; e++)
+                {
+                    int a = tris[t + e], b = tris[t + (e + 1) % 3];
+                    edges[t + e] = ((long) Math.min(a, b) << 32) | Math.max(a, b);
+                }
+            }
+            Arrays.sort(edges);
+            
+            //Candidates are sorted by cost, then by edge, so ties always break the same way.
+            long[] candidates = new long[edges.length];
+            int[] from = new int[edges.length];
+            int[] to = new int[edges.length];
+            int count = 0;
+            for(int e = 0; e < edges.length; e++)
+            {
+                if(e > 0 && edges[e] == edges[e - 1]) continue;
+                int a = (int)(edges[e] >>> 32), b = (int) edges[e];
+                if(a == b) continue;
+                boolean border = isBorderEdge(a, b, tris, start, adjacent);
+                double costAB = canMove(a, kind, border) ? collapseCost(a, b) : Double.POSITIVE_INFINITY;
+                double costBA = canMove(b, kind, border) ? collapseCost(b, a) : Double.POSITIVE_INFINITY;
+                double cost = Math.min(costAB, costBA);
+                if(cost > maxCost) continue;
+                from[count] = costAB <= costBA ? a : b;
+                to[count] = costAB <= costBA ? b : a;
+                candidates[count] = ((long) Float.floatToIntBits((float) cost) << 32) | count;
+                count++;
+            }
+            Arrays.sort(candidates, 0, count);
+            
+            boolean[] touched = new boolean[vertexCount];
+            int triangles = tris.length / 3;
+            for(int c = 0; c < count && triangles > targetTriangles; c++)
+            {
+                int i = (int) candidates[c];
+                int v = from[i], u = to[i];
+                if(touched[v] || touched[u]) continue;
+                if(flips(v, u, tris, remap, start, adjacent)) continue;
+                
+                for(int k = start[v]; k < start[v + 1]; k++)
+                {
+                    int t = adjacent[k] * 3;
+                    int a = remap[tris[t]], b = remap[tris[t + 1]], d = remap[tris[t + 2]];
+                    if(a != b && b != d && a != d && (a == u || b == u || d == u)) triangles--;
+                }
+                remap[v] = u;
+                for(int q = 0; q < 10; q++) quadrics[u * 10 + q] += quadrics[v * 10 + q];
+                touched[v] = true;
+                touched[u] = true;
+                error = Math.max(error, (float) Math.sqrt(Float.intBitsToFloat((int)(candidates[c] >>> 32))));
+                collapsed = true;
+            }
+            
+            tris = compact(tris, remap);
+        }
+        return tris;
+    }
+    
+    private int[][] buildAdjacency(int[] tris)
+    {
+        //The triangles of vertex v are adjacent[start[v]] to adjacent[start[v + 1] - 1].
+        int[] start = new int[vertexCount + 1];
+        for(int c = 0; c < tris.length; c++) start[tris[c] + 1]++;
+        for(int v = 0; v < vertexCount; v++) start[v + 1] += start[v];
+        int[] adjacent = new int[tris.length];
+        int[] fill = Arrays.copyOf(start, vertexCount);
+        for(int c = 0; c < tris.length; c++) adjacent[fill[tris[c]]++] = c / 3;
+        return new int[][]{start, adjacent};
+    }
+    
+    private boolean canMove(int v, int[] kind, boolean borderEdge)
+    {
+        if(kind[v] == KIND_LOCKED) return false;
+        return kind[v] == KIND_FREE || borderEdge;
+    }
+    
+    private int[] classifyVerticies(int[] tris, int[] start, int[] adjacent)
+    {
+        int[] kind = new int[vertexCount];
+        for(int v = 0; v < vertexCount; v++) if(seam[v]) kind[v] = KIND_LOCKED;
+        for(int t = 0; t < tris.length; t += 3)
+        {
+            for(int e = 0; e < 3; e++)
+            {
+                int a = tris[t + e], b = tris[t + (e + 1) % 3];
+                if(isBorderEdge(a, b, tris, start, adjacent))
+                {
+                    if(kind[a] == KIND_FREE) kind[a] = KIND_BORDER;
+                    if(kind[b] == KIND_FREE) kind[b] = KIND_BORDER;
+                }
+            }
+        }
+        return kind;
+    }
+    
+    private double collapseCost(int v, int u)
+    {
+        double x = verticies[u * 3], y = verticies[u * 3 + 1], z = verticies[u * 3 + 2];
+        return Math.max(0, evaluate(v, x, y, z) + evaluate(u, x, y, z));
+    }
+    
+    private static int[] compact(int[] tris, int[] remap)
+    {
+        int[] ret = new int[tris.length];
+        int len = 0;
+        for(int t = 0; t < tris.length; t += 3)
+        {
+            //A collapse target is never moved in the same pass, so one lookup always reaches a vertex that still exists.
+            int a = remap[tris[t]], b = remap[tris[t + 1]], c = remap[tris[t + 2]];
+            if(a == b || b == c || a == c) continue;
+            ret[len++] = a;
+            ret[len++] = b;
+            ret[len++] = c;
+        }
+        return Arrays.copyOf(ret, len);
+    }
+    
+    private void computeQuadrics(int[] tris, int[] start, int[] adjacent)
+    {
+        quadrics = new double[vertexCount * 10];
+        for(int t = 0; t < tris.length; t += 3)
+        {
+            int a = tris[t], b = tris[t + 1], c = tris[t + 2];
+            double[] n = normal(a, b, c);
+            double len = Math.sqrt(n[0] * n[0] + n[1] * n[1] + n[2] * n[2]);
+            if(len == 0) continue;
+            double nx = n[0] / len, ny = n[1] / len, nz = n[2] / len;
+            double d = -(nx * verticies[a * 3] + ny * verticies[a * 3 + 1] + nz * verticies[a * 3 + 2]);
+            addPlane(a, nx, ny, nz, d, 1);
+            addPlane(b, nx, ny, nz, d, 1);
+            addPlane(c, nx, ny, nz, d, 1);
+            
+            //Open borders also get a plane standing on the edge, which keeps the border in place.
+            int[] corners = {a, b, c};
+            for(int e = 0; e < 3; e++)
+            {
+                int p = corners[e], q = corners[(e + 1) % 3];
+                if(!isBorderEdge(p, q, tris, start, adjacent)) continue;
+                double ex = verticies[q * 3] - verticies[p * 3], ey = verticies[q * 3 + 1] - verticies[p * 3 + 1], ez = verticies[q * 3 + 2] - verticies[p * 3 + 2];
+                double bx = ey * nz - ez * ny, by = ez * nx - ex * nz, bz = ex * ny - ey * nx;
+                double bl = Math.sqrt(bx * bx + by * by + bz * bz);
+                if(bl == 0) continue;
+                bx /= bl;
+                by /= bl;
+                bz /= bl;
+                double bd = -(bx * verticies[p * 3] + by * verticies[p * 3 + 1] + bz * verticies[p * 3 + 2]);
+                addPlane(p, bx, by, bz, bd, BORDER_WEIGHT);
+                addPlane(q, bx, by, bz, bd, BORDER_WEIGHT);
+            }
+        }
+    }
+    
+    private void addPlane(int v, double a, double b, double c, double d, double w)
+    {
+        //The upper half of the symmetric matrix (a, b, c, d)^T (a, b, c, d).
+        int o = v * 10;
+        quadrics[o] += w * a * a;
+        quadrics[o + 1] += w * a * b;
+        quadrics[o + 2] += w * a * c;
+        quadrics[o + 3] += w * a * d;
+        quadrics[o + 4] += w * b * b;
+        quadrics[o + 5] += w * b * c;
+        quadrics[o + 6] += w * b * d;
+        quadrics[o + 7] += w * c * c;
+        quadrics[o + 8] += w * c * d;
+        quadrics[o + 9] += w * d * d;
+    }
+    
+    private double evaluate(int v, double x, double y, double z)
+    {
+        int o = v * 10;
+        double[] q = quadrics;
+        return q[o] * x * x + 2 * q[o + 1] * x * y + 2 * q[o + 2] * x * z + 2 * q[o + 3] * x
+                + q[o + 4] * y * y + 2 * q[o + 5] * y * z + 2 * q[o + 6] * y
+                + q[o + 7] * z * z + 2 * q[o + 8] * z
+                + q[o + 9];
+    }
+    
+    private boolean flips(int v, int u, int[] tris, int[] remap, int[] start, int[] adjacent)
+    {
+        for(int k = start[v]; k < start[v + 1]; k++)
+        {
+            int t = adjacent[k] * 3;
+            int a = remap[tris[t]], b = remap[tris[t + 1]], c = remap[tris[t + 2]];
+            if(a == b || b == c || a == c || a == u || b == u || c == u) continue;
+            
+            double[] before = normal(a, b, c);
+            double[] after = normal(a == v ? u : a, b == v ? u : b, c == v ? u : c);
+            double dot = before[0] * after[0] + before[1] * after[1] + before[2] * after[2];
+            if(dot <= 0) return true;
+        }
+        return false;
+    }
+    
+    private boolean isBorderEdge(int a, int b, int[] tris, int[] start, int[] adjacent)
+    {
+        int shared = 0;
+        for(int k = start[a]; k < start[a + 1]; k++)
+        {
+            int t = adjacent[k] * 3;
+            if(tris[t] == b || tris[t + 1] == b || tris[t + 2] == b) shared++;
+        }
+        return shared == 1;
+    }
+    
+    private double[] normal(int a, int b, int c)
+    {
+        double ux = verticies[b * 3] - verticies[a * 3], uy = verticies[b * 3 + 1] - verticies[a * 3 + 1], uz = verticies[b * 3 + 2] - verticies[a * 3 + 2];
+        double vx = verticies[c * 3] - verticies[a * 3], vy = verticies[c * 3 + 1] - verticies[a * 3 + 1], vz = verticies[c * 3 + 2] - verticies[a * 3 + 2];
+        return new double[]{uy * vz - uz * vy, uz * vx - ux * vz, ux * vy - uy * vx};
+    }
+}
\ No newline at end of file
@@ -17,24 +17,23 @@
  */
 package wrath.client.graphics;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL30;
-import org.lwjgl.util.vector.Vector2f;
-import org.lwjgl.util.vector.Vector3f;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL33;
 import wrath.client.Game;
 import wrath.common.Closeable;
 import wrath.common.Reloadable;
+import wrath.util.Config;
 import wrath.util.Logger;
 
 /**
@@ -43,9 +42,25 @@ import wrath.util.Logger;
  */
 public class Model implements Renderable, Closeable, Reloadable
 {
+    /**
+     * The amount of floats written per instance for {@link #renderInstanced(java.nio.FloatBuffer, int)}.
+     * Each instance is a column-major transformation matrix (16), reflectivity and shine damper (2), light position (3) and light color (3).
+     */
+    public static final int INSTANCE_STRIDE = 24;
+    /**
+     * The largest amount of levels of detail of a model, including the full model.
+     */
+    public static final int MAX_LEVELS = 8;
+    
+    private static final int INSTANCE_LIGHT_COLOR_ATTRIB_INDEX = 9;
+    private static final int INSTANCE_LIGHT_POSITION_ATTRIB_INDEX = 8;
+    private static final int INSTANCE_MATERIAL_ATTRIB_INDEX = 7;
+    private static final int INSTANCE_TRANSFORM_ATTRIB_INDEX = 3;
+    private static final int MIN_LOD_TRIANGLES = 64;
     private static final int NORMALS_ATTRIB_INDEX = 2;
     private static final int TEXTURE_ATTRIB_INDEX = 1;
     private static final int VERTICIES_ATTRIB_INDEX = 0;
+    private static final AtomicInteger nextModelID = new AtomicInteger(0);
     
     /**
      * Creates a 2D or 3D model from a list of verticies.
@@ -72,10 +87,26 @@ public class Model implements Renderable, Closeable, Reloadable
      * @return Returns the {@link wrath.client.graphics.Model} object of your model.
      */
     public static Model createModel(String name, float[] verticies, int[] indicies, float[] normals, boolean useDefaultShaders)
+    {
+        return createModel(name, verticies, indicies, normals, useDefaultShaders, true);
+    }
+    
+    /**
+     * Creates a 2D or 3D model from a list of verticies.
+     * Models are always assumed to be made with triangles, and will be rendered as such.
+     * @param name The {@link java.lang.String} name of the Model.
+     * @param verticies The list of verticies in the model. One point is represented by (x, y, z), and there must be at least 3 points.
+     * @param indicies The list of points to connect for OpenGL. Look up indicies in OpenGL for reference.
+     * @param normals The list of 3 float vectors describing the normal vector of the model's surface.
+     * @param useDefaultShaders If true, shaders will be set up automatically.
+     * @param generateLevels If true, the levels of detail set in the config are generated. Models that are always drawn at full detail should skip them.
+     * @return Returns the {@link wrath.client.graphics.Model} object of your model.
+     */
+    public static Model createModel(String name, float[] verticies, int[] indicies, float[] normals, boolean useDefaultShaders, boolean generateLevels)
     {
         // Generating VAO
         int vaoid = GL30.glGenVertexArrays();
-        GL30.glBindVertexArray(vaoid);
+        GLState.current().bindVertexArray(vaoid);
         
         // Generating Verticies VBO
         int vtvboid = GL15.glGenBuffers();
@@ -104,16 +135,21 @@ public class Model implements Renderable, Closeable, Reloadable
         GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, ibuffer, GL15.GL_STATIC_DRAW);
         
         // Creating Model Object
-        Model model;
-        File mfile = new File("assets/models/" + name);
-        if(!mfile.exists()) model = new Model(name, vaoid, new Integer[]{vtvboid, invboid, nmvboid}, verticies, indicies, normals, useDefaultShaders);
-        else model = new Model(name, vaoid, new Integer[]{vtvboid, invboid, nmvboid}, null, null, null, useDefaultShaders);
+        //The arrays are kept even for models read from files, as levels of detail and occluders are built from them.
+        Model model = new Model(name, vaoid, new Integer[]{vtvboid, invboid, nmvboid}, verticies, indicies, normals, useDefaultShaders);
+        model.indexVbo = invboid;
             
+        model.computeBounds(verticies);
         Game.getCurrentInstance().getLogger().println("Loaded model '" + name + "' with " + verticies.length + " verticies, " + indicies.length + " indicies, and " + normals.length + " normals.");
-        if(useDefaultShaders) model.attachShader(ShaderProgram.DEFAULT_SHADER);
+        if(generateLevels) model.generateConfiguredLevels();
+        if(useDefaultShaders)
+        {
+            model.attachShader(Game.getCurrentInstance().getAssetRegistry().getDefaultShader());
+            if(Game.getCurrentInstance().getAssetRegistry().getDefaultInstancedShader() != null) model.attachInstancedShader(Game.getCurrentInstance().getAssetRegistry().getDefaultInstancedShader());
+        }
         
         // Unbinding OpenGL Objects
-        GL30.glBindVertexArray(0);
+        GLState.current().bindVertexArray(0);
         GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
         Game.getCurrentInstance().addToTrashCleanup(model);
         Game.getCurrentInstance().addToRefreshList(model);
@@ -122,7 +158,7 @@ public class Model implements Renderable, Closeable, Reloadable
     
     /**
      * Loads a 2D or 3D model from specified name.
-     * Models are always assumed to be made with triangles, and will be rendered as such.
+     * Faces with more than three corners are split into triangles.
      * @param modelName The name of the model to be loaded. This should be the entire file name, e.g. 'model.obj.
      * @return Returns the {@link wrath.client.graphics.Model} object of your model.
      */
@@ -133,7 +169,7 @@ public class Model implements Renderable, Closeable, Reloadable
     
     /**
      * Loads a 2D or 3D model from specified name.
-     * Models are always assumed to be made with triangles, and will be rendered as such.
+     * Faces with more than three corners are split into triangles.
      * @param modelName The name of the model to be loaded. This should be the entire file name, e.g. 'model.obj.
      * @param useDefaultShaders If true, shaders will be set up automatically.
      * @return Returns the {@link wrath.client.graphics.Model} object of your model.
@@ -145,149 +181,47 @@ public class Model implements Renderable, Closeable, Reloadable
     
     /**
      * Loads a 2D or 3D model from specified {@link java.io.File}.
-     * Models are always assumed to be made with triangles, and will be rendered as such.
+     * Faces with more than three corners are split into triangles.
      * @param modelFile The .OBJ {@link java.io.File} to read the model data from.
      * @param useDefaultShaders If true, shaders will be set up automatically.
-     * @return Returns the {@link wrath.client.graphics.Model} object of your model.
+     * @return Returns the {@link wrath.client.graphics.Model} object of your model, or null if the file could not be read.
      */
     public static Model loadModel(File modelFile, boolean useDefaultShaders)
     {
-        ArrayList<String> src = readObjFile(modelFile);
-        ArrayList<Vector3f> verticies = new ArrayList<>();
-        ArrayList<Vector2f> texCoords = new ArrayList<>();
-        ArrayList<Vector3f> normals = new ArrayList<>();
-        ArrayList<Integer> indicies = new ArrayList<>();
-        float[] varray = null;
-        float[] narray = null;
-        float[] tarray = null;
-
-        boolean tmp = true;
-        for(String inp : src) 
-        {
-            String[] buf = inp.split(" ");
-            if(inp.startsWith("v ")) verticies.add(new Vector3f(Float.parseFloat(buf[1]), Float.parseFloat(buf[2]), Float.parseFloat(buf[3])));
-            else if(inp.startsWith("vt ")) texCoords.add(new Vector2f(Float.parseFloat(buf[1]), Float.parseFloat(buf[2])));
-            else if(inp.startsWith("vn ")) normals.add(new Vector3f(Float.parseFloat(buf[1]), Float.parseFloat(buf[2]), Float.parseFloat(buf[3])));
-            else if(inp.startsWith("f ")) 
-            {
-                if(tmp) 
-                {
-                    varray = new float[verticies.size() * 3];
-                    narray = new float[verticies.size() * 3];
-                    tarray = new float[verticies.size() * 2];
-                    tmp = false;
-                }
-
-                for(int x = 1; x <= 3; x++) 
-                {
-                    String[] curDat;
-                    if(buf[x].contains("//")) 
-                    {
-                        curDat = buf[x].split("//");
-
-                        int ptr = Integer.parseInt(curDat[0]) - 1;
-                        indicies.add(ptr);
-                        Vector3f norm = normals.get(Integer.parseInt(curDat[1]) - 1);
-                        narray[ptr * 3] = norm.x;
-                        narray[ptr * 3 + 1] = norm.y;
-                        narray[ptr * 3 + 2] = norm.z;
-                    }
-                    else 
-                    {
-                        curDat = buf[x].split("/");
-
-                        int ptr = Integer.parseInt(curDat[0]) - 1;
-                        indicies.add(ptr);
-                        Vector2f tex = texCoords.get(Integer.parseInt(curDat[1]) - 1);
-                        tarray[ptr * 2] = tex.x;
-                        tarray[ptr * 2 + 1] = 1 - tex.y;
-                        Vector3f norm = normals.get(Integer.parseInt(curDat[2]) - 1);
-                        narray[ptr * 3] = norm.x;
-                        narray[ptr * 3 + 1] = norm.y;
-                        narray[ptr * 3 + 2] = norm.z;
-                    }
-                }
-            }
-        }
-
+        ObjParser obj = ObjParser.parse(modelFile);
+        if(obj == null) return null;
         
-        int i = 0;
-        for(Vector3f ve : verticies)
-        {
-            varray[i] = ve.x;
-            varray[i + 1] = ve.y;
-            varray[i + 2] = ve.z;
-            i += 3;
-        }
-        int[] iarray = new int[indicies.size()];
-        for(int z = 0; z < indicies.size(); z++)
-            iarray[z] = indicies.get(z);
-        
-        Model m = createModel(modelFile.getName(), varray, iarray, narray, useDefaultShaders);
-        m.textureCoords = tarray;
-        m.indiciesLen = iarray.length;
+        Model m = createModel(modelFile.getName(), obj.getVerticies(), obj.getIndicies(), obj.getNormals(), useDefaultShaders);
+        m.textureCoords = obj.getTextureCoords();
+        m.indiciesLen = m.indicies.length;
         return m;
     }
- 
-    private static ArrayList<String> readObjFile(File file)
-    {
-        ArrayList<String> src = new ArrayList<>();
-        
-        try
-        {
-            String inp;
-            ArrayList<String> f = new ArrayList<>();
-            ArrayList<String> v = new ArrayList<>();
-            ArrayList<String> vt = new ArrayList<>();
-            ArrayList<String> vn = new ArrayList<>();
-            
-            
-            BufferedReader in = new BufferedReader(new FileReader(file));
-            while((inp = in.readLine()) != null)
-            {
-                if(inp.startsWith("f ")) f.add(inp);
-                else if(inp.startsWith("v ")) v.add(inp);
-                else if(inp.startsWith("vt ")) vt.add(inp);
-                else if(inp.startsWith("vn ")) vn.add(inp);
-            }
-            in.close();
-            
-            v.stream().forEach((s) -> 
-            {
-                src.add(s);
-            });
-            vt.stream().forEach((s) -> 
-            {
-                src.add(s);
-            });
-            vn.stream().forEach((s) -> 
-            {
-                src.add(s);
-            });
-            f.stream().forEach((s) -> 
-            {
-                src.add(s);
-            });
-        }
-        catch(IOException e)
-        {
-            System.err.println("Could not load model from file '" + file.getName() + "'! I/O Error!");
-        }
-        
-        return src;
-    }
     
+    private final float[] boundsMin = new float[3];
+    private final float[] boundsMax = new float[3];
+    private float boundsRadius = -1;
     private final boolean defaultShaders;
-    private final int[] indicies;
+    private int[] indicies;
     private int indiciesLen;
+    private int indexVbo = 0;
+    private ShaderProgram instancedShader = null;
+    private int instanceVbo = 0;
+    private int[][] levelIndicies = new int[0][];
+    private int[] levelOffsets = new int[0];
+    private float[] levelScreenSizes = new float[0];
+    private boolean levelsGenerated = false;
+    private final int modelID = nextModelID.getAndIncrement();
     private final String name;
-    private final float[] normals;
+    private float[] normals;
+    private int[] occluderIndicies = null;
+    private float[] occluderVerticies = null;
+    private int profilerScope = -1;
     private ShaderProgram shader = null;
     private Texture texture = null;
     private float[] textureCoords = null;
     private int vao;
     private final ArrayList<Integer> vbos = new ArrayList<>();
-    private final float[] verticies;
+    private float[] verticies;
     
     private Model(String name, int vao, Integer[] initVbos, float[] verticies, int[] indicies, float[] normals, boolean defShaders)
     {
@@ -301,6 +235,44 @@ public class Model implements Renderable, Closeable, Reloadable
         this.defaultShaders = defShaders;
     }
     
+    /**
+     * Applies a {@link wrath.client.graphics.ShaderProgram} used to draw many copies of the model at once with {@link #renderInstanced(java.nio.FloatBuffer, int)}.
+     * The shader reads the per-instance data from the attributes 'in_Transform', 'in_Material', 'in_LightPosition' and 'in_LightColor' instead of uniforms.
+     * @param shader The instanced {@link wrath.client.graphics.ShaderProgram} to associate with this model.
+     */
+    public void attachInstancedShader(ShaderProgram shader)
+    {
+        shader.bindAttribute(VERTICIES_ATTRIB_INDEX, "in_Position");
+        shader.bindAttribute(NORMALS_ATTRIB_INDEX, "in_Normals");
+        if(texture != null) shader.bindAttribute(TEXTURE_ATTRIB_INDEX, "in_TextureCoord");
+        shader.bindAttribute(INSTANCE_TRANSFORM_ATTRIB_INDEX, "in_Transform");
+        shader.bindAttribute(INSTANCE_MATERIAL_ATTRIB_INDEX, "in_Material");
+        shader.bindAttribute(INSTANCE_LIGHT_POSITION_ATTRIB_INDEX, "in_LightPosition");
+        shader.bindAttribute(INSTANCE_LIGHT_COLOR_ATTRIB_INDEX, "in_LightColor");
+        this.instancedShader = shader;
+    }
+    
+    /**
+     * Uses a low-poly mesh of this model to hide other objects behind entities drawing it, when occlusion culling is enabled.
+     * The mesh should be a simple shape, such as a box or a few quads, that stays inside of the model so that it never hides anything the model does not.
+     * @param verticies The (x, y, z) of every vertex of the occluder, in model space.
+     * @param indicies The three vertices of every triangle of the occluder.
+     */
+    public void attachOccluder(float[] verticies, int[] indicies)
+    {
+        this.occluderVerticies = verticies;
+        this.occluderIndicies = indicies;
+    }
+    
+    /**
+     * Uses the mesh of another, low-poly model to hide other objects behind entities drawing this model, when occlusion culling is enabled.
+     * @param proxy The {@link wrath.client.graphics.Model} to use as the occluder, in the same model space as this model.
+     */
+    public void attachOccluder(Model proxy)
+    {
+        attachOccluder(proxy.verticies, proxy.indicies);
+    }
+    
     /**
      * Applies a {@link wrath.client.graphics.ShaderProgram} to the model to be called every time the model is rendered.
      * Only one can be attached at a time.
@@ -334,8 +306,9 @@ public class Model implements Renderable, Closeable, Reloadable
     {
         this.texture = texture;
         if(this.textureCoords != null) textureCoords = this.textureCoords;
+        else if(textureCoords.length > 0) this.textureCoords = textureCoords;
         if(shader == null) Game.getCurrentInstance().getLogger().println("Warning: If no shader is present to pass texture co-ordinates, then the texture will not render!");
-        GL30.glBindVertexArray(vao);
+        GLState.current().bindVertexArray(vao);
         int vboid = GL15.glGenBuffers();
         GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vboid);
         FloatBuffer vbuffer = BufferUtils.createFloatBuffer(textureCoords.length);
@@ -345,21 +318,262 @@ public class Model implements Renderable, Closeable, Reloadable
         GL20.glVertexAttribPointer(TEXTURE_ATTRIB_INDEX, 2, GL11.GL_FLOAT, false, 0, 0);
         
         if(shader != null) shader.bindAttribute(TEXTURE_ATTRIB_INDEX, "in_TextureCoord");
-        GL30.glBindVertexArray(0);
+        if(instancedShader != null) instancedShader.bindAttribute(TEXTURE_ATTRIB_INDEX, "in_TextureCoord");
+        GLState.current().bindVertexArray(0);
         GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
         vbos.add(vboid);
-        EntityRenderer.preLoadedModels.put(name + "," + texture.getTextureFile().getName(), this);
+        Game.getCurrentInstance().getAssetRegistry().registerModel(name, texture.getTextureFile().getName(), this);
+    }
+    
+    private void computeBounds(float[] varray)
+    {
+        if(varray == null || varray.length < 3)
+        {
+            boundsRadius = -1;
+            return;
+        }
+        
+        for(int a = 0; a < 3; a++)
+        {
+            boundsMin[a] = Float.POSITIVE_INFINITY;
+            boundsMax[a] = Float.NEGATIVE_INFINITY;
+        }
+        for(int i = 0; i + 2 < varray.length; i += 3)
+        {
+            for(int a = 0; a < 3; a++)
+            {
+                boundsMin[a] = Math.min(boundsMin[a], varray[i + a]);
+                boundsMax[a] = Math.max(boundsMax[a], varray[i + a]);
+            }
+        }
+        
+        //The sphere is centered on the box, so it always contains it.
+        float dx = (boundsMax[0] - boundsMin[0]) / 2;
+        float dy = (boundsMax[1] - boundsMin[1]) / 2;
+        float dz = (boundsMax[2] - boundsMin[2]) / 2;
+        boundsRadius = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
     }
     
     @Override
     public void close()
     {
+        GLState.current().onVertexArrayDeleted(getVaoID());
         GL30.glDeleteVertexArrays(getVaoID());
         vbos.stream().forEach((i) -> 
         {
             GL15.glDeleteBuffers(i);
         });
         vbos.clear();
+        instanceVbo = 0;
+    }
+    
+    private void createInstanceBuffer()
+    {
+        GLState.current().bindVertexArray(vao);
+        instanceVbo = GL15.glGenBuffers();
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, instanceVbo);
+        final int stride = INSTANCE_STRIDE * 4;
+        for(int col = 0; col < 4; col++)
+        {
+            GL20.glVertexAttribPointer(INSTANCE_TRANSFORM_ATTRIB_INDEX + col, 4, GL11.GL_FLOAT, false, stride, col * 16);
+            GL33.glVertexAttribDivisor(INSTANCE_TRANSFORM_ATTRIB_INDEX + col, 1);
+        }
+        GL20.glVertexAttribPointer(INSTANCE_MATERIAL_ATTRIB_INDEX, 2, GL11.GL_FLOAT, false, stride, 64);
+        GL33.glVertexAttribDivisor(INSTANCE_MATERIAL_ATTRIB_INDEX, 1);
+        GL20.glVertexAttribPointer(INSTANCE_LIGHT_POSITION_ATTRIB_INDEX, 3, GL11.GL_FLOAT, false, stride, 72);
+        GL33.glVertexAttribDivisor(INSTANCE_LIGHT_POSITION_ATTRIB_INDEX, 1);
+        GL20.glVertexAttribPointer(INSTANCE_LIGHT_COLOR_ATTRIB_INDEX, 3, GL11.GL_FLOAT, false, stride, 84);
+        GL33.glVertexAttribDivisor(INSTANCE_LIGHT_COLOR_ATTRIB_INDEX, 1);
+        vbos.add(instanceVbo);
+    }
+    
+    private void generateConfiguredLevels()
+    {
+        Config config = Game.getCurrentInstance().getConfig();
+        int levels = config.getInt("ModelLODLevels", 3);
+        if(levels <= 1 || indicies == null || indicies.length / 3 < MIN_LOD_TRIANGLES)
+        {
+            if(levelIndicies.length > 0) setLevelsOfDetail(new int[0][], new float[0]);
+            return;
+        }
+        
+        generateLevelsOfDetail(levels, config.getFloat("ModelLODReduction", 0.5f), config.getFloat("ModelLODMaxError", 0.05f), config.getFloat("ModelLODScreenSize", 0.25f));
+        levelsGenerated = true;
+        if(levelIndicies.length == 0) return;
+        String counts = "" + indicies.length / 3;
+        for(int[] level : levelIndicies) counts += ", " + level.length / 3;
+        Game.getCurrentInstance().getLogger().println("Generated " + levelIndicies.length + " levels of detail for model '" + name + "' with " + counts + " triangles.");
+    }
+    
+    /**
+     * Creates levels of detail by simplifying the model with a {@link wrath.client.graphics.MeshSimplifier}, replacing any levels the model had.
+     * Every level is simplified from the full model. Levels that could not be reduced enough, because the error limit was reached first, are left out.
+     * @param levels The amount of levels, including the full model, up to {@link #MAX_LEVELS}.
+     * @param reduction The fraction of the triangles of the previous level each level keeps, such as 0.5.
+     * @param maxError The largest error allowed, as a fraction of the model's bounding radius.
+     * @param screenSize The height of the model on screen, as a fraction of the screen's height, below which the first simplified level is used. Each next level is used below half of the previous size.
+     */
+    public void generateLevelsOfDetail(int levels, float reduction, float maxError, float screenSize)
+    {
+        if(verticies == null || indicies == null || boundsRadius < 0) return;
+        
+        MeshSimplifier simplifier = new MeshSimplifier(verticies);
+        ArrayList<int[]> lists = new ArrayList<>();
+        int[] previous = indicies;
+        float target = indicies.length / 3;
+        for(int l = 1; l < Math.min(levels, MAX_LEVELS); l++)
+        {
+            target *= reduction;
+            int[] next = simplifier.simplify(indicies, (int) target, maxError * boundsRadius);
+            //A level that did not get half of the intended reduction is not worth the memory.
+            if(next.length > previous.length * (1 + reduction) / 2) break;
+            lists.add(next);
+            previous = next;
+        }
+        
+        float[] sizes = new float[lists.size()];
+        for(int l = 0; l < sizes.length; l++) sizes[l] = screenSize / (1 << l);
+        setLevelsOfDetail(lists.toArray(new int[lists.size()][]), sizes);
+    }
+    
+    /**
+     * Gets the amount of levels of detail of this model.
+     * @return Returns the amount of levels of detail, including the full model, which is level 0.
+     */
+    public int getLevelCount()
+    {
+        return levelIndicies.length + 1;
+    }
+    
+    /**
+     * Gets the height on screen below which a level of detail is used.
+     * @param level The level of detail, from 1 to {@link #getLevelCount()} - 1.
+     * @return Returns the height of the model on screen, as a fraction of the screen's height, below which the level is used.
+     */
+    public float getLevelScreenSize(int level)
+    {
+        if(level <= 0) return Float.POSITIVE_INFINITY;
+        return levelScreenSizes[level - 1];
+    }
+    
+    /**
+     * Gets the amount of triangles drawn at a level of detail.
+     * @param level The level of detail, from 0 to {@link #getLevelCount()} - 1.
+     * @return Returns the amount of triangles drawn at the level.
+     */
+    public int getLevelTriangleCount(int level)
+    {
+        if(level <= 0) return indiciesLen / 3;
+        return levelIndicies[level - 1].length / 3;
+    }
+    
+    /**
+     * Gets the unique ID of this model. IDs start at 0 and are never re-used, so they can index arrays.
+     * @return Returns the unique ID of this model.
+     */
+    public int getModelID()
+    {
+        return modelID;
+    }
+    
+    /**
+     * Gets the radius of the model's bounding sphere, which is centered on the middle of the bounding box.
+     * @return Returns the radius of the bounding sphere in model space, or -1 if the model has no bounds.
+     */
+    public float getBoundingRadius()
+    {
+        return boundsRadius;
+    }
+    
+    /**
+     * Gets the corner of the model's axis-aligned bounding box with the largest coordinates, in model space.
+     * @return Returns the (x, y, z) of the largest corner of the bounding box.
+     */
+    public float[] getBoundsMax()
+    {
+        return boundsMax;
+    }
+    
+    /**
+     * Gets the corner of the model's axis-aligned bounding box with the smallest coordinates, in model space.
+     * @return Returns the (x, y, z) of the smallest corner of the bounding box.
+     */
+    public float[] getBoundsMin()
+    {
+        return boundsMin;
+    }
+    
+    /**
+     * Gets the three vertices of every triangle of the model.
+     * @return Returns the index array of the model. Do not modify.
+     */
+    public int[] getIndicies()
+    {
+        return indicies;
+    }
+    
+    /**
+     * Gets the normal vector of every vertex of the model.
+     * @return Returns the (x, y, z) of every normal, in model space. Do not modify.
+     */
+    public float[] getNormals()
+    {
+        return normals;
+    }
+    
+    /**
+     * Gets the triangles of the occluder attached to this model.
+     * @return Returns the three vertices of every triangle of the occluder, or null if the model has no occluder.
+     */
+    public int[] getOccluderIndicies()
+    {
+        return occluderIndicies;
+    }
+    
+    /**
+     * Gets the vertices of the occluder attached to this model.
+     * @return Returns the (x, y, z) of every vertex of the occluder in model space, or null if the model has no occluder.
+     */
+    public float[] getOccluderVerticies()
+    {
+        return occluderVerticies;
+    }
+    
+    /**
+     * Gets the texture coordinates of every vertex of the model.
+     * @return Returns the (u, v) of every vertex, or null if the model was not loaded with texture coordinates. Do not modify.
+     */
+    public float[] getTextureCoords()
+    {
+        return textureCoords;
+    }
+    
+    /**
+     * Gets the position of every vertex of the model.
+     * @return Returns the (x, y, z) of every vertex, in model space. Do not modify.
+     */
+    public float[] getVerticies()
+    {
+        return verticies;
+    }
+    
+    /**
+     * Gets the {@link wrath.client.graphics.ShaderProgram} used to draw many copies of this model at once.
+     * @return Returns the instanced {@link wrath.client.graphics.ShaderProgram} attached to this model, or null if the model cannot be instanced.
+     */
+    public ShaderProgram getInstancedShader()
+    {
+        return instancedShader;
+    }
+    
+    /**
+     * Gets the ID of the {@link wrath.client.Profiler} scope used to time the rendering of this model.
+     * @return Returns the ID of the {@link wrath.client.Profiler} scope for this model.
+     */
+    public int getProfilerScope()
+    {
+        if(profilerScope == -1) profilerScope = Game.getCurrentInstance().getProfiler().registerScope("Model '" + name + "'");
+        return profilerScope;
     }
     
     /**
@@ -417,79 +631,18 @@ public class Model implements Renderable, Closeable, Reloadable
         int[] iarray;
         
         File modelFile = new File("assets/models/" + name);
-        if(modelFile.exists())
+        ObjParser obj = modelFile.exists() ? ObjParser.parse(modelFile) : null;
+        if(obj != null)
         {
-            ArrayList<String> src = readObjFile(modelFile);
-            ArrayList<Vector3f> verticies = new ArrayList<>();
-            ArrayList<Vector2f> texCoords = new ArrayList<>();
-            ArrayList<Vector3f> normals = new ArrayList<>();
-            ArrayList<Integer> indicies = new ArrayList<>();
-            float[] tarray = null;
-            
-            boolean tmp = true;
-            for(String inp : src) 
-            {
-                String[] buf = inp.split(" ");
-                if(inp.startsWith("v ")) verticies.add(new Vector3f(Float.parseFloat(buf[1]), Float.parseFloat(buf[2]), Float.parseFloat(buf[3])));
-                else if(inp.startsWith("vt ")) texCoords.add(new Vector2f(Float.parseFloat(buf[1]), Float.parseFloat(buf[2])));
-                else if(inp.startsWith("vn ")) normals.add(new Vector3f(Float.parseFloat(buf[1]), Float.parseFloat(buf[2]), Float.parseFloat(buf[3])));
-                else if(inp.startsWith("f ")) 
-                {
-                    if(tmp)
-                    {
-                        varray = new float[verticies.size() * 3];
-                        narray = new float[verticies.size() * 3];
-                        tarray = new float[verticies.size() * 2];
-                        tmp = false;
-                    }
-
-                    for(int x = 1; x <= 3; x++) 
-                    {
-                        String[] curDat;
-                        if(buf[x].contains("//")) 
-                        {
-                            curDat = buf[x].split("//");
-
-                            int ptr = Integer.parseInt(curDat[0]) - 1;
-                            indicies.add(ptr);
-                            Vector3f norm = normals.get(Integer.parseInt(curDat[1]) - 1);
-                            narray[ptr * 3] = norm.x;
-                            narray[ptr * 3 + 1] = norm.y;
-                            narray[ptr * 3 + 2] = norm.z;
-                        }
-                        else 
-                        {
-                            curDat = buf[x].split("/");
-
-                            int ptr = Integer.parseInt(curDat[0]) - 1;
-                            indicies.add(ptr);
-                            Vector2f tex = texCoords.get(Integer.parseInt(curDat[1]) - 1);
-                            tarray[ptr * 2] = tex.x;
-                            tarray[ptr * 2 + 1] = 1 - tex.y;
-                            Vector3f norm = normals.get(Integer.parseInt(curDat[2]) - 1);
-                            narray[ptr * 3] = norm.x;
-                            narray[ptr * 3 + 1] = norm.y;
-                            narray[ptr * 3 + 2] = norm.z;
-                        }
-                    }
-                }
-            }
-
-        
-            int i = 0;
-            for(Vector3f ve : verticies)
-            {
-                varray[i] = ve.x;
-                varray[i + 1] = ve.y;
-                varray[i + 2] = ve.z;
-                i += 3;
-            }
-            iarray = new int[indicies.size()];
-            for(int z = 0; z < indicies.size(); z++)
-                iarray[z] = indicies.get(z);
+            varray = obj.getVerticies();
+            narray = obj.getNormals();
+            iarray = obj.getIndicies();
             
-            textureCoords = tarray;
+            textureCoords = obj.getTextureCoords();
             indiciesLen = iarray.length;
+            this.verticies = varray;
+            this.normals = narray;
+            this.indicies = iarray;
         }
         else
         {
@@ -501,7 +654,7 @@ public class Model implements Renderable, Closeable, Reloadable
         
         // Generating VAO
         vao = GL30.glGenVertexArrays();
-        GL30.glBindVertexArray(vao);
+        GLState.current().bindVertexArray(vao);
         
         // Generating Verticies VBO
         int vtvboid = GL15.glGenBuffers();
@@ -543,34 +696,91 @@ public class Model implements Renderable, Closeable, Reloadable
         vbos.add(invboid);
         vbos.add(nmvboid);
         vbos.add(texvboid);
+        indexVbo = invboid;
+        computeBounds(varray);
         Game.getCurrentInstance().getLogger().println("Reloaded model '" + name + "'!");
-        if(defaultShaders) this.attachShader(ShaderProgram.DEFAULT_SHADER);
+        if(levelsGenerated) generateConfiguredLevels();
+        else if(levelIndicies.length > 0) uploadIndexBuffer();
+        if(defaultShaders)
+        {
+            this.attachShader(Game.getCurrentInstance().getAssetRegistry().getDefaultShader());
+            if(Game.getCurrentInstance().getAssetRegistry().getDefaultInstancedShader() != null) this.attachInstancedShader(Game.getCurrentInstance().getAssetRegistry().getDefaultInstancedShader());
+        }
         
         // Unbinding OpenGL Objects
-        GL30.glBindVertexArray(0);
+        GLState.current().bindVertexArray(0);
         GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
     }
     
     @Override
     public void render(boolean consolidated)
+    {
+        render(consolidated, 0);
+    }
+    
+    /**
+     * Renders one level of detail of the model.
+     * @param consolidated If true, the model is set up before and cleaned up after the draw.
+     * @param level The level of detail to draw, from 0 to {@link #getLevelCount()} - 1. Levels the model does not have draw the full model.
+     */
+    public void render(boolean consolidated, int level)
     {
         if(!shader.isFinalized()) shader.finish();
         if(consolidated) renderSetup();
         
-        GL11.glDrawElements(GL11.GL_TRIANGLES, indiciesLen, GL11.GL_UNSIGNED_INT, 0);
+        if(level > 0 && level <= levelIndicies.length) GL11.glDrawElements(GL11.GL_TRIANGLES, levelIndicies[level - 1].length, GL11.GL_UNSIGNED_INT, levelOffsets[level - 1] * 4L);
+        else GL11.glDrawElements(GL11.GL_TRIANGLES, indiciesLen, GL11.GL_UNSIGNED_INT, 0);
 
         if(consolidated) renderStop();
     }
     
+    /**
+     * Draws many copies of this model with one instanced draw call, using the instanced shader.
+     * The model must already be set up with {@link #renderSetup()} or {@link #renderSetup(wrath.client.graphics.Model)}.
+     * @param instanceData The per-instance data, {@link #INSTANCE_STRIDE} floats per instance, between the position and limit of the buffer.
+     * @param instances The amount of copies to draw.
+     */
+    public void renderInstanced(FloatBuffer instanceData, int instances)
+    {
+        renderInstanced(instanceData, instances, 0);
+    }
+    
+    /**
+     * Draws many copies of one level of detail of this model with one instanced draw call, using the instanced shader.
+     * The model must already be set up with {@link #renderSetup()} or {@link #renderSetup(wrath.client.graphics.Model)}.
+     * @param instanceData The per-instance data, {@link #INSTANCE_STRIDE} floats per instance, between the position and limit of the buffer.
+     * @param instances The amount of copies to draw.
+     * @param level The level of detail to draw, from 0 to {@link #getLevelCount()} - 1.
+     */
+    public void renderInstanced(FloatBuffer instanceData, int instances, int level)
+    {
+        if(instancedShader == null || instances <= 0) return;
+        if(!instancedShader.isFinalized()) instancedShader.finish();
+        if(instanceVbo == 0) createInstanceBuffer();
+        
+        GLState state = GLState.current();
+        state.bindVertexArray(vao);
+        instancedShader.updateViewMatrix();
+        instancedShader.bindShader();
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, instanceVbo);
+        //Re-specifying the whole store lets the driver hand out fresh memory instead of waiting on the previous frame's draw.
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, instanceData, GL15.GL_STREAM_DRAW);
+        for(int i = INSTANCE_TRANSFORM_ATTRIB_INDEX; i <= INSTANCE_LIGHT_COLOR_ATTRIB_INDEX; i++) state.enableVertexAttribArray(i);
+        if(level > 0 && level <= levelIndicies.length) GL31.glDrawElementsInstanced(GL11.GL_TRIANGLES, levelIndicies[level - 1].length, GL11.GL_UNSIGNED_INT, levelOffsets[level - 1] * 4L, instances);
+        else GL31.glDrawElementsInstanced(GL11.GL_TRIANGLES, indiciesLen, GL11.GL_UNSIGNED_INT, 0, instances);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+    }
+    
     @Override
     public void renderSetup()
     {
-        GL30.glBindVertexArray(vao);
-        GL20.glEnableVertexAttribArray(VERTICIES_ATTRIB_INDEX);
-        GL20.glEnableVertexAttribArray(NORMALS_ATTRIB_INDEX);
+        GLState state = GLState.current();
+        state.bindVertexArray(vao);
+        state.enableVertexAttribArray(VERTICIES_ATTRIB_INDEX);
+        state.enableVertexAttribArray(NORMALS_ATTRIB_INDEX);
         if(texture != null)
         {
-            GL20.glEnableVertexAttribArray(TEXTURE_ATTRIB_INDEX);
+            state.enableVertexAttribArray(TEXTURE_ATTRIB_INDEX);
             texture.bindTexture();
         }
         
@@ -581,14 +791,110 @@ public class Model implements Renderable, Closeable, Reloadable
         }
     }
     
+    /**
+     * Prepares OpenGL to draw this model right after another model.
+     * Binds go through the {@link wrath.client.graphics.GLState}, so state shared with the previous model is not bound again, and the view matrix is only uploaded when the shader changes.
+     * @param previous The {@link wrath.client.graphics.Model} that was set up last, or null if none is set up.
+     */
+    public void renderSetup(Model previous)
+    {
+        if(previous == this) return;
+        if(previous == null)
+        {
+            renderSetup();
+            return;
+        }
+        
+        GLState state = GLState.current();
+        state.bindVertexArray(vao);
+        state.enableVertexAttribArray(VERTICIES_ATTRIB_INDEX);
+        state.enableVertexAttribArray(NORMALS_ATTRIB_INDEX);
+        if(texture != null)
+        {
+            state.enableVertexAttribArray(TEXTURE_ATTRIB_INDEX);
+            texture.bindTexture();
+        }
+        else if(previous.texture != null) Texture.unbindTextures();
+        
+        if(shader != previous.shader)
+        {
+            if(shader != null)
+            {
+                shader.updateViewMatrix();
+                shader.bindShader();
+            }
+            else ShaderProgram.unbindShaders();
+        }
+    }
+    
     @Override
     public void renderStop()
     {
+        GLState state = GLState.current();
         ShaderProgram.unbindShaders();
-        if(texture != null) GL20.glDisableVertexAttribArray(TEXTURE_ATTRIB_INDEX);
+        if(texture != null) state.disableVertexAttribArray(TEXTURE_ATTRIB_INDEX);
         Texture.unbindTextures();
-        GL20.glDisableVertexAttribArray(VERTICIES_ATTRIB_INDEX);
-        GL20.glDisableVertexAttribArray(NORMALS_ATTRIB_INDEX);
-        GL30.glBindVertexArray(0);
+        state.disableVertexAttribArray(VERTICIES_ATTRIB_INDEX);
+        state.disableVertexAttribArray(NORMALS_ATTRIB_INDEX);
+        state.bindVertexArray(0);
+    }
+    
+    /**
+     * Picks the level of detail to draw for the height of the model on screen.
+     * A level only changes once the size is past the level's threshold by the hysteresis, so models near a threshold do not flicker between two levels.
+     * @param screenSize The height of the model on screen, as a fraction of the screen's height.
+     * @param current The level drawn in the previous frame.
+     * @param hysteresis The fraction of a threshold the size must pass it by to change levels, such as 0.1.
+     * @return Returns the level of detail to draw.
+     */
+    public int selectLevel(float screenSize, int current, float hysteresis)
+    {
+        int coarser = 0;
+        int finer = 0;
+        for(float threshold : levelScreenSizes)
+        {
+            if(screenSize < threshold * (1 - hysteresis)) coarser++;
+            if(screenSize < threshold * (1 + hysteresis)) finer++;
+        }
+        
+        if(current < coarser) return coarser;
+        if(current > finer) return finer;
+        return current;
+    }
+    
+    /**
+     * Replaces the levels of detail of the model with ones made by hand.
+     * Each level is a list of triangles using the vertices of the full model, so the levels share its vertices, normals and texture coordinates.
+     * @param levelIndicies The three vertices of every triangle of each level, starting with level 1. At most {@link #MAX_LEVELS} - 1 levels are used.
+     * @param screenSizes The height of the model on screen, as a fraction of the screen's height, below which each level is used. Must get smaller from one level to the next.
+     */
+    public void setLevelsOfDetail(int[][] levelIndicies, float[] screenSizes)
+    {
+        int count = Math.min(Math.min(levelIndicies.length, screenSizes.length), MAX_LEVELS - 1);
+        this.levelIndicies = Arrays.copyOf(levelIndicies, count);
+        this.levelScreenSizes = Arrays.copyOf(screenSizes, count);
+        this.levelOffsets = new int[count];
+        this.levelsGenerated = false;
+        uploadIndexBuffer();
+    }
+    
+    private void uploadIndexBuffer()
+    {
+        //Every level is stored after the full model in the same element buffer, which the vertex array keeps bound.
+        int total = indiciesLen;
+        for(int[] level : levelIndicies) total += level.length;
+        IntBuffer ibuffer = BufferUtils.createIntBuffer(total);
+        ibuffer.put(indicies, 0, indiciesLen);
+        for(int l = 0; l < levelIndicies.length; l++)
+        {
+            levelOffsets[l] = ibuffer.position();
+            ibuffer.put(levelIndicies[l]);
+        }
+        ibuffer.flip();
+        
+        GLState.current().bindVertexArray(vao);
+        GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, indexVbo);
+        GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, ibuffer, GL15.GL_STATIC_DRAW);
+        GLState.current().bindVertexArray(0);
     }
 }
\ No newline at end of file
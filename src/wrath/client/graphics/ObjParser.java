@@ -0,0 +1,451 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client.graphics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Class to read Wavefront .OBJ files into flat arrays, ready to be passed to {@link wrath.client.graphics.Model#createModel(java.lang.String, float[], int[], float[])}.
+ * The file is memory-mapped and parsed byte by byte, straight into growable primitive arrays, so no line {@link java.lang.String}s or boxed numbers are created.
+ * Faces with more than three corners are split into a fan of triangles, negative (relative) indicies are resolved, and 'o', 'g' and 'usemtl' lines start a new group of indicies.
+ * As with the old loader, each corner's texture coordinates and normal are stored at the index of its position, so positions are not duplicated along texture seams.
+ * @author Trent Spears
+ */
+public class ObjParser
+{
+    private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    
+    /**
+     * Reads and parses an .OBJ file.
+     * @param file The .OBJ {@link java.io.File} to read.
+     * @return Returns the parsed file, or null if it could not be read or a face refers to a vertex that does not exist.
+     */
+    public static ObjParser parse(File file)
+    {
+        try(RandomAccessFile in = new RandomAccessFile(file, "r"); FileChannel channel = in.getChannel())
+        {
+            ObjParser parser = new ObjParser(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            parser.parse();
+            if(parser.invalidIndex)
+            {
+                System.err.println("Could not load model from file '" + file.getName() + "'! A face refers to a vertex that does not exist!");
+                return null;
+            }
+            return parser;
+        }
+        catch(IOException e)
+        {
+            System.err.println("Could not load model from file '" + file.getName() + "'! I/O Error!");
+            return null;
+        }
+    }
+    
+    // Object
+    
+    private final MappedByteBuffer buf;
+    private final int end;
+    private int pos = 0;
+    
+    private float[] positions = new float[3 * 1024];
+    private int positionCount = 0;
+    private float[] texCoords = new float[2 * 1024];
+    private int texCoordCount = 0;
+    private float[] normals = new float[3 * 1024];
+    private int normalCount = 0;
+    private int[] indicies = new int[3 * 1024];
+    private int indexCount = 0;
+    //Each corner is {position, texture coordinate, normal}, with -1 for a missing attribute.
+    private int[] corners = new int[3 * 1024];
+    private int cornerCount = 0;
+    private int[] face = new int[8];
+    private boolean invalidIndex = false;
+    
+    private final ArrayList<String> groupNames = new ArrayList<>();
+    private final ArrayList<String> groupMaterials = new ArrayList<>();
+    private int[] groupStarts = new int[8];
+    
+    private float[] outNormals = null;
+    private float[] outTexCoords = null;
+    
+    private ObjParser(MappedByteBuffer buf)
+    {
+        this.buf = buf;
+        this.end = buf.limit();
+    }
+    
+    /**
+     * Gets the amount of groups in the file. A group starts at every 'o', 'g' or 'usemtl' line, and one group holds every face before the first of those.
+     * Groups without any faces are dropped.
+     * @return Returns the amount of groups in the file.
+     */
+    public int getGroupCount()
+    {
+        return groupNames.size();
+    }
+    
+    /**
+     * Gets the amount of indicies in a group.
+     * @param group The index of the group.
+     * @return Returns the amount of indicies, three per triangle, in the group.
+     */
+    public int getGroupIndexCount(int group)
+    {
+        int next = group + 1 < groupNames.size() ? groupStarts[group + 1] : indexCount;
+        return next - groupStarts[group];
+    }
+    
+    /**
+     * Gets where a group starts in the array returned by {@link #getIndicies()}.
+     * @param group The index of the group.
+     * @return Returns the position of the group's first index.
+     */
+    public int getGroupIndexStart(int group)
+    {
+        return groupStarts[group];
+    }
+    
+    /**
+     * Gets the material a group is drawn with, from its last 'usemtl' line.
+     * @param group The index of the group.
+     * @return Returns the name of the material, or null if none was set.
+     */
+    public String getGroupMaterial(int group)
+    {
+        return groupMaterials.get(group);
+    }
+    
+    /**
+     * Gets the name of a group, from its last 'o' or 'g' line.
+     * @param group The index of the group.
+     * @return Returns the name of the group, or null if it has none.
+     */
+    public String getGroupName(int group)
+    {
+        return groupNames.get(group);
+    }
+    
+    /**
+     * Gets the triangle indicies into the verticies of the file.
+     * @return Returns a new array of three indicies per triangle.
+     */
+    public int[] getIndicies()
+    {
+        return Arrays.copyOf(indicies, indexCount);
+    }
+    
+    /**
+     * Gets the normal of every vertex, taken from the last face corner that used the vertex.
+     * @return Returns an array of three floats per vertex, which is not copied. Verticies without a normal have a zero normal.
+     */
+    public float[] getNormals()
+    {
+        return outNormals;
+    }
+    
+    /**
+     * Gets the texture coordinates of every vertex, taken from the last face corner that used the vertex. The vertical coordinate is flipped for OpenGL.
+     * @return Returns an array of two floats per vertex, which is not copied.
+     */
+    public float[] getTextureCoords()
+    {
+        return outTexCoords;
+    }
+    
+    /**
+     * Gets the amount of verticies in the file.
+     * @return Returns the amount of 'v' lines in the file.
+     */
+    public int getVertexCount()
+    {
+        return positionCount / 3;
+    }
+    
+    /**
+     * Gets the positions of the verticies of the file.
+     * @return Returns a new array of three floats per vertex.
+     */
+    public float[] getVerticies()
+    {
+        return Arrays.copyOf(positions, positionCount);
+    }
+    
+    private void parse()
+    {
+        startGroup(null, null);
+        while(pos < end)
+        {
+            skipSpaces();
+            if(pos >= end) break;
+            byte c = buf.get(pos);
+            byte n = pos + 1 < end ? buf.get(pos + 1) : (byte) '\n';
+            if(c == 'v' && isSpace(n))
+            {
+                pos++;
+                if(positionCount + 3 > positions.length) positions = Arrays.copyOf(positions, positions.length * 2);
+                positions[positionCount++] = readFloat();
+                positions[positionCount++] = readFloat();
+                positions[positionCount++] = readFloat();
+            }
+            else if(c == 'v' && n == 't')
+            {
+                pos += 2;
+                if(texCoordCount + 2 > texCoords.length) texCoords = Arrays.copyOf(texCoords, texCoords.length * 2);
+                texCoords[texCoordCount++] = readFloat();
+                texCoords[texCoordCount++] = readFloat();
+            }
+            else if(c == 'v' && n == 'n')
+            {
+                pos += 2;
+                if(normalCount + 3 > normals.length) normals = Arrays.copyOf(normals, normals.length * 2);
+                normals[normalCount++] = readFloat();
+                normals[normalCount++] = readFloat();
+                normals[normalCount++] = readFloat();
+            }
+            else if(c == 'f' && isSpace(n))
+            {
+                pos++;
+                readFace();
+            }
+            else if((c == 'o' || c == 'g') && isSpace(n))
+            {
+                pos++;
+                startGroup(readName(), groupMaterials.get(groupMaterials.size() - 1));
+            }
+            else if(c == 'u' && matches("usemtl") && pos + 6 < end && isSpace(buf.get(pos + 6)))
+            {
+                pos += 6;
+                String material = readName();
+                startGroup(groupNames.get(groupNames.size() - 1), material);
+            }
+            skipLine();
+        }
+        if(getGroupIndexCount(groupNames.size() - 1) == 0 && groupNames.size() > 1) removeLastGroup();
+        
+        //Every corner writes its attributes at the index of its position, so the last corner to use a position wins.
+        int vertexCount = positionCount / 3;
+        outNormals = new float[vertexCount * 3];
+        outTexCoords = new float[vertexCount * 2];
+        for(int i = 0; i < cornerCount; i += 3)
+        {
+            int v = corners[i], t = corners[i + 1], nm = corners[i + 2];
+            if(v < 0 || v >= vertexCount) continue;
+            if(t >= 0 && t * 2 + 1 < texCoordCount)
+            {
+                outTexCoords[v * 2] = texCoords[t * 2];
+                outTexCoords[v * 2 + 1] = 1 - texCoords[t * 2 + 1];
+            }
+            if(nm >= 0 && nm * 3 + 2 < normalCount)
+            {
+                outNormals[v * 3] = normals[nm * 3];
+                outNormals[v * 3 + 1] = normals[nm * 3 + 1];
+                outNormals[v * 3 + 2] = normals[nm * 3 + 2];
+            }
+        }
+    }
+    
+    private boolean isSpace(byte c)
+    {
+        return c == ' ' || c == '\t';
+    }
+    
+    private boolean matches(String keyword)
+    {
+        if(pos + keyword.length() > end) return false;
+        for(int i = 0; i < keyword.length(); i++) if(buf.get(pos + i) != keyword.charAt(i)) return false;
+        return true;
+    }
+    
+    private void readFace()
+    {
+        int refs = 0;
+        while(true)
+        {
+            skipSpaces();
+            if(pos >= end) break;
+            byte c = buf.get(pos);
+            if(c == '\n' || c == '\r' || c == '#') break;
+            
+            int v = resolve(readInt(), positionCount / 3);
+            int t = -1, nm = -1;
+            if(pos < end && buf.get(pos) == '/')
+            {
+                pos++;
+                if(pos < end && buf.get(pos) != '/' && !isSpace(buf.get(pos))) t = resolve(readInt(), texCoordCount / 2);
+                if(pos < end && buf.get(pos) == '/')
+                {
+                    pos++;
+                    nm = resolve(readInt(), normalCount / 3);
+                }
+            }
+            //Anything else in the reference, such as a malformed number, is skipped.
+            while(pos < end && !isSpace(buf.get(pos)) && buf.get(pos) != '\n' && buf.get(pos) != '\r') pos++;
+            //Positions must be defined before the faces that use them, as with the old loader.
+            if(v < 0 || v >= positionCount / 3)
+            {
+                invalidIndex = true;
+                continue;
+            }
+            
+            if(refs * 3 + 3 > face.length) face = Arrays.copyOf(face, face.length * 2);
+            face[refs * 3] = v;
+            face[refs * 3 + 1] = t;
+            face[refs * 3 + 2] = nm;
+            refs++;
+        }
+        if(refs < 3) return;
+        
+        if(cornerCount + refs * 3 > corners.length) corners = Arrays.copyOf(corners, Math.max(corners.length * 2, cornerCount + refs * 3));
+        System.arraycopy(face, 0, corners, cornerCount, refs * 3);
+        cornerCount += refs * 3;
+        
+        //Faces are split into a fan around their first corner.
+        int triangles = refs - 2;
+        if(indexCount + triangles * 3 > indicies.length) indicies = Arrays.copyOf(indicies, Math.max(indicies.length * 2, indexCount + triangles * 3));
+        for(int i = 1; i <= triangles; i++)
+        {
+            indicies[indexCount++] = face[0];
+            indicies[indexCount++] = face[i * 3];
+            indicies[indexCount++] = face[i * 3 + 3];
+        }
+    }
+    
+    private float readFloat()
+    {
+        skipSpaces();
+        boolean negative = false;
+        if(pos < end && (buf.get(pos) == '-' || buf.get(pos) == '+')) negative = buf.get(pos++) == '-';
+        
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        byte c;
+        while(pos < end && (c = buf.get(pos)) >= '0' && c <= '9')
+        {
+            //Digits past what a long can hold only change the exponent.
+            if(digits < 18) mantissa = mantissa * 10 + (c - '0');
+            else exponent++;
+            if(mantissa != 0) digits++;
+            pos++;
+        }
+        if(pos < end && buf.get(pos) == '.')
+        {
+            pos++;
+            while(pos < end && (c = buf.get(pos)) >= '0' && c <= '9')
+            {
+                if(digits < 18)
+                {
+                    mantissa = mantissa * 10 + (c - '0');
+                    exponent--;
+                    if(mantissa != 0) digits++;
+                }
+                pos++;
+            }
+        }
+        if(pos < end && (buf.get(pos) == 'e' || buf.get(pos) == 'E'))
+        {
+            pos++;
+            boolean negExp = false;
+            if(pos < end && (buf.get(pos) == '-' || buf.get(pos) == '+')) negExp = buf.get(pos++) == '-';
+            int e = 0;
+            while(pos < end && (c = buf.get(pos)) >= '0' && c <= '9')
+            {
+                if(e < 1000) e = e * 10 + (c - '0');
+                pos++;
+            }
+            exponent += negExp ? -e : e;
+        }
+        
+        double value = mantissa;
+        if(exponent < 0) value = -exponent < POW10.length ? value / POW10[-exponent] : value / Math.pow(10, -exponent);
+        else if(exponent > 0) value = exponent < POW10.length ? value * POW10[exponent] : value * Math.pow(10, exponent);
+        return (float)(negative ? -value : value);
+    }
+    
+    private int readInt()
+    {
+        boolean negative = false;
+        if(pos < end && (buf.get(pos) == '-' || buf.get(pos) == '+')) negative = buf.get(pos++) == '-';
+        int value = 0;
+        byte c;
+        while(pos < end && (c = buf.get(pos)) >= '0' && c <= '9')
+        {
+            value = value * 10 + (c - '0');
+            pos++;
+        }
+        return negative ? -value : value;
+    }
+    
+    private String readName()
+    {
+        skipSpaces();
+        int start = pos;
+        int last = pos;
+        while(pos < end && buf.get(pos) != '\n' && buf.get(pos) != '\r')
+        {
+            if(!isSpace(buf.get(pos))) last = pos + 1;
+            pos++;
+        }
+        if(last == start) return null;
+        byte[] name = new byte[last - start];
+        for(int i = 0; i < name.length; i++) name[i] = buf.get(start + i);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+    
+    private void removeLastGroup()
+    {
+        groupNames.remove(groupNames.size() - 1);
+        groupMaterials.remove(groupMaterials.size() - 1);
+    }
+    
+    /**
+     * OBJ indicies start at 1, and negative indicies count back from the last element read so far.
+     */
+    private int resolve(int index, int count)
+    {
+        return index < 0 ? count + index : index - 1;
+    }
+    
+    private void skipLine()
+    {
+        while(pos < end && buf.get(pos) != '\n') pos++;
+        pos++;
+    }
+    
+    private void skipSpaces()
+    {
+        while(pos < end && isSpace(buf.get(pos))) pos++;
+    }
+    
+    private void startGroup(String name, String material)
+    {
+        //A group without faces is replaced rather than kept empty.
+        if(!groupNames.isEmpty() && getGroupIndexCount(groupNames.size() - 1) == 0) removeLastGroup();
+        int group = groupNames.size();
+        if(group == groupStarts.length) groupStarts = Arrays.copyOf(groupStarts, group * 2);
+        groupStarts[group] = indexCount;
+        groupNames.add(name);
+        groupMaterials.add(material);
+    }
+}
\ No newline at end of file
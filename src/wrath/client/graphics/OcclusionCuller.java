@@ -0,0 +1,299 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client.graphics;
+
+import java.util.Arrays;
+import org.lwjgl.util.vector.Matrix4f;
+
+/**
+ * Class to skip objects that are hidden behind other objects, by drawing a few large occluders into a small depth buffer on the CPU and testing bounding boxes against it.
+ * Occluders are low-poly meshes attached to a {@link wrath.client.graphics.Model} with {@link wrath.client.graphics.Model#attachOccluder(float[], int[])}.
+ * The buffer stores the inverse of the view depth, which changes linearly across the screen, so a larger value is closer to the camera.
+ * Every step only ever under-estimates what is hidden: pixels are written with the furthest depth found inside of them, boxes are tested with a border of one pixel so that an occluder's edge never hides what is just past it, and triangles crossing the camera plane are skipped.
+ * An object is therefore only rejected if it is really hidden. No OpenGL calls are made, so this class can be used without a window.
+ * @author Trent Spears
+ */
+public class OcclusionCuller
+{
+    private static final float MIN_W = 0.001f;
+    
+    private final int width;
+    private final int height;
+    private final float[] depth;
+    private final Matrix4f viewProjection = new Matrix4f();
+    private final Matrix4f mvp = new Matrix4f();
+    private final float[] corners = new float[24];
+    
+    private float[] screenX = new float[96];
+    private float[] screenY = new float[96];
+    private float[] screenZ = new float[96];
+    
+    private int occluders = 0;
+    private int triangles = 0;
+    private int tested = 0;
+    private int rejected = 0;
+    
+    /**
+     * Constructor.
+     * @param width The width, in pixels, of the depth buffer.
+     * @param height The height, in pixels, of the depth buffer.
+     */
+    public OcclusionCuller(int width, int height)
+    {
+        this.width = Math.max(1, width);
+        this.height = Math.max(1, height);
+        this.depth = new float[this.width * this.height];
+    }
+    
+    /**
+     * Draws an occluder into the depth buffer. Both sides of every triangle are drawn.
+     * @param verticies The (x, y, z) of every vertex of the occluder, in model space.
+     * @param indicies The three vertices of every triangle of the occluder.
+     * @param transformation The transformation {@link org.lwjgl.util.vector.Matrix4f} placing the occluder in the world.
+     */
+    public void addOccluder(float[] verticies, int[] indicies, Matrix4f transformation)
+    {
+        if(verticies == null || indicies == null) return;
+        Matrix4f.mul(viewProjection, transformation, mvp);
+        
+        int count = verticies.length / 3;
+        if(screenX.length < count)
+        {
+            screenX = new float[count];
+            screenY = new float[count];
+            screenZ = new float[count];
+        }
+        
+        //Vertices are projected in one pass, a negative depth marks the ones behind the camera.
+        float halfW = width * 0.5f;
+        float halfH = height * 0.5f;
+        for(int v = 0; v < count; v++)
+        {
+            float x = verticies[v * 3], y = verticies[v * 3 + 1], z = verticies[v * 3 + 2];
+            float cx = mvp.m00 * x + mvp.m10 * y + mvp.m20 * z + mvp.m30;
+            float cy = mvp.m01 * x + mvp.m11 * y + mvp.m21 * z + mvp.m31;
+            float cw = mvp.m03 * x + mvp.m13 * y + mvp.m23 * z + mvp.m33;
+            float inv = 1f / Math.max(cw, MIN_W);
+            screenX[v] = (cx * inv + 1f) * halfW;
+            screenY[v] = (cy * inv + 1f) * halfH;
+            screenZ[v] = cw < MIN_W ? -1f : inv;
+        }
+        
+        for(int t = 0; t + 2 < indicies.length; t += 3) rasterize(indicies[t], indicies[t + 1], indicies[t + 2]);
+        occluders++;
+    }
+    
+    /**
+     * Clears the depth buffer and the statistics for a new frame.
+     * @param projection The projection {@link org.lwjgl.util.vector.Matrix4f}, from {@link wrath.client.ClientUtils#createProjectionMatrix(float)}.
+     * @param view The view {@link org.lwjgl.util.vector.Matrix4f} of the camera.
+     */
+    public void begin(Matrix4f projection, Matrix4f view)
+    {
+        Matrix4f.mul(projection, view, viewProjection);
+        Arrays.fill(depth, 0f);
+        occluders = 0;
+        triangles = 0;
+        tested = 0;
+        rejected = 0;
+    }
+    
+    /**
+     * Gets the depth buffer. Each value is the inverse of the view depth of the nearest occluder covering the center of the pixel, or 0 if there is none.
+     * Rows are stored from the bottom of the screen to the top.
+     * @return Returns the depth buffer, as width * height floats.
+     */
+    public float[] getDepthBuffer()
+    {
+        return depth;
+    }
+    
+    /**
+     * Gets the height of the depth buffer.
+     * @return Returns the height, in pixels, of the depth buffer.
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+    
+    /**
+     * Gets the amount of occluders drawn since {@link #begin(org.lwjgl.util.vector.Matrix4f, org.lwjgl.util.vector.Matrix4f)}.
+     * @return Returns the amount of occluders drawn this frame.
+     */
+    public int getOccluders()
+    {
+        return occluders;
+    }
+    
+    /**
+     * Gets the amount of bounding boxes found hidden since {@link #begin(org.lwjgl.util.vector.Matrix4f, org.lwjgl.util.vector.Matrix4f)}.
+     * @return Returns the amount of rejected objects this frame.
+     */
+    public int getRejected()
+    {
+        return rejected;
+    }
+    
+    /**
+     * Gets the amount of bounding boxes tested since {@link #begin(org.lwjgl.util.vector.Matrix4f, org.lwjgl.util.vector.Matrix4f)}.
+     * @return Returns the amount of tested objects this frame.
+     */
+    public int getTested()
+    {
+        return tested;
+    }
+    
+    /**
+     * Gets the amount of occluder triangles written to the depth buffer since {@link #begin(org.lwjgl.util.vector.Matrix4f, org.lwjgl.util.vector.Matrix4f)}.
+     * Triangles that were skipped, for being behind the camera or too small to cover the center of a pixel, are not counted.
+     * @return Returns the amount of rasterized triangles this frame.
+     */
+    public int getTriangles()
+    {
+        return triangles;
+    }
+    
+    /**
+     * Gets the width of the depth buffer.
+     * @return Returns the width, in pixels, of the depth buffer.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+    
+    /**
+     * Tests if a bounding box is hidden behind the occluders drawn this frame.
+     * Boxes crossing the camera plane or outside of the screen are never reported hidden; the {@link wrath.client.graphics.Frustum} handles those.
+     * @param minX The smallest X coordinate of the box, in world space.
+     * @param minY The smallest Y coordinate of the box, in world space.
+     * @param minZ The smallest Z coordinate of the box, in world space.
+     * @param maxX The largest X coordinate of the box, in world space.
+     * @param maxY The largest Y coordinate of the box, in world space.
+     * @param maxZ The largest Z coordinate of the box, in world space.
+     * @return Returns true if the box is fully hidden.
+     */
+    public boolean isOccluded(float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+    {
+        tested++;
+        if(occluders == 0) return false;
+        
+        for(int c = 0; c < 8; c++)
+        {
+            corners[c * 3] = (c & 1) == 0 ? minX : maxX;
+            corners[c * 3 + 1] = (c & 2) == 0 ? minY : maxY;
+            corners[c * 3 + 2] = (c & 4) == 0 ? minZ : maxZ;
+        }
+        
+        final Matrix4f m = viewProjection;
+        float left = Float.POSITIVE_INFINITY, right = Float.NEGATIVE_INFINITY, bottom = Float.POSITIVE_INFINITY, top = Float.NEGATIVE_INFINITY;
+        float nearest = 0;
+        for(int c = 0; c < 24; c += 3)
+        {
+            float x = corners[c], y = corners[c + 1], z = corners[c + 2];
+            float cw = m.m03 * x + m.m13 * y + m.m23 * z + m.m33;
+            if(cw < MIN_W) return false;
+            float inv = 1f / cw;
+            float sx = ((m.m00 * x + m.m10 * y + m.m20 * z + m.m30) * inv + 1f) * width * 0.5f;
+            float sy = ((m.m01 * x + m.m11 * y + m.m21 * z + m.m31) * inv + 1f) * height * 0.5f;
+            left = Math.min(left, sx);
+            right = Math.max(right, sx);
+            bottom = Math.min(bottom, sy);
+            top = Math.max(top, sy);
+            nearest = Math.max(nearest, inv);
+        }
+        
+        //Every pixel the box touches, and the pixels around them, must hold an occluder closer than the nearest corner of the box.
+        if(right < 0 || left > width || top < 0 || bottom > height) return false;
+        int x0 = Math.max(0, (int) Math.floor(left) - 1);
+        int x1 = Math.min(width - 1, (int) Math.ceil(right));
+        int y0 = Math.max(0, (int) Math.floor(bottom) - 1);
+        int y1 = Math.min(height - 1, (int) Math.ceil(top));
+        
+        for(int y = y0; y <= y1; y++)
+        {
+            int row = y * width;
+            float farthest = Float.POSITIVE_INFINITY;
+            for(int x = x0; x <= x1; x++) farthest = Math.min(farthest, depth[row + x]);
+            if(farthest <= nearest) return false;
+        }
+        rejected++;
+        return true;
+    }
+    
+    private void rasterize(int i0, int i1, int i2)
+    {
+        float z0 = screenZ[i0], z1 = screenZ[i1], z2 = screenZ[i2];
+        if(z0 < 0 || z1 < 0 || z2 < 0) return;
+        
+        float x0 = screenX[i0], y0 = screenY[i0];
+        float x1 = screenX[i1], y1 = screenY[i1];
+        float x2 = screenX[i2], y2 = screenY[i2];
+        float area = (x1 - x0) * (y2 - y0) - (x2 - x0) * (y1 - y0);
+        if(area == 0) return;
+        if(area < 0)
+        {
+            //Both sides are drawn, so clockwise triangles are turned around.
+            float t = x1; x1 = x2; x2 = t;
+            t = y1; y1 = y2; y2 = t;
+            t = z1; z1 = z2; z2 = t;
+            area = -area;
+        }
+        
+        int px0 = Math.max(0, (int) Math.floor(Math.min(x0, Math.min(x1, x2))));
+        int px1 = Math.min(width - 1, (int) Math.ceil(Math.max(x0, Math.max(x1, x2))) - 1);
+        int py0 = Math.max(0, (int) Math.floor(Math.min(y0, Math.min(y1, y2))));
+        int py1 = Math.min(height - 1, (int) Math.ceil(Math.max(y0, Math.max(y1, y2))) - 1);
+        if(px0 > px1 || py0 > py1) return;
+        
+        //Edge functions, positive inside. A pixel is covered when its center is inside of all three edges.
+        float a0 = y1 - y2, b0 = x2 - x1, c0 = -(a0 * x1 + b0 * y1);
+        float a1 = y2 - y0, b1 = x0 - x2, c1 = -(a1 * x2 + b1 * y2);
+        float a2 = y0 - y1, b2 = x1 - x0, c2 = -(a2 * x0 + b2 * y0);
+        
+        //The depth plane, lowered to the furthest point inside of each pixel.
+        float dzdx = ((z1 - z0) * (y2 - y0) - (z2 - z0) * (y1 - y0)) / area;
+        float dzdy = ((x1 - x0) * (z2 - z0) - (x2 - x0) * (z1 - z0)) / area;
+        float zc = z0 - dzdx * x0 - dzdy * y0 - (Math.abs(dzdx) + Math.abs(dzdy)) * 0.5f;
+        
+        boolean written = false;
+        for(int y = py0; y <= py1; y++)
+        {
+            float cy = y + 0.5f;
+            float cx = px0 + 0.5f;
+            float e0 = a0 * cx + b0 * cy + c0;
+            float e1 = a1 * cx + b1 * cy + c1;
+            float e2 = a2 * cx + b2 * cy + c2;
+            float z = dzdx * cx + dzdy * cy + zc;
+            int row = y * width;
+            for(int x = px0; x <= px1; x++)
+            {
+                boolean inside = e0 >= 0 && e1 >= 0 && e2 >= 0;
+                float d = depth[row + x];
+                depth[row + x] = inside && z > d ? z : d;
+                written |= inside;
+                e0 += a0;
+                e1 += a1;
+                e2 += a2;
+                z += dzdx;
+            }
+        }
+        if(written) triangles++;
+    }
+}
\ No newline at end of file
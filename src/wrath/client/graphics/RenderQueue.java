@@ -0,0 +1,280 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client.graphics;
+
+import java.util.Arrays;
+
+/**
+ * Class to collect the draws of one frame and order them so that OpenGL state changes are kept to a minimum.
+ * Every draw carries a 64-bit sort key packing, from the most to the least significant bits, the render pass, shader, texture, vertex array, level of detail and depth.
+ * Draws are stored in flat arrays that grow when needed and are reused every frame, so queueing and sorting draws creates no garbage once the queue has grown to the size of a frame.
+ * @author Trent Spears
+ * @param <T> The type of renderer queued with each draw.
+ */
+public class RenderQueue<T extends Renderable>
+{
+    /**
+     * The render pass of terrain tiles.
+     */
+    public static final int PASS_TERRAIN = 0;
+    /**
+     * The render pass of entities.
+     */
+    public static final int PASS_ENTITIES = 1;
+    
+    private static final int PASS_SHIFT = 60;
+    private static final int SHADER_SHIFT = 48;
+    private static final int TEXTURE_SHIFT = 36;
+    private static final int VAO_SHIFT = 20;
+    private static final int LEVEL_SHIFT = 17;
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX_MASK = (1 << RADIX_BITS) - 1;
+    
+    /**
+     * Packs the state of a draw into a sort key.
+     * Draws are ordered by pass, then shader, texture and vertex array so that draws sharing state are submitted together, then front to back.
+     * @param pass The render pass, from 0 to 15. Lower passes are drawn first.
+     * @param model The {@link wrath.client.graphics.Model} to draw.
+     * @param depth The squared distance from the camera to the draw.
+     * @return Returns the sort key of the draw.
+     */
+    public static long createSortKey(int pass, Model model, float depth)
+    {
+        return createSortKey(pass, model, 0, depth);
+    }
+    
+    /**
+     * Packs the state of a draw of one level of detail into a sort key.
+     * Draws of the same model are ordered by level, so that draws of one level are next to each other.
+     * @param pass The render pass, from 0 to 15. Lower passes are drawn first.
+     * @param model The {@link wrath.client.graphics.Model} to draw.
+     * @param level The level of detail to draw, from 0 to {@link wrath.client.graphics.Model#MAX_LEVELS} - 1.
+     * @param depth The squared distance from the camera to the draw.
+     * @return Returns the sort key of the draw.
+     */
+    public static long createSortKey(int pass, Model model, int level, float depth)
+    {
+        long shader = model.getShader() == null ? 0 : model.getShader().getProgramID() & 0xFFF;
+        long texture = model.getTexture() == null ? 0 : model.getTexture().getTextureID() & 0xFFF;
+        long vao = model.getVaoID() & 0xFFFF;
+        //Positive floats order the same way as their bits, so only the top 17 bits are kept.
+        long quantized = (Float.floatToIntBits(Math.max(depth, 0f)) >>> 14) & 0x1FFFF;
+        return ((long)(pass & 0xF) << PASS_SHIFT) | (shader << SHADER_SHIFT) | (texture << TEXTURE_SHIFT) | (vao << VAO_SHIFT) | ((long)(level & 0x7) << LEVEL_SHIFT) | quantized;
+    }
+    
+    private Model[] models = new Model[64];
+    private Object[] renderers = new Object[64];
+    private long[] keys = new long[64];
+    private int[] data = new int[64];
+    private int count = 0;
+    
+    private int[] order = new int[64];
+    private int[] orderSwap = new int[64];
+    private long[] sortKeys = new long[64];
+    private long[] sortKeysSwap = new long[64];
+    private final int[] digitCounts = new int[1 << RADIX_BITS];
+    private boolean sorted = true;
+    
+    /**
+     * Queues a draw of a {@link wrath.client.graphics.Model}. Draws with no model are ignored.
+     * @param model The {@link wrath.client.graphics.Model} to draw.
+     * @param renderer The renderer that sets up the draw.
+     * @param key The sort key of the draw, from {@link #createSortKey(int, wrath.client.graphics.Model, float)}.
+     */
+    public void add(Model model, T renderer, long key)
+    {
+        add(model, renderer, key, -1);
+    }
+    
+    /**
+     * Queues a draw of a {@link wrath.client.graphics.Model} with a value kept for the draw, such as where its prepared parameters are stored. Draws with no model are ignored.
+     * @param model The {@link wrath.client.graphics.Model} to draw.
+     * @param renderer The renderer that sets up the draw.
+     * @param key The sort key of the draw, from {@link #createSortKey(int, wrath.client.graphics.Model, float)}.
+     * @param value The value to keep for the draw, returned by {@link #getData(int)}.
+     */
+    public void add(Model model, T renderer, long key, int value)
+    {
+        if(model == null) return;
+        
+        if(count == models.length)
+        {
+            int len = count * 2;
+            models = Arrays.copyOf(models, len);
+            renderers = Arrays.copyOf(renderers, len);
+            keys = Arrays.copyOf(keys, len);
+            data = Arrays.copyOf(data, len);
+            order = new int[len];
+            orderSwap = new int[len];
+            sortKeys = new long[len];
+            sortKeysSwap = new long[len];
+        }
+        models[count] = model;
+        renderers[count] = renderer;
+        keys[count] = key;
+        data[count] = value;
+        count++;
+        sorted = false;
+    }
+    
+    /**
+     * Gets the value kept for a draw.
+     * @param draw The index of the draw, in the order it was queued.
+     * @return Returns the value the draw was queued with, or -1 if it was queued without one.
+     */
+    public int getData(int draw)
+    {
+        return data[draw];
+    }
+    
+    /**
+     * Gets the sort key of a draw.
+     * @param draw The index of the draw, in the order it was queued.
+     * @return Returns the sort key of the draw.
+     */
+    public long getKey(int draw)
+    {
+        return keys[draw];
+    }
+    
+    /**
+     * Gets the level of detail of a draw.
+     * @param draw The index of the draw, in the order it was queued.
+     * @return Returns the level of detail the draw was queued with.
+     */
+    public int getLevel(int draw)
+    {
+        return (int)(keys[draw] >>> LEVEL_SHIFT) & 0x7;
+    }
+    
+    /**
+     * Gets the {@link wrath.client.graphics.Model} of a draw.
+     * @param draw The index of the draw, in the order it was queued.
+     * @return Returns the {@link wrath.client.graphics.Model} to draw.
+     */
+    public Model getModel(int draw)
+    {
+        return models[draw];
+    }
+    
+    /**
+     * Gets the render pass of a draw.
+     * @param draw The index of the draw, in the order it was queued.
+     * @return Returns the render pass the draw was queued in.
+     */
+    public int getPass(int draw)
+    {
+        return (int)(keys[draw] >>> PASS_SHIFT);
+    }
+    
+    /**
+     * Gets the renderer of a draw.
+     * @param draw The index of the draw, in the order it was queued.
+     * @return Returns the renderer queued with the draw.
+     */
+    @SuppressWarnings("unchecked")
+    public T getRenderer(int draw)
+    {
+        return (T) renderers[draw];
+    }
+    
+    /**
+     * Gets the draw at a position of the sorted order. {@link #sort()} must be called first.
+     * @param position The position in the sorted order, from 0 to {@link #size()}.
+     * @return Returns the index of the draw at that position.
+     */
+    public int getSorted(int position)
+    {
+        return order[position];
+    }
+    
+    /**
+     * Empties the queue for the next frame. The arrays are kept for re-use.
+     */
+    public void reset()
+    {
+        Arrays.fill(models, 0, count, null);
+        Arrays.fill(renderers, 0, count, null);
+        count = 0;
+        sorted = true;
+    }
+    
+    /**
+     * Gets the amount of draws queued this frame.
+     * @return Returns the amount of queued draws.
+     */
+    public int size()
+    {
+        return count;
+    }
+    
+    /**
+     * Orders the queued draws by their sort key with a least-significant-digit radix sort, which runs in linear time.
+     * Digits that are the same for every draw, such as the unused depth bits, are skipped. Draws with equal keys keep the order they were queued in.
+     */
+    public void sort()
+    {
+        if(sorted) return;
+        
+        for(int i = 0; i < count; i++)
+        {
+            order[i] = i;
+            sortKeys[i] = keys[i];
+        }
+        
+        int[] src = order;
+        int[] dst = orderSwap;
+        long[] srcKeys = sortKeys;
+        long[] dstKeys = sortKeysSwap;
+        for(int shift = 0; shift < 64; shift += RADIX_BITS)
+        {
+            Arrays.fill(digitCounts, 0);
+            for(int i = 0; i < count; i++) digitCounts[(int)(srcKeys[i] >>> shift) & RADIX_MASK]++;
+            if(digitCounts[(int)(srcKeys[0] >>> shift) & RADIX_MASK] == count) continue;
+            
+            int sum = 0;
+            for(int d = 0; d < digitCounts.length; d++)
+            {
+                int c = digitCounts[d];
+                digitCounts[d] = sum;
+                sum += c;
+            }
+            
+            for(int i = 0; i < count; i++)
+            {
+                int p = digitCounts[(int)(srcKeys[i] >>> shift) & RADIX_MASK]++;
+                dst[p] = src[i];
+                dstKeys[p] = srcKeys[i];
+            }
+            
+            int[] t = src;
+            src = dst;
+            dst = t;
+            long[] tk = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = tk;
+        }
+        
+        //The sorted order is in whichever array was written last.
+        order = src;
+        orderSwap = dst;
+        sortKeys = srcKeys;
+        sortKeysSwap = dstKeys;
+        sorted = true;
+    }
+}
\ No newline at end of file
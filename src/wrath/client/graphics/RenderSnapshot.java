@@ -0,0 +1,153 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client.graphics;
+
+import java.util.Arrays;
+import org.lwjgl.util.vector.Vector3f;
+import wrath.common.entities.Entity;
+
+/**
+ * Class to hold a copy of all state the renderer reads from the simulation, taken at the end of a tick.
+ * Snapshots are written by the simulation thread and read by the rendering thread, and are recycled by the {@link wrath.client.graphics.SnapshotBuffer}.
+ * @author Trent Spears
+ */
+public class RenderSnapshot
+{
+    protected static final int ENTITY_STRIDE = 13;
+    
+    private final Vector3f cameraPosition = new Vector3f();
+    private final Vector3f cameraOrientation = new Vector3f();
+    private float[] entityData = new float[ENTITY_STRIDE * 64];
+    private boolean[] entityLit = new boolean[64];
+    private EntityRenderer[] entityOwners = new EntityRenderer[64];
+    private int entityCount = 0;
+    private long tick = -1;
+    
+    /**
+     * Copies the state of the camera and every tracked renderer into this snapshot.
+     * @param tickNumber The number of the tick this snapshot was taken after.
+     * @param camera The {@link wrath.client.graphics.Camera} to copy.
+     * @param renderers The list of tracked {@link wrath.client.graphics.EntityRenderer}s, indexed by snapshot slot.
+     * @param count The amount of tracked renderers.
+     */
+    protected void capture(long tickNumber, Camera camera, EntityRenderer[] renderers, int count)
+    {
+        cameraPosition.x = camera.getPosition().x;
+        cameraPosition.y = camera.getPosition().y;
+        cameraPosition.z = camera.getPosition().z;
+        cameraOrientation.x = camera.getOrientation().x;
+        cameraOrientation.y = camera.getOrientation().y;
+        cameraOrientation.z = camera.getOrientation().z;
+        
+        if(entityOwners.length < count)
+        {
+            int size = Math.max(count, entityOwners.length * 2);
+            entityData = Arrays.copyOf(entityData, size * ENTITY_STRIDE);
+            entityLit = Arrays.copyOf(entityLit, size);
+            entityOwners = Arrays.copyOf(entityOwners, size);
+        }
+        
+        for(int i = 0; i < count; i++)
+        {
+            EntityRenderer r = renderers[i];
+            Entity e = r.getEntity();
+            int o = i * ENTITY_STRIDE;
+            entityOwners[i] = r;
+            entityData[o] = e.getLocation().x;
+            entityData[o + 1] = e.getLocation().y;
+            entityData[o + 2] = e.getLocation().z;
+            entityData[o + 3] = e.getOrientation().x;
+            entityData[o + 4] = e.getOrientation().y;
+            entityData[o + 5] = e.getOrientation().z;
+            entityData[o + 6] = e.getSizeScale();
+            
+            Light l = r.getLight();
+            entityLit[i] = l != null;
+            if(l != null)
+            {
+                entityData[o + 7] = l.getPosition().x;
+                entityData[o + 8] = l.getPosition().y;
+                entityData[o + 9] = l.getPosition().z;
+                entityData[o + 10] = l.getColor().getRed();
+                entityData[o + 11] = l.getColor().getGreen();
+                entityData[o + 12] = l.getColor().getBlue();
+            }
+        }
+        for(int i = count; i < entityCount; i++) entityOwners[i] = null;
+        entityCount = count;
+        tick = tickNumber;
+    }
+    
+    /**
+     * Gets the orientation of the player's {@link wrath.client.graphics.Camera} at the time of the snapshot.
+     * @return Returns the captured camera orientation. Do not modify.
+     */
+    public Vector3f getCameraOrientation()
+    {
+        return cameraOrientation;
+    }
+    
+    /**
+     * Gets the position of the player's {@link wrath.client.graphics.Camera} at the time of the snapshot.
+     * @return Returns the captured camera position. Do not modify.
+     */
+    public Vector3f getCameraPosition()
+    {
+        return cameraPosition;
+    }
+    
+    /**
+     * Gets the captured state of all tracked entities.
+     * Every entity takes up 13 floats, in order: location (3), orientation (3), scale (1), light position (3) and light color (3).
+     * @return Returns the flat array of captured entity state. Do not modify.
+     */
+    protected float[] getEntityData()
+    {
+        return entityData;
+    }
+    
+    /**
+     * Gets the number of the tick this snapshot was taken after.
+     * @return Returns the number of the tick this snapshot was taken after, or -1 if it has never been written.
+     */
+    public long getTick()
+    {
+        return tick;
+    }
+    
+    /**
+     * Checks whether or not the specified renderer's state was captured in this snapshot.
+     * @param renderer The {@link wrath.client.graphics.EntityRenderer} to look for.
+     * @param slot The snapshot slot assigned to the renderer.
+     * @return Returns true if the renderer's state is present at the specified slot.
+     */
+    protected boolean hasEntity(EntityRenderer renderer, int slot)
+    {
+        return slot >= 0 && slot < entityCount && entityOwners[slot] == renderer;
+    }
+    
+    /**
+     * Checks whether or not the renderer at the specified slot had a {@link wrath.client.graphics.Light} bound at the time of the snapshot.
+     * @param slot The snapshot slot assigned to the renderer.
+     * @return Returns true if light state was captured for the slot.
+     */
+    protected boolean isEntityLit(int slot)
+    {
+        return entityLit[slot];
+    }
+}
\ No newline at end of file
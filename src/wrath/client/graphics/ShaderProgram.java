@@ -26,6 +26,7 @@ import java.util.HashMap;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL31;
 import org.lwjgl.util.vector.Matrix4f;
 import org.lwjgl.util.vector.Vector3f;
 import wrath.client.Game;
@@ -38,9 +39,6 @@ import wrath.util.Logger;
  */
 public class ShaderProgram implements Closeable
 {
-    public static ShaderProgram DEFAULT_SHADER;
-    public static ShaderProgram DEFAULT_TERRAIN_SHADER;
-    
     /**
      * Reads the two specified shader files and compiles the shaders into an OpenGL program format.
      * It is recommended that shaders be stored in the 'assets/shaders' directory (which is not present by default).
@@ -126,8 +124,14 @@ public class ShaderProgram implements Closeable
     }
     
     private boolean finalized = false;
+    private boolean frameBlock = false;
+    private boolean lightValid = false;
+    private final Vector3f lastLightColor = new Vector3f();
+    private final Vector3f lastLightPosition = new Vector3f();
+    private final Vector3f drawLightColor = new Vector3f();
+    private final Vector3f drawLightPosition = new Vector3f();
     private final int programID, vertShaderID, fragShaderID;
-    private static final FloatBuffer matrixBuf = BufferUtils.createFloatBuffer(16);
+    private final FloatBuffer matrixBuf = BufferUtils.createFloatBuffer(16);
     private final HashMap<String, Integer> uniformMap = new HashMap<>();
     
     private ShaderProgram(int programID, int vertShaderID, int fragShaderID)
@@ -154,13 +158,15 @@ public class ShaderProgram implements Closeable
      */
     public void bindShader()
     {
-        GL20.glUseProgram(programID);
+        GLState.current().useProgram(programID);
     }
     
     @Override
     public void close()
     {
-        GL20.glUseProgram(0);
+        GLState state = GLState.current();
+        state.useProgram(0);
+        state.onProgramDeleted(programID);
         GL20.glDetachShader(programID, vertShaderID);
         GL20.glDetachShader(programID, fragShaderID);
         GL20.glDeleteShader(vertShaderID);
@@ -191,12 +197,21 @@ public class ShaderProgram implements Closeable
             if(ret != -1) return ret; 
         }
         
-        GL20.glUseProgram(programID);
         int ret = GL20.glGetUniformLocation(programID, variableName);
         uniformMap.put(variableName, ret);
         return ret;
     }
     
+    /**
+     * If true, the program reads the view and projection matrices from the {@link wrath.client.graphics.FrameUniforms} block, so they are never uploaded to it one by one.
+     * Only known once the program is finalized.
+     * @return Returns true if the program declares the frame uniform block.
+     */
+    public boolean hasFrameBlock()
+    {
+        return frameBlock;
+    }
+    
     /**
      * If true, the program cannot be edited and is ready for rendering.
      * @return Returns true if the program cannot be edited and is ready for rendering.
@@ -206,6 +221,40 @@ public class ShaderProgram implements Closeable
         return finalized;
     }
     
+    /**
+     * Changes the shader's transformation matrix, material and light to draw parameters prepared by {@link wrath.client.graphics.EntityRenderer#writeInstanceData(java.nio.FloatBuffer, int)}.
+     * @param data The {@link java.nio.FloatBuffer} holding the prepared parameters.
+     * @param offset The index of the first of the {@link wrath.client.graphics.Model#INSTANCE_STRIDE} floats of the draw.
+     */
+    public void setDrawData(FloatBuffer data, int offset)
+    {
+        setTransformationMatrix(data, offset);
+        GL20.glUniform1f(getUniformVariableLocation("reflectivity"), data.get(offset + 16));
+        GL20.glUniform1f(getUniformVariableLocation("shineDamper"), data.get(offset + 17));
+        drawLightPosition.set(data.get(offset + 18), data.get(offset + 19), data.get(offset + 20));
+        drawLightColor.set(data.get(offset + 21), data.get(offset + 22), data.get(offset + 23));
+        setLight(drawLightPosition, drawLightColor);
+    }
+    
+    /**
+     * Changes the light the shader's next draws are lit by.
+     * The last light is remembered, so draws sharing a light only upload it once. The values are copied.
+     * @param position The position of the light.
+     * @param color The color of the light.
+     */
+    public void setLight(Vector3f position, Vector3f color)
+    {
+        if(lightValid && position.x == lastLightPosition.x && position.y == lastLightPosition.y && position.z == lastLightPosition.z
+                && color.x == lastLightColor.x && color.y == lastLightColor.y && color.z == lastLightColor.z) return;
+        
+        bindShader();
+        GL20.glUniform3f(getUniformVariableLocation("lightPosition"), position.x, position.y, position.z);
+        GL20.glUniform3f(getUniformVariableLocation("lightColor"), color.x, color.y, color.z);
+        lastLightPosition.set(position.x, position.y, position.z);
+        lastLightColor.set(color.x, color.y, color.z);
+        lightValid = true;
+    }
+    
     /**
      * Changes the shader's projection matrix to the one specified.
      * This will only work with the 3D shader!
@@ -213,11 +262,10 @@ public class ShaderProgram implements Closeable
      */
     public void setProjectionMatrix(Matrix4f value)
     {
-        GL20.glUseProgram(programID);
-        FloatBuffer pbuf = BufferUtils.createFloatBuffer(16);
-        value.store(pbuf);
-        pbuf.flip();
-        GL20.glUniformMatrix4fv(getUniformVariableLocation("projectionMatrix"), false, pbuf);
+        bindShader();
+        value.store(matrixBuf);
+        matrixBuf.flip();
+        GL20.glUniformMatrix4fv(getUniformVariableLocation("projectionMatrix"), false, matrixBuf);
     }
     
     /**
@@ -226,12 +274,26 @@ public class ShaderProgram implements Closeable
      */
     public void setTransformationMatrix(Matrix4f value)
     {
-        GL20.glUseProgram(programID);
+        bindShader();
         value.store(matrixBuf);
         matrixBuf.flip();
         GL20.glUniformMatrix4fv(getUniformVariableLocation("transformationMatrix"), false, matrixBuf);
     }
     
+    /**
+     * Changes the shader's transformation matrix to one stored in a buffer, such as the draw data prepared by {@link wrath.client.graphics.EntityRenderer#writeInstanceData(java.nio.FloatBuffer, int)}.
+     * @param data The {@link java.nio.FloatBuffer} holding the column-major matrix.
+     * @param offset The index of the first of the 16 floats of the matrix.
+     */
+    public void setTransformationMatrix(FloatBuffer data, int offset)
+    {
+        bindShader();
+        matrixBuf.clear();
+        for(int k = 0; k < 16; k++) matrixBuf.put(data.get(offset + k));
+        matrixBuf.flip();
+        GL20.glUniformMatrix4fv(getUniformVariableLocation("transformationMatrix"), false, matrixBuf);
+    }
+    
     /**
      * Sets the value of a uniform variable in the shader.
      * @param location The integer id of the Uniform variable.
@@ -239,7 +301,7 @@ public class ShaderProgram implements Closeable
      */
     public void setUniformVariable(int location, float value)
     {
-        GL20.glUseProgram(programID);
+        bindShader();
         GL20.glUniform1f(location, value);
     }
     
@@ -250,7 +312,9 @@ public class ShaderProgram implements Closeable
      */
     public void setUniformVariable(int location, Vector3f value)
     {
-        GL20.glUseProgram(programID);
+        bindShader();
+        //The light may have been set through here, so the next setLight() cannot trust what it uploaded last.
+        lightValid = false;
         GL20.glUniform3f(location, value.x, value.y, value.z);
     }
     
@@ -261,7 +325,7 @@ public class ShaderProgram implements Closeable
      */
     public void setUniformVariable(int location, boolean value)
     {
-        GL20.glUseProgram(programID);
+        bindShader();
         GL20.glUniform1f(location, value ? 1f : 0f);
     }
     
@@ -272,7 +336,7 @@ public class ShaderProgram implements Closeable
      */
     public void setUniformVariable(int location, Matrix4f value)
     {
-        GL20.glUseProgram(programID);
+        bindShader();
         value.store(matrixBuf);
         matrixBuf.flip();
         GL20.glUniformMatrix4fv(location, false, matrixBuf);
@@ -284,19 +348,24 @@ public class ShaderProgram implements Closeable
      */
     public void finish()
     {
-        GL20.glUseProgram(programID);
         GL20.glLinkProgram(programID);
         GL20.glValidateProgram(programID);
-        setProjectionMatrix(Game.getCurrentInstance().getRenderer().getProjectionMatrix());
+        int block = GL31.glGetUniformBlockIndex(programID, FrameUniforms.BLOCK_NAME);
+        frameBlock = block != GL31.GL_INVALID_INDEX;
+        if(frameBlock) GL31.glUniformBlockBinding(programID, block, FrameUniforms.BINDING);
+        else setProjectionMatrix(Game.getCurrentInstance().getRenderer().getProjectionMatrix());
+        lightValid = false;
         finalized = true;
     }
     
     /**
      * Updates to the specified camera's current View Matrix.
+     * Programs with the {@link wrath.client.graphics.FrameUniforms} block already have it, so nothing is uploaded.
      * This is automatic.
      */
     protected void updateViewMatrix()
     {
+        if(frameBlock) return;
         Game.getCurrentInstance().getPlayerCamera().updateViewMatrix(this);
     }
     
@@ -305,6 +374,6 @@ public class ShaderProgram implements Closeable
      */
     public static void unbindShaders()
     {
-        GL20.glUseProgram(0);
+        GLState.current().useProgram(0);
     }
 }
@@ -0,0 +1,118 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client.graphics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class to hand {@link wrath.client.graphics.RenderSnapshot}s from the simulation thread to the rendering thread.
+ * Three snapshots are rotated so that the simulation can always write a new one while the renderer reads the latest complete one, without either side waiting.
+ * @author Trent Spears
+ */
+public class SnapshotBuffer
+{
+    private static final int FRESH = 4;
+    
+    private final RenderSnapshot[] snapshots = new RenderSnapshot[]{new RenderSnapshot(), new RenderSnapshot(), new RenderSnapshot()};
+    private final AtomicInteger ready = new AtomicInteger(1);
+    private int writing = 0;
+    private int reading = 2;
+    private boolean published = false;
+    
+    private EntityRenderer[] tracked = new EntityRenderer[64];
+    private int trackedCount = 0;
+    
+    /**
+     * Makes the latest published snapshot available to the rendering thread.
+     * Called by the rendering thread at the start of every frame.
+     * @return Returns the snapshot to render from, or null if nothing has been published yet.
+     */
+    public RenderSnapshot acquire()
+    {
+        if((ready.get() & FRESH) != 0)
+        {
+            reading = ready.getAndSet(reading) & 3;
+            published = true;
+        }
+        return published ? snapshots[reading] : null;
+    }
+    
+    /**
+     * Gets the snapshot the rendering thread is currently reading from.
+     * @return Returns the current snapshot, or null if nothing has been published yet.
+     */
+    public RenderSnapshot getFront()
+    {
+        return published ? snapshots[reading] : null;
+    }
+    
+    /**
+     * Gets the amount of {@link wrath.client.graphics.EntityRenderer}s whose state is copied every tick.
+     * @return Returns the amount of tracked renderers.
+     */
+    public synchronized int getTrackedCount()
+    {
+        return trackedCount;
+    }
+    
+    /**
+     * Copies the current state of the camera and all tracked renderers, and publishes it to the rendering thread.
+     * Called by the simulation thread at the end of every tick.
+     * @param tickNumber The number of the tick that just finished.
+     * @param camera The player's {@link wrath.client.graphics.Camera}.
+     */
+    public void publish(long tickNumber, Camera camera)
+    {
+        synchronized(this)
+        {
+            snapshots[writing].capture(tickNumber, camera, tracked, trackedCount);
+        }
+        writing = ready.getAndSet(writing | FRESH) & 3;
+    }
+    
+    /**
+     * Starts copying the state of the specified renderer every tick.
+     * This is done automatically the first time a renderer is drawn.
+     * @param renderer The {@link wrath.client.graphics.EntityRenderer} to track.
+     */
+    public synchronized void track(EntityRenderer renderer)
+    {
+        if(renderer.snapshotSlot != -1) return;
+        if(trackedCount == tracked.length) tracked = Arrays.copyOf(tracked, tracked.length * 2);
+        renderer.snapshotSlot = trackedCount;
+        tracked[trackedCount++] = renderer;
+    }
+    
+    /**
+     * Stops copying the state of the specified renderer every tick.
+     * Should be called when an {@link wrath.client.graphics.EntityRenderer} will no longer be drawn.
+     * @param renderer The {@link wrath.client.graphics.EntityRenderer} to stop tracking.
+     */
+    public synchronized void untrack(EntityRenderer renderer)
+    {
+        int slot = renderer.snapshotSlot;
+        if(slot < 0 || slot >= trackedCount || tracked[slot] != renderer) return;
+        
+        trackedCount--;
+        tracked[slot] = tracked[trackedCount];
+        tracked[slot].snapshotSlot = slot;
+        tracked[trackedCount] = null;
+        renderer.snapshotSlot = -1;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,176 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client.graphics;
+
+import java.util.List;
+import org.lwjgl.util.vector.Matrix4f;
+import wrath.client.Game;
+
+/**
+ * Class to draw many entities that never move as one {@link wrath.client.graphics.Model}.
+ * The verticies of every entity are moved to where the entity is when the batch is built and merged into one vertex and index buffer,
+ * so the whole batch costs one set up and one draw call instead of one of each per entity.
+ * Entities in a batch must share a {@link wrath.client.graphics.Texture} and {@link wrath.client.graphics.ShaderProgram}, and are drawn with the material of the first entity.
+ * @author Trent Spears
+ */
+public class StaticBatch implements Renderable
+{
+    private static final Matrix4f IDENTITY = new Matrix4f();
+    
+    /**
+     * Merges the models of entities that will not move into one batch. The entities keep their own renderers, which should no longer be drawn.
+     * @param name The {@link java.lang.String} name of the merged {@link wrath.client.graphics.Model}.
+     * @param renderers The {@link wrath.client.graphics.EntityRenderer}s of the entities to merge, in their final place.
+     * @return Returns the built {@link wrath.client.graphics.StaticBatch}, or null if the entities cannot be merged.
+     */
+    public static StaticBatch build(String name, List<EntityRenderer> renderers)
+    {
+        if(renderers.isEmpty())
+        {
+            System.err.println("Could not build static batch '" + name + "'! No entities were given!");
+            return null;
+        }
+        
+        Model first = renderers.get(0).getModel();
+        int vertexCount = 0;
+        int indexCount = 0;
+        for(EntityRenderer ren : renderers)
+        {
+            Model m = ren.getModel();
+            if(m == null || m.getVerticies() == null || m.getIndicies() == null)
+            {
+                System.err.println("Could not build static batch '" + name + "'! An entity has no model data!");
+                return null;
+            }
+            if(m.getTexture() != first.getTexture() || m.getShader() != first.getShader())
+            {
+                System.err.println("Could not build static batch '" + name + "'! Entities do not share a texture and shader!");
+                return null;
+            }
+            vertexCount += m.getVerticies().length / 3;
+            indexCount += m.getIndicies().length;
+        }
+        
+        float[] verticies = new float[vertexCount * 3];
+        float[] normals = new float[vertexCount * 3];
+        float[] textureCoords = new float[vertexCount * 2];
+        int[] indicies = new int[indexCount];
+        int v = 0;
+        int i = 0;
+        for(EntityRenderer ren : renderers)
+        {
+            Model m = ren.getModel();
+            ren.updateWorldBounds();
+            Matrix4f mat = ren.getTransformationMatrix();
+            float[] mv = m.getVerticies();
+            float[] mn = m.getNormals();
+            float[] mt = m.getTextureCoords();
+            int base = v;
+            for(int k = 0; k < mv.length / 3; k++)
+            {
+                float x = mv[k * 3], y = mv[k * 3 + 1], z = mv[k * 3 + 2];
+                verticies[v * 3] = mat.m00 * x + mat.m10 * y + mat.m20 * z + mat.m30;
+                verticies[v * 3 + 1] = mat.m01 * x + mat.m11 * y + mat.m21 * z + mat.m31;
+                verticies[v * 3 + 2] = mat.m02 * x + mat.m12 * y + mat.m22 * z + mat.m32;
+                if(mn != null && mn.length >= (k + 1) * 3)
+                {
+                    //Entities are scaled the same on every axis, so the rotation part of the matrix turns normals correctly once they are normalized again.
+                    float nx = mn[k * 3], ny = mn[k * 3 + 1], nz = mn[k * 3 + 2];
+                    float tx = mat.m00 * nx + mat.m10 * ny + mat.m20 * nz;
+                    float ty = mat.m01 * nx + mat.m11 * ny + mat.m21 * nz;
+                    float tz = mat.m02 * nx + mat.m12 * ny + mat.m22 * nz;
+                    float len = (float) Math.sqrt(tx * tx + ty * ty + tz * tz);
+                    if(len > 0)
+                    {
+                        normals[v * 3] = tx / len;
+                        normals[v * 3 + 1] = ty / len;
+                        normals[v * 3 + 2] = tz / len;
+                    }
+                }
+                if(mt != null && mt.length >= (k + 1) * 2)
+                {
+                    textureCoords[v * 2] = mt[k * 2];
+                    textureCoords[v * 2 + 1] = mt[k * 2 + 1];
+                }
+                v++;
+            }
+            for(int idx : m.getIndicies()) indicies[i++] = base + idx;
+        }
+        
+        //Batches are always drawn at full detail, so no levels of detail are generated for them.
+        Model merged = Model.createModel(name, verticies, indicies, normals, false, false);
+        if(first.getShader() != null) merged.attachShader(first.getShader());
+        if(first.getTexture() != null) merged.attachTexture(first.getTexture(), textureCoords);
+        Game.getCurrentInstance().getLogger().println("Built static batch '" + name + "' from " + renderers.size() + " entities with " + indicies.length / 3 + " triangles.");
+        return new StaticBatch(merged, renderers.size(), renderers.get(0).getReflectivity(), renderers.get(0).getShineDampening());
+    }
+    
+    private final int entityCount;
+    private final Model model;
+    private final float reflectivity;
+    private final float shineDampening;
+    
+    private StaticBatch(Model model, int entityCount, float reflectivity, float shineDampening)
+    {
+        this.model = model;
+        this.entityCount = entityCount;
+        this.reflectivity = reflectivity;
+        this.shineDampening = shineDampening;
+    }
+    
+    /**
+     * Gets the amount of entities merged into this batch.
+     * @return Returns the amount of merged entities.
+     */
+    public int getEntityCount()
+    {
+        return entityCount;
+    }
+    
+    /**
+     * Gets the merged {@link wrath.client.graphics.Model}, whose verticies and bounds are already in world space.
+     * @return Returns the merged {@link wrath.client.graphics.Model}.
+     */
+    public Model getModel()
+    {
+        return model;
+    }
+    
+    @Override
+    public void render(boolean consolidated)
+    {
+        if(consolidated) renderSetup();
+        model.render(consolidated);
+    }
+    
+    @Override
+    public void renderSetup()
+    {
+        ShaderProgram shader = model.getShader();
+        if(shader == null) return;
+        
+        FrameUniforms frame = Game.getCurrentInstance().getRenderer().getFrameUniforms();
+        shader.setTransformationMatrix(IDENTITY);
+        shader.setUniformVariable(shader.getUniformVariableLocation("reflectivity"), reflectivity);
+        shader.setUniformVariable(shader.getUniformVariableLocation("shineDamper"), shineDampening);
+        shader.setLight(frame.getSceneLightPosition(), frame.getSceneLightColor());
+    }
+    
+    @Override
+    public void renderStop(){}
+}
\ No newline at end of file
@@ -0,0 +1,238 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client.graphics;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.opengl.GL44;
+import wrath.client.Game;
+import wrath.common.Closeable;
+
+/**
+ * Class to stream geometry that changes every frame, such as sprites and text, to the graphics card without creating a buffer per draw.
+ * The buffer is split into {@link #SECTIONS} sections used in turn, so the game writes into one section while the graphics card still reads the others.
+ * When OpenGL 4.4 is available, the buffer is mapped once, persistently and coherently, and floats written through {@link #getData()} go straight into it. A fence is placed when a section is left, and waited on before the section is written again.
+ * Otherwise, floats are written into a direct buffer and copied with glBufferSubData, and the whole buffer is orphaned each time the ring wraps around.
+ * Must only be used on the rendering thread.
+ * @author Trent Spears
+ */
+public class StreamBuffer implements Closeable
+{
+    /**
+     * The amount of sections in the ring.
+     */
+    public static final int SECTIONS = 3;
+    
+    private static final long FENCE_TIMEOUT = 1000000000L;
+    
+    private final int target;
+    private final int bufferID;
+    private final int sectionFloats;
+    private final boolean persistent;
+    private final long[] fences = new long[SECTIONS];
+    private final FloatBuffer data;
+    
+    private int section = 0;
+    private int cursor = 0;
+    private long fenceWaits = 0;
+    private boolean closed = false;
+    
+    /**
+     * Creates the buffer. Must be called on the rendering thread.
+     * @param target The OpenGL buffer target the buffer is used as, such as GL_ARRAY_BUFFER.
+     * @param sectionFloats The amount of floats each section holds. It should fit at least one frame of geometry.
+     * @param allowPersistent If true, the buffer is persistently mapped when the OpenGL context supports it.
+     */
+    public StreamBuffer(int target, int sectionFloats, boolean allowPersistent)
+    {
+        this.target = target;
+        this.sectionFloats = sectionFloats;
+        this.persistent = allowPersistent && GL.getCapabilities().OpenGL44;
+        long size = (long) sectionFloats * SECTIONS * 4;
+        
+        bufferID = GL15.glGenBuffers();
+        GL15.glBindBuffer(target, bufferID);
+        if(persistent)
+        {
+            int flags = GL30.GL_MAP_WRITE_BIT | GL44.GL_MAP_PERSISTENT_BIT | GL44.GL_MAP_COHERENT_BIT;
+            GL44.glBufferStorage(target, size, flags);
+            ByteBuffer mapped = GL30.glMapBufferRange(target, 0, size, flags);
+            data = mapped.order(ByteOrder.nativeOrder()).asFloatBuffer();
+        }
+        else
+        {
+            GL15.glBufferData(target, size, GL15.GL_STREAM_DRAW);
+            data = BufferUtils.createFloatBuffer(sectionFloats);
+        }
+        GL15.glBindBuffer(target, 0);
+        reset();
+        Game.getCurrentInstance().addToTrashCleanup(this);
+    }
+    
+    @Override
+    public void close()
+    {
+        //An owner such as a SpriteBatch closes the buffer itself, and the trash cleanup may then close it again at shutdown.
+        if(closed) return;
+        closed = true;
+        for(int i = 0; i < SECTIONS; i++)
+        {
+            if(fences[i] != 0) GL32.glDeleteSync(fences[i]);
+            fences[i] = 0;
+        }
+        if(persistent)
+        {
+            GL15.glBindBuffer(target, bufferID);
+            GL15.glUnmapBuffer(target);
+            GL15.glBindBuffer(target, 0);
+        }
+        GL15.glDeleteBuffers(bufferID);
+        Game.getCurrentInstance().removeFromTrashCleanup(this);
+    }
+    
+    /**
+     * Marks the floats written through {@link #getData()} since the last commit as ready to be drawn.
+     * Without persistent mapping, they are copied into the buffer, which is left bound to its target.
+     * @return Returns the offset, in bytes from the start of the buffer, of the first committed float.
+     */
+    public long commit()
+    {
+        int start = cursor;
+        int end = data.position() - (persistent ? section * sectionFloats : 0);
+        long offset = ((long) section * sectionFloats + start) * 4;
+        if(!persistent && end > start)
+        {
+            int limit = data.limit();
+            data.position(start).limit(end);
+            GL15.glBindBuffer(target, bufferID);
+            GL15.glBufferSubData(target, offset, data);
+            data.limit(limit);
+            data.position(end);
+        }
+        cursor = end;
+        return offset;
+    }
+    
+    /**
+     * Gets the OpenGL integer ID of the buffer.
+     * @return Returns the OpenGL integer ID of the buffer.
+     */
+    public int getBufferID()
+    {
+        return bufferID;
+    }
+    
+    /**
+     * Gets the buffer to write the next floats into. Its position is after the last committed float and its limit is the end of the current section.
+     * With persistent mapping, this is the mapped memory of the buffer itself.
+     * @return Returns the {@link java.nio.FloatBuffer} to write into.
+     */
+    public FloatBuffer getData()
+    {
+        return data;
+    }
+    
+    /**
+     * Gets the amount of times a section was still being read by the graphics card when it was needed again, so the game had to wait.
+     * @return Returns the amount of fence waits that blocked.
+     */
+    public long getFenceWaits()
+    {
+        return fenceWaits;
+    }
+    
+    /**
+     * Gets the amount of floats that can still be written into the current section.
+     * @return Returns the amount of floats left in the current section.
+     */
+    public int getRemaining()
+    {
+        return data.remaining();
+    }
+    
+    /**
+     * Gets the amount of floats each section holds.
+     * @return Returns the size of a section, in floats.
+     */
+    public int getSectionSize()
+    {
+        return sectionFloats;
+    }
+    
+    /**
+     * If true, the buffer is persistently mapped and written directly.
+     * @return Returns true if the buffer is persistently mapped.
+     */
+    public boolean isPersistent()
+    {
+        return persistent;
+    }
+    
+    /**
+     * Moves to the next section of the ring. Must only be called after every draw reading the current section has been submitted.
+     * With persistent mapping, a fence is placed after those draws, and the next section's fence is waited on.
+     * Otherwise the buffer is orphaned when the ring wraps around, so the driver can hand out fresh memory.
+     */
+    public void nextSection()
+    {
+        if(persistent) fences[section] = GL32.glFenceSync(GL32.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        section = (section + 1) % SECTIONS;
+        
+        if(persistent) waitForSection(section);
+        else if(section == 0)
+        {
+            GL15.glBindBuffer(target, bufferID);
+            GL15.glBufferData(target, (long) sectionFloats * SECTIONS * 4, GL15.GL_STREAM_DRAW);
+        }
+        reset();
+    }
+    
+    private void reset()
+    {
+        cursor = 0;
+        if(persistent)
+        {
+            data.limit((section + 1) * sectionFloats);
+            data.position(section * sectionFloats);
+        }
+        else data.clear();
+    }
+    
+    private void waitForSection(int index)
+    {
+        long fence = fences[index];
+        if(fence == 0) return;
+        fences[index] = 0;
+        
+        int result = GL32.glClientWaitSync(fence, 0, 0);
+        if(result != GL32.GL_ALREADY_SIGNALED && result != GL32.GL_CONDITION_SATISFIED)
+        {
+            fenceWaits++;
+            do result = GL32.glClientWaitSync(fence, GL32.GL_SYNC_FLUSH_COMMANDS_BIT, FENCE_TIMEOUT);
+            while(result == GL32.GL_TIMEOUT_EXPIRED);
+            if(result == GL32.GL_WAIT_FAILED) System.err.println("Could not wait for streaming buffer section " + index + "! Fence wait failed!");
+        }
+        GL32.glDeleteSync(fence);
+    }
+}
\ No newline at end of file
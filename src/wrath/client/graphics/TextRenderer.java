@@ -23,11 +23,14 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.HashMap;
 import org.lwjgl.opengl.GL11;
+import wrath.client.Game;
+import wrath.client.graphics.graphics2D.SpriteBatch;
 import wrath.common.Reloadable;
 import wrath.util.Logger;
 
 /**
  * Class to load fonts and manage text rendering.
+ * Characters are drawn through the {@link wrath.client.graphics.graphics2D.SpriteBatch} of the {@link wrath.client.Game.RenderManager}, so strings rendered together share one draw call.
  * @author Trent Spears
  */
 public class TextRenderer implements Reloadable
@@ -158,35 +161,18 @@ public class TextRenderer implements Reloadable
         final float characterWidth = fontSize * 0.1f;
         final float characterHeight = characterWidth * 0.75f;
         
-        GL11.glDisable(GL11.GL_DEPTH_TEST);
-        fontTex.bindTexture();
-        GL11.glEnable(GL11.GL_BLEND);
-        GL11.glBlendFunc(GL11.GL_SRC_COLOR, GL11.GL_ONE_MINUS_SRC_COLOR);
+        SpriteBatch batch = Game.getCurrentInstance().getRenderer().getSpriteBatch();
+        batch.begin();
+        batch.setBlendFunc(GL11.GL_SRC_COLOR, GL11.GL_ONE_MINUS_SRC_COLOR);
         float curPos = x;
         float charWidth;
-        GL11.glBegin(GL11.GL_QUADS);
         for(int i = 0; i < string.length(); i++)
         {
             int ascii = (int) string.charAt(i);
             final float cellSize = 1.0f / gridSize;
             float cellX = ((int) ascii % gridSize) * cellSize;
             float cellY = ((int) ascii / gridSize) * cellSize;
-            color.bindColor();
-            //(0, 1) bottom left
-            GL11.glTexCoord2f(cellX, cellY + cellSize);
-            GL11.glVertex3f(curPos, y - characterHeight, 0);
-            
-            //(1, 1) bottom right
-            GL11.glTexCoord2f(cellX + cellSize, cellY + cellSize);
-            GL11.glVertex3f(curPos + characterWidth / 2, y - characterHeight, 0);
-            
-            //(1, 0) top right 
-            GL11.glTexCoord2f(cellX + cellSize, cellY);
-            GL11.glVertex3f(curPos + characterWidth / 2, y, 0);
-            
-            //(0, 0) top left
-            GL11.glTexCoord2f(cellX, cellY);
-            GL11.glVertex3f(curPos, y, 0);
+            batch.draw(fontTex, curPos, y, characterWidth / 2, characterHeight, cellX, cellY, cellX + cellSize, cellY + cellSize, color);
 
             if(spaceMap.containsKey(string.charAt(i))) charWidth = spaceMap.get(string.charAt(i));
             else charWidth = 1.0f;
@@ -197,12 +183,7 @@ public class TextRenderer implements Reloadable
                 else curPos = curPos + (fontSize / 48f) / 3.5f;
             }
         }
-        GL11.glEnd();
-        
-        color.unbindColor();
-        Texture.unbindTextures();
-        GL11.glDisable(GL11.GL_BLEND);
-        GL11.glEnable(GL11.GL_DEPTH_TEST);
+        batch.end();
     }
     
     /**
@@ -18,7 +18,6 @@
 package wrath.client.graphics;
 
 import java.io.File;
-import java.util.HashMap;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL12;
 import org.lwjgl.opengl.GL30;
@@ -33,8 +32,6 @@ import wrath.common.Reloadable;
  */
 public class Texture implements Closeable, Reloadable
 {
-    private static final HashMap<File, Texture> preLoadedTex = new HashMap<>();
-    
     /**
      * Loads a Texture object.
      * @param textureName The name of the texture. This includes the file extension.
@@ -47,18 +44,20 @@ public class Texture implements Closeable, Reloadable
     
     /**
      * Loads a Texture object.
+     * Textures are only loaded once per {@link wrath.client.Game}, and are kept in its {@link wrath.client.graphics.AssetRegistry}.
      * @param textureFile The image {@link java.io.File} to load the texture from.
      * @return Returns the loaded {@link wrath.client.graphics.Texture} object.
      */
     public static Texture loadTexture(File textureFile)
     {
-        if(preLoadedTex.containsKey(textureFile)) return preLoadedTex.get(textureFile);
-        else
+        AssetRegistry assets = Game.getCurrentInstance().getAssetRegistry();
+        Texture t = assets.getTexture(textureFile);
+        if(t == null)
         {
-            Texture t = new Texture(textureFile);
-            preLoadedTex.put(textureFile, t);
-            return t;
+            t = new Texture(textureFile);
+            assets.registerTexture(textureFile, t);
         }
+        return t;
     }
     
     // Object
@@ -75,8 +74,7 @@ public class Texture implements Closeable, Reloadable
         this.file = textureFile;
         this.texID = ClientUtils.getTexture(ClientUtils.loadImageFromFile(textureFile));
         Game.getCurrentInstance().getLogger().println("Created texture ID '" + texID + "' from file '" + file.getName() + "'!");
-        GL11.glEnable(GL11.GL_TEXTURE_2D);
-        GL11.glBindTexture(GL11.GL_TEXTURE_2D, texID);
+        bindTexture();
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
         if(Game.getCurrentInstance().getConfig().getBoolean("TexureMipmapping", true)) GL30.glGenerateMipmap(GL11.GL_TEXTURE_2D);
@@ -98,6 +96,18 @@ public class Texture implements Closeable, Reloadable
         afterConstructor();
     }
     
+    /**
+     * Constructor for textures stored inside an OpenGL texture they do not own, such as a page of a {@link wrath.client.graphics.TextureAtlas}.
+     * Nothing is loaded, and the texture is not added to the cleanup or refresh lists.
+     * @param textureFile The image {@link java.io.File} the texture was loaded from.
+     * @param textureID The OpenGL integer ID of the texture holding the image.
+     */
+    protected Texture(File textureFile, int textureID)
+    {
+        this.file = textureFile;
+        this.texID = textureID;
+    }
+    
     private void afterConstructor()
     {
         Game.getCurrentInstance().addToTrashCleanup(this);
@@ -110,8 +120,9 @@ public class Texture implements Closeable, Reloadable
      */
     public void bindTexture()
     {
-        GL11.glEnable(GL11.GL_TEXTURE_2D);
-        GL11.glBindTexture(GL11.GL_TEXTURE_2D, texID);
+        GLState state = GLState.current();
+        state.enable(GL11.GL_TEXTURE_2D);
+        state.bindTexture(GL11.GL_TEXTURE_2D, getTextureID());
     }
     
     /**
@@ -120,6 +131,7 @@ public class Texture implements Closeable, Reloadable
     @Override
     public void close()
     {
+        GLState.current().onTextureDeleted(texID);
         GL11.glDeleteTextures(texID);
     }
     
@@ -152,12 +164,33 @@ public class Texture implements Closeable, Reloadable
         return texID;
     }
     
+    /**
+     * Maps a horizontal texture coordinate of this texture to the OpenGL texture it is stored in.
+     * Textures packed into a {@link wrath.client.graphics.TextureAtlas} only cover part of it; other textures return the coordinate unchanged.
+     * @param u The horizontal texture coordinate, from 0 to 1 across this texture.
+     * @return Returns the horizontal texture coordinate to sample.
+     */
+    public float getU(float u)
+    {
+        return u;
+    }
+    
+    /**
+     * Maps a vertical texture coordinate of this texture to the OpenGL texture it is stored in.
+     * Textures packed into a {@link wrath.client.graphics.TextureAtlas} only cover part of it; other textures return the coordinate unchanged.
+     * @param v The vertical texture coordinate, from 0 to 1 down this texture.
+     * @return Returns the vertical texture coordinate to sample.
+     */
+    public float getV(float v)
+    {
+        return v;
+    }
+    
     @Override
     public void reload()
     {
         this.texID = ClientUtils.getTexture(ClientUtils.loadImageFromFile(file));
-        GL11.glEnable(GL11.GL_TEXTURE_2D);
-        GL11.glBindTexture(GL11.GL_TEXTURE_2D, texID);
+        bindTexture();
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
         if(Game.getCurrentInstance().getConfig().getBoolean("TexureMipmapping", true)) GL30.glGenerateMipmap(GL11.GL_TEXTURE_2D);
@@ -194,7 +227,8 @@ public class Texture implements Closeable, Reloadable
      */
     public static void unbindTextures()
     {
-        GL11.glBindTexture(GL11.GL_TEXTURE_1D, 0);
-        GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+        GLState state = GLState.current();
+        state.bindTexture(GL11.GL_TEXTURE_1D, 0);
+        state.bindTexture(GL11.GL_TEXTURE_2D, 0);
     }
 }
@@ -0,0 +1,423 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client.graphics;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+import wrath.client.ClientUtils;
+import wrath.client.Game;
+import wrath.common.Closeable;
+import wrath.common.Reloadable;
+
+/**
+ * Class to pack many small images into a few large OpenGL textures, so that sprites, GUI elements and fonts drawn in one frame share a texture and stay in one batch.
+ * Images are placed with a skyline packer as they are added, so new images can be added at any time. When a page is full, a new one is created.
+ * Each image is handed out as a {@link wrath.client.graphics.Texture} that maps its texture coordinates into its page, and can be looked up again with {@link #getTexture(java.io.File)}.
+ * Packed images are kept out of the {@link wrath.client.graphics.AssetRegistry}, so {@link wrath.client.graphics.Texture#loadTexture(java.io.File)} still gives models a texture of their own instead of a whole page.
+ * Packed textures cannot repeat, so models with texture coordinates outside of 0 to 1 should keep their own textures.
+ * @author Trent Spears
+ */
+public class TextureAtlas implements Closeable, Reloadable
+{
+    /**
+     * The amount of pixels around each image, filled with copies of its edge so that filtering does not blend in its neighbours.
+     */
+    public static final int PADDING = 2;
+    
+    private final int size;
+    private final ArrayList<Page> pages = new ArrayList<>();
+    private final HashMap<File, Region> regions = new HashMap<>();
+    
+    /**
+     * Constructor. Pages are created when the first image is added.
+     * @param pageSize The width and height, in pixels, of each page.
+     */
+    public TextureAtlas(int pageSize)
+    {
+        this.size = pageSize;
+        Game.getCurrentInstance().addToTrashCleanup(this);
+        Game.getCurrentInstance().addToRefreshList(this);
+    }
+    
+    /**
+     * Packs an image from the 'assets/textures' directory into the atlas. Must be called on the rendering thread.
+     * @param textureName The name of the texture. This includes the file extension.
+     * @return Returns the {@link wrath.client.graphics.Texture} of the packed image.
+     */
+    public Texture add(String textureName)
+    {
+        return add(new File("assets/textures/" + textureName));
+    }
+    
+    /**
+     * Packs an image into the atlas. Must be called on the rendering thread.
+     * Images that were already added are returned as they are. Images too large for a page are loaded as a texture of their own.
+     * @param textureFile The image {@link java.io.File} to pack.
+     * @return Returns the {@link wrath.client.graphics.Texture} of the packed image, or null if the image could not be read.
+     */
+    public Texture add(File textureFile)
+    {
+        Region region = regions.get(textureFile);
+        if(region != null) return region;
+        
+        BufferedImage image = ClientUtils.loadImageFromFile(textureFile);
+        if(image == null)
+        {
+            System.err.println("Could not add texture '" + textureFile.getName() + "' to the atlas! Image could not be read!");
+            return null;
+        }
+        
+        int w = image.getWidth() + PADDING * 2;
+        int h = image.getHeight() + PADDING * 2;
+        if(w > size || h > size) return Texture.loadTexture(textureFile);
+        
+        Page page = null;
+        int[] pos = null;
+        for(Page p : pages)
+        {
+            pos = p.insert(w, h);
+            if(pos != null)
+            {
+                page = p;
+                break;
+            }
+        }
+        if(page == null)
+        {
+            page = new Page(size);
+            page.create();
+            pages.add(page);
+            pos = page.insert(w, h);
+            Game.getCurrentInstance().getLogger().println("Created texture atlas page ID '" + page.texID + "' of " + size + "x" + size + " pixels!");
+        }
+        
+        region = new Region(textureFile, page, pos[0] + PADDING, pos[1] + PADDING, image.getWidth(), image.getHeight(), size);
+        upload(region, image);
+        regions.put(textureFile, region);
+        return region;
+    }
+    
+    /**
+     * Packs every image in a directory into the atlas. Sub-directories are not searched. Must be called on the rendering thread.
+     * @param directory The directory to read the images from, such as 'assets/textures'.
+     * @return Returns the amount of images that were packed.
+     */
+    public int addDirectory(File directory)
+    {
+        File[] files = directory.listFiles();
+        if(files == null)
+        {
+            System.err.println("Could not add directory '" + directory.getPath() + "' to the atlas! Directory not found!");
+            return 0;
+        }
+        
+        int count = 0;
+        for(File f : files)
+        {
+            String name = f.getName().toLowerCase();
+            if(!f.isFile() || !(name.endsWith(".png") || name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".bmp") || name.endsWith(".gif"))) continue;
+            if(add(f) instanceof Region) count++;
+        }
+        return count;
+    }
+    
+    @Override
+    public void close()
+    {
+        GLState state = GLState.current();
+        pages.stream().forEach((p) -> 
+        {
+            state.onTextureDeleted(p.texID);
+            GL11.glDeleteTextures(p.texID);
+        });
+        Game.getCurrentInstance().removeFromTrashCleanup(this);
+        Game.getCurrentInstance().removeFromRefreshList(this);
+    }
+    
+    /**
+     * Checks if an image has been packed into the atlas.
+     * @param textureFile The image {@link java.io.File} to check.
+     * @return Returns true if the image is in the atlas.
+     */
+    public boolean contains(File textureFile)
+    {
+        return regions.containsKey(textureFile);
+    }
+    
+    /**
+     * Gets the amount of pages, each one OpenGL texture, in the atlas.
+     * @return Returns the amount of pages in the atlas.
+     */
+    public int getPageCount()
+    {
+        return pages.size();
+    }
+    
+    /**
+     * Gets the texture of an image that was packed into the atlas.
+     * @param textureFile The image {@link java.io.File} that was packed.
+     * @return Returns the {@link wrath.client.graphics.Texture} of the packed image, or null if the image is not in the atlas.
+     */
+    public Texture getTexture(File textureFile)
+    {
+        return regions.get(textureFile);
+    }
+    
+    /**
+     * Gets the width and height, in pixels, of each page.
+     * @return Returns the size of the pages of the atlas.
+     */
+    public int getPageSize()
+    {
+        return size;
+    }
+    
+    /**
+     * Gets the amount of images packed into the atlas.
+     * @return Returns the amount of images packed into the atlas.
+     */
+    public int getTextureCount()
+    {
+        return regions.size();
+    }
+    
+    /**
+     * Gets the fraction of the atlas' pages covered by images and their padding.
+     * @return Returns the fraction of the pages in use, from 0 to 1.
+     */
+    public float getUsage()
+    {
+        if(pages.isEmpty()) return 0f;
+        long used = 0;
+        for(Page p : pages) used += p.used;
+        return (float)((double) used / ((long) size * size * pages.size()));
+    }
+    
+    @Override
+    public void reload()
+    {
+        //The pages went with the old context, so they are created again and every image is read back from its file at the same place.
+        pages.stream().forEach((p) -> 
+        {
+            p.create();
+        });
+        regions.values().stream().forEach((r) -> 
+        {
+            BufferedImage image = ClientUtils.loadImageFromFile(r.getTextureFile());
+            if(image == null || image.getWidth() != r.width || image.getHeight() != r.height) System.err.println("Could not reload texture '" + r.getTextureFile().getName() + "' in the atlas! Image is missing or changed size!");
+            else upload(r, image);
+        });
+    }
+    
+    private void upload(Region region, BufferedImage image)
+    {
+        int w = region.width, h = region.height;
+        int pw = w + PADDING * 2, ph = h + PADDING * 2;
+        int[] pixels = new int[w * h];
+        image.getRGB(0, 0, w, h, pixels, 0, w);
+        
+        ByteBuffer buffer = BufferUtils.createByteBuffer(pw * ph * 4);
+        for(int y = 0; y < ph; y++)
+        {
+            int sy = Math.min(Math.max(y - PADDING, 0), h - 1);
+            for(int x = 0; x < pw; x++)
+            {
+                int pixel = pixels[sy * w + Math.min(Math.max(x - PADDING, 0), w - 1)];
+                buffer.put((byte) ((pixel >> 16) & 0xFF));
+                buffer.put((byte) ((pixel >> 8) & 0xFF));
+                buffer.put((byte) (pixel & 0xFF));
+                buffer.put((byte) ((pixel >> 24) & 0xFF));
+            }
+        }
+        buffer.flip();
+        
+        GLState state = GLState.current();
+        state.bindTexture(GL11.GL_TEXTURE_2D, region.page.texID);
+        GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, region.x - PADDING, region.y - PADDING, pw, ph, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, buffer);
+        state.bindTexture(GL11.GL_TEXTURE_2D, 0);
+    }
+    
+    private static class Page
+    {
+        private final int size;
+        //Each segment is {x, y, width}, ordered by x and together covering the width of the page.
+        private final ArrayList<int[]> skyline = new ArrayList<>();
+        private int texID = 0;
+        private long used = 0;
+        
+        private Page(int size)
+        {
+            this.size = size;
+            skyline.add(new int[]{0, 0, size});
+        }
+        
+        private void create()
+        {
+            texID = GL11.glGenTextures();
+            GLState state = GLState.current();
+            state.bindTexture(GL11.GL_TEXTURE_2D, texID);
+            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
+            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
+            //Mipmaps would blend neighbouring images together, so pages are only filtered linearly.
+            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
+            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
+            GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, size, size, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, (ByteBuffer) null);
+            state.bindTexture(GL11.GL_TEXTURE_2D, 0);
+        }
+        
+        /**
+         * Finds the lowest place the rectangle fits on the skyline, preferring the narrowest segment on ties, and raises the skyline over it.
+         * @return Returns the {x, y} of the top-left corner of the rectangle, or null if it does not fit on this page.
+         */
+        private int[] insert(int w, int h)
+        {
+            int best = -1, bestY = Integer.MAX_VALUE, bestWidth = Integer.MAX_VALUE;
+            for(int i = 0; i < skyline.size(); i++)
+            {
+                int[] s = skyline.get(i);
+                if(s[0] + w > size) break;
+                
+                int y = 0;
+                int remaining = w;
+                for(int j = i; remaining > 0; j++)
+                {
+                    int[] t = skyline.get(j);
+                    y = Math.max(y, t[1]);
+                    remaining -= t[2];
+                }
+                if(y + h > size) continue;
+                if(y < bestY || (y == bestY && s[2] < bestWidth))
+                {
+                    best = i;
+                    bestY = y;
+                    bestWidth = s[2];
+                }
+            }
+            if(best < 0) return null;
+            
+            int x = skyline.get(best)[0];
+            skyline.add(best, new int[]{x, bestY + h, w});
+            //Segments now under the new one are shortened or removed.
+            int end = x + w;
+            while(best + 1 < skyline.size())
+            {
+                int[] s = skyline.get(best + 1);
+                if(s[0] >= end) break;
+                if(s[0] + s[2] <= end) skyline.remove(best + 1);
+                else
+                {
+                    s[2] -= end - s[0];
+                    s[0] = end;
+                    break;
+                }
+            }
+            for(int i = 0; i + 1 < skyline.size();)
+            {
+                int[] s = skyline.get(i);
+                int[] n = skyline.get(i + 1);
+                if(s[1] == n[1])
+                {
+                    s[2] += n[2];
+                    skyline.remove(i + 1);
+                }
+                else i++;
+            }
+            used += (long) w * h;
+            return new int[]{x, bestY};
+        }
+    }
+    
+    /**
+     * Class to describe one image packed into a {@link wrath.client.graphics.TextureAtlas}.
+     * It binds the page it is stored on, and maps texture coordinates to the image's place on that page.
+     */
+    public static class Region extends Texture
+    {
+        private final Page page;
+        private final int x, y, width, height;
+        private final float u0, v0, uScale, vScale;
+        
+        private Region(File textureFile, Page page, int x, int y, int width, int height, int pageSize)
+        {
+            super(textureFile, page.texID);
+            this.page = page;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.u0 = (float) x / pageSize;
+            this.v0 = (float) y / pageSize;
+            this.uScale = (float) width / pageSize;
+            this.vScale = (float) height / pageSize;
+        }
+        
+        /**
+         * The page belongs to the {@link wrath.client.graphics.TextureAtlas}, so nothing is deleted.
+         */
+        @Override
+        public void close(){}
+        
+        /**
+         * Gets the height, in pixels, of the image.
+         * @return Returns the height of the image.
+         */
+        public int getHeight()
+        {
+            return height;
+        }
+        
+        @Override
+        public int getTextureID()
+        {
+            return page.texID;
+        }
+        
+        @Override
+        public float getU(float u)
+        {
+            return u0 + u * uScale;
+        }
+        
+        @Override
+        public float getV(float v)
+        {
+            return v0 + v * vScale;
+        }
+        
+        /**
+         * Gets the width, in pixels, of the image.
+         * @return Returns the width of the image.
+         */
+        public int getWidth()
+        {
+            return width;
+        }
+        
+        /**
+         * The {@link wrath.client.graphics.TextureAtlas} reads the image again when its pages are reloaded.
+         */
+        @Override
+        public void reload(){}
+    }
+}
\ No newline at end of file
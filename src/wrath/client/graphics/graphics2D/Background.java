@@ -17,13 +17,14 @@
  */
 package wrath.client.graphics.graphics2D;
 
-import org.lwjgl.opengl.GL11;
+import wrath.client.Game;
 import wrath.client.graphics.Color;
 import wrath.client.graphics.Renderable;
 import wrath.client.graphics.Texture;
 
 /**
  * This class describes a 2D rectangular background.
+ * It is drawn through the {@link wrath.client.graphics.graphics2D.SpriteBatch} of the {@link wrath.client.Game.RenderManager}.
  * @author Trent Spears
  */
 public class Background implements Renderable
@@ -54,40 +55,21 @@ public class Background implements Renderable
     @Override
     public void renderSetup()
     {
-        GL11.glEnable(GL11.GL_TEXTURE_2D);
-        if(tex != null) tex.bindTexture();
-        color.bindColor();
-        GL11.glBegin(GL11.GL_QUADS);
+        Game.getCurrentInstance().getRenderer().getSpriteBatch().begin();
     }
     
     @Override
     public void render(boolean consolidated)
     {
         if(consolidated) renderSetup();
-        //Top Left
-        GL11.glTexCoord2f(0, 0);
-        GL11.glVertex3f(-1.0f, 1.0f, 0.0f);
-
-        //Top Right
-        GL11.glTexCoord2f(1, 0);
-        GL11.glVertex3f(1.0f, 1.0f, 0.0f);
-
-        //Bottom Right
-        GL11.glTexCoord2f(1, 1);
-        GL11.glVertex3f(1.0f, -1.0f, 0.0f);
-
-        //Bottom Left
-        GL11.glTexCoord2f(0, 1);
-        GL11.glVertex3f(-1.0f, -1.0f, 0.0f);
+        Game.getCurrentInstance().getRenderer().getSpriteBatch().draw(tex, -1.0f, 1.0f, 2.0f, 2.0f, color);
         if(consolidated) renderStop();
     }
     
     @Override
     public void renderStop()
     {
-        GL11.glEnd();
-        color.unbindColor();
-        Texture.unbindTextures();
+        Game.getCurrentInstance().getRenderer().getSpriteBatch().end();
     }
     
     /**
@@ -0,0 +1,361 @@
+/**
+ *  Wrath Engine 
+ *  Copyright (C) 2015  Trent Spears
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package wrath.client.graphics.graphics2D;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL32;
+import wrath.client.Game;
+import wrath.client.graphics.Color;
+import wrath.client.graphics.GLState;
+import wrath.client.graphics.ShaderProgram;
+import wrath.client.graphics.StreamBuffer;
+import wrath.client.graphics.Texture;
+import wrath.common.Closeable;
+
+/**
+ * Class to draw 2D quads, such as GUI elements, backgrounds and text, in as few draw calls as possible.
+ * Each quad's position, texture coordinates and color are written straight into a {@link wrath.client.graphics.StreamBuffer}, and drawn from there when the batch is flushed.
+ * The batch is only flushed when the texture, shader or blend function changes, when it is full, or when the outermost {@link #end()} is reached.
+ * Positions are in OpenGL screen scale, from -1 to 1 on both axes.
+ * @author Trent Spears
+ */
+public class SpriteBatch implements Closeable
+{
+    /**
+     * The vertex attribute index of the position of each vertex.
+     */
+    public static final int POSITION_ATTRIB_INDEX = 0;
+    /**
+     * The vertex attribute index of the texture coordinates of each vertex.
+     */
+    public static final int TEXTURE_ATTRIB_INDEX = 1;
+    /**
+     * The vertex attribute index of the color of each vertex.
+     */
+    public static final int COLOR_ATTRIB_INDEX = 2;
+    /**
+     * The amount of floats of each vertex: 2 for the position, 2 for the texture coordinates and 4 for the color.
+     */
+    public static final int VERTEX_SIZE = 8;
+    /**
+     * The largest amount of quads a batch can hold, so that every vertex can be addressed by a 16-bit index.
+     */
+    public static final int MAX_CAPACITY = 16384;
+    
+    private final int capacity;
+    private final StreamBuffer stream;
+    private final int vaoID, iboID, whiteTexID;
+    private final ShaderProgram defaultShader;
+    
+    private ShaderProgram shader;
+    private FloatBuffer verticies = null;
+    private int texID = 0;
+    private int blendSrc = GL11.GL_ONE;
+    private int blendDst = GL11.GL_ZERO;
+    private int quads = 0;
+    private int depth = 0;
+    
+    private long drawCalls = 0;
+    private long quadsDrawn = 0;
+    
+    /**
+     * Creates the vertex buffers of the batch. Must be called on the rendering thread.
+     * @param shader The {@link wrath.client.graphics.ShaderProgram} to draw with when no other is set. It must read the attributes 'in_Position', 'in_TextureCoord' and 'in_Color'.
+     * @param capacity The amount of quads the batch can hold before it is flushed, up to {@link #MAX_CAPACITY}.
+     */
+    public SpriteBatch(ShaderProgram shader, int capacity)
+    {
+        this.capacity = Math.max(1, Math.min(capacity, MAX_CAPACITY));
+        this.defaultShader = shader;
+        this.shader = shader;
+        prepareShader(shader);
+        
+        GLState state = GLState.current();
+        vaoID = GL30.glGenVertexArrays();
+        state.bindVertexArray(vaoID);
+        
+        //Each section holds one full batch, so a batch never has to be split across sections.
+        stream = new StreamBuffer(GL15.GL_ARRAY_BUFFER, this.capacity * 4 * VERTEX_SIZE, Game.getCurrentInstance().getConfig().getBoolean("PersistentMappedBuffers", true));
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, stream.getBufferID());
+        GL20.glVertexAttribPointer(POSITION_ATTRIB_INDEX, 2, GL11.GL_FLOAT, false, VERTEX_SIZE * 4, 0);
+        GL20.glVertexAttribPointer(TEXTURE_ATTRIB_INDEX, 2, GL11.GL_FLOAT, false, VERTEX_SIZE * 4, 2 * 4);
+        GL20.glVertexAttribPointer(COLOR_ATTRIB_INDEX, 4, GL11.GL_FLOAT, false, VERTEX_SIZE * 4, 4 * 4);
+        state.enableVertexAttribArray(POSITION_ATTRIB_INDEX);
+        state.enableVertexAttribArray(TEXTURE_ATTRIB_INDEX);
+        state.enableVertexAttribArray(COLOR_ATTRIB_INDEX);
+        
+        //Every quad is two triangles over its four verticies, so the indicies never change.
+        ShortBuffer indicies = BufferUtils.createShortBuffer(this.capacity * 6);
+        for(int i = 0; i < this.capacity; i++)
+        {
+            short v = (short)(i * 4);
+            indicies.put(v).put((short)(v + 1)).put((short)(v + 2));
+            indicies.put((short)(v + 2)).put((short)(v + 3)).put(v);
+        }
+        indicies.flip();
+        iboID = GL15.glGenBuffers();
+        GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, iboID);
+        GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, indicies, GL15.GL_STATIC_DRAW);
+        state.bindVertexArray(0);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+        
+        //Quads without a texture sample a single white texel, so they can share batches with textured quads.
+        whiteTexID = GL11.glGenTextures();
+        state.bindTexture(GL11.GL_TEXTURE_2D, whiteTexID);
+        ByteBuffer white = BufferUtils.createByteBuffer(4);
+        white.put((byte) 0xFF).put((byte) 0xFF).put((byte) 0xFF).put((byte) 0xFF);
+        white.flip();
+        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, 1, 1, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, white);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
+        state.bindTexture(GL11.GL_TEXTURE_2D, 0);
+        
+        Game.getCurrentInstance().addToTrashCleanup(this);
+    }
+    
+    /**
+     * Starts drawing with the batch. Calls may be nested; only the outermost begin and {@link #end()} set up and restore the OpenGL state.
+     */
+    public void begin()
+    {
+        if(depth++ > 0) return;
+        GLState state = GLState.current();
+        state.disable(GL11.GL_DEPTH_TEST);
+        state.depthMask(false);
+        blendSrc = GL11.GL_ONE;
+        blendDst = GL11.GL_ZERO;
+        state.disable(GL11.GL_BLEND);
+    }
+    
+    @Override
+    public void close()
+    {
+        GLState state = GLState.current();
+        state.onVertexArrayDeleted(vaoID);
+        state.onTextureDeleted(whiteTexID);
+        GL30.glDeleteVertexArrays(vaoID);
+        stream.close();
+        GL15.glDeleteBuffers(iboID);
+        GL11.glDeleteTextures(whiteTexID);
+        Game.getCurrentInstance().removeFromTrashCleanup(this);
+    }
+    
+    /**
+     * Adds a quad to the batch. The batch is flushed first if the texture differs from the quads already in the batch, or if it is full.
+     * If the batch was not started with {@link #begin()}, the quad is drawn on its own.
+     * Texture coordinates are relative to the texture, and are mapped into its page if it was packed into a {@link wrath.client.graphics.TextureAtlas}.
+     * @param texture The {@link wrath.client.graphics.Texture} to draw on the quad. If null, the quad is filled with the color.
+     * @param x The X-coordinate of the top-left corner of the quad.
+     * @param y The Y-coordinate of the top-left corner of the quad.
+     * @param width The width of the quad.
+     * @param height The height of the quad.
+     * @param u0 The horizontal texture coordinate of the left edge.
+     * @param v0 The vertical texture coordinate of the top edge.
+     * @param u1 The horizontal texture coordinate of the right edge.
+     * @param v1 The vertical texture coordinate of the bottom edge.
+     * @param color The {@link wrath.client.graphics.Color} the texture is multiplied by.
+     */
+    public void draw(Texture texture, float x, float y, float width, float height, float u0, float v0, float u1, float v1, Color color)
+    {
+        if(depth == 0)
+        {
+            begin();
+            draw(texture, x, y, width, height, u0, v0, u1, v1, color);
+            end();
+            return;
+        }
+        
+        int tex = whiteTexID;
+        if(texture != null)
+        {
+            //Textures packed into an atlas share one OpenGL texture, so they stay in the same batch.
+            tex = texture.getTextureID();
+            u0 = texture.getU(u0);
+            u1 = texture.getU(u1);
+            v0 = texture.getV(v0);
+            v1 = texture.getV(v1);
+        }
+        if(tex != texID || quads == capacity || (quads > 0 && verticies.remaining() < 4 * VERTEX_SIZE))
+        {
+            flush();
+            texID = tex;
+        }
+        if(quads == 0)
+        {
+            if(stream.getRemaining() < 4 * VERTEX_SIZE) stream.nextSection();
+            verticies = stream.getData();
+        }
+        
+        float r = color.getRed(), g = color.getGreen(), b = color.getBlue(), a = color.getAlpha();
+        float bottom = y - height;
+        float right = x + width;
+        verticies.put(x).put(bottom).put(u0).put(v1).put(r).put(g).put(b).put(a);
+        verticies.put(right).put(bottom).put(u1).put(v1).put(r).put(g).put(b).put(a);
+        verticies.put(right).put(y).put(u1).put(v0).put(r).put(g).put(b).put(a);
+        verticies.put(x).put(y).put(u0).put(v0).put(r).put(g).put(b).put(a);
+        quads++;
+    }
+    
+    /**
+     * Adds a quad showing the whole texture to the batch.
+     * @param texture The {@link wrath.client.graphics.Texture} to draw on the quad. If null, the quad is filled with the color.
+     * @param x The X-coordinate of the top-left corner of the quad.
+     * @param y The Y-coordinate of the top-left corner of the quad.
+     * @param width The width of the quad.
+     * @param height The height of the quad.
+     * @param color The {@link wrath.client.graphics.Color} the texture is multiplied by.
+     */
+    public void draw(Texture texture, float x, float y, float width, float height, Color color)
+    {
+        draw(texture, x, y, width, height, 0f, 0f, 1f, 1f, color);
+    }
+    
+    /**
+     * Ends drawing with the batch. The outermost call flushes the batch and restores the depth test, depth writes and blending.
+     */
+    public void end()
+    {
+        if(depth == 0 || --depth > 0) return;
+        flush();
+        GLState state = GLState.current();
+        ShaderProgram.unbindShaders();
+        state.bindVertexArray(0);
+        Texture.unbindTextures();
+        texID = 0;
+        state.depthMask(true);
+        state.disable(GL11.GL_BLEND);
+        state.enable(GL11.GL_DEPTH_TEST);
+    }
+    
+    /**
+     * Draws every quad in the batch with one draw call and empties it.
+     */
+    public void flush()
+    {
+        if(quads == 0) return;
+        
+        long offset = stream.commit();
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+        GLState state = GLState.current();
+        if(shader != null) shader.bindShader();
+        state.bindVertexArray(vaoID);
+        state.bindTexture(GL11.GL_TEXTURE_2D, texID);
+        //The indicies always start at the first quad, so the base vertex moves them to where this batch was written.
+        GL32.glDrawElementsBaseVertex(GL11.GL_TRIANGLES, quads * 6, GL11.GL_UNSIGNED_SHORT, 0, (int)(offset / (VERTEX_SIZE * 4)));
+        
+        drawCalls++;
+        quadsDrawn += quads;
+        quads = 0;
+        verticies = null;
+    }
+    
+    /**
+     * Gets the amount of quads the batch can hold before it is flushed.
+     * @return Returns the capacity of the batch, in quads.
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+    
+    /**
+     * Gets the amount of draw calls issued by the batch since it was created.
+     * @return Returns the amount of draw calls issued by the batch.
+     */
+    public long getDrawCalls()
+    {
+        return drawCalls;
+    }
+    
+    /**
+     * Gets the amount of quads drawn by the batch since it was created.
+     * @return Returns the amount of quads drawn by the batch.
+     */
+    public long getQuadsDrawn()
+    {
+        return quadsDrawn;
+    }
+    
+    /**
+     * Gets the {@link wrath.client.graphics.ShaderProgram} the batch draws with.
+     * @return Returns the current {@link wrath.client.graphics.ShaderProgram} of the batch.
+     */
+    public ShaderProgram getShader()
+    {
+        return shader;
+    }
+    
+    /**
+     * Gets the {@link wrath.client.graphics.StreamBuffer} the quads are written into.
+     * @return Returns the {@link wrath.client.graphics.StreamBuffer} of the batch.
+     */
+    public StreamBuffer getStreamBuffer()
+    {
+        return stream;
+    }
+    
+    /**
+     * Changes how the following quads are blended with what is already on the screen. The batch is flushed if the function changes.
+     * Passing GL_ONE and GL_ZERO turns blending off.
+     * @param src The OpenGL source factor.
+     * @param dst The OpenGL destination factor.
+     */
+    public void setBlendFunc(int src, int dst)
+    {
+        if(src == blendSrc && dst == blendDst) return;
+        flush();
+        blendSrc = src;
+        blendDst = dst;
+        GLState state = GLState.current();
+        if(src == GL11.GL_ONE && dst == GL11.GL_ZERO) state.disable(GL11.GL_BLEND);
+        else
+        {
+            state.enable(GL11.GL_BLEND);
+            state.blendFunc(src, dst);
+        }
+    }
+    
+    /**
+     * Changes the {@link wrath.client.graphics.ShaderProgram} the following quads are drawn with. The batch is flushed if the shader changes.
+     * @param shader The {@link wrath.client.graphics.ShaderProgram} to draw with, or null to go back to the default sprite shader. It must read the attributes 'in_Position', 'in_TextureCoord' and 'in_Color'.
+     */
+    public void setShader(ShaderProgram shader)
+    {
+        if(shader == null) shader = defaultShader;
+        if(shader == this.shader) return;
+        flush();
+        prepareShader(shader);
+        this.shader = shader;
+    }
+    
+    private static void prepareShader(ShaderProgram shader)
+    {
+        if(shader == null || shader.isFinalized()) return;
+        shader.bindAttribute(POSITION_ATTRIB_INDEX, "in_Position");
+        shader.bindAttribute(TEXTURE_ATTRIB_INDEX, "in_TextureCoord");
+        shader.bindAttribute(COLOR_ATTRIB_INDEX, "in_Color");
+        shader.finish();
+    }
+}
\ No newline at end of file
@@ -18,12 +18,15 @@
 package wrath.client.graphics.gui;
 
 import org.lwjgl.opengl.GL11;
+import wrath.client.Game;
 import wrath.client.graphics.Color;
 import wrath.client.graphics.Renderable;
 import wrath.client.graphics.Texture;
+import wrath.client.graphics.graphics2D.SpriteBatch;
 
 /**
  * Class to describe elements of the GUI.
+ * Elements are drawn through the {@link wrath.client.graphics.graphics2D.SpriteBatch} of the {@link wrath.client.Game.RenderManager}, so elements sharing a texture are drawn together.
  * @author Trent Spears
  */
 public abstract class GuiElement implements Renderable
@@ -139,42 +142,23 @@ public abstract class GuiElement implements Renderable
     @Override
     public void renderSetup()
     {
-        GL11.glEnable(GL11.GL_TEXTURE_2D);
-        GL11.glDisable(GL11.GL_DEPTH_TEST | GL11.GL_BLEND);
-        GL11.glDepthMask(false);
-        if(texture != null) texture.bindTexture();
-        GL11.glBegin(GL11.GL_QUADS);
+        Game.getCurrentInstance().getRenderer().getSpriteBatch().begin();
     }
     
     @Override
     public void render(boolean consolidated)
     {
         if(consolidated) renderSetup();
-        color.bindColor();
-
-        GL11.glTexCoord2f(0, 1);
-        GL11.glVertex3f(x, y - h, 0);
-
-        GL11.glTexCoord2f(1, 1);
-        GL11.glVertex3f(x + w, y - h, 0);
-
-        GL11.glTexCoord2f(1, 0);
-        GL11.glVertex3f(x + w, y, 0);
-
-        GL11.glTexCoord2f(0, 0);
-        GL11.glVertex3f(x, y, 0);
+        SpriteBatch batch = Game.getCurrentInstance().getRenderer().getSpriteBatch();
+        batch.setBlendFunc(GL11.GL_ONE, GL11.GL_ZERO);
+        batch.draw(texture, x, y, w, h, color);
         if(consolidated) renderStop();
     }
     
     @Override
     public void renderStop()
     {
-        GL11.glEnd();
-        color.unbindColor();
-        Texture.unbindTextures();
-        GL11.glDepthMask(true);
-        GL11.glDisable(GL11.GL_BLEND);
-        GL11.glEnable(GL11.GL_DEPTH_TEST);
+        Game.getCurrentInstance().getRenderer().getSpriteBatch().end();
     }
     
 
@@ -29,6 +29,7 @@ import java.util.Calendar;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.lwjgl.glfw.GLFW;
 import org.lwjgl.glfw.GLFWCharCallback;
 import org.lwjgl.glfw.GLFWCursorPosCallback;
@@ -36,6 +37,7 @@ import org.lwjgl.glfw.GLFWKeyCallback;
 import org.lwjgl.glfw.GLFWMouseButtonCallback;
 import org.lwjgl.glfw.GLFWScrollCallback;
 import wrath.client.Game;
+import wrath.client.Profiler;
 import wrath.client.enums.ImageFormat;
 import wrath.client.enums.RenderMode;
 import wrath.client.enums.WindowState;
@@ -50,9 +52,9 @@ public class InputManager implements Closeable
 {
     private final ArrayList<KeyData> defaults = new ArrayList<>();
 
-    private final HashMap<Integer, Runnable> persMap = new HashMap<>();
+    private final Map<Integer, Runnable> persMap = new ConcurrentHashMap<>();
     private final HashMap<Integer, KeyList> keyMap = new HashMap<>();
-    private static final HashMap<String, Runnable> savedFuncMap = new HashMap<>();
+    private final HashMap<String, Runnable> savedFuncMap = new HashMap<>();
     
     private GLFWCharCallback charStr;
     private GLFWCursorPosCallback curStr;
@@ -66,13 +68,13 @@ public class InputManager implements Closeable
     
     /**
      * Adds a listener to a specified String ID to be added later to a Keyboard or mouse function.
-     * Name is NOT case sensitive!
+     * Name is NOT case sensitive! Saved functions belong to the InputManager of the current {@link wrath.client.Game}.
      * @param id The String ID of the saved function.
      * @param function The event to be saved.
      */
     public static void addSavedFunction(String id, Runnable function)
     {
-        savedFuncMap.put(id.trim().toLowerCase(), function);
+        Game.getCurrentInstance().getInputManager().putSavedFunction(id, function);
     }
 
     /**
@@ -82,7 +84,7 @@ public class InputManager implements Closeable
      */
     public static Runnable getSavedFunction(String functionID)
     {
-        return savedFuncMap.get(functionID.trim().toLowerCase());
+        return Game.getCurrentInstance().getInputManager().savedFuncMap.get(functionID.trim().toLowerCase());
     }
     
     
@@ -98,100 +100,121 @@ public class InputManager implements Closeable
     private void afterConstructor()
     {
         Game.getCurrentInstance().addToTrashCleanup(this);
-        savedFuncMap.clear();
-        addSavedFunction("stop", () ->
+        putSavedFunction("stop", () ->
         {
             Game.getCurrentInstance().stop();
         });
         
-        addSavedFunction("toggle_fps", () ->
+        putSavedFunction("toggle_fps", () ->
         {
             Game.getCurrentInstance().getRenderer().setRenderFPS(!Game.getCurrentInstance().getRenderer().isRenderingFPS());
         });
         
-        addSavedFunction("screenshot", () ->
+        putSavedFunction("toggle_profiler", () ->
+        {
+            Game.getCurrentInstance().getProfiler().setOverlayEnabled(!Game.getCurrentInstance().getProfiler().isOverlayEnabled());
+        });
+        
+        putSavedFunction("export_profile", () ->
+        {
+            DateFormat format = new SimpleDateFormat("MM_dd_yyyy___HHmmss");
+            Calendar now = Calendar.getInstance();
+            Game.getCurrentInstance().getProfiler().exportChromeTrace("profile_" + format.format(now.getTime()));
+        });
+        
+        putSavedFunction("screenshot", () ->
         {
             DateFormat format = new SimpleDateFormat("MM_dd_yyyy___HHmmss");
             Calendar now = Calendar.getInstance();
             Game.getCurrentInstance().getWindowManager().screenShot("screenshot_" + format.format(now.getTime()), ImageFormat.PNG);
         });
         
-        addSavedFunction("toggle_windowstate_fullscreen", () ->
+        putSavedFunction("toggle_windowstate_fullscreen", () ->
         {
             if(Game.getCurrentInstance().getWindowManager().getWindowState() == WindowState.FULLSCREEN) Game.getCurrentInstance().getWindowManager().setWindowState(WindowState.WINDOWED);
             else Game.getCurrentInstance().getWindowManager().setWindowState(WindowState.FULLSCREEN);
         });
         
-        addSavedFunction("center_window", () ->
+        putSavedFunction("center_window", () ->
         {
             Game.getCurrentInstance().getWindowManager().centerWindow();
         });
         
-        addSavedFunction("toggle_windowstate_fullwindowed", () ->
+        putSavedFunction("toggle_windowstate_fullwindowed", () ->
         {
             if(Game.getCurrentInstance().getWindowManager().getWindowState() == WindowState.FULLSCREEN_WINDOWED) Game.getCurrentInstance().getWindowManager().setWindowState(WindowState.WINDOWED);
             else Game.getCurrentInstance().getWindowManager().setWindowState(WindowState.FULLSCREEN_WINDOWED);
         });
         
-        addSavedFunction("minimize_window", () ->
+        putSavedFunction("minimize_window", () ->
         {
             Game.getCurrentInstance().getWindowManager().minimizeWindow();
         });
         
-        addSavedFunction("bind_keys_to_defaults", () ->
+        putSavedFunction("bind_keys_to_defaults", () ->
         {
             bindKeysToDefaults();
         });
         
-        addSavedFunction("reset_keys", () ->
+        putSavedFunction("reset_keys", () ->
         {
             unbindAllKeys();
             bindKeysToEngineDefault();
             bindKeysToDefaults();
         });
         
-        addSavedFunction("save_internals", () ->
+        putSavedFunction("save_internals", () ->
         {
             saveKeys();
             Game.getCurrentInstance().getConfig().save();
         });
         
-        addSavedFunction("toggle_cursor", () ->
+        putSavedFunction("toggle_cursor", () ->
         {
             setCursorEnabled(!isCursorEnabled());
         });
         
-        addSavedFunction("move_forward", () ->
+        putSavedFunction("move_forward", () ->
         {
             Game.getCurrentInstance().getPlayerCamera().translatePosition(0, 0, -0.02f);
         });
         
-        addSavedFunction("move_left", () ->
+        putSavedFunction("move_left", () ->
         {
             Game.getCurrentInstance().getPlayerCamera().translatePosition(-0.02f, 0, 0);
         });
         
-        addSavedFunction("move_backward", () ->
+        putSavedFunction("move_backward", () ->
         {
             Game.getCurrentInstance().getPlayerCamera().translatePosition(0, 0, 0.02f);
         });
         
-        addSavedFunction("move_right", () ->
+        putSavedFunction("move_right", () ->
         {
             Game.getCurrentInstance().getPlayerCamera().translatePosition(0.02f, 0, 0);
         });
         
-        addSavedFunction("move_up", () ->
+        putSavedFunction("move_up", () ->
         {
             Game.getCurrentInstance().getPlayerCamera().translatePosition(0, 0.02f, 0);
         });
         
-        addSavedFunction("move_down", () ->
+        putSavedFunction("move_down", () ->
         {
             Game.getCurrentInstance().getPlayerCamera().translatePosition(0, -0.02f, 0);
         });
     }
     
+    /**
+     * Adds a saved function to this InputManager.
+     * @param id The String ID of the saved function.
+     * @param function The event to be saved.
+     */
+    private void putSavedFunction(String id, Runnable function)
+    {
+        savedFuncMap.put(id.trim().toLowerCase(), function);
+    }
+    
     /**
      * Sets default key binding.
      * @param key The {@link wrath.client.input.Key} to respond to.
@@ -362,6 +385,8 @@ public class InputManager implements Closeable
     {
         bindKey(Key.KEY_ESCAPE, Key.MOD_SHIFT, KeyAction.KEY_PRESS, "stop");
         bindKey(Key.KEY_F3, Key.MOD_NONE, KeyAction.KEY_PRESS, "toggle_fps");
+        bindKey(Key.KEY_F3, Key.MOD_SHIFT, KeyAction.KEY_PRESS, "toggle_profiler");
+        bindKey(Key.KEY_F3, Key.MOD_CTRL, KeyAction.KEY_PRESS, "export_profile");
         bindKey(Key.KEY_F12, Key.MOD_NONE, KeyAction.KEY_PRESS, "screenshot");
         bindKey(Key.KEY_ENTER, Key.MOD_ALT, KeyAction.KEY_PRESS, "toggle_windowstate_fullscreen");
         bindKey(Key.KEY_ENTER, Key.MOD_SHIFT, KeyAction.KEY_PRESS, "center_window");
@@ -540,10 +565,13 @@ public class InputManager implements Closeable
      */
     public void onPersistentInput()
     {
+        Profiler profiler = Game.getCurrentInstance().getProfiler();
+        profiler.begin(Profiler.SCOPE_PERSISTENT_INPUT);
         persMap.entrySet().stream().map((pairs) -> (Runnable) pairs.getValue()).forEach((ev) ->
         {
             ev.run();
         });
+        profiler.end();
     }
 
     /**
@@ -682,6 +710,8 @@ public class InputManager implements Closeable
     {
         addDefaultKeyBinding(Key.KEY_ESCAPE, Key.MOD_SHIFT, KeyAction.KEY_PRESS, "stop");
         addDefaultKeyBinding(Key.KEY_F3, Key.MOD_NONE, KeyAction.KEY_PRESS, "toggle_fps");
+        addDefaultKeyBinding(Key.KEY_F3, Key.MOD_SHIFT, KeyAction.KEY_PRESS, "toggle_profiler");
+        addDefaultKeyBinding(Key.KEY_F3, Key.MOD_CTRL, KeyAction.KEY_PRESS, "export_profile");
         addDefaultKeyBinding(Key.KEY_F12, Key.MOD_NONE, KeyAction.KEY_PRESS, "screenshot");
         addDefaultKeyBinding(Key.KEY_ENTER, Key.MOD_ALT, KeyAction.KEY_PRESS, "toggle_windowstate_fullscreen");
         addDefaultKeyBinding(Key.KEY_ENTER, Key.MOD_SHIFT, KeyAction.KEY_PRESS, "center_window");